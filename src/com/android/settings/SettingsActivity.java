@@ -62,6 +62,7 @@ import com.android.settings.core.OnActivityResultListener;
 import com.android.settings.core.SettingsBaseActivity;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settings.core.gateway.SettingsGateway;
+import com.android.settings.core.instrumentation.ScreenLatencyTracker;
 import com.android.settings.dashboard.DashboardFeatureProvider;
 import com.android.settings.homepage.SettingsHomepageActivity;
 import com.android.settings.homepage.TopLevelSettings;
@@ -295,6 +296,10 @@ public class SettingsActivity extends SettingsBaseActivity
 
         // Getting Intent properties can only be done after the super.onCreate(...)
         final String initialFragmentName = getInitialFragmentName(intent);
+        final ScreenLatencyTracker.Section launchSection = ScreenLatencyTracker.begin(
+                ScreenLatencyTracker.getScreenName(initialFragmentName != null
+                        ? initialFragmentName : TopLevelSettings.class.getName()),
+                ScreenLatencyTracker.PHASE_LAUNCH);
 
         // If this is a sub settings, then apply the SubSettings Theme for the ActionBar content
         // insets.
@@ -376,6 +381,7 @@ public class SettingsActivity extends SettingsBaseActivity
             }
         }
 
+        launchSection.end();
         if (DEBUG_TIMING) {
             Log.d(LOG_TAG, "onCreate took " + (System.currentTimeMillis() - startTime) + " ms");
         }
@@ -37,8 +37,11 @@ import android.util.Log;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.applications.ProcStatsData;
+import com.android.settings.core.instrumentation.SettingsMetricsFeatureProvider;
 import com.android.settings.datausage.lib.DataUsageLib;
 import com.android.settings.network.MobileNetworkRepository;
+import com.android.settings.overlay.FeatureFactory;
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.net.DataUsageController;
 
 import org.json.JSONArray;
@@ -67,6 +70,10 @@ public class SettingsDumpService extends Service {
     @VisibleForTesting
     static final String KEY_ANOMALY_DETECTION = "anomaly_detection";
     @VisibleForTesting
+    static final String KEY_SCREEN_LATENCY = "screen_latency";
+    @VisibleForTesting
+    static final String KEY_LATENCY = "latency";
+    @VisibleForTesting
     static final Intent BROWSER_INTENT =
             new Intent("android.intent.action.VIEW", Uri.parse("http://"));
 
@@ -98,6 +105,8 @@ public class SettingsDumpService extends Service {
                 dump.put(KEY_DATAUSAGE, dumpDataUsage());
                 dump.put(KEY_MEMORY, dumpMemory());
                 dump.put(KEY_DEFAULT_BROWSER_APP, dumpDefaultBrowser());
+                dump.put(KEY_SCREEN_LATENCY, dumpScreenLatency());
+                dump.put(KEY_LATENCY, dumpLatency());
             } catch (Exception e) {
                 Log.w(TAG, "exception in dump: ", e);
             }
@@ -183,6 +192,27 @@ public class SettingsDumpService extends Service {
         return obj;
     }
 
+    @VisibleForTesting
+    JSONObject dumpScreenLatency() throws JSONException {
+        final MetricsFeatureProvider metricsFeatureProvider =
+                FeatureFactory.getFeatureFactory().getMetricsFeatureProvider();
+        if (metricsFeatureProvider instanceof SettingsMetricsFeatureProvider) {
+            return ((SettingsMetricsFeatureProvider) metricsFeatureProvider)
+                    .getScreenLatencies();
+        }
+        return new JSONObject();
+    }
+
+    @VisibleForTesting
+    JSONObject dumpLatency() throws JSONException {
+        final MetricsFeatureProvider metricsFeatureProvider =
+                FeatureFactory.getFeatureFactory().getMetricsFeatureProvider();
+        if (metricsFeatureProvider instanceof SettingsMetricsFeatureProvider) {
+            return ((SettingsMetricsFeatureProvider) metricsFeatureProvider).getLatencies();
+        }
+        return new JSONObject();
+    }
+
     @VisibleForTesting
     String dumpDefaultBrowser() {
         final ResolveInfo resolveInfo = getPackageManager().resolveActivity(
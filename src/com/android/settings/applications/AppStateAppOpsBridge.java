@@ -55,6 +55,9 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
     private final int[] mAppOpsOpCodes;
     private final String[] mPermissions;
 
+    @VisibleForTesting
+    AppStateBulkLoader mBulkLoader;
+
     public AppStateAppOpsBridge(Context context, ApplicationsState appState, Callback callback,
             int appOpsOpCode, String[] permissions) {
         this(context, appState, callback, appOpsOpCode, permissions,
@@ -84,6 +87,14 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
         mAppOpsManager = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
         mAppOpsOpCodes = appOpsOpCodes;
         mPermissions = permissions;
+        mBulkLoader = AppStateBulkLoader.getInstance();
+        mBulkLoader.registerOps(appOpsOpCodes);
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        mBulkLoader.unregisterOps(mAppOpsManager);
     }
 
     private boolean isThisUserAProfileOfCurrentUser(final int userId) {
@@ -178,8 +189,8 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
                 final int profileId = profile.getIdentifier();
                 final Set<String> packagesSet = new HashSet<>();
                 for (String permission : mPermissions) {
-                    final String[] pkgs = mIPackageManager.getAppOpPermissionPackages(
-                            permission, profileId);
+                    final String[] pkgs = mBulkLoader.getAppOpPermissionPackages(
+                            mIPackageManager, permission, profileId);
                     if (pkgs != null) {
                         packagesSet.addAll(Arrays.asList(pkgs));
                     }
@@ -192,8 +203,8 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
                 final ArrayMap<String, PermissionState> entriesForProfile = new ArrayMap<>();
                 entries.put(profileId, entriesForProfile);
                 for (final String packageName : packagesSet) {
-                    final boolean isAvailable = mIPackageManager.isPackageAvailable(packageName,
-                            profileId);
+                    final boolean isAvailable = mBulkLoader.isPackageAvailable(
+                            mIPackageManager, packageName, profileId);
                     if (!shouldIgnorePackage(packageName) && isAvailable) {
                         final PermissionState newEntry = new PermissionState(packageName, profile);
                         entriesForProfile.put(packageName, newEntry);
@@ -229,10 +240,8 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
                 if (entriesForProfile == null) {
                     continue;
                 }
-                @SuppressWarnings("unchecked") final List<PackageInfo> packageInfos =
-                        mIPackageManager
-                                .getPackagesHoldingPermissions(mPermissions, 0,
-                                        profileId).getList();
+                final List<PackageInfo> packageInfos = mBulkLoader.getPackagesHoldingPermissions(
+                        mIPackageManager, mPermissions, profileId);
                 final int packageInfoCount = packageInfos != null ? packageInfos.size() : 0;
                 for (int i = 0; i < packageInfoCount; i++) {
                     final PackageInfo packageInfo = packageInfos.get(i);
@@ -258,9 +267,10 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
             return;
         }
 
-        // Find out which packages have been granted permission from AppOps.
-        final List<AppOpsManager.PackageOps> packageOps = mAppOpsManager.getPackagesForOps(
-                mAppOpsOpCodes);
+        // Find out which packages have been granted permission from AppOps. The ops of all the
+        // bridges are loaded together, and only the entries of mAppOpsOpCodes are returned here.
+        final List<AppOpsManager.PackageOps> packageOps = mBulkLoader.getPackagesForOps(
+                mAppOpsManager, mAppOpsOpCodes);
         final int packageOpsCount = packageOps != null ? packageOps.size() : 0;
         for (int i = 0; i < packageOpsCount; i++) {
             final AppOpsManager.PackageOps packageOp = packageOps.get(i);
@@ -72,11 +72,13 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
     }
 
     public void forceUpdate(String pkg, int uid) {
+        AppStateBulkLoader.getInstance().invalidate();
         mHandler.obtainMessage(BackgroundHandler.MSG_FORCE_LOAD_PKG, uid, 0, pkg).sendToTarget();
     }
 
     @Override
     public void onPackageListChanged() {
+        AppStateBulkLoader.getInstance().invalidate();
         mHandler.sendEmptyMessage(BackgroundHandler.MSG_LOAD_ALL);
     }
 
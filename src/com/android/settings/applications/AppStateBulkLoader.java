@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.app.AppOpsManager;
+import android.app.AppOpsManager.OpEntry;
+import android.app.AppOpsManager.PackageOps;
+import android.content.pm.IPackageManager;
+import android.content.pm.PackageInfo;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Pair;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.internal.util.ArrayUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the package and app op data needed by {@link AppStateBaseBridge}s with bulk calls, and
+ * shares the results between the bridges of the special app access screens opened in one session,
+ * instead of each bridge making its own per-package binder calls.
+ *
+ * <p>Bridges declare the app ops they need with {@link #registerOps(int[])} when they are created.
+ * The first bridge reading app ops fetches all the declared ones with a single
+ * {@link AppOpsManager#getPackagesForOps(int[])} call, and the other bridges get their own ops out
+ * of that result.
+ *
+ * <p>Results are dropped by {@link #invalidate()} when the package list changes, a loaded app op
+ * changes, or a bridge force updates a package changed by its detail page, and
+ * {@link #MAX_AGE_MS} after they are loaded. The binder calls are made without holding the lock,
+ * and their results are only kept if nothing was invalidated meanwhile.
+ *
+ * <p>The loaded app ops are watched until the last bridge which declared its ops is released and
+ * calls {@link #unregisterOps(AppOpsManager)}.
+ */
+public class AppStateBulkLoader {
+
+    @VisibleForTesting
+    static final long MAX_AGE_MS = 30 * DateUtils.SECOND_IN_MILLIS;
+
+    private static AppStateBulkLoader sInstance;
+
+    private final Set<Integer> mRegisteredOps = new ArraySet<>();
+    private final Set<Integer> mLoadedOps = new ArraySet<>();
+    // Guards the app op watchers, so that starting and stopping them is kept in order without
+    // holding the lock of the results during the binder calls.
+    private final Object mWatchLock = new Object();
+    private final Set<Integer> mWatchedOps = new ArraySet<>();
+    private final Map<Pair<String, Integer>, String[]> mAppOpPermissionPackages =
+            new ArrayMap<>();
+    private final Map<Pair<String, Integer>, Boolean> mPackageAvailabilities = new ArrayMap<>();
+    private final Map<Pair<String, Integer>, List<PackageInfo>> mPackagesHoldingPermissions =
+            new ArrayMap<>();
+    private final AppOpsManager.OnOpChangedListener mOpChangedListener =
+            (op, packageName) -> invalidate();
+    private List<PackageOps> mPackageOps;
+    private long mLoadedTime = -1;
+    // The bridges which declared their ops and are not released yet.
+    private int mClientCount;
+    // Incremented by every invalidation, so that the results loaded before it are not kept.
+    private int mGeneration;
+
+    /** Returns the loader shared in the process. */
+    public static synchronized AppStateBulkLoader getInstance() {
+        if (sInstance == null) {
+            sInstance = new AppStateBulkLoader();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    AppStateBulkLoader() {
+    }
+
+    /**
+     * Declares the {@param ops} a bridge reads, so they are fetched together with the others. The
+     * bridge calls {@link #unregisterOps(AppOpsManager)} once it is released.
+     */
+    public synchronized void registerOps(int[] ops) {
+        mClientCount++;
+        addOps(ops);
+    }
+
+    /**
+     * Called by a bridge which declared its ops once it is released. When the last one is, the
+     * app ops are not watched anymore and the results are dropped.
+     */
+    public void unregisterOps(AppOpsManager appOpsManager) {
+        synchronized (this) {
+            if (mClientCount > 0) {
+                mClientCount--;
+            }
+            if (mClientCount > 0) {
+                return;
+            }
+            mRegisteredOps.clear();
+            // Changes aren't watched anymore, so the loaded ops could turn stale.
+            invalidate();
+        }
+        synchronized (mWatchLock) {
+            if (!mWatchedOps.isEmpty()) {
+                mWatchedOps.clear();
+                appOpsManager.stopWatchingMode(mOpChangedListener);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link AppOpsManager#getPackagesForOps(int[])}, but fetches all the registered ops
+     * at once. Every returned {@link PackageOps} only contains the entries of {@param ops}.
+     */
+    public List<PackageOps> getPackagesForOps(AppOpsManager appOpsManager, int[] ops) {
+        List<PackageOps> allPackageOps;
+        final int[] registeredOps;
+        final int generation;
+        synchronized (this) {
+            invalidateIfExpired();
+            addOps(ops);
+            allPackageOps = containsAll(mLoadedOps, ops) ? mPackageOps : null;
+            registeredOps = new int[mRegisteredOps.size()];
+            int i = 0;
+            for (int op : mRegisteredOps) {
+                registeredOps[i++] = op;
+            }
+            generation = mGeneration;
+        }
+        // Watched before loading, so that a change made during the load isn't missed.
+        synchronized (mWatchLock) {
+            for (int op : registeredOps) {
+                if (mWatchedOps.add(op)) {
+                    appOpsManager.startWatchingMode(op, null /* packageName */,
+                            mOpChangedListener);
+                }
+            }
+        }
+        if (allPackageOps == null) {
+            Arrays.sort(registeredOps);
+            final List<PackageOps> packageOps = appOpsManager.getPackagesForOps(registeredOps);
+            allPackageOps = packageOps != null ? packageOps : new ArrayList<>();
+            synchronized (this) {
+                if (generation == mGeneration) {
+                    mPackageOps = allPackageOps;
+                    mLoadedOps.clear();
+                    for (int op : registeredOps) {
+                        mLoadedOps.add(op);
+                    }
+                    markLoaded();
+                }
+            }
+        }
+
+        final List<PackageOps> result = new ArrayList<>();
+        for (PackageOps packageOps : allPackageOps) {
+            final List<OpEntry> entries = new ArrayList<>();
+            for (OpEntry entry : packageOps.getOps()) {
+                if (ArrayUtils.contains(ops, entry.getOp())) {
+                    entries.add(entry);
+                }
+            }
+            if (!entries.isEmpty()) {
+                result.add(new PackageOps(packageOps.getPackageName(), packageOps.getUid(),
+                        entries));
+            }
+        }
+        return result;
+    }
+
+    /** Same as {@link IPackageManager#getAppOpPermissionPackages(String, int)}, but cached. */
+    public String[] getAppOpPermissionPackages(IPackageManager packageManager,
+            String permission, int userId) throws RemoteException {
+        final Pair<String, Integer> key = Pair.create(permission, userId);
+        final int generation;
+        synchronized (this) {
+            invalidateIfExpired();
+            if (mAppOpPermissionPackages.containsKey(key)) {
+                return mAppOpPermissionPackages.get(key);
+            }
+            generation = mGeneration;
+        }
+        final String[] packages = packageManager.getAppOpPermissionPackages(permission, userId);
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mAppOpPermissionPackages.put(key, packages);
+                markLoaded();
+            }
+        }
+        return packages;
+    }
+
+    /** Same as {@link IPackageManager#isPackageAvailable(String, int)}, but cached. */
+    public boolean isPackageAvailable(IPackageManager packageManager,
+            String packageName, int userId) throws RemoteException {
+        final Pair<String, Integer> key = Pair.create(packageName, userId);
+        final int generation;
+        synchronized (this) {
+            invalidateIfExpired();
+            final Boolean available = mPackageAvailabilities.get(key);
+            if (available != null) {
+                return available;
+            }
+            generation = mGeneration;
+        }
+        final boolean available = packageManager.isPackageAvailable(packageName, userId);
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mPackageAvailabilities.put(key, available);
+                markLoaded();
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Same as {@link IPackageManager#getPackagesHoldingPermissions(String[], long, int)} without
+     * flags, but cached.
+     */
+    @SuppressWarnings("unchecked")
+    public List<PackageInfo> getPackagesHoldingPermissions(
+            IPackageManager packageManager, String[] permissions, int userId)
+            throws RemoteException {
+        final Pair<String, Integer> key = Pair.create(String.join(",", permissions), userId);
+        final int generation;
+        synchronized (this) {
+            invalidateIfExpired();
+            if (mPackagesHoldingPermissions.containsKey(key)) {
+                return mPackagesHoldingPermissions.get(key);
+            }
+            generation = mGeneration;
+        }
+        final List<PackageInfo> packages = packageManager
+                .getPackagesHoldingPermissions(permissions, 0, userId).getList();
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mPackagesHoldingPermissions.put(key, packages);
+                markLoaded();
+            }
+        }
+        return packages;
+    }
+
+    /** Drops all the loaded results, the next reads will load them again. */
+    public synchronized void invalidate() {
+        mGeneration++;
+        mPackageOps = null;
+        mLoadedOps.clear();
+        mAppOpPermissionPackages.clear();
+        mPackageAvailabilities.clear();
+        mPackagesHoldingPermissions.clear();
+        mLoadedTime = -1;
+    }
+
+    private void addOps(int[] ops) {
+        for (int op : ops) {
+            mRegisteredOps.add(op);
+        }
+    }
+
+    private void invalidateIfExpired() {
+        if (mLoadedTime >= 0 && SystemClock.elapsedRealtime() - mLoadedTime >= MAX_AGE_MS) {
+            invalidate();
+        }
+    }
+
+    private void markLoaded() {
+        if (mLoadedTime < 0) {
+            mLoadedTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private static boolean containsAll(Set<Integer> set, int[] values) {
+        for (int value : values) {
+            if (!set.contains(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -58,7 +58,8 @@ public class AppStateInstallAppsBridge extends AppStateBaseBridge {
 
     @Override
     protected void loadAllExtraInfo() {
-        // TODO: consider making this a batch operation with a single binder call
+        // The requesting packages are loaded once by AppStateBulkLoader, the app op modes are
+        // still checked per app as checkOpNoThrow also takes the uid mode into account.
         final List<AppEntry> allApps = mAppSession.getAllApps();
         for (int i = 0; i < allApps.size(); i++) {
             AppEntry currentEntry = allApps.get(i);
@@ -68,7 +69,8 @@ public class AppStateInstallAppsBridge extends AppStateBaseBridge {
 
     private boolean hasRequestedAppOpPermission(String permission, String packageName, int userId) {
         try {
-            String[] packages = mIpm.getAppOpPermissionPackages(permission, userId);
+            String[] packages = AppStateBulkLoader.getInstance().getAppOpPermissionPackages(mIpm,
+                    permission, userId);
             return ArrayUtils.contains(packages, packageName);
         } catch (RemoteException exc) {
             Log.e(TAG, "PackageManager dead. Cannot get permission info");
@@ -56,7 +56,8 @@ public class AppStateLongBackgroundTasksBridge extends AppStateBaseBridge {
         mJobScheduler = context.getSystemService(JobScheduler.class);
         final IPackageManager iPm = AppGlobals.getPackageManager();
         try {
-            mRequesterPackages = iPm.getAppOpPermissionPackages(PERMISSION, context.getUserId());
+            mRequesterPackages = AppStateBulkLoader.getInstance().getAppOpPermissionPackages(iPm,
+                    PERMISSION, context.getUserId());
         } catch (RemoteException re) {
             Log.e(TAG, "Cannot reach package manager", re);
             mRequesterPackages = EmptyArray.STRING;
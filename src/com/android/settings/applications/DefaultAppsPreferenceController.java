@@ -29,13 +29,15 @@ import androidx.core.text.BidiFormatter;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
+import com.android.settings.core.BackgroundStateController;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settingslib.applications.AppUtils;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class DefaultAppsPreferenceController extends BasePreferenceController {
+public class DefaultAppsPreferenceController extends BasePreferenceController
+        implements BackgroundStateController<CharSequence> {
 
     private final PackageManager mPackageManager;
     private final RoleManager mRoleManager;
@@ -63,6 +65,19 @@ public class DefaultAppsPreferenceController extends BasePreferenceController {
         }
     }
 
+    @Override
+    public CharSequence computeState() {
+        // The role holders and their labels are queried over binder.
+        return getSummary();
+    }
+
+    @Override
+    public void applyState(Preference preference, CharSequence summary) {
+        if (summary != null) {
+            preference.setSummary(summary);
+        }
+    }
+
     @Override
     public CharSequence getSummary() {
         final List<CharSequence> defaultAppLabels = new ArrayList<>();
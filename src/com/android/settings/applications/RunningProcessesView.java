@@ -51,6 +51,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 
 public class RunningProcessesView extends FrameLayout
         implements AdapterView.OnItemClickListener, RecyclerListener,
@@ -234,7 +236,8 @@ public class RunningProcessesView extends FrameLayout
             return mShowBackground;
         }
 
-        void refreshItems() {
+        /** @return whether the list of items changed. */
+        boolean refreshItems() {
             ArrayList<RunningState.MergedItem> newItems =
                 mShowBackground ? mState.getCurrentBackgroundItems()
                         : mState.getCurrentMergedItems();
@@ -249,7 +252,9 @@ public class RunningProcessesView extends FrameLayout
                         Collections.sort(mItems, mState.mBackgroundComparator);
                     }
                 }
+                return true;
             }
+            return false;
         }
 
         public boolean hasStableIds() {
@@ -488,6 +493,18 @@ public class RunningProcessesView extends FrameLayout
         return false;
     }
 
+    void rebindItems(Set<RunningState.MergedItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<View, ActiveItem> entry : mActiveItems.entrySet()) {
+            ActiveItem ai = entry.getValue();
+            if (items.contains(ai.mItem)) {
+                entry.setValue(ai.mHolder.bind(mState, ai.mItem, mBuilder));
+            }
+        }
+    }
+
     void updateTimes() {
         Iterator<ActiveItem> it = mActiveItems.values().iterator();
         while (it.hasNext()) {
@@ -501,6 +518,19 @@ public class RunningProcessesView extends FrameLayout
         }
     }
 
+    @Override
+    public void onRefreshUi(int what, Set<RunningState.MergedItem> changedItems) {
+        if (what == REFRESH_DATA
+                || (what == REFRESH_STRUCTURE && !mAdapter.refreshItems())) {
+            // The list still holds the same items, only rebind the changed ones.
+            rebindItems(changedItems);
+            refreshUi(false);
+            updateTimes();
+            return;
+        }
+        onRefreshUi(what);
+    }
+
     @Override
     public void onRefreshUi(int what) {
         switch (what) {
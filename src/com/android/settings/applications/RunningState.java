@@ -32,6 +32,7 @@ import android.content.pm.UserInfo;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.Drawable.ConstantState;
+import android.net.Uri;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
@@ -39,7 +40,9 @@ import android.os.Message;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.text.TextUtils;
 import android.text.format.Formatter;
+import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
 
@@ -53,6 +56,8 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Singleton for retrieving and monitoring the state about all running
@@ -137,6 +142,18 @@ public class RunningState {
     // Temporary structure used when updating above information.
     final SparseArray<AppProcessInfo> mTmpAppProcesses = new SparseArray<AppProcessInfo>();
 
+    // Service infos of the running services, so a service restarting or being
+    // seen again after a reset does not need another binder call.
+    final ServiceInfoCache mServiceInfoCache = new ServiceInfoCache();
+
+    // The services and processes the above information was last built from, or
+    // null if it needs to be rebuilt on the next update.
+    Snapshot mLastSnapshot;
+
+    // Merged items whose displayed content changed during the last update, sent
+    // to the UI thread with MSG_REFRESH_UI.
+    final ArraySet<MergedItem> mChangedItems = new ArraySet<MergedItem>();
+
     int mSequence = 0;
 
     final Comparator<RunningState.MergedItem> mBackgroundComparator =
@@ -246,6 +263,10 @@ public class RunningState {
                     }
                     Message cmd = mHandler.obtainMessage(MSG_REFRESH_UI);
                     cmd.arg1 = update(mApplicationContext, mAm) ? 1 : 0;
+                    if (!mChangedItems.isEmpty()) {
+                        cmd.obj = new ArraySet<MergedItem>(mChangedItems);
+                        mChangedItems.clear();
+                    }
                     mHandler.sendMessage(cmd);
                     removeMessages(MSG_UPDATE_CONTENTS);
                     msg = obtainMessage(MSG_UPDATE_CONTENTS);
@@ -257,16 +278,23 @@ public class RunningState {
 
     final BackgroundHandler mBackgroundHandler;
 
+    // Merged items changed since the UI was last refreshed, only used on the UI thread.
+    final ArraySet<MergedItem> mPendingChangedItems = new ArraySet<MergedItem>();
+
     final Handler mHandler = new Handler() {
         int mNextUpdate = OnRefreshUiListener.REFRESH_TIME;
 
         @Override
+        @SuppressWarnings("unchecked")
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case MSG_REFRESH_UI:
                     mNextUpdate = msg.arg1 != 0
                             ? OnRefreshUiListener.REFRESH_STRUCTURE
                             : OnRefreshUiListener.REFRESH_DATA;
+                    if (msg.obj != null) {
+                        mPendingChangedItems.addAll((ArraySet<MergedItem>) msg.obj);
+                    }
                     break;
                 case MSG_UPDATE_TIME:
                     synchronized (mLock) {
@@ -281,8 +309,9 @@ public class RunningState {
                     if (mRefreshUiListener != null) {
                         //Log.i("foo", "Refresh UI: " + mNextUpdate
                         //        + " @ " + SystemClock.uptimeMillis());
-                        mRefreshUiListener.onRefreshUi(mNextUpdate);
+                        mRefreshUiListener.onRefreshUi(mNextUpdate, mPendingChangedItems);
                         mNextUpdate = OnRefreshUiListener.REFRESH_TIME;
+                        mPendingChangedItems.clear();
                     }
                     break;
             }
@@ -325,6 +354,43 @@ public class RunningState {
     private final UserManagerBroadcastReceiver mUmBroadcastReceiver =
             new UserManagerBroadcastReceiver();
 
+    private final class PackageBroadcastReceiver extends BroadcastReceiver {
+        private boolean mRegistered;
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            String packageName = data != null ? data.getSchemeSpecificPart() : null;
+            if (packageName != null) {
+                mServiceInfoCache.invalidatePackage(packageName);
+            }
+        }
+
+        void register(Context context) {
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addDataScheme("package");
+            context.registerReceiverAsUser(this, UserHandle.ALL, filter, null, null);
+            mRegistered = true;
+        }
+
+        void unregister(Context context) {
+            if (mRegistered) {
+                context.unregisterReceiver(this);
+                mRegistered = false;
+            }
+        }
+
+        boolean isRegistered() {
+            return mRegistered;
+        }
+    }
+
+    private final PackageBroadcastReceiver mPackageBroadcastReceiver =
+            new PackageBroadcastReceiver();
+
     // ----- DATA STRUCTURES -----
 
     static interface OnRefreshUiListener {
@@ -333,6 +399,125 @@ public class RunningState {
         public static final int REFRESH_STRUCTURE = 2;
 
         public void onRefreshUi(int what);
+
+        /**
+         * Same as {@link #onRefreshUi(int)}, also given the merged items whose displayed
+         * content changed since the last refresh.  When the list of items itself did not
+         * change, only these need to be rebound.  The set must not be kept after returning.
+         */
+        default void onRefreshUi(int what, Set<MergedItem> changedItems) {
+            onRefreshUi(what);
+        }
+    }
+
+    /**
+     * The values of the running services and processes that {@link #update} builds
+     * its items from, to skip rebuilding them when nothing changed since the last update.
+     */
+    static final class Snapshot {
+        final ActivityManager.RunningServiceInfo[] mServices;
+        final ActivityManager.RunningAppProcessInfo[] mProcesses;
+
+        Snapshot(List<ActivityManager.RunningServiceInfo> services,
+                List<ActivityManager.RunningAppProcessInfo> processes) {
+            mServices = services != null
+                    ? services.toArray(new ActivityManager.RunningServiceInfo[0])
+                    : new ActivityManager.RunningServiceInfo[0];
+            mProcesses = processes != null
+                    ? processes.toArray(new ActivityManager.RunningAppProcessInfo[0])
+                    : new ActivityManager.RunningAppProcessInfo[0];
+        }
+
+        boolean sameAs(Snapshot other) {
+            if (other == null || mServices.length != other.mServices.length
+                    || mProcesses.length != other.mProcesses.length) {
+                return false;
+            }
+            for (int i = 0; i < mServices.length; i++) {
+                if (!sameService(mServices[i], other.mServices[i])) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < mProcesses.length; i++) {
+                if (!sameProcess(mProcesses[i], other.mProcesses[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean sameService(ActivityManager.RunningServiceInfo a,
+                ActivityManager.RunningServiceInfo b) {
+            return a.uid == b.uid && a.pid == b.pid && a.restarting == b.restarting
+                    && a.activeSince == b.activeSince && a.clientLabel == b.clientLabel
+                    && a.flags == b.flags && a.started == b.started
+                    && a.foreground == b.foreground
+                    && Objects.equals(a.service, b.service)
+                    && TextUtils.equals(a.process, b.process)
+                    && TextUtils.equals(a.clientPackage, b.clientPackage);
+        }
+
+        private static boolean sameProcess(ActivityManager.RunningAppProcessInfo a,
+                ActivityManager.RunningAppProcessInfo b) {
+            return a.pid == b.pid && a.uid == b.uid && a.importance == b.importance
+                    && a.importanceReasonPid == b.importanceReasonPid
+                    && a.importanceReasonCode == b.importanceReasonCode
+                    && a.flags == b.flags && a.lru == b.lru
+                    && TextUtils.equals(a.processName, b.processName);
+        }
+    }
+
+    /**
+     * Caches the {@link ServiceInfo} of services by user and {@link ComponentName}.
+     * The entries of a package are dropped when the package changes.
+     */
+    static class ServiceInfoCache {
+        private final SparseArray<HashMap<ComponentName, ServiceInfo>> mServiceInfos
+                = new SparseArray<HashMap<ComponentName, ServiceInfo>>();
+        private int mGeneration;
+
+        ServiceInfo get(ComponentName component, int userId) throws RemoteException {
+            final int generation;
+            synchronized (this) {
+                HashMap<ComponentName, ServiceInfo> infos = mServiceInfos.get(userId);
+                ServiceInfo info = infos != null ? infos.get(component) : null;
+                if (info != null) {
+                    return info;
+                }
+                generation = mGeneration;
+            }
+            ServiceInfo info = ActivityThread.getPackageManager().getServiceInfo(
+                    component, PackageManager.MATCH_ANY_USER, userId);
+            synchronized (this) {
+                // Don't cache what may have been read before the package changed.
+                if (info != null && generation == mGeneration) {
+                    HashMap<ComponentName, ServiceInfo> infos = mServiceInfos.get(userId);
+                    if (infos == null) {
+                        infos = new HashMap<ComponentName, ServiceInfo>();
+                        mServiceInfos.put(userId, infos);
+                    }
+                    infos.put(component, info);
+                }
+            }
+            return info;
+        }
+
+        synchronized void invalidatePackage(String packageName) {
+            mGeneration++;
+            for (int i = 0; i < mServiceInfos.size(); i++) {
+                Iterator<ComponentName> it = mServiceInfos.valueAt(i).keySet().iterator();
+                while (it.hasNext()) {
+                    if (packageName.equals(it.next().getPackageName())) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+
+        synchronized void clear() {
+            mGeneration++;
+            mServiceInfos.clear();
+        }
     }
 
     static class UserState {
@@ -495,7 +680,8 @@ public class RunningState {
             }
         }
 
-        boolean updateService(Context context, ActivityManager.RunningServiceInfo service) {
+        boolean updateService(Context context, ActivityManager.RunningServiceInfo service,
+                ServiceInfoCache serviceInfoCache) {
             final PackageManager pm = context.getPackageManager();
 
             boolean changed = false;
@@ -505,8 +691,7 @@ public class RunningState {
                 si = new ServiceItem(mUserId);
                 si.mRunningService = service;
                 try {
-                    si.mServiceInfo = ActivityThread.getPackageManager().getServiceInfo(
-                            service.service, PackageManager.MATCH_ANY_USER,
+                    si.mServiceInfo = serviceInfoCache.get(service.service,
                             UserHandle.getUserId(service.uid));
 
                     if (si.mServiceInfo == null) {
@@ -636,7 +821,13 @@ public class RunningState {
             }
         }
 
+        /** @return whether the displayed content of this item changed. */
         boolean update(Context context, boolean background) {
+            final boolean oldBackground = mBackground;
+            final CharSequence oldDisplayLabel = mDisplayLabel;
+            final String oldDescription = mDescription;
+            final long oldActiveSince = mActiveSince;
+            final PackageItemInfo oldPackageInfo = mPackageInfo;
             mBackground = background;
 
             if (mUser != null) {
@@ -682,7 +873,10 @@ public class RunningState {
                 }
             }
 
-            return false;
+            return mBackground != oldBackground || mActiveSince != oldActiveSince
+                    || mPackageInfo != oldPackageInfo
+                    || !TextUtils.equals(mDisplayLabel, oldDisplayLabel)
+                    || !TextUtils.equals(mDescription, oldDescription);
         }
 
         boolean updateSize(Context context) {
@@ -799,6 +993,11 @@ public class RunningState {
         synchronized (mLock) {
             mResumed = true;
             mRefreshUiListener = listener;
+            if (!mPackageBroadcastReceiver.isRegistered()) {
+                // Packages may have changed while paused, without the receiver to tell.
+                mServiceInfoCache.clear();
+                mPackageBroadcastReceiver.register(mApplicationContext);
+            }
             boolean usersChanged = mUmBroadcastReceiver.checkUsersChangedLocked();
             boolean configChanged =
                     mInterestingConfigChanges.applyNewConfig(mApplicationContext.getResources());
@@ -843,7 +1042,9 @@ public class RunningState {
         synchronized (mLock) {
             mResumed = false;
             mRefreshUiListener = null;
+            mPackageBroadcastReceiver.unregister(mApplicationContext);
             mHandler.removeMessages(MSG_UPDATE_TIME);
+            mPendingChangedItems.clear();
         }
     }
 
@@ -868,6 +1069,8 @@ public class RunningState {
         mRunningProcesses.clear();
         mProcessItems.clear();
         mAllProcessItems.clear();
+        mServiceInfoCache.clear();
+        mLastSnapshot = null;
     }
 
     private void addOtherUserItem(Context context, ArrayList<MergedItem> newMergedItems,
@@ -894,6 +1097,7 @@ public class RunningState {
             userItem.mUser.mInfo = info;
             userItem.mUser.mIcon = Utils.getUserIcon(context, mUm, info);
             userItem.mUser.mLabel = Utils.getUserLabel(context, info);
+            mChangedItems.add(userItem);
             newMergedItems.add(userItem);
         }
         userItem.mChildren.add(newItem);
@@ -902,8 +1106,6 @@ public class RunningState {
     private boolean update(Context context, ActivityManager am) {
         final PackageManager pm = context.getPackageManager();
 
-        mSequence++;
-
         boolean changed = false;
 
         // Retrieve list of services, filtering out anything that definitely
@@ -933,10 +1135,36 @@ public class RunningState {
             }
         }
 
-        // Retrieve list of running processes, organizing them into a sparse
-        // array for easy retrieval.
+        // Retrieve list of running processes.
         List<ActivityManager.RunningAppProcessInfo> processes
                 = am.getRunningAppProcesses();
+
+        // Only rebuild the processes and items if a service or process changed since
+        // the last update; otherwise just refresh their memory use below.
+        final Snapshot snapshot = new Snapshot(services, processes);
+        if (!snapshot.sameAs(mLastSnapshot)) {
+            mSequence++;
+            changed = updateItems(context, pm, services, processes);
+            mLastSnapshot = snapshot;
+        }
+
+        changed |= updateMemory(context);
+        return changed;
+    }
+
+    /**
+     * Rebuilds the processes and items from the running {@param services} and
+     * {@param processes}, reusing the ones that did not change.
+     *
+     * @return whether the structure of the items changed.
+     */
+    private boolean updateItems(Context context, PackageManager pm,
+            List<ActivityManager.RunningServiceInfo> services,
+            List<ActivityManager.RunningAppProcessInfo> processes) {
+        boolean changed = false;
+
+        // Organize the running processes into a sparse array for easy retrieval.
+        final int NS = services != null ? services.size() : 0;
         final int NP = processes != null ? processes.size() : 0;
         mTmpAppProcesses.clear();
         for (int i = 0; i < NP; i++) {
@@ -1025,7 +1253,7 @@ public class RunningState {
                 proc.mDependentProcesses.clear();
                 proc.mCurSeq = mSequence;
             }
-            changed |= proc.updateService(context, si);
+            changed |= proc.updateService(context, si, mServiceInfoCache);
         }
 
         // Now update the map of other processes that are running (but
@@ -1237,7 +1465,9 @@ public class RunningState {
                     }
                 }
 
-                mergedItem.update(context, false);
+                if (mergedItem.update(context, false)) {
+                    mChangedItems.add(mergedItem);
+                }
                 if (mergedItem.mUserId != mMyUserId) {
                     addOtherUserItem(context, newMergedItems, mOtherUserMergedItems, mergedItem);
                 } else {
@@ -1255,7 +1485,9 @@ public class RunningState {
                         proc.mMergedItem = new MergedItem(proc.mUserId);
                         proc.mMergedItem.mProcess = proc;
                     }
-                    proc.mMergedItem.update(context, false);
+                    if (proc.mMergedItem.update(context, false)) {
+                        mChangedItems.add(proc.mMergedItem);
+                    }
                     if (proc.mMergedItem.mUserId != mMyUserId) {
                         addOtherUserItem(context, newMergedItems, mOtherUserMergedItems,
                                 proc.mMergedItem);
@@ -1271,17 +1503,32 @@ public class RunningState {
             final int NU = mOtherUserMergedItems.size();
             for (int i = 0; i < NU; i++) {
                 MergedItem user = mOtherUserMergedItems.valueAt(i);
-                if (user.mCurSeq == mSequence) {
-                    user.update(context, false);
+                if (user.mCurSeq == mSequence && user.update(context, false)) {
+                    mChangedItems.add(user);
                 }
             }
 
             synchronized (mLock) {
                 mItems = newItems;
-                mMergedItems = newMergedItems;
+                // Keep the current list if it holds the same items, so the UI only
+                // needs to rebind the changed ones instead of the whole list.
+                if (!newMergedItems.equals(mMergedItems)) {
+                    mMergedItems = newMergedItems;
+                }
             }
         }
 
+        return changed;
+    }
+
+    /**
+     * Retrieves the memory used by the processes and updates the background items.
+     *
+     * @return whether the background items changed while they are watched.
+     */
+    private boolean updateMemory(Context context) {
+        boolean changed = false;
+
         // Count number of interesting other (non-active) processes, and
         // build a list of all processes we will retrieve memory for.
         mAllProcessItems.clear();
@@ -1289,7 +1536,7 @@ public class RunningState {
         int numBackgroundProcesses = 0;
         int numForegroundProcesses = 0;
         int numServiceProcesses = 0;
-        NRP = mRunningProcesses.size();
+        int NRP = mRunningProcesses.size();
         for (int i = 0; i < NRP; i++) {
             ProcessItem proc = mRunningProcesses.valueAt(i);
             if (proc.mCurSeq != mSequence) {
@@ -1358,7 +1605,9 @@ public class RunningState {
                             mergedItem = mBackgroundItems.get(bgIndex);
                         }
                     }
-                    mergedItem.update(context, true);
+                    if (mergedItem.update(context, true)) {
+                        mChangedItems.add(mergedItem);
+                    }
                     mergedItem.updateSize(context);
                     bgIndex++;
                 } else if (proc.mRunningProcessInfo.importance <=
@@ -1367,6 +1616,8 @@ public class RunningState {
                 }
             }
         } catch (RemoteException e) {
+            // The background items may be partially updated, rebuild everything next time.
+            mLastSnapshot = null;
         }
 
         if (newBackgroundItems == null) {
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import android.icu.text.Transliterator;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * A search index over the app entries of one {@link com.android.settingslib.applications
+ * .ApplicationsState} rebuild.
+ *
+ * <p>Labels are normalized once when the index is built: lower cased with the {@link Locale} of
+ * the labels, diacritics stripped, and transliterated to Latin if they are written in another
+ * script. A query matches an entry if the normalized query is contained in its normalized label,
+ * its transliterated label or its package name.
+ *
+ * <p>When the query only appends characters to the previous one, {@link #search(CharSequence)}
+ * scans the previous matches instead of all the entries, as an entry not containing the previous
+ * query cannot contain the new one.
+ */
+@WorkerThread
+class AppSearchIndex {
+
+    private static final String TAG = "AppSearchIndex";
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final String TRANSLITERATOR_ID = "Any-Latin; Latin-ASCII";
+
+    private final List<AppEntry> mEntries;
+    private final Locale mLocale;
+    private final String[] mLabels;
+    private final String[] mTransliteratedLabels;
+    private final String[] mPackageNames;
+
+    private String mLastQuery;
+    private int[] mLastMatches;
+    private int mLastMatchCount;
+
+    AppSearchIndex(@NonNull List<AppEntry> entries, @NonNull Locale locale) {
+        mEntries = entries;
+        mLocale = locale;
+        final int size = entries.size();
+        mLabels = new String[size];
+        mTransliteratedLabels = new String[size];
+        mPackageNames = new String[size];
+
+        final Transliterator transliterator = getTransliterator();
+        for (int i = 0; i < size; i++) {
+            final AppEntry entry = entries.get(i);
+            final String label = normalize(entry.label, locale);
+            mLabels[i] = label;
+            if (transliterator != null && !isAscii(label)) {
+                mTransliteratedLabels[i] = normalize(transliterator.transliterate(label), locale);
+            }
+            if (entry.info != null && entry.info.packageName != null) {
+                mPackageNames[i] = entry.info.packageName.toLowerCase(Locale.ROOT);
+            }
+        }
+    }
+
+    /** @return whether the index is built from {@param entries} in {@param locale}. */
+    boolean isBuiltFrom(List<AppEntry> entries, Locale locale) {
+        return mEntries == entries && mLocale.equals(locale);
+    }
+
+    /** @return the entries matching {@param query}, in the order of the indexed entries. */
+    ArrayList<AppEntry> search(CharSequence query) {
+        final String normalizedQuery = normalize(query, mLocale);
+        final boolean narrowing = mLastQuery != null && normalizedQuery.contains(mLastQuery);
+        final int candidateCount = narrowing ? mLastMatchCount : mEntries.size();
+        final int[] matches = new int[candidateCount];
+        int matchCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            final int index = narrowing ? mLastMatches[i] : i;
+            if (matches(index, normalizedQuery)) {
+                matches[matchCount++] = index;
+            }
+        }
+        mLastQuery = normalizedQuery;
+        mLastMatches = matches;
+        mLastMatchCount = matchCount;
+
+        final ArrayList<AppEntry> matchedEntries = new ArrayList<>(matchCount);
+        for (int i = 0; i < matchCount; i++) {
+            matchedEntries.add(mEntries.get(matches[i]));
+        }
+        return matchedEntries;
+    }
+
+    private boolean matches(int index, String normalizedQuery) {
+        return mLabels[index].contains(normalizedQuery)
+                || (mTransliteratedLabels[index] != null
+                        && mTransliteratedLabels[index].contains(normalizedQuery))
+                || (mPackageNames[index] != null && mPackageNames[index].contains(normalizedQuery));
+    }
+
+    @VisibleForTesting
+    static String normalize(CharSequence text, Locale locale) {
+        if (TextUtils.isEmpty(text)) {
+            return "";
+        }
+        final String lowerCase = text.toString().toLowerCase(locale);
+        if (isAscii(lowerCase)) {
+            return lowerCase;
+        }
+        final String decomposed = Normalizer.normalize(lowerCase, Normalizer.Form.NFD);
+        return Normalizer.normalize(DIACRITICS.matcher(decomposed).replaceAll(""),
+                Normalizer.Form.NFC);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Transliterator getTransliterator() {
+        try {
+            return Transliterator.getInstance(TRANSLITERATOR_ID);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Transliterator not available: " + TRANSLITERATOR_ID, e);
+            return null;
+        }
+    }
+}
@@ -179,6 +179,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Locale;
 import java.util.Set;
 
 /**
@@ -1242,6 +1243,8 @@ public class ManageApplications extends InstrumentedFragment
         private boolean mHasReceivedLoadEntries;
         private boolean mHasReceivedBridgeCallback;
         private SearchFilter mSearchFilter;
+        // Built by the first search after each rebuild, only accessed by the filter thread.
+        private AppSearchIndex mSearchIndex;
         private PowerAllowlistBackend mBackend;
 
         // This is to remember and restore the last scroll position when this
@@ -1966,15 +1969,16 @@ public class ManageApplications extends InstrumentedFragment
             @Override
             protected FilterResults performFiltering(CharSequence query) {
                 final ArrayList<ApplicationsState.AppEntry> matchedEntries;
+                final ArrayList<ApplicationsState.AppEntry> originalEntries = mOriginalEntries;
                 if (TextUtils.isEmpty(query)) {
-                    matchedEntries = mOriginalEntries;
+                    matchedEntries = originalEntries;
                 } else {
-                    matchedEntries = new ArrayList<>();
-                    for (ApplicationsState.AppEntry entry : mOriginalEntries) {
-                        if (entry.label.toLowerCase().contains(query.toString().toLowerCase())) {
-                            matchedEntries.add(entry);
-                        }
+                    final Locale locale = Locale.getDefault();
+                    if (mSearchIndex == null
+                            || !mSearchIndex.isBuiltFrom(originalEntries, locale)) {
+                        mSearchIndex = new AppSearchIndex(originalEntries, locale);
                     }
+                    matchedEntries = mSearchIndex.search(query);
                 }
                 final FilterResults results = new FilterResults();
                 results.values = matchedEntries;
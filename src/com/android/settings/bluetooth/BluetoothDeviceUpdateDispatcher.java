@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.bluetooth;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.media.AudioManager;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.view.Choreographer;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.bluetooth.BluetoothCallback;
+import com.android.settingslib.bluetooth.CachedBluetoothDevice;
+import com.android.settingslib.bluetooth.LocalBluetoothManager;
+import com.android.settingslib.bluetooth.LocalBluetoothProfileManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dispatches the Bluetooth events to the {@link BluetoothDeviceUpdater}s showing devices at the
+ * same time, such as the available media, connected and saved devices of a screen.
+ *
+ * <p>Instead of each updater getting every event and going through the cached devices on its
+ * own, it gets the events once and coalesces them until the next frame. Then it takes a single
+ * {@link Snapshot} of the devices for all the updaters, and dispatches to each of them the devices
+ * removed and the devices to add, remove or update.
+ *
+ * <p>It has to be used on the main thread.
+ */
+final class BluetoothDeviceUpdateDispatcher implements BluetoothCallback,
+        LocalBluetoothProfileManager.ServiceListener {
+
+    private static BluetoothDeviceUpdateDispatcher sInstance;
+
+    private final LocalBluetoothManager mLocalManager;
+    private final List<BluetoothDeviceUpdater> mUpdaters = new ArrayList<>();
+    private final Choreographer.FrameCallback mDispatch = frameTimeNanos -> dispatch();
+
+    // Whether all the devices have to be updated, after a change of the Bluetooth state.
+    private boolean mFullUpdatePending;
+    // Whether the devices of the updaters depending on the audio mode have to be updated.
+    private boolean mAudioModeChangePending;
+    // key: the device of an event, value: whether it was deleted.
+    private final Map<CachedBluetoothDevice, Boolean> mPendingDevices = new ArrayMap<>();
+    private boolean mDispatchScheduled;
+
+    /** Returns the dispatcher of the events of the {@code localManager}. */
+    static BluetoothDeviceUpdateDispatcher getInstance(LocalBluetoothManager localManager) {
+        if (sInstance == null || sInstance.mLocalManager != localManager) {
+            sInstance = new BluetoothDeviceUpdateDispatcher(localManager);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    BluetoothDeviceUpdateDispatcher(LocalBluetoothManager localManager) {
+        mLocalManager = localManager;
+    }
+
+    /** Starts dispatching the events to the {@code updater}. */
+    void addUpdater(BluetoothDeviceUpdater updater) {
+        if (mUpdaters.contains(updater)) {
+            return;
+        }
+        if (mUpdaters.isEmpty()) {
+            mLocalManager.getEventManager().registerCallback(this);
+            mLocalManager.getProfileManager().addServiceListener(this);
+        }
+        mUpdaters.add(updater);
+    }
+
+    /** Stops dispatching the events to the {@code updater}. */
+    void removeUpdater(BluetoothDeviceUpdater updater) {
+        if (!mUpdaters.remove(updater) || !mUpdaters.isEmpty()) {
+            return;
+        }
+        mLocalManager.getEventManager().unregisterCallback(this);
+        mLocalManager.getProfileManager().removeServiceListener(this);
+        mFullUpdatePending = false;
+        mAudioModeChangePending = false;
+        mPendingDevices.clear();
+        if (mDispatchScheduled) {
+            mDispatchScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mDispatch);
+        }
+    }
+
+    @Override
+    public void onBluetoothStateChanged(int bluetoothState) {
+        if (BluetoothAdapter.STATE_ON == bluetoothState
+                || BluetoothAdapter.STATE_OFF == bluetoothState) {
+            // BluetoothDeviceUpdater#forceUpdate removes all the devices once Bluetooth is off.
+            requestFullUpdate();
+        }
+    }
+
+    @Override
+    public void onAudioModeChanged() {
+        mAudioModeChangePending = true;
+        scheduleDispatch();
+    }
+
+    @Override
+    public void onServiceConnected() {
+        requestFullUpdate();
+    }
+
+    @Override
+    public void onServiceDisconnected() {
+    }
+
+    @Override
+    public void onDeviceAdded(CachedBluetoothDevice cachedDevice) {
+        requestUpdate(cachedDevice, false /* deleted */);
+    }
+
+    @Override
+    public void onDeviceDeleted(CachedBluetoothDevice cachedDevice) {
+        requestUpdate(cachedDevice, true /* deleted */);
+    }
+
+    @Override
+    public void onDeviceBondStateChanged(CachedBluetoothDevice cachedDevice, int bondState) {
+        requestUpdate(cachedDevice, false /* deleted */);
+    }
+
+    @Override
+    public void onProfileConnectionStateChanged(CachedBluetoothDevice cachedDevice, int state,
+            int bluetoothProfile) {
+        requestUpdate(cachedDevice, false /* deleted */);
+    }
+
+    @Override
+    public void onAclConnectionStateChanged(CachedBluetoothDevice cachedDevice, int state) {
+        requestUpdate(cachedDevice, false /* deleted */);
+    }
+
+    private void requestFullUpdate() {
+        mFullUpdatePending = true;
+        scheduleDispatch();
+    }
+
+    private void requestUpdate(CachedBluetoothDevice cachedDevice, boolean deleted) {
+        // The last event of the device decides whether it's removed or updated.
+        mPendingDevices.put(cachedDevice, deleted);
+        scheduleDispatch();
+    }
+
+    private void scheduleDispatch() {
+        if (!mDispatchScheduled) {
+            mDispatchScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mDispatch);
+        }
+    }
+
+    /** Dispatches the events received since the last dispatch to the updaters. */
+    @VisibleForTesting
+    void dispatch() {
+        mDispatchScheduled = false;
+        final List<CachedBluetoothDevice> deletedDevices = new ArrayList<>();
+        final List<CachedBluetoothDevice> updatedDevices = new ArrayList<>();
+        mPendingDevices.forEach((cachedDevice, deleted) ->
+                (deleted ? deletedDevices : updatedDevices).add(cachedDevice));
+        final boolean fullUpdate = mFullUpdatePending;
+        final boolean audioModeChanged = mAudioModeChangePending;
+        mFullUpdatePending = false;
+        mAudioModeChangePending = false;
+        mPendingDevices.clear();
+        final boolean devicesChanged = !deletedDevices.isEmpty() || !updatedDevices.isEmpty();
+
+        Snapshot snapshot = null;
+        // An updater may unregister itself when its devices change.
+        for (BluetoothDeviceUpdater updater : new ArrayList<>(mUpdaters)) {
+            final boolean updaterFullUpdate = fullUpdate
+                    || (audioModeChanged && updater.shouldUpdateOnAudioModeChanged());
+            if (!updaterFullUpdate && !devicesChanged) {
+                continue;
+            }
+            if (snapshot == null) {
+                snapshot = new Snapshot(
+                        mLocalManager.getCachedDeviceManager().getCachedDevicesCopy());
+            }
+            updater.dispatchUpdate(snapshot, deletedDevices,
+                    updaterFullUpdate ? null : updatedDevices);
+        }
+    }
+
+    /**
+     * The state of the devices shared by the updaters during a dispatch, so that it's only
+     * queried once for all of them.
+     */
+    static final class Snapshot {
+        private final Collection<CachedBluetoothDevice> mCachedDevices;
+        private final Set<CachedBluetoothDevice> mCachedDeviceSet;
+        // key: the device, value: whether it's bonded and connected.
+        private final Map<CachedBluetoothDevice, Boolean> mConnectedDevices = new ArrayMap<>();
+        private Integer mAudioMode;
+
+        @VisibleForTesting
+        Snapshot(Collection<CachedBluetoothDevice> cachedDevices) {
+            mCachedDevices = cachedDevices;
+            mCachedDeviceSet = new ArraySet<>(cachedDevices);
+        }
+
+        /** Returns the cached devices, the way {@code getCachedDevicesCopy} does. */
+        Collection<CachedBluetoothDevice> getCachedDevices() {
+            return mCachedDevices;
+        }
+
+        boolean isCachedDevice(CachedBluetoothDevice cachedDevice) {
+            return mCachedDeviceSet.contains(cachedDevice);
+        }
+
+        boolean isBondedAndConnected(CachedBluetoothDevice cachedDevice) {
+            Boolean connected = mConnectedDevices.get(cachedDevice);
+            if (connected == null) {
+                final BluetoothDevice device = cachedDevice.getDevice();
+                connected = device.getBondState() == BluetoothDevice.BOND_BONDED
+                        && device.isConnected();
+                mConnectedDevices.put(cachedDevice, connected);
+            }
+            return connected;
+        }
+
+        int getAudioMode(AudioManager audioManager) {
+            if (mAudioMode == null) {
+                mAudioMode = audioManager.getMode();
+            }
+            return mAudioMode;
+        }
+    }
+}
@@ -18,9 +18,11 @@ package com.android.settings.bluetooth;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
 import android.content.Context;
+import android.media.AudioManager;
 import android.os.Bundle;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
 
@@ -59,6 +61,12 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
     @VisibleForTesting
     protected LocalBluetoothManager mLocalManager;
     protected int mMetricsCategory;
+    // The dispatcher of the events when they are coalesced, set while the callback is registered.
+    @Nullable
+    private BluetoothDeviceUpdateDispatcher mDispatcher;
+    // The state of the devices during a dispatch of the coalesced events, or null.
+    @Nullable
+    private BluetoothDeviceUpdateDispatcher.Snapshot mSnapshot;
 
     protected static final String TAG = "BluetoothDeviceUpdater";
     private static final boolean DBG = Log.isLoggable(TAG, Log.DEBUG);
@@ -94,8 +102,13 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
             return;
         }
         mLocalManager.setForegroundActivity(mContext);
-        mLocalManager.getEventManager().registerCallback(this);
-        mLocalManager.getProfileManager().addServiceListener(this);
+        if (shouldCoalesceEvents()) {
+            mDispatcher = BluetoothDeviceUpdateDispatcher.getInstance(mLocalManager);
+            mDispatcher.addUpdater(this);
+        } else {
+            mLocalManager.getEventManager().registerCallback(this);
+            mLocalManager.getProfileManager().addServiceListener(this);
+        }
         forceUpdate();
     }
 
@@ -108,8 +121,58 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
             return;
         }
         mLocalManager.setForegroundActivity(null);
-        mLocalManager.getEventManager().unregisterCallback(this);
-        mLocalManager.getProfileManager().removeServiceListener(this);
+        if (mDispatcher != null) {
+            mDispatcher.removeUpdater(this);
+            mDispatcher = null;
+        } else {
+            mLocalManager.getEventManager().unregisterCallback(this);
+            mLocalManager.getProfileManager().removeServiceListener(this);
+        }
+    }
+
+    /**
+     * Return {@code true} to get the events through {@link BluetoothDeviceUpdateDispatcher},
+     * coalesced with the events of the other updaters until the next frame. Only updaters
+     * handling the events the way this class does should return {@code true}.
+     */
+    protected boolean shouldCoalesceEvents() {
+        return false;
+    }
+
+    /**
+     * Return {@code true} if the devices depend on the audio mode, so that all of them are updated
+     * by {@link BluetoothDeviceUpdateDispatcher} when it changes.
+     */
+    protected boolean shouldUpdateOnAudioModeChanged() {
+        return false;
+    }
+
+    /**
+     * Update the devices for the events coalesced by {@link BluetoothDeviceUpdateDispatcher},
+     * with the state of the devices in the {@code snapshot}.
+     *
+     * @param deletedDevices the devices deleted from the cached devices.
+     * @param updatedDevices the devices to add, remove or update, or {@code null} to update all
+     *                       the devices.
+     */
+    void dispatchUpdate(BluetoothDeviceUpdateDispatcher.Snapshot snapshot,
+            Collection<CachedBluetoothDevice> deletedDevices,
+            @Nullable Collection<CachedBluetoothDevice> updatedDevices) {
+        mSnapshot = snapshot;
+        try {
+            for (CachedBluetoothDevice cachedDevice : deletedDevices) {
+                removePreference(cachedDevice);
+            }
+            if (updatedDevices == null) {
+                forceUpdate();
+            } else {
+                for (CachedBluetoothDevice cachedDevice : updatedDevices) {
+                    update(cachedDevice);
+                }
+            }
+        } finally {
+            mSnapshot = null;
+        }
     }
 
     /**
@@ -121,8 +184,7 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
             return;
         }
         if (BluetoothAdapter.getDefaultAdapter().isEnabled()) {
-            final Collection<CachedBluetoothDevice> cachedDevices =
-                    mLocalManager.getCachedDeviceManager().getCachedDevicesCopy();
+            final Collection<CachedBluetoothDevice> cachedDevices = getCachedDevices();
             for (CachedBluetoothDevice cachedBluetoothDevice : cachedDevices) {
                 update(cachedBluetoothDevice);
             }
@@ -137,8 +199,7 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
                     "removeAllDevicesFromPreference() BT is not supported on this device");
             return;
         }
-        final Collection<CachedBluetoothDevice> cachedDevices =
-                mLocalManager.getCachedDeviceManager().getCachedDevicesCopy();
+        final Collection<CachedBluetoothDevice> cachedDevices = getCachedDevices();
         for (CachedBluetoothDevice cachedBluetoothDevice : cachedDevices) {
             removePreference(cachedBluetoothDevice);
         }
@@ -314,6 +375,9 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
         if (cachedDevice == null) {
             return false;
         }
+        if (mSnapshot != null) {
+            return mSnapshot.isBondedAndConnected(cachedDevice);
+        }
         final BluetoothDevice device = cachedDevice.getDevice();
         if (DBG) {
             Log.d(getLogTag(), "isDeviceConnected() device name : " + cachedDevice.getName()
@@ -345,9 +409,34 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
     }
 
     protected boolean isDeviceInCachedDevicesList(CachedBluetoothDevice cachedDevice) {
+        if (mSnapshot != null) {
+            return mSnapshot.isCachedDevice(cachedDevice);
+        }
         return mLocalManager.getCachedDeviceManager().getCachedDevicesCopy().contains(cachedDevice);
     }
 
+    /**
+     * Return the cached devices, copied once for all the updaters during a dispatch of the
+     * coalesced events.
+     */
+    protected Collection<CachedBluetoothDevice> getCachedDevices() {
+        if (mSnapshot != null) {
+            return mSnapshot.getCachedDevices();
+        }
+        return mLocalManager.getCachedDeviceManager().getCachedDevicesCopy();
+    }
+
+    /**
+     * Return the audio mode, queried once for all the updaters during a dispatch of the
+     * coalesced events.
+     */
+    protected int getAudioMode(AudioManager audioManager) {
+        if (mSnapshot != null) {
+            return mSnapshot.getAudioMode(audioManager);
+        }
+        return audioManager.getMode();
+    }
+
     private boolean isDeviceOfMapInCachedDevicesList(BluetoothDevice inputBluetoothDevice) {
         Collection<CachedBluetoothDevice> cachedDevices =
                 mLocalManager.getCachedDeviceManager().getCachedDevicesCopy();
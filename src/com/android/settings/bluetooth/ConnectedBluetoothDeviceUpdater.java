@@ -51,9 +51,19 @@ public class ConnectedBluetoothDeviceUpdater extends BluetoothDeviceUpdater {
         forceUpdate();
     }
 
+    @Override
+    protected boolean shouldCoalesceEvents() {
+        return true;
+    }
+
+    @Override
+    protected boolean shouldUpdateOnAudioModeChanged() {
+        return true;
+    }
+
     @Override
     public boolean isFilterMatched(CachedBluetoothDevice cachedDevice) {
-        final int audioMode = mAudioManager.getMode();
+        final int audioMode = getAudioMode(mAudioManager);
         final int currentAudioProfile;
 
         if (audioMode == AudioManager.MODE_RINGTONE
@@ -56,6 +56,11 @@ public class SavedBluetoothDeviceUpdater extends BluetoothDeviceUpdater
         mBluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
     }
 
+    @Override
+    protected boolean shouldCoalesceEvents() {
+        return true;
+    }
+
     @Override
     public void forceUpdate() {
         if (mBluetoothAdapter.isEnabled()) {
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.WorkerThread;
+import androidx.preference.Preference;
+
+/**
+ * Marks a preference controller whose state is costly to compute, e.g. because it makes binder
+ * calls.
+ *
+ * <p>{@link com.android.settings.dashboard.DashboardFragment} updates such a controller in two
+ * phases instead of calling {@code isAvailable()} and {@code updateState()} on the main thread:
+ * {@code isAvailable()} and {@link #computeState} are called on a background thread, in parallel
+ * with the other controllers of the screen, then the states of all the controllers are applied
+ * with {@link #applyState} in a single pass on the main thread.
+ *
+ * <p>{@code updateState()} is still called by other callers, like slices, so it should keep
+ * working, typically as {@code applyState(preference, computeState())}.
+ *
+ * This must be used in {@link com.android.settingslib.core.AbstractPreferenceController}
+ *
+ * @param <T> the state of the preference, not modified once returned by {@link #computeState}
+ */
+public interface BackgroundStateController<T> {
+
+    /**
+     * Computes the state of the preference. It must not touch the preference or any other view.
+     */
+    @WorkerThread
+    T computeState();
+
+    /**
+     * Shows the {@code state} returned by {@link #computeState} on the {@code preference}.
+     */
+    @MainThread
+    void applyState(Preference preference, T state);
+}
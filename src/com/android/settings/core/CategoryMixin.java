@@ -24,8 +24,8 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.net.Uri;
 import android.os.AsyncTask;
-import android.text.TextUtils;
 import android.util.ArraySet;
 import android.util.Log;
 
@@ -35,11 +35,10 @@ import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.OnLifecycleEvent;
 
 import com.android.settings.dashboard.CategoryManager;
-import com.android.settingslib.drawer.Tile;
+import com.android.settings.dashboard.CategoryManager.CategoriesDiff;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -127,6 +126,12 @@ public class CategoryMixin implements LifecycleObserver {
         mCategoryListeners.forEach(listener -> listener.onCategoriesChanged(categories));
     }
 
+    @VisibleForTesting
+    void onCategoriesChanged(@Nullable Set<String> categories,
+            @Nullable Set<ComponentName> tiles) {
+        mCategoryListeners.forEach(listener -> listener.onCategoriesChanged(categories, tiles));
+    }
+
     private void updateCategories(boolean fromBroadcast) {
         // Only allow at most 2 tasks existing at the same time since when the first one is
         // executing, there may be new data from the second update request.
@@ -154,12 +159,22 @@ public class CategoryMixin implements LifecycleObserver {
          *                   refreshing all.
          */
         void onCategoriesChanged(@Nullable Set<String> categories);
+
+        /**
+         * @param categories the changed categories that have to be refreshed, or null to force
+         *                   refreshing all.
+         * @param tiles      the components of the added, removed or changed tiles, or null if
+         *                   {@param categories} is null.
+         */
+        default void onCategoriesChanged(@Nullable Set<String> categories,
+                @Nullable Set<ComponentName> tiles) {
+            onCategoriesChanged(categories);
+        }
     }
 
-    private class CategoriesUpdateTask extends AsyncTask<Boolean, Void, Set<String>> {
+    private class CategoriesUpdateTask extends AsyncTask<Boolean, Void, CategoriesDiff> {
 
         private final CategoryManager mCategoryManager;
-        private Map<ComponentName, Tile> mPreviousTileMap;
 
         CategoriesUpdateTask() {
             mCategoriesUpdateTaskCount++;
@@ -167,65 +182,31 @@ public class CategoryMixin implements LifecycleObserver {
         }
 
         @Override
-        protected Set<String> doInBackground(Boolean... params) {
-            mPreviousTileMap = mCategoryManager.getTileByComponentMap();
-            mCategoryManager.reloadAllCategories(mContext);
-            mCategoryManager.updateCategoryFromDenylist(sTileDenylist);
-            return getChangedCategories(params[0]);
+        protected CategoriesDiff doInBackground(Boolean... params) {
+            final CategoriesDiff diff = mCategoryManager.reloadCategories(mContext, sTileDenylist);
+            // Always refresh for non-broadcast case.
+            return params[0] ? diff : null;
         }
 
         @Override
-        protected void onPostExecute(Set<String> categories) {
-            if (categories == null || !categories.isEmpty()) {
-                onCategoriesChanged(categories);
+        protected void onPostExecute(CategoriesDiff diff) {
+            if (diff == null) {
+                onCategoriesChanged(null /* categories */, null /* tiles */);
+            } else if (!diff.isEmpty()) {
+                onCategoriesChanged(diff.getChangedCategories(), diff.getChangedTiles());
             }
             mCategoriesUpdateTaskCount--;
         }
-
-        // Return the changed categories that have to be refreshed, or null to force refreshing all.
-        private Set<String> getChangedCategories(boolean fromBroadcast) {
-            if (!fromBroadcast) {
-                // Always refresh for non-broadcast case.
-                return null;
-            }
-
-            final Set<String> changedCategories = new ArraySet<>();
-            final Map<ComponentName, Tile> currentTileMap =
-                    mCategoryManager.getTileByComponentMap();
-            currentTileMap.forEach((component, currentTile) -> {
-                final Tile previousTile = mPreviousTileMap.get(component);
-                // Check if the tile is newly added.
-                if (previousTile == null) {
-                    Log.i(TAG, "Tile added: " + component.flattenToShortString());
-                    changedCategories.add(currentTile.getCategory());
-                    return;
-                }
-
-                // Check if the title or summary has changed.
-                if (!TextUtils.equals(currentTile.getTitle(mContext),
-                        previousTile.getTitle(mContext))
-                        || !TextUtils.equals(currentTile.getSummary(mContext),
-                        previousTile.getSummary(mContext))) {
-                    Log.i(TAG, "Tile changed: " + component.flattenToShortString());
-                    changedCategories.add(currentTile.getCategory());
-                }
-            });
-
-            // Check if any previous tile is removed.
-            final Set<ComponentName> removal = new ArraySet(mPreviousTileMap.keySet());
-            removal.removeAll(currentTileMap.keySet());
-            removal.forEach(component -> {
-                Log.i(TAG, "Tile removed: " + component.flattenToShortString());
-                changedCategories.add(mPreviousTileMap.get(component).getCategory());
-            });
-
-            return changedCategories;
-        }
     }
 
     private class PackageReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            if (data != null) {
+                // Only the tiles of this package have to be loaded again.
+                CategoryManager.get(mContext).onPackageChanged(data.getSchemeSpecificPart());
+            }
             updateCategories(true /* fromBroadcast */);
         }
     }
@@ -70,10 +70,17 @@ public class PreferenceControllerListHelper {
             if (TextUtils.isEmpty(controllerName)) {
                 continue;
             }
-            BasePreferenceController controller;
-            try {
-                controller = BasePreferenceController.createInstance(context, controllerName);
-            } catch (IllegalStateException e) {
+            BasePreferenceController controller = null;
+            // Checks the constructor first, most controllers need a key and throwing for them
+            // costs more than creating them.
+            if (PreferenceControllerRegistry.hasContextConstructor(controllerName)) {
+                try {
+                    controller = BasePreferenceController.createInstance(context, controllerName);
+                } catch (IllegalStateException e) {
+                    // Tries the key constructor below.
+                }
+            }
+            if (controller == null) {
                 Log.d(TAG, "Could not find Context-only controller for pref: " + controllerName);
                 final String key = metadata.getString(METADATA_KEY);
                 final boolean isWorkProfile = metadata.getBoolean(METADATA_FOR_WORK, false);
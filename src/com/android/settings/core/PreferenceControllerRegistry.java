@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+import android.util.ArrayMap;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.accessibility.TopLevelAccessibilityPreferenceController;
+import com.android.settings.accounts.TopLevelAccountEntryPreferenceController;
+import com.android.settings.communal.CommunalPreferenceController;
+import com.android.settings.connecteddevice.TopLevelConnectedDevicesPreferenceController;
+import com.android.settings.deviceinfo.TopLevelStoragePreferenceController;
+import com.android.settings.deviceinfo.aboutphone.TopLevelAboutDevicePreferenceController;
+import com.android.settings.display.TopLevelDisplayPreferenceController;
+import com.android.settings.display.TopLevelWallpaperPreferenceController;
+import com.android.settings.fuelgauge.TopLevelBatteryPreferenceController;
+import com.android.settings.location.LocationIndicatorsPreferenceController;
+import com.android.settings.location.TopLevelLocationPreferenceController;
+import com.android.settings.network.TopLevelNetworkEntryPreferenceController;
+import com.android.settings.notification.ImportanceResetPreferenceController;
+import com.android.settings.privacy.TopLevelPrivacyEntryPreferenceController;
+import com.android.settings.safetycenter.TopLevelSafetyCenterEntryPreferenceController;
+import com.android.settings.security.TopLevelSecurityEntryPreferenceController;
+import com.android.settings.spa.development.compat.PlatformCompatPreferenceController;
+import com.android.settings.support.SupportPreferenceController;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates the {@link BasePreferenceController}s declared with {@code settings:controller} in
+ * preference xml.
+ *
+ * <p>The controllers of the screens opened at cold start are registered below with a constructor
+ * reference, so they are created without any reflection. Any other controller is looked up by
+ * reflection the first time it is created, and its constructors are kept for the next screens,
+ * the search indexing and the slices.
+ */
+final class PreferenceControllerRegistry {
+
+    /** Creates a controller with the {@code (Context, String)} constructor. */
+    @VisibleForTesting
+    interface Factory {
+        BasePreferenceController create(Context context, String key);
+    }
+
+    /**
+     * The controllers created with their {@code (Context, String)} constructor. Only controllers
+     * without a {@code (Context)} constructor can be registered here, as that one is preferred.
+     */
+    @VisibleForTesting
+    static final Map<String, Factory> FACTORIES = new ArrayMap<>();
+
+    static {
+        // top_level_settings
+        register(TopLevelAccessibilityPreferenceController.class,
+                TopLevelAccessibilityPreferenceController::new);
+        register(TopLevelAccountEntryPreferenceController.class,
+                TopLevelAccountEntryPreferenceController::new);
+        register(CommunalPreferenceController.class, CommunalPreferenceController::new);
+        register(TopLevelConnectedDevicesPreferenceController.class,
+                TopLevelConnectedDevicesPreferenceController::new);
+        register(TopLevelStoragePreferenceController.class,
+                TopLevelStoragePreferenceController::new);
+        register(TopLevelAboutDevicePreferenceController.class,
+                TopLevelAboutDevicePreferenceController::new);
+        register(TopLevelDisplayPreferenceController.class,
+                TopLevelDisplayPreferenceController::new);
+        register(TopLevelWallpaperPreferenceController.class,
+                TopLevelWallpaperPreferenceController::new);
+        register(TopLevelBatteryPreferenceController.class,
+                TopLevelBatteryPreferenceController::new);
+        register(TopLevelLocationPreferenceController.class,
+                TopLevelLocationPreferenceController::new);
+        register(TopLevelNetworkEntryPreferenceController.class,
+                TopLevelNetworkEntryPreferenceController::new);
+        register(TopLevelPrivacyEntryPreferenceController.class,
+                TopLevelPrivacyEntryPreferenceController::new);
+        register(TopLevelSafetyCenterEntryPreferenceController.class,
+                TopLevelSafetyCenterEntryPreferenceController::new);
+        register(TopLevelSecurityEntryPreferenceController.class,
+                TopLevelSecurityEntryPreferenceController::new);
+        register(SupportPreferenceController.class, SupportPreferenceController::new);
+
+        // development_settings
+        register(PlatformCompatPreferenceController.class,
+                PlatformCompatPreferenceController::new);
+        register(ImportanceResetPreferenceController.class,
+                ImportanceResetPreferenceController::new);
+        register(LocationIndicatorsPreferenceController.class,
+                LocationIndicatorsPreferenceController::new);
+    }
+
+    /** The constructors of the controllers which are not registered, by class name. */
+    private static final Map<String, Constructors> sConstructors = new ConcurrentHashMap<>();
+
+    private PreferenceControllerRegistry() {
+    }
+
+    private static void register(Class<? extends BasePreferenceController> clazz,
+            Factory factory) {
+        FACTORIES.put(clazz.getName(), factory);
+    }
+
+    /**
+     * @return whether {@param controllerName} has a {@code (Context)} constructor, so that
+     * {@link #createInstance(Context, String)} can be used.
+     */
+    static boolean hasContextConstructor(String controllerName) {
+        if (FACTORIES.containsKey(controllerName)) {
+            return false;
+        }
+        return getConstructors(controllerName).mContextConstructor != null;
+    }
+
+    /**
+     * Creates {@param controllerName} with its {@code (Context)} constructor.
+     *
+     * @throws IllegalStateException if the controller cannot be created
+     */
+    static BasePreferenceController createInstance(Context context, String controllerName) {
+        if (FACTORIES.containsKey(controllerName)) {
+            throw new IllegalStateException("Invalid preference controller: " + controllerName,
+                    new NoSuchMethodException(controllerName + ".<init>(Context)"));
+        }
+        final Constructors constructors = getConstructors(controllerName);
+        return newInstance(controllerName, constructors.mContextConstructor,
+                constructors.mContextError, context);
+    }
+
+    /**
+     * Creates {@param controllerName} with its {@code (Context, String)} constructor.
+     *
+     * @throws IllegalStateException if the controller cannot be created
+     */
+    static BasePreferenceController createInstance(Context context, String controllerName,
+            String key) {
+        final Factory factory = FACTORIES.get(controllerName);
+        if (factory != null) {
+            try {
+                return factory.create(context, key);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException(
+                        "Invalid preference controller: " + controllerName, e);
+            }
+        }
+        final Constructors constructors = getConstructors(controllerName);
+        return newInstance(controllerName, constructors.mKeyConstructor,
+                constructors.mKeyError, context, key);
+    }
+
+    /** Drops the constructors looked up by reflection. */
+    @VisibleForTesting
+    static void clearConstructors() {
+        sConstructors.clear();
+    }
+
+    private static Constructors getConstructors(String controllerName) {
+        Constructors constructors = sConstructors.get(controllerName);
+        if (constructors == null) {
+            constructors = new Constructors(controllerName);
+            sConstructors.put(controllerName, constructors);
+        }
+        return constructors;
+    }
+
+    private static BasePreferenceController newInstance(String controllerName,
+            Constructor<?> constructor, ReflectiveOperationException error, Object... params) {
+        if (constructor == null) {
+            throw new IllegalStateException("Invalid preference controller: " + controllerName,
+                    error);
+        }
+        try {
+            return (BasePreferenceController) constructor.newInstance(params);
+        } catch (InstantiationException | IllegalArgumentException | InvocationTargetException
+                | IllegalAccessException | ClassCastException e) {
+            throw new IllegalStateException("Invalid preference controller: " + controllerName, e);
+        }
+    }
+
+    /** The constructors of a controller class, or the reasons why they cannot be used. */
+    private static final class Constructors {
+        Constructor<?> mContextConstructor;
+        Constructor<?> mKeyConstructor;
+        ReflectiveOperationException mContextError;
+        ReflectiveOperationException mKeyError;
+
+        Constructors(String controllerName) {
+            final Class<?> clazz;
+            try {
+                clazz = Class.forName(controllerName);
+            } catch (ClassNotFoundException e) {
+                mContextError = e;
+                mKeyError = e;
+                return;
+            }
+            try {
+                mContextConstructor = clazz.getConstructor(Context.class);
+            } catch (NoSuchMethodException e) {
+                mContextError = e;
+            }
+            try {
+                mKeyConstructor = clazz.getConstructor(Context.class, String.class);
+            } catch (NoSuchMethodException e) {
+                mKeyError = e;
+            }
+        }
+    }
+}
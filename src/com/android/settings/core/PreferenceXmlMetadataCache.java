@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.text.TextUtils;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches the metadata extracted by {@link PreferenceXmlParserUtils#extractMetadata} so that
+ * opening a screen again, or indexing all the screens for search and slices, does not parse the
+ * preference xml again.
+ *
+ * <p>The metadata is kept in a memory LRU keyed by the xml res id, the flags and the parts of the
+ * {@link Configuration} that select the resources the metadata is read from. Off the main thread,
+ * a miss is also looked up in a compiled form stored in the cache dir, so indexing after a process
+ * restart skips parsing too. The stored files are dropped when the APK, its resource overlays or
+ * the build changes.
+ */
+class PreferenceXmlMetadataCache {
+
+    private static final String TAG = "PrefXmlMetadataCache";
+
+    @VisibleForTesting
+    static final int MAX_ENTRIES = 128;
+    @VisibleForTesting
+    static final String DISK_CACHE_DIR = "preference_metadata";
+    private static final String STAMP_FILE = "stamp";
+    private static final int FORMAT_VERSION = 1;
+
+    private static PreferenceXmlMetadataCache sInstance;
+
+    private final LinkedHashMap<Key, List<Bundle>> mEntries =
+            new LinkedHashMap<Key, List<Bundle>>(16 /* initialCapacity */, 0.75f /* loadFactor */,
+                    true /* accessOrder */) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, List<Bundle>> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private File mDiskCacheDir;
+    private boolean mDiskCacheChecked;
+
+    static synchronized PreferenceXmlMetadataCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new PreferenceXmlMetadataCache();
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return a copy of the metadata cached for {@param xmlResId} and {@param flags}, or
+     * {@code null} if the xml has to be parsed.
+     */
+    List<Bundle> get(Context context, int xmlResId, int flags) {
+        final Key key = new Key(context, xmlResId, flags);
+        synchronized (this) {
+            final List<Bundle> metadata = mEntries.get(key);
+            if (metadata != null) {
+                return copyOf(metadata);
+            }
+        }
+        if (ThreadUtils.isMainThread()) {
+            return null;
+        }
+        final List<Bundle> metadata = readFromDisk(context, key);
+        if (metadata == null) {
+            return null;
+        }
+        synchronized (this) {
+            mEntries.put(key, metadata);
+        }
+        return copyOf(metadata);
+    }
+
+    /** Caches a copy of the {@param metadata} parsed for {@param xmlResId} and {@param flags}. */
+    void put(Context context, int xmlResId, int flags, List<Bundle> metadata) {
+        final Key key = new Key(context, xmlResId, flags);
+        final List<Bundle> copy = copyOf(metadata);
+        synchronized (this) {
+            mEntries.put(key, copy);
+        }
+        if (!ThreadUtils.isMainThread()) {
+            writeToDisk(context, key, copy);
+        }
+    }
+
+    /** Drops the metadata cached in memory. */
+    synchronized void clear() {
+        mEntries.clear();
+    }
+
+    @VisibleForTesting
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    @VisibleForTesting
+    List<Bundle> readFromDisk(Context context, Key key) {
+        final File dir = getDiskCacheDir(context);
+        if (dir == null) {
+            return null;
+        }
+        final File file = new File(dir, key.getFileName());
+        if (!file.exists()) {
+            return null;
+        }
+        final Parcel parcel = Parcel.obtain();
+        try {
+            final byte[] bytes = new AtomicFile(file).readFully();
+            parcel.unmarshall(bytes, 0, bytes.length);
+            parcel.setDataPosition(0);
+            if (parcel.readInt() != FORMAT_VERSION
+                    || !TextUtils.equals(parcel.readString(), key.mPackageName)
+                    || !TextUtils.equals(parcel.readString(), key.mConfiguration)) {
+                // Another configuration with the same file name hash.
+                return null;
+            }
+            final int size = parcel.readInt();
+            final List<Bundle> metadata = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                metadata.add(parcel.readBundle(getClass().getClassLoader()));
+            }
+            return metadata;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to read cached metadata " + file, e);
+            return null;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @VisibleForTesting
+    void writeToDisk(Context context, Key key, List<Bundle> metadata) {
+        final File dir = getDiskCacheDir(context);
+        if (dir == null) {
+            return;
+        }
+        final AtomicFile file = new AtomicFile(new File(dir, key.getFileName()));
+        final Parcel parcel = Parcel.obtain();
+        FileOutputStream out = null;
+        try {
+            parcel.writeInt(FORMAT_VERSION);
+            parcel.writeString(key.mPackageName);
+            parcel.writeString(key.mConfiguration);
+            parcel.writeInt(metadata.size());
+            for (Bundle bundle : metadata) {
+                parcel.writeBundle(bundle);
+            }
+            out = file.startWrite();
+            out.write(parcel.marshall());
+            file.finishWrite(out);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to write cached metadata " + file.getBaseFile(), e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * @return the dir of the stored metadata, emptied first if it was stored by another version
+     * of the APK, or {@code null} if it cannot be used.
+     */
+    private synchronized File getDiskCacheDir(Context context) {
+        if (mDiskCacheChecked) {
+            return mDiskCacheDir;
+        }
+        mDiskCacheChecked = true;
+        final String stamp = getApkStamp(context);
+        final File cacheDir = context.getCacheDir();
+        if (stamp == null || cacheDir == null) {
+            return null;
+        }
+        final File dir = new File(cacheDir, DISK_CACHE_DIR);
+        final AtomicFile stampFile = new AtomicFile(new File(dir, STAMP_FILE));
+        try {
+            if (dir.isDirectory() && TextUtils.equals(stamp,
+                    new String(stampFile.readFully(), StandardCharsets.UTF_8))) {
+                mDiskCacheDir = dir;
+                return mDiskCacheDir;
+            }
+        } catch (IOException e) {
+            // No stamp yet.
+        }
+
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Failed to create " + dir);
+            return null;
+        }
+        FileOutputStream out = null;
+        try {
+            out = stampFile.startWrite();
+            out.write(stamp.getBytes(StandardCharsets.UTF_8));
+            stampFile.finishWrite(out);
+            mDiskCacheDir = dir;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write " + stampFile.getBaseFile(), e);
+            if (out != null) {
+                stampFile.failWrite(out);
+            }
+        }
+        return mDiskCacheDir;
+    }
+
+    private static String getApkStamp(Context context) {
+        try {
+            final PackageInfo packageInfo = context.getPackageManager().getPackageInfo(
+                    context.getPackageName(), 0 /* flags */);
+            final ApplicationInfo appInfo = context.getApplicationInfo();
+            return packageInfo.getLongVersionCode() + "|" + packageInfo.lastUpdateTime
+                    + "|" + Build.FINGERPRINT
+                    + "|" + (appInfo != null ? Arrays.toString(appInfo.overlayPaths) : null)
+                    + "|" + (appInfo != null ? Arrays.toString(appInfo.resourceDirs) : null);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static List<Bundle> copyOf(List<Bundle> metadata) {
+        final List<Bundle> copy = new ArrayList<>(metadata.size());
+        for (Bundle bundle : metadata) {
+            copy.add(new Bundle(bundle));
+        }
+        return copy;
+    }
+
+    /**
+     * The configuration values which can change the metadata: the locales for the titles and
+     * summaries, and the qualifiers the preference xml and strings are provided for. The screen
+     * width and height are left out so that the activities of a multi-window task share entries,
+     * only dimensions depend on them.
+     */
+    @VisibleForTesting
+    static String getConfigurationKey(Configuration config) {
+        return config.getLocales().toLanguageTags()
+                + "|" + config.mcc + "|" + config.mnc
+                + "|" + config.uiMode + "|" + config.densityDpi
+                + "|" + config.smallestScreenWidthDp + "|" + config.screenLayout
+                + "|" + config.orientation;
+    }
+
+    @VisibleForTesting
+    static final class Key {
+        final int mXmlResId;
+        final int mFlags;
+        final String mPackageName;
+        final String mConfiguration;
+
+        Key(Context context, int xmlResId, int flags) {
+            mXmlResId = xmlResId;
+            mFlags = flags;
+            mPackageName = context.getPackageName();
+            mConfiguration = getConfigurationKey(context.getResources().getConfiguration());
+        }
+
+        String getFileName() {
+            return Integer.toHexString(mXmlResId) + "_" + Integer.toHexString(mFlags) + "_"
+                    + Integer.toHexString(Objects.hash(mPackageName, mConfiguration));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return mXmlResId == other.mXmlResId && mFlags == other.mFlags
+                    && TextUtils.equals(mPackageName, other.mPackageName)
+                    && TextUtils.equals(mConfiguration, other.mConfiguration);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mXmlResId, mFlags, mPackageName, mConfiguration);
+        }
+    }
+}
@@ -108,7 +108,8 @@ public class PreferenceXmlParserUtils {
     public static final String METADATA_USER_RESTRICTION = "userRestriction";
 
     /**
-     * Extracts metadata from preference xml and put them into a {@link Bundle}.
+     * Extracts metadata from preference xml and put them into a {@link Bundle}. The metadata is
+     * cached, see {@link PreferenceXmlMetadataCache}.
      *
      * @param xmlResId xml res id of a preference screen
      * @param flags    Should be one or more of {@link MetadataFlag}.
@@ -116,11 +117,23 @@ public class PreferenceXmlParserUtils {
     @NonNull
     public static List<Bundle> extractMetadata(Context context, @XmlRes int xmlResId, int flags)
             throws IOException, XmlPullParserException {
-        final List<Bundle> metadata = new ArrayList<>();
         if (xmlResId <= 0) {
             Log.d(TAG, xmlResId + " is invalid.");
-            return metadata;
+            return new ArrayList<>();
+        }
+        final PreferenceXmlMetadataCache cache = PreferenceXmlMetadataCache.getInstance();
+        final List<Bundle> cachedMetadata = cache.get(context, xmlResId, flags);
+        if (cachedMetadata != null) {
+            return cachedMetadata;
         }
+        final List<Bundle> metadata = parseMetadata(context, xmlResId, flags);
+        cache.put(context, xmlResId, flags, metadata);
+        return metadata;
+    }
+
+    private static List<Bundle> parseMetadata(Context context, @XmlRes int xmlResId, int flags)
+            throws IOException, XmlPullParserException {
+        final List<Bundle> metadata = new ArrayList<>();
         final XmlResourceParser parser = context.getResources().getXml(xmlResId);
 
         int type;
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.instrumentation;
+
+import android.util.ArrayMap;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Percentiles of how long each phase of an operation, e.g. opening a screen, took, over the last
+ * {@link #WINDOW_SIZE} times the phase ran for the operation.
+ */
+final class LatencyStats {
+
+    @VisibleForTesting
+    static final int WINDOW_SIZE = 64;
+
+    // key: operation, e.g. a screen, value: (key: phase, value: latencies)
+    private final Map<String, Map<String, Window>> mWindows = new ArrayMap<>();
+
+    /** Records that the {@param phase} of the {@param operation} took {@param latencyMs}. */
+    synchronized void record(String operation, String phase, long latencyMs) {
+        Map<String, Window> windows = mWindows.get(operation);
+        if (windows == null) {
+            windows = new ArrayMap<>();
+            mWindows.put(operation, windows);
+        }
+        Window window = windows.get(phase);
+        if (window == null) {
+            window = new Window();
+            windows.put(phase, window);
+        }
+        window.add(latencyMs);
+    }
+
+    /**
+     * Returns the {@param percentile} of the recent latencies of the {@param phase} of the
+     * {@param operation}, or -1 if it never ran.
+     */
+    synchronized long getPercentile(String operation, String phase, int percentile) {
+        final Map<String, Window> windows = mWindows.get(operation);
+        final Window window = windows != null ? windows.get(phase) : null;
+        return window != null ? window.getPercentile(percentile) : -1;
+    }
+
+    /**
+     * Returns the count, maximum, and 50th, 90th and 99th percentiles of the latencies by
+     * operation and phase.
+     */
+    synchronized JSONObject toJson() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        for (Map.Entry<String, Map<String, Window>> operationEntry : mWindows.entrySet()) {
+            final JSONObject operationObj = new JSONObject();
+            for (Map.Entry<String, Window> phaseEntry : operationEntry.getValue().entrySet()) {
+                final Window window = phaseEntry.getValue();
+                final JSONObject phaseObj = new JSONObject();
+                phaseObj.put("count", window.mCount);
+                phaseObj.put("max", window.mMax);
+                phaseObj.put("p50", window.getPercentile(50));
+                phaseObj.put("p90", window.getPercentile(90));
+                phaseObj.put("p99", window.getPercentile(99));
+                operationObj.put(phaseEntry.getKey(), phaseObj);
+            }
+            obj.put(operationEntry.getKey(), operationObj);
+        }
+        return obj;
+    }
+
+    /** The last latencies of a phase, in a ring buffer. */
+    private static final class Window {
+        private final long[] mLatencies = new long[WINDOW_SIZE];
+        private long mCount;
+        private long mMax;
+
+        void add(long latencyMs) {
+            mLatencies[(int) (mCount % WINDOW_SIZE)] = latencyMs;
+            mCount++;
+            mMax = Math.max(mMax, latencyMs);
+        }
+
+        long getPercentile(int percentile) {
+            final int size = (int) Math.min(mCount, WINDOW_SIZE);
+            final long[] latencies = Arrays.copyOf(mLatencies, size);
+            Arrays.sort(latencies);
+            // Nearest rank
+            final int rank = (int) Math.ceil(percentile / 100.0 * size);
+            return latencies[Math.max(rank - 1, 0)];
+        }
+    }
+}
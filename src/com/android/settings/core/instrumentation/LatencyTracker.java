@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.instrumentation;
+
+import com.android.settings.overlay.FeatureFactory;
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
+
+/**
+ * Reports the latencies of background operations, such as indexing or loading data, which aren't
+ * user actions and so don't belong with the action metrics.
+ *
+ * <p>The latency is aggregated per operation and phase by {@link SettingsMetricsFeatureProvider},
+ * see {@code adb shell dumpsys activity service SettingsDumpService}.
+ */
+public final class LatencyTracker {
+
+    private LatencyTracker() {
+    }
+
+    /** Reports that the {@param phase} of the {@param operation} took {@param latencyMs}. */
+    public static void record(String operation, String phase, long latencyMs) {
+        final MetricsFeatureProvider metricsFeatureProvider =
+                FeatureFactory.getFeatureFactory().getMetricsFeatureProvider();
+        if (metricsFeatureProvider instanceof SettingsMetricsFeatureProvider) {
+            ((SettingsMetricsFeatureProvider) metricsFeatureProvider)
+                    .recordLatency(operation, phase, latencyMs);
+        }
+    }
+}
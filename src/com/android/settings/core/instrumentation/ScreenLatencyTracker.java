@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.instrumentation;
+
+import android.os.SystemClock;
+import android.os.Trace;
+
+import com.android.settings.overlay.FeatureFactory;
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the phases of opening a screen.
+ *
+ * <p>Each phase is emitted as a {@link Trace} section named {@code "<screen>#<phase>"}, and its
+ * latency is aggregated per screen by {@link SettingsMetricsFeatureProvider}, see
+ * {@code adb shell dumpsys activity service SettingsDumpService}.
+ */
+public final class ScreenLatencyTracker {
+
+    public static final String PHASE_LAUNCH = "launch";
+    public static final String PHASE_CREATE_CONTROLLERS = "createControllers";
+    public static final String PHASE_INFLATE = "inflate";
+    public static final String PHASE_DISPLAY_RESOURCE_TILES = "displayResourceTiles";
+    public static final String PHASE_REFRESH_DASHBOARD_TILES = "refreshDashboardTiles";
+    public static final String PHASE_UPDATE_STATES = "updatePreferenceStates";
+    public static final String PHASE_BACKGROUND_STATES = "backgroundStates";
+    public static final String PHASE_UI_BLOCKER_WAIT = "uiBlockerWait";
+
+    // Trace section names longer than this are rejected.
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    private static final AtomicInteger sNextCookie = new AtomicInteger();
+
+    private ScreenLatencyTracker() {
+    }
+
+    /**
+     * Starts a phase which ends on the same thread. Phases started on the same thread must end
+     * in reverse order.
+     */
+    public static Section begin(String screen, String phase) {
+        final Section section = new Section(screen, phase, -1 /* cookie */);
+        Trace.beginSection(section.mName);
+        return section;
+    }
+
+    /** Starts a phase which may end on another thread, or overlap with other phases. */
+    public static Section beginAsync(String screen, String phase) {
+        final Section section = new Section(screen, phase, sNextCookie.incrementAndGet());
+        Trace.beginAsyncSection(section.mName, section.mCookie);
+        return section;
+    }
+
+    /** Returns the name of the screen shown by the {@param className} fragment. */
+    public static String getScreenName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+
+    private static void record(String screen, String phase, long latencyMs) {
+        final MetricsFeatureProvider metricsFeatureProvider =
+                FeatureFactory.getFeatureFactory().getMetricsFeatureProvider();
+        if (metricsFeatureProvider instanceof SettingsMetricsFeatureProvider) {
+            ((SettingsMetricsFeatureProvider) metricsFeatureProvider)
+                    .recordScreenLatency(screen, phase, latencyMs);
+        }
+    }
+
+    /** A phase in progress. */
+    public static final class Section {
+        private final String mScreen;
+        private final String mPhase;
+        private final String mName;
+        private final int mCookie;
+        private final long mStartTime;
+
+        private Section(String screen, String phase, int cookie) {
+            mScreen = screen;
+            mPhase = phase;
+            final String name = screen + "#" + phase;
+            mName = name.length() > MAX_SECTION_NAME_LENGTH
+                    ? name.substring(name.length() - MAX_SECTION_NAME_LENGTH) : name;
+            mCookie = cookie;
+            mStartTime = SystemClock.elapsedRealtime();
+        }
+
+        /** Ends the phase and records its latency. */
+        public void end() {
+            endSection();
+            record(mScreen, mPhase, SystemClock.elapsedRealtime() - mStartTime);
+        }
+
+        /** Ends the phase without recording its latency, when it's dropped before completing. */
+        public void cancel() {
+            endSection();
+        }
+
+        private void endSection() {
+            if (mCookie < 0) {
+                Trace.endSection();
+            } else {
+                Trace.endAsyncSection(mName, mCookie);
+            }
+        }
+    }
+}
@@ -22,9 +22,15 @@ import android.util.Pair;
 
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 public class SettingsMetricsFeatureProvider extends MetricsFeatureProvider {
     private static final String TAG = "SettingsMetricsFeature";
 
+    private final LatencyStats mScreenLatencyStats = new LatencyStats();
+    private final LatencyStats mLatencyStats = new LatencyStats();
+
     @Override
     protected void installLogWriters() {
         mLoggerWriters.add(new StatsLogWriter());
@@ -41,4 +47,39 @@ public class SettingsMetricsFeatureProvider extends MetricsFeatureProvider {
                 + "Use action(int, int, int, String, int) instead.");
         super.action(context, category, taggedData);
     }
+
+    /**
+     * Records that the {@code phase} of opening the {@code screen} took {@code latencyMs}.
+     *
+     * @see ScreenLatencyTracker
+     */
+    public void recordScreenLatency(String screen, String phase, long latencyMs) {
+        mScreenLatencyStats.record(screen, phase, latencyMs);
+    }
+
+    /**
+     * Returns the percentiles of the recent latencies of each phase of opening a screen, by
+     * screen and phase.
+     */
+    public JSONObject getScreenLatencies() throws JSONException {
+        return mScreenLatencyStats.toJson();
+    }
+
+    /**
+     * Records that the {@code phase} of the background {@code operation} took
+     * {@code latencyMs}.
+     *
+     * @see LatencyTracker
+     */
+    public void recordLatency(String operation, String phase, long latencyMs) {
+        mLatencyStats.record(operation, phase, latencyMs);
+    }
+
+    /**
+     * Returns the percentiles of the recent latencies of each phase of a background operation,
+     * by operation and phase.
+     */
+    public JSONObject getLatencies() throws JSONException {
+        return mLatencyStats.toJson();
+    }
 }
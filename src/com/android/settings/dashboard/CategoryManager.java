@@ -23,6 +23,7 @@ import android.util.ArraySet;
 import android.util.Log;
 import android.util.Pair;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.homepage.HighlightableMenu;
@@ -37,6 +38,7 @@ import com.android.settingslib.drawer.TileUtils;
 import com.google.android.setupcompat.util.WizardManagerHelper;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -55,10 +57,15 @@ public class CategoryManager {
     // Tile cache (key: <packageName, activityName>, value: tile)
     private final Map<Pair<String, String>, Tile> mTileByComponentCache;
 
-    // Tile cache (key: category key, value: category)
-    private final Map<String, DashboardCategory> mCategoryByKeyMap;
+    // Categories of the last load, before the denylist is applied (key: category key)
+    private final Map<String, LoadedCategory> mLoadedCategoryByKey;
 
-    private List<DashboardCategory> mCategories;
+    // Packages whose tiles have to be loaded from scratch by the next reload
+    private final Set<String> mChangedPackages = new ArraySet<>();
+
+    // The categories served to the readers, never modified once published. A reload or a denylist
+    // update publishes new ones under the lock of this object, readers don't take the lock.
+    private volatile Categories mCategories;
 
     public static CategoryManager get(Context context) {
         if (sInstance == null) {
@@ -69,30 +76,61 @@ public class CategoryManager {
 
     CategoryManager(Context context) {
         mTileByComponentCache = new ArrayMap<>();
-        mCategoryByKeyMap = new ArrayMap<>();
+        mLoadedCategoryByKey = new ArrayMap<>();
         mInterestingConfigChanges = new InterestingConfigChanges();
         mInterestingConfigChanges.applyNewConfig(context.getResources());
     }
 
-    public synchronized DashboardCategory getTilesByCategory(Context context, String categoryKey) {
-        tryInitCategories(context);
-
-        return mCategoryByKeyMap.get(categoryKey);
+    public DashboardCategory getTilesByCategory(Context context, String categoryKey) {
+        final Categories categories = tryInitCategories(context);
+        return categories != null ? categories.mCategoryByKeyMap.get(categoryKey) : null;
     }
 
-    public synchronized List<DashboardCategory> getCategories(Context context) {
+    public List<DashboardCategory> getCategories(Context context) {
         if (!WizardManagerHelper.isUserSetupComplete(context)) {
             return new ArrayList<>();
         }
-        tryInitCategories(context);
-        return mCategories;
+        final Categories categories = tryInitCategories(context);
+        return categories != null ? categories.mCategories : new ArrayList<>();
     }
 
-    public synchronized void reloadAllCategories(Context context) {
-        final boolean forceClearCache = mInterestingConfigChanges.applyNewConfig(
-                context.getResources());
-        mCategories = null;
-        tryInitCategories(context, forceClearCache);
+    public void reloadAllCategories(Context context) {
+        reloadCategories(context, Collections.emptySet());
+    }
+
+    /**
+     * Reloads the categories and returns what changed compared to the ones served before.
+     *
+     * <p>The tiles of the packages reported by {@link #onPackageChanged} are loaded from scratch,
+     * the other ones come from the tile cache. Only the categories whose tiles changed since the
+     * last load are sorted and de-duplicated again.
+     *
+     * @param tileDenylist the tiles to leave out of the served categories
+     */
+    public synchronized CategoriesDiff reloadCategories(Context context,
+            Set<ComponentName> tileDenylist) {
+        if (mInterestingConfigChanges.applyNewConfig(context.getResources())) {
+            mTileByComponentCache.clear();
+            mLoadedCategoryByKey.clear();
+        }
+        final Categories previousCategories = mCategories;
+        if (!WizardManagerHelper.isUserSetupComplete(context)) {
+            // Don't init while setup wizard is still running.
+            mCategories = null;
+            return new CategoriesDiff();
+        }
+        loadCategories(context, tileDenylist);
+        return CategoriesDiff.compute(context, previousCategories, mCategories);
+    }
+
+    /**
+     * Marks the tiles of {@param packageName} as changed, so that the next reload loads them from
+     * scratch instead of reusing the cached ones. Doesn't wait for a reload in progress.
+     */
+    public void onPackageChanged(String packageName) {
+        synchronized (mChangedPackages) {
+            mChangedPackages.add(packageName);
+        }
     }
 
     /**
@@ -104,25 +142,18 @@ public class CategoryManager {
             Log.w(TAG, "Category is null, skipping denylist update");
             return;
         }
-        for (int i = 0; i < mCategories.size(); i++) {
-            DashboardCategory category = mCategories.get(i);
-            for (int j = 0; j < category.getTilesCount(); j++) {
-                Tile tile = category.getTile(j);
-                if (tileDenylist.contains(tile.getIntent().getComponent())) {
-                    category.removeTile(j--);
-                }
-            }
-        }
+        mCategories = mCategories.withoutTiles(tileDenylist);
     }
 
     /** Return the current tile map */
-    public synchronized Map<ComponentName, Tile> getTileByComponentMap() {
+    public Map<ComponentName, Tile> getTileByComponentMap() {
         final Map<ComponentName, Tile> result = new ArrayMap<>();
-        if (mCategories == null) {
+        final Categories categories = mCategories;
+        if (categories == null) {
             Log.w(TAG, "Category is null, no tiles");
             return result;
         }
-        mCategories.forEach(category -> {
+        categories.mCategories.forEach(category -> {
             for (int i = 0; i < category.getTilesCount(); i++) {
                 final Tile tile = category.getTile(i);
                 result.put(tile.getIntent().getComponent(), tile);
@@ -131,6 +162,13 @@ public class CategoryManager {
         return result;
     }
 
+    /** Loads the categories from the tiles declared by the installed packages. */
+    @VisibleForTesting
+    List<DashboardCategory> queryCategories(Context context,
+            Map<Pair<String, String>, Tile> tileByComponentCache) {
+        return TileUtils.getCategories(context, tileByComponentCache);
+    }
+
     private void logTiles(Context context) {
         if (DEBUG) {
             getTileByComponentMap().forEach((component, tile) -> {
@@ -140,49 +178,96 @@ public class CategoryManager {
         }
     }
 
-    private synchronized void tryInitCategories(Context context) {
-        // Keep cached tiles by default. The cache is only invalidated when InterestingConfigChange
-        // happens.
-        tryInitCategories(context, false /* forceClearCache */);
+    private Categories tryInitCategories(Context context) {
+        final Categories categories = mCategories;
+        if (categories != null) {
+            return categories;
+        }
+        synchronized (this) {
+            if (mCategories == null && WizardManagerHelper.isUserSetupComplete(context)) {
+                // Keep cached tiles by default. The cache is only invalidated when
+                // InterestingConfigChange happens.
+                loadCategories(context, Collections.emptySet());
+            }
+            return mCategories;
+        }
     }
 
-    private synchronized void tryInitCategories(Context context, boolean forceClearCache) {
-        if (!WizardManagerHelper.isUserSetupComplete(context)) {
-            // Don't init while setup wizard is still running.
-            return;
+    private void loadCategories(Context context, Set<ComponentName> tileDenylist) {
+        final boolean firstLoading = mLoadedCategoryByKey.isEmpty();
+        evictChangedPackages();
+        final List<DashboardCategory> categories =
+                queryCategories(context, mTileByComponentCache);
+        final Map<String, DashboardCategory> categoryByKeyMap = new ArrayMap<>();
+        for (DashboardCategory category : categories) {
+            categoryByKeyMap.put(category.key, category);
         }
-        if (mCategories == null) {
-            final boolean firstLoading = mCategoryByKeyMap.isEmpty();
-            if (forceClearCache) {
-                mTileByComponentCache.clear();
+        backwardCompatCleanupForCategory(mTileByComponentCache, categoryByKeyMap);
+        mergeSecurityPrivacyKeys(context, mTileByComponentCache, categoryByKeyMap);
+
+        // Keep the categories whose tiles didn't change, and only sort and de-duplicate the others.
+        final Map<String, DashboardCategory> changedCategoryByKeyMap = new ArrayMap<>();
+        final Map<String, LoadedCategory> loadedCategoryByKey = new ArrayMap<>();
+        for (Entry<String, DashboardCategory> categoryEntry : categoryByKeyMap.entrySet()) {
+            final String key = categoryEntry.getKey();
+            final DashboardCategory category = categoryEntry.getValue();
+            final List<Tile> tiles = category.getTiles();
+            final LoadedCategory loadedCategory = mLoadedCategoryByKey.get(key);
+            if (loadedCategory != null && loadedCategory.hasSameTiles(tiles)) {
+                loadedCategoryByKey.put(key, loadedCategory);
+            } else {
+                loadedCategoryByKey.put(key, new LoadedCategory(tiles, category));
+                changedCategoryByKeyMap.put(key, category);
             }
-            mCategoryByKeyMap.clear();
-            mCategories = TileUtils.getCategories(context, mTileByComponentCache);
-            for (DashboardCategory category : mCategories) {
-                mCategoryByKeyMap.put(category.key, category);
+        }
+        sortCategories(context, changedCategoryByKeyMap);
+        filterDuplicateTiles(changedCategoryByKeyMap);
+        mLoadedCategoryByKey.clear();
+        mLoadedCategoryByKey.putAll(loadedCategoryByKey);
+        if (DEBUG) {
+            Log.d(TAG, "Processed " + changedCategoryByKeyMap.size() + " of "
+                    + categoryByKeyMap.size() + " categories");
+        }
+
+        final List<String> keys = new ArrayList<>(categories.size());
+        for (DashboardCategory category : categories) {
+            keys.add(category.key);
+        }
+        for (Entry<String, LoadedCategory> categoryEntry : loadedCategoryByKey.entrySet()) {
+            categoryByKeyMap.put(categoryEntry.getKey(), categoryEntry.getValue().mCategory);
+        }
+        mCategories = new Categories(keys, categoryByKeyMap).withoutTiles(tileDenylist);
+        if (firstLoading) {
+            logTiles(context);
+
+            final DashboardCategory homepageCategory = mCategories.mCategoryByKeyMap.get(
+                    CategoryKey.CATEGORY_HOMEPAGE);
+            if (homepageCategory == null) {
+                return;
             }
-            backwardCompatCleanupForCategory(mTileByComponentCache, mCategoryByKeyMap);
-            mergeSecurityPrivacyKeys(context, mTileByComponentCache, mCategoryByKeyMap);
-            sortCategories(context, mCategoryByKeyMap);
-            filterDuplicateTiles(mCategoryByKeyMap);
-            if (firstLoading) {
-                logTiles(context);
-
-                final DashboardCategory homepageCategory = mCategoryByKeyMap.get(
-                        CategoryKey.CATEGORY_HOMEPAGE);
-                if (homepageCategory == null) {
-                    return;
-                }
-                for (Tile tile : homepageCategory.getTiles()) {
-                    final String key = tile.getKey(context);
-                    if (TextUtils.isEmpty(key)) {
-                        Log.w(TAG, "Key hint missing for homepage tile: " + tile.getTitle(context));
-                        continue;
-                    }
-                    HighlightableMenu.addMenuKey(key);
+            for (Tile tile : homepageCategory.getTiles()) {
+                final String key = tile.getKey(context);
+                if (TextUtils.isEmpty(key)) {
+                    Log.w(TAG, "Key hint missing for homepage tile: " + tile.getTitle(context));
+                    continue;
                 }
+                HighlightableMenu.addMenuKey(key);
+            }
+        }
+    }
+
+    private void evictChangedPackages() {
+        final Set<String> changedPackages;
+        synchronized (mChangedPackages) {
+            if (mChangedPackages.isEmpty()) {
+                return;
             }
+            changedPackages = new ArraySet<>(mChangedPackages);
+            mChangedPackages.clear();
         }
+        // Provider tiles are cached by authority, so match the package of the tile itself.
+        mTileByComponentCache.values().removeIf(
+                tile -> changedPackages.contains(tile.getPackageName()));
     }
 
     @VisibleForTesting
@@ -312,4 +397,179 @@ public class CategoryManager {
             }
         }
     }
+
+    /**
+     * Returns the key a category holds a single tile for, see {@link #filterDuplicateTiles}.
+     */
+    private static Object getTileKey(Tile tile) {
+        return tile instanceof ProviderTile
+                ? tile.getDescription() : tile.getIntent().getComponent();
+    }
+
+    /** The tiles of a category as loaded, and the sorted and de-duplicated category. */
+    private static final class LoadedCategory {
+        final List<Tile> mTiles;
+        final int[] mOrders;
+        final DashboardCategory mCategory;
+
+        LoadedCategory(List<Tile> tiles, DashboardCategory category) {
+            mTiles = tiles;
+            mOrders = new int[tiles.size()];
+            for (int i = 0; i < mOrders.length; i++) {
+                mOrders[i] = tiles.get(i).getOrder();
+            }
+            mCategory = category;
+        }
+
+        /**
+         * Returns whether the same {@param tiles} are loaded in the same order. Cached tiles are
+         * updated in place, so their order is checked too.
+         */
+        boolean hasSameTiles(List<Tile> tiles) {
+            if (tiles.size() != mTiles.size()) {
+                return false;
+            }
+            for (int i = 0; i < mOrders.length; i++) {
+                final Tile tile = tiles.get(i);
+                if (tile != mTiles.get(i) || tile.getOrder() != mOrders[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** An immutable set of categories served to the readers. */
+    private static final class Categories {
+        // The categories in load order
+        final List<DashboardCategory> mCategories;
+        // All categories (key: category key, value: category)
+        final Map<String, DashboardCategory> mCategoryByKeyMap;
+
+        Categories(List<String> keys, Map<String, DashboardCategory> categoryByKeyMap) {
+            final List<DashboardCategory> categories = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                categories.add(categoryByKeyMap.get(key));
+            }
+            mCategories = Collections.unmodifiableList(categories);
+            mCategoryByKeyMap = Collections.unmodifiableMap(new ArrayMap<>(categoryByKeyMap));
+        }
+
+        /** Returns the categories without the {@param tiles}, copying the ones holding them. */
+        Categories withoutTiles(Set<ComponentName> tiles) {
+            if (tiles.isEmpty()) {
+                return this;
+            }
+            Map<String, DashboardCategory> categoryByKeyMap = null;
+            for (Entry<String, DashboardCategory> categoryEntry : mCategoryByKeyMap.entrySet()) {
+                final DashboardCategory category = categoryEntry.getValue();
+                DashboardCategory copy = null;
+                for (int i = 0; i < category.getTilesCount(); i++) {
+                    final Tile tile = category.getTile(i);
+                    if (tiles.contains(tile.getIntent().getComponent())) {
+                        if (copy == null) {
+                            copy = new DashboardCategory(category.key);
+                            for (int j = 0; j < i; j++) {
+                                copy.addTile(category.getTile(j));
+                            }
+                        }
+                    } else if (copy != null) {
+                        copy.addTile(tile);
+                    }
+                }
+                if (copy != null) {
+                    if (categoryByKeyMap == null) {
+                        categoryByKeyMap = new ArrayMap<>(mCategoryByKeyMap);
+                    }
+                    categoryByKeyMap.put(categoryEntry.getKey(), copy);
+                }
+            }
+            if (categoryByKeyMap == null) {
+                return this;
+            }
+            final List<String> keys = new ArrayList<>(mCategories.size());
+            for (DashboardCategory category : mCategories) {
+                keys.add(category.key);
+            }
+            return new Categories(keys, categoryByKeyMap);
+        }
+    }
+
+    /** The categories and tiles which changed in a reload. */
+    public static final class CategoriesDiff {
+        private final Set<String> mCategories = new ArraySet<>();
+        private final Set<ComponentName> mTiles = new ArraySet<>();
+
+        /** Returns the keys of the categories whose tiles were added, removed or changed. */
+        public Set<String> getChangedCategories() {
+            return mCategories;
+        }
+
+        /** Returns the components of the tiles which were added, removed or changed. */
+        public Set<ComponentName> getChangedTiles() {
+            return mTiles;
+        }
+
+        public boolean isEmpty() {
+            return mCategories.isEmpty();
+        }
+
+        static CategoriesDiff compute(Context context, @Nullable Categories previousCategories,
+                Categories categories) {
+            final CategoriesDiff diff = new CategoriesDiff();
+            final Map<String, DashboardCategory> previousCategoryByKeyMap =
+                    previousCategories != null
+                            ? previousCategories.mCategoryByKeyMap
+                            : Collections.emptyMap();
+            final Set<String> keys = new ArraySet<>(categories.mCategoryByKeyMap.keySet());
+            keys.addAll(previousCategoryByKeyMap.keySet());
+            for (String key : keys) {
+                final DashboardCategory previousCategory = previousCategoryByKeyMap.get(key);
+                final DashboardCategory category = categories.mCategoryByKeyMap.get(key);
+                if (previousCategory != category) {
+                    diff.addChangedTiles(context, key, previousCategory, category);
+                }
+            }
+            return diff;
+        }
+
+        private void addChangedTiles(Context context, String key,
+                @Nullable DashboardCategory previousCategory,
+                @Nullable DashboardCategory category) {
+            final Map<Object, Tile> previousTiles = new ArrayMap<>();
+            if (previousCategory != null) {
+                for (Tile tile : previousCategory.getTiles()) {
+                    previousTiles.put(getTileKey(tile), tile);
+                }
+            }
+            if (category != null) {
+                for (Tile tile : category.getTiles()) {
+                    final Tile previousTile = previousTiles.remove(getTileKey(tile));
+                    final ComponentName component = tile.getIntent().getComponent();
+                    if (previousTile == null) {
+                        Log.i(TAG, "Tile added: " + component.flattenToShortString());
+                        add(key, component);
+                    } else if (previousTile != tile
+                            && (!TextUtils.equals(tile.getTitle(context),
+                                    previousTile.getTitle(context))
+                            || !TextUtils.equals(tile.getSummary(context),
+                                    previousTile.getSummary(context)))) {
+                        // Only the tiles loaded from scratch can have a new title or summary.
+                        Log.i(TAG, "Tile changed: " + component.flattenToShortString());
+                        add(key, component);
+                    }
+                }
+            }
+            for (Tile tile : previousTiles.values()) {
+                final ComponentName component = tile.getIntent().getComponent();
+                Log.i(TAG, "Tile removed: " + component.flattenToShortString());
+                add(key, component);
+            }
+        }
+
+        private void add(String key, ComponentName component) {
+            mCategories.add(key);
+            mTiles.add(component);
+        }
+    }
 }
@@ -61,6 +61,17 @@ public interface DashboardFeatureProvider {
             DashboardFragment fragment, boolean forceRoundedIcon, Preference pref, Tile tile,
             String key, int baseOrder);
 
+    /**
+     * Starts binding a batch of tiles. The dynamic data of the tiles bound until
+     * {@link #endTileBatch} is fetched at the end of the batch, with one task per provider.
+     */
+    void beginTileBatch();
+
+    /**
+     * Ends binding a batch of tiles, and starts fetching their dynamic data in the background.
+     */
+    void endTileBatch();
+
     /**
      * Opens a tile to its destination intent.
      */
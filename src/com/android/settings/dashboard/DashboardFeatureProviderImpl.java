@@ -27,10 +27,8 @@ import static com.android.settingslib.drawer.SwitchesProvider.METHOD_GET_PROVIDE
 import static com.android.settingslib.drawer.SwitchesProvider.METHOD_IS_CHECKED;
 import static com.android.settingslib.drawer.SwitchesProvider.METHOD_ON_CHECKED_CHANGED;
 import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_ICON_URI;
-import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_SUMMARY;
 import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_SUMMARY_URI;
 import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_SWITCH_URI;
-import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_TITLE;
 import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_TITLE_URI;
 
 import android.app.PendingIntent;
@@ -96,12 +94,14 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
     private final MetricsFeatureProvider mMetricsFeatureProvider;
     private final CategoryManager mCategoryManager;
     private final PackageManager mPackageManager;
+    private final DynamicTileResolver mTileResolver;
 
     public DashboardFeatureProviderImpl(Context context) {
         mContext = context.getApplicationContext();
         mCategoryManager = CategoryManager.get(context);
         mMetricsFeatureProvider = FeatureFactory.getFeatureFactory().getMetricsFeatureProvider();
         mPackageManager = context.getPackageManager();
+        mTileResolver = new DynamicTileResolver(mContext);
     }
 
     @Override
@@ -220,6 +220,16 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
         return outObservers.isEmpty() ? null : outObservers;
     }
 
+    @Override
+    public void beginTileBatch() {
+        mTileResolver.beginBatch();
+    }
+
+    @Override
+    public void endTileBatch() {
+        mTileResolver.endBatch();
+    }
+
     @Override
     public void openTileIntent(FragmentActivity activity, Tile tile) {
         if (tile == null) {
@@ -244,6 +254,12 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
                 return uri;
             }
 
+            @Override
+            public void onChange(boolean selfChange) {
+                mTileResolver.invalidate(uri);
+                super.onChange(selfChange);
+            }
+
             @Override
             public void onDataChanged() {
                 switch (method) {
@@ -269,24 +285,24 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
         }
         if (tile.getMetaData() != null && tile.getMetaData().containsKey(
                 META_DATA_PREFERENCE_TITLE_URI)) {
-            // Set a placeholder title before starting to fetch real title, this is necessary
-            // to avoid preference height change.
-            if (preference.getTitle() == null) {
-                preference.setTitle(R.string.summary_placeholder);
-            }
-
             final Uri uri = TileUtils.getCompleteUri(tile, META_DATA_PREFERENCE_TITLE_URI,
                     METHOD_GET_DYNAMIC_TITLE);
+            // Set the last known title, or a placeholder, before starting to fetch real title,
+            // this is necessary to avoid preference height change.
+            final Object cachedTitle = mTileResolver.getCached(uri);
+            if (cachedTitle != null) {
+                preference.setTitle((String) cachedTitle);
+            } else if (preference.getTitle() == null) {
+                preference.setTitle(R.string.summary_placeholder);
+            }
             return createDynamicDataObserver(METHOD_GET_DYNAMIC_TITLE, uri, preference);
         }
         return null;
     }
 
     private void refreshTitle(Uri uri, Preference preference, DynamicDataObserver observer) {
-        ThreadUtils.postOnBackgroundThread(() -> {
-            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
-            final String titleFromUri = TileUtils.getTextFromUri(
-                    mContext, uri, providerMap, META_DATA_PREFERENCE_TITLE);
+        mTileResolver.request(uri, METHOD_GET_DYNAMIC_TITLE, data -> {
+            final String titleFromUri = (String) data;
             if (!TextUtils.equals(titleFromUri, preference.getTitle())) {
                 observer.post(() -> preference.setTitle(titleFromUri));
             }
@@ -299,24 +315,24 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
             preference.setSummary(summary);
         } else if (tile.getMetaData() != null
                 && tile.getMetaData().containsKey(META_DATA_PREFERENCE_SUMMARY_URI)) {
-            // Set a placeholder summary before starting to fetch real summary, this is necessary
-            // to avoid preference height change.
-            if (preference.getSummary() == null) {
-                preference.setSummary(R.string.summary_placeholder);
-            }
-
             final Uri uri = TileUtils.getCompleteUri(tile, META_DATA_PREFERENCE_SUMMARY_URI,
                     METHOD_GET_DYNAMIC_SUMMARY);
+            // Set the last known summary, or a placeholder, before starting to fetch real
+            // summary, this is necessary to avoid preference height change.
+            final Object cachedSummary = mTileResolver.getCached(uri);
+            if (cachedSummary != null) {
+                preference.setSummary((String) cachedSummary);
+            } else if (preference.getSummary() == null) {
+                preference.setSummary(R.string.summary_placeholder);
+            }
             return createDynamicDataObserver(METHOD_GET_DYNAMIC_SUMMARY, uri, preference);
         }
         return null;
     }
 
     private void refreshSummary(Uri uri, Preference preference, DynamicDataObserver observer) {
-        ThreadUtils.postOnBackgroundThread(() -> {
-            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
-            final String summaryFromUri = TileUtils.getTextFromUri(
-                    mContext, uri, providerMap, META_DATA_PREFERENCE_SUMMARY);
+        mTileResolver.request(uri, METHOD_GET_DYNAMIC_SUMMARY, data -> {
+            final String summaryFromUri = (String) data;
             if (!TextUtils.equals(summaryFromUri, preference.getSummary())) {
                 observer.post(() -> preference.setSummary(summaryFromUri));
             }
@@ -337,6 +353,10 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
 
         final Uri isCheckedUri = TileUtils.getCompleteUri(tile, META_DATA_PREFERENCE_SWITCH_URI,
                 METHOD_IS_CHECKED);
+        final Object cachedChecked = mTileResolver.getCached(isCheckedUri);
+        if (cachedChecked != null) {
+            setSwitchChecked(preference, (Boolean) cachedChecked);
+        }
         setSwitchEnabled(preference, false);
         return createDynamicDataObserver(METHOD_IS_CHECKED, isCheckedUri, preference);
     }
@@ -365,10 +385,8 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
     }
 
     private void refreshSwitch(Uri uri, Preference preference, DynamicDataObserver observer) {
-        ThreadUtils.postOnBackgroundThread(() -> {
-            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
-            final boolean checked = TileUtils.getBooleanFromUri(mContext, uri, providerMap,
-                    EXTRA_SWITCH_CHECKED_STATE);
+        mTileResolver.request(uri, METHOD_IS_CHECKED, data -> {
+            final boolean checked = (Boolean) data;
             observer.post(() -> {
                 setSwitchChecked(preference, checked);
                 setSwitchEnabled(preference, true);
@@ -21,6 +21,7 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.preference.PreferenceManager.OnActivityResultListener;
 import android.text.TextUtils;
 import android.util.ArrayMap;
@@ -42,10 +43,12 @@ import androidx.preference.SwitchPreferenceCompat;
 
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
+import com.android.settings.core.BackgroundStateController;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.CategoryMixin.CategoryHandler;
 import com.android.settings.core.CategoryMixin.CategoryListener;
 import com.android.settings.core.PreferenceControllerListHelper;
+import com.android.settings.core.instrumentation.ScreenLatencyTracker;
 import com.android.settings.flags.Flags;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.PrimarySwitchPreference;
@@ -64,8 +67,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -75,7 +76,6 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         BasePreferenceController.UiBlockListener {
     public static final String CATEGORY = "category";
     private static final String TAG = "DashboardFragment";
-    private static final long TIMEOUT_MILLIS = 50L;
 
     @VisibleForTesting
     final ArrayMap<String, List<DynamicDataObserver>> mDashboardTilePrefKeys = new ArrayMap<>();
@@ -85,6 +85,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     private final List<AbstractPreferenceController> mControllers = new ArrayList<>();
     @VisibleForTesting
     UiBlockerController mBlockerController;
+    @VisibleForTesting
+    PreferenceStateUpdater mStateUpdater = new PreferenceStateUpdater();
     private DashboardFeatureProvider mDashboardFeatureProvider;
     private DashboardTilePlaceholderPreferenceController mPlaceholderPreferenceController;
     private boolean mListeningToCategoryChange;
@@ -97,6 +99,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                 R.array.config_suppress_injected_tile_keys));
         mDashboardFeatureProvider =
                 FeatureFactory.getFeatureFactory().getDashboardFeatureProvider();
+        final ScreenLatencyTracker.Section section = ScreenLatencyTracker.begin(
+                getScreenName(), ScreenLatencyTracker.PHASE_CREATE_CONTROLLERS);
         // Load preference controllers from code
         final List<AbstractPreferenceController> controllersFromCode =
                 createPreferenceControllers(context);
@@ -136,6 +140,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         for (AbstractPreferenceController controller : mControllers) {
             addPreferenceController(controller);
         }
+        section.end();
     }
 
     @VisibleForTesting
@@ -152,8 +157,20 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         });
 
         if (!keys.isEmpty()) {
+            final ScreenLatencyTracker.Section section = ScreenLatencyTracker.beginAsync(
+                    getScreenName(), ScreenLatencyTracker.PHASE_UI_BLOCKER_WAIT);
+            // Keep the screen blocked until the first background states are applied too, so that
+            // they don't show up after the rest of the screen. Screens without UI blockers aren't
+            // hidden for them, their background states may show up right after the screen.
+            controllers.forEach(controller -> {
+                if (controller instanceof BackgroundStateController
+                        && !TextUtils.isEmpty(controller.getPreferenceKey())) {
+                    keys.add(controller.getPreferenceKey());
+                }
+            });
             mBlockerController = new UiBlockerController(keys);
             mBlockerController.start(() -> {
+                section.end();
                 updatePreferenceVisibility(mPreferenceControllers);
                 baseControllers.forEach(controller -> controller.setUiBlockerFinished(true));
             });
@@ -169,7 +186,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         if (icicle != null) {
             // Upon rotation configuration change we need to update preference states before any
             // editing dialog is recreated (that would happen before onResume is called).
-            updatePreferenceStates();
+            updatePreferenceStates(false /* computeInBackground */);
         }
     }
 
@@ -262,6 +279,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     @Override
     public void onStop() {
         super.onStop();
+        mStateUpdater.cancel();
         unregisterDynamicDataObservers(new ArrayList<>(mRegisteredObservers));
         if (mListeningToCategoryChange) {
             final Activity activity = getActivity();
@@ -364,10 +382,16 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         if (resId <= 0) {
             return;
         }
+        ScreenLatencyTracker.Section section = ScreenLatencyTracker.begin(
+                getScreenName(), ScreenLatencyTracker.PHASE_INFLATE);
         addPreferencesFromResource(resId);
+        section.end();
         final PreferenceScreen screen = getPreferenceScreen();
         screen.setOnExpandButtonClickListener(this);
+        section = ScreenLatencyTracker.begin(
+                getScreenName(), ScreenLatencyTracker.PHASE_DISPLAY_RESOURCE_TILES);
         displayResourceTilesToScreen(screen);
+        section.end();
     }
 
     /**
@@ -388,13 +412,39 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
     /**
      * Update state of each preference managed by PreferenceController.
+     *
+     * <p>The states of the {@link BackgroundStateController}s are computed in the background and
+     * applied later on, all at once.
      */
     protected void updatePreferenceStates() {
+        updatePreferenceStates(true /* computeInBackground */);
+    }
+
+    private void updatePreferenceStates(boolean computeInBackground) {
+        final ScreenLatencyTracker.Section section = ScreenLatencyTracker.begin(
+                getScreenName(), ScreenLatencyTracker.PHASE_UPDATE_STATES);
+        try {
+            updatePreferenceStatesInternal(computeInBackground);
+        } finally {
+            section.end();
+        }
+    }
+
+    private void updatePreferenceStatesInternal(boolean computeInBackground) {
         final PreferenceScreen screen = getPreferenceScreen();
+        final boolean logTime = PreferenceStateUpdater.isMainThreadTimeLogged();
+        final List<AbstractPreferenceController> backgroundControllers = new ArrayList<>();
         Collection<List<AbstractPreferenceController>> controllerLists =
                 mPreferenceControllers.values();
         for (List<AbstractPreferenceController> controllerList : controllerLists) {
             for (AbstractPreferenceController controller : controllerList) {
+                final boolean backgroundController =
+                        controller instanceof BackgroundStateController;
+                if (backgroundController && computeInBackground) {
+                    backgroundControllers.add(controller);
+                    continue;
+                }
+                final long startTime = logTime ? SystemClock.elapsedRealtime() : 0;
                 if (!controller.isAvailable()) {
                     continue;
                 }
@@ -412,7 +462,58 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                             key, controller.getClass().getSimpleName()));
                     continue;
                 }
-                controller.updateState(preference);
+                if (backgroundController) {
+                    PreferenceStateUpdater.updateNow(controller, preference);
+                } else {
+                    controller.updateState(preference);
+                }
+                if (logTime) {
+                    PreferenceStateUpdater.logTime(controller, "update",
+                            SystemClock.elapsedRealtime() - startTime);
+                }
+            }
+        }
+        if (!backgroundControllers.isEmpty()) {
+            final ScreenLatencyTracker.Section section = ScreenLatencyTracker.beginAsync(
+                    getScreenName(), ScreenLatencyTracker.PHASE_BACKGROUND_STATES);
+            mStateUpdater.update(backgroundControllers, new PreferenceStateUpdater.Callback() {
+                @Override
+                public void onStatesComputed(List<PreferenceStateUpdater.ComputedState> states) {
+                    applyPreferenceStates(states);
+                    section.end();
+                }
+
+                @Override
+                public void onCancelled() {
+                    section.cancel();
+                }
+            });
+        }
+    }
+
+    @VisibleForTesting
+    void applyPreferenceStates(List<PreferenceStateUpdater.ComputedState> states) {
+        final PreferenceScreen screen = getPreferenceScreen();
+        if (screen == null) {
+            return;
+        }
+        final boolean logTime = PreferenceStateUpdater.isMainThreadTimeLogged();
+        for (PreferenceStateUpdater.ComputedState state : states) {
+            final String key = state.mController.getPreferenceKey();
+            if (TextUtils.isEmpty(key)) {
+                continue;
+            }
+            final Preference preference = screen.findPreference(key);
+            if (preference != null) {
+                final long startTime = logTime ? SystemClock.elapsedRealtime() : 0;
+                state.apply(preference);
+                if (logTime) {
+                    PreferenceStateUpdater.logTime(state.mController, "apply",
+                            SystemClock.elapsedRealtime() - startTime);
+                }
+            }
+            if (mBlockerController != null) {
+                mBlockerController.countDown(key);
             }
         }
     }
@@ -499,6 +600,19 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
      * Refresh preference items backed by DashboardCategory.
      */
     private void refreshDashboardTiles(final String tag) {
+        final ScreenLatencyTracker.Section section = ScreenLatencyTracker.begin(
+                getScreenName(), ScreenLatencyTracker.PHASE_REFRESH_DASHBOARD_TILES);
+        // Fetch the dynamic data of the tiles in one batch, once they are all bound.
+        mDashboardFeatureProvider.beginTileBatch();
+        try {
+            refreshDashboardTilesInternal(tag);
+        } finally {
+            mDashboardFeatureProvider.endTileBatch();
+            section.end();
+        }
+    }
+
+    private void refreshDashboardTilesInternal(final String tag) {
         final PreferenceScreen screen = getPreferenceScreen();
 
         final DashboardCategory category =
@@ -590,19 +704,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             unregisterDynamicDataObservers(entry.getValue());
         }
 
-        // Wait for pending observers to update UI.
-        if (!pendingObservers.isEmpty()) {
-            final CountDownLatch mainLatch = new CountDownLatch(1);
-            new Thread(() -> {
-                pendingObservers.forEach(observer ->
-                        awaitObserverLatch(observer.getCountDownLatch()));
-                mainLatch.countDown();
-            }).start();
-            Log.d(tag, "Start waiting observers");
-            awaitObserverLatch(mainLatch);
-            Log.d(tag, "Stop waiting observers");
-            pendingObservers.forEach(DynamicDataObserver::updateUi);
-        }
+        // Let pending observers update UI as soon as their data is loaded, without waiting.
+        pendingObservers.forEach(DynamicDataObserver::updateUi);
     }
 
     @Override
@@ -611,6 +714,10 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         controller.setUiBlockerFinished(mBlockerController.isBlockerFinished());
     }
 
+    private String getScreenName() {
+        return getClass().getSimpleName();
+    }
+
     protected Preference createPreference(Tile tile) {
         switch (tile.getType()) {
             case EXTERNAL_ACTION:
@@ -665,12 +772,4 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             resolver.unregisterContentObserver(observer);
         });
     }
-
-    private void awaitObserverLatch(CountDownLatch latch) {
-        try {
-            latch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            // Do nothing
-        }
-    }
 }
@@ -22,20 +22,16 @@ import android.os.Looper;
 
 import com.android.settingslib.utils.ThreadUtils;
 
-import java.util.concurrent.CountDownLatch;
-
 /**
  * Observer for updating injected dynamic data.
  */
 public abstract class DynamicDataObserver extends ContentObserver {
 
     private Runnable mUpdateRunnable;
-    private CountDownLatch mCountDownLatch;
     private boolean mUpdateDelegated;
 
     protected DynamicDataObserver() {
         super(new Handler(Looper.getMainLooper()));
-        mCountDownLatch = new CountDownLatch(1);
         // Load data for the first time
         onDataChanged();
     }
@@ -46,7 +42,10 @@ public abstract class DynamicDataObserver extends ContentObserver {
     /** Called when data changes. */
     public abstract void onDataChanged();
 
-    /** Calls the runnable to update UI */
+    /**
+     * Calls the runnable to update UI if the data is already loaded, otherwise the UI is updated
+     * on the main thread once it is loaded.
+     */
     public synchronized void updateUi() {
         mUpdateDelegated = true;
         if (mUpdateRunnable != null) {
@@ -54,11 +53,6 @@ public abstract class DynamicDataObserver extends ContentObserver {
         }
     }
 
-    /** Returns the count-down latch */
-    public CountDownLatch getCountDownLatch() {
-        return mCountDownLatch;
-    }
-
     @Override
     public void onChange(boolean selfChange) {
         onDataChanged();
@@ -69,7 +63,6 @@ public abstract class DynamicDataObserver extends ContentObserver {
             ThreadUtils.postOnMainThread(runnable);
         } else {
             mUpdateRunnable = runnable;
-            mCountDownLatch.countDown();
         }
     }
 }
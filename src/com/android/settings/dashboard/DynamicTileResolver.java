@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.android.settingslib.drawer.SwitchesProvider.EXTRA_SWITCH_CHECKED_STATE;
+import static com.android.settingslib.drawer.SwitchesProvider.METHOD_GET_DYNAMIC_SUMMARY;
+import static com.android.settingslib.drawer.SwitchesProvider.METHOD_GET_DYNAMIC_TITLE;
+import static com.android.settingslib.drawer.SwitchesProvider.METHOD_IS_CHECKED;
+import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_SUMMARY;
+import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_TITLE;
+
+import android.content.Context;
+import android.content.IContentProvider;
+import android.net.Uri;
+import android.util.ArrayMap;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.settingslib.drawer.TileUtils;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches the dynamic titles, summaries and switch states of injected tiles.
+ *
+ * <p>The requests made between {@link #beginBatch} and {@link #endBatch} are grouped by the
+ * authority of their uri, and each group is fetched by a single background task which acquires
+ * the provider once. The results are cached by uri, so that a tile bound again, e.g. when its
+ * screen is opened again, shows its last known data instead of a placeholder while it is
+ * fetched. An entry is dropped when the observer of its uri is notified of a change.
+ */
+final class DynamicTileResolver {
+
+    /** Receives the fetched data, a {@link String} or a {@link Boolean}. */
+    interface Callback {
+        @WorkerThread
+        void onResolved(Object data);
+    }
+
+    private final Context mContext;
+    // key: uri, value: the last data fetched from it
+    private final Map<Uri, Object> mCache = new ArrayMap<>();
+    // key: authority, value: the requests waiting for the end of the batch
+    private final Map<String, List<Request>> mPendingRequests = new ArrayMap<>();
+    private int mBatchDepth;
+    // Incremented by each invalidation, so that data fetched before it isn't cached.
+    private int mGeneration;
+
+    DynamicTileResolver(Context context) {
+        mContext = context;
+    }
+
+    /** Returns the last data fetched from the {@param uri}, or null if there is none. */
+    synchronized Object getCached(Uri uri) {
+        return mCache.get(uri);
+    }
+
+    /** Drops the cached data of the {@param uri}, which has changed. */
+    synchronized void invalidate(Uri uri) {
+        mCache.remove(uri);
+        mGeneration++;
+    }
+
+    /** Holds the requests until the matching {@link #endBatch}. Batches can be nested. */
+    synchronized void beginBatch() {
+        mBatchDepth++;
+    }
+
+    /** Fetches the requests held since the outermost {@link #beginBatch}. */
+    void endBatch() {
+        final Collection<List<Request>> requestsByAuthority;
+        synchronized (this) {
+            if (mBatchDepth == 0 || --mBatchDepth > 0) {
+                return;
+            }
+            requestsByAuthority = new ArrayList<>(mPendingRequests.values());
+            mPendingRequests.clear();
+        }
+        requestsByAuthority.forEach(this::fetch);
+    }
+
+    /**
+     * Fetches the data of the {@param uri} with the {@param method}, right away or at the end of
+     * the current batch, and reports it to the {@param callback}.
+     */
+    void request(Uri uri, String method, Callback callback) {
+        final List<Request> requests;
+        synchronized (this) {
+            final String authority = uri.getAuthority();
+            List<Request> pending = mPendingRequests.get(authority);
+            if (pending == null) {
+                pending = new ArrayList<>();
+                mPendingRequests.put(authority, pending);
+            }
+            Request request = null;
+            for (Request r : pending) {
+                if (r.mUri.equals(uri) && r.mMethod.equals(method)) {
+                    request = r;
+                    break;
+                }
+            }
+            if (request == null) {
+                request = new Request(uri, method);
+                pending.add(request);
+            }
+            request.mCallbacks.add(callback);
+            if (mBatchDepth > 0) {
+                return;
+            }
+            requests = mPendingRequests.remove(authority);
+        }
+        fetch(requests);
+    }
+
+    private void fetch(List<Request> requests) {
+        final int generation;
+        synchronized (this) {
+            generation = mGeneration;
+        }
+        ThreadUtils.postOnBackgroundThread(() -> {
+            // Shared by the requests, so that the provider is only acquired once.
+            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
+            for (Request request : requests) {
+                final Object data = fetch(request, providerMap);
+                synchronized (this) {
+                    if (data != null && generation == mGeneration) {
+                        mCache.put(request.mUri, data);
+                    }
+                }
+                request.mCallbacks.forEach(callback -> callback.onResolved(data));
+            }
+        });
+    }
+
+    @WorkerThread
+    private Object fetch(Request request, Map<String, IContentProvider> providerMap) {
+        switch (request.mMethod) {
+            case METHOD_GET_DYNAMIC_TITLE:
+                return TileUtils.getTextFromUri(mContext, request.mUri, providerMap,
+                        META_DATA_PREFERENCE_TITLE);
+            case METHOD_GET_DYNAMIC_SUMMARY:
+                return TileUtils.getTextFromUri(mContext, request.mUri, providerMap,
+                        META_DATA_PREFERENCE_SUMMARY);
+            case METHOD_IS_CHECKED:
+                return TileUtils.getBooleanFromUri(mContext, request.mUri, providerMap,
+                        EXTRA_SWITCH_CHECKED_STATE);
+            default:
+                throw new IllegalArgumentException("Unknown method: " + request.mMethod);
+        }
+    }
+
+    private static final class Request {
+        final Uri mUri;
+        final String mMethod;
+        // Callbacks of the tiles bound to the same uri in a batch.
+        final List<Callback> mCallbacks = new ArrayList<>();
+
+        Request(Uri uri, String method) {
+            mUri = uri;
+            mMethod = method;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.preference.Preference;
+
+import com.android.settings.core.BackgroundStateController;
+import com.android.settingslib.core.AbstractPreferenceController;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the states of the {@link BackgroundStateController}s of a {@link DashboardFragment}.
+ *
+ * <p>The states are computed in parallel on a background priority pool shared by all the screens,
+ * and handed to the main thread at once when the last one is computed, so that the screen is
+ * updated in a single pass. A batch started before the last {@link #update} or {@link #cancel} is
+ * dropped.
+ *
+ * <p>A controller failing to compute its state is logged and left as is, while debuggable builds
+ * rethrow the failure so that it isn't missed.
+ */
+final class PreferenceStateUpdater {
+    private static final String TAG = "PreferenceStateUpdater";
+
+    private static final int THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    // Controllers taking longer than a frame to update are logged as slow.
+    @VisibleForTesting
+    static final long SLOW_CONTROLLER_MS = 16;
+
+    private static ThreadPoolExecutor sExecutor;
+
+    private final Executor mExecutor;
+    // Only accessed on the main thread.
+    private int mGeneration;
+    private Callback mPendingCallback;
+
+    /** Receives the states of a batch on the main thread. */
+    interface Callback {
+        void onStatesComputed(List<ComputedState> states);
+
+        /** Called instead when the batch is dropped by {@link #update} or {@link #cancel}. */
+        default void onCancelled() {
+        }
+    }
+
+    /** The state computed for a controller. */
+    static final class ComputedState {
+        final AbstractPreferenceController mController;
+        final boolean mAvailable;
+        final boolean mFailed;
+        final Object mState;
+
+        ComputedState(AbstractPreferenceController controller, boolean available,
+                boolean failed, Object state) {
+            mController = controller;
+            mAvailable = available;
+            mFailed = failed;
+            mState = state;
+        }
+
+        /** Applies the state to the {@param preference}, if it could be computed. */
+        void apply(Preference preference) {
+            if (mAvailable && !mFailed) {
+                applyState((BackgroundStateController<?>) mController, preference, mState);
+            }
+        }
+    }
+
+    PreferenceStateUpdater() {
+        this(getExecutor());
+    }
+
+    @VisibleForTesting
+    PreferenceStateUpdater(Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Computes the states of the {@param controllers} in parallel, and reports them in order to
+     * the {@param callback} once all of them are computed.
+     */
+    void update(List<AbstractPreferenceController> controllers, Callback callback) {
+        cancel();
+        final int generation = mGeneration;
+        mPendingCallback = callback;
+        final ComputedState[] states = new ComputedState[controllers.size()];
+        final AtomicInteger pendingCount = new AtomicInteger(states.length);
+        for (int i = 0; i < states.length; i++) {
+            final int index = i;
+            final AbstractPreferenceController controller = controllers.get(i);
+            mExecutor.execute(() -> {
+                states[index] = compute(controller);
+                if (pendingCount.decrementAndGet() == 0) {
+                    ThreadUtils.postOnMainThread(() -> {
+                        if (generation == mGeneration) {
+                            mPendingCallback = null;
+                            callback.onStatesComputed(Arrays.asList(states));
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /** Drops the batch in progress, if any. */
+    void cancel() {
+        mGeneration++;
+        if (mPendingCallback != null) {
+            final Callback callback = mPendingCallback;
+            mPendingCallback = null;
+            callback.onCancelled();
+        }
+    }
+
+    /**
+     * Computes and applies the state of the {@param controller} on the calling thread, for the
+     * updates which can't wait for a batch.
+     */
+    static void updateNow(AbstractPreferenceController controller, Preference preference) {
+        final BackgroundStateController<?> stateController =
+                (BackgroundStateController<?>) controller;
+        applyState(stateController, preference, stateController.computeState());
+    }
+
+    /**
+     * Returns whether the time it takes each controller to update on the main thread should be
+     * measured and logged. It's only done when debugging, so that the main thread doesn't pay for
+     * it, while the time of the states computed in the background is always logged.
+     */
+    static boolean isMainThreadTimeLogged() {
+        return Log.isLoggable(TAG, Log.DEBUG);
+    }
+
+    /** Logs the time it took the {@param controller} to {@param phase} its state. */
+    static void logTime(AbstractPreferenceController controller, String phase, long timeMs) {
+        if (timeMs >= SLOW_CONTROLLER_MS) {
+            Log.w(TAG, controller.getClass().getSimpleName() + " took " + timeMs + " ms to "
+                    + phase + " its state");
+        } else if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, controller.getClass().getSimpleName() + " took " + timeMs + " ms to "
+                    + phase + " its state");
+        }
+    }
+
+    private static ComputedState compute(AbstractPreferenceController controller) {
+        final long startTime = SystemClock.elapsedRealtime();
+        try {
+            final boolean available = controller.isAvailable();
+            final Object state = available
+                    ? ((BackgroundStateController<?>) controller).computeState() : null;
+            return new ComputedState(controller, available, false /* failed */, state);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to compute the state of " + controller.getClass().getName(), e);
+            if (Build.IS_DEBUGGABLE) {
+                throw e;
+            }
+            return new ComputedState(controller, false /* available */, true /* failed */, null);
+        } finally {
+            logTime(controller, "compute", SystemClock.elapsedRealtime() - startTime);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void applyState(BackgroundStateController<T> controller,
+            Preference preference, Object state) {
+        controller.applyState(preference, (T) state);
+    }
+
+    private static synchronized Executor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = new ThreadPoolExecutor(THREADS, THREADS, KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> new Thread(() -> {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }, TAG));
+            sExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sExecutor;
+    }
+}
@@ -22,9 +22,8 @@ import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.viewModelScope
 import com.android.settings.datausage.lib.NetworkCycleBucketRepository
 import com.android.settings.datausage.lib.NetworkStatsRepository
-import com.android.settings.datausage.lib.NetworkStatsRepository.Companion.Bucket
-import com.android.settings.datausage.lib.NetworkStatsRepository.Companion.filterTime
 import com.android.settings.datausage.lib.NetworkUsageData
+import com.android.settings.datausage.lib.NetworkUsageRollup
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.SharingStarted
@@ -35,37 +34,26 @@ import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.flow.stateIn
 import kotlinx.coroutines.plus
 
-data class SelectedBuckets(
-    val selectedCycle: NetworkUsageData,
-    val buckets: List<Bucket>,
-)
-
 class DataUsageListViewModel(application: Application) : AndroidViewModel(application) {
     private val scope = viewModelScope + Dispatchers.Default
 
     val templateFlow = MutableStateFlow<NetworkTemplate?>(null)
 
-    private val bucketsFlow = templateFlow.filterNotNull().map { template ->
-        NetworkStatsRepository(getApplication(), template).queryDetailsForDevice()
-    }.stateIn(scope, SharingStarted.WhileSubscribed(), emptyList())
+    private val rollupFlow = templateFlow.filterNotNull().map { template ->
+        NetworkStatsRepository(getApplication(), template).queryDeviceRollup()
+    }.stateIn(scope, SharingStarted.WhileSubscribed(), NetworkUsageRollup.Empty)
 
-    val cyclesFlow = combine(templateFlow.filterNotNull(), bucketsFlow) { template, buckets ->
-        NetworkCycleBucketRepository(application, template, buckets).loadCycles()
+    val cyclesFlow = combine(templateFlow.filterNotNull(), rollupFlow) { template, rollup ->
+        NetworkCycleBucketRepository(application, template, rollup).loadCycles()
     }.flowOn(Dispatchers.Default)
 
     val selectedCycleFlow = MutableStateFlow<NetworkUsageData?>(null)
 
-    private val selectedBucketsFlow =
-        combine(selectedCycleFlow.filterNotNull(), bucketsFlow) { selectedCycle, buckets ->
-            SelectedBuckets(
-                selectedCycle = selectedCycle,
-                buckets = buckets.filterTime(selectedCycle.startTime, selectedCycle.endTime),
-            )
-        }.flowOn(Dispatchers.Default)
-
-    val chartDataFlow =
-        combine(templateFlow.filterNotNull(), selectedBucketsFlow) { template, selectedBuckets ->
-            NetworkCycleBucketRepository(application, template, selectedBuckets.buckets)
-                .queryChartData(selectedBuckets.selectedCycle)
-        }.flowOn(Dispatchers.Default)
+    val chartDataFlow = combine(
+        templateFlow.filterNotNull(),
+        selectedCycleFlow.filterNotNull(),
+        rollupFlow,
+    ) { template, selectedCycle, rollup ->
+        NetworkCycleBucketRepository(application, template, rollup).queryChartData(selectedCycle)
+    }.flowOn(Dispatchers.Default)
 }
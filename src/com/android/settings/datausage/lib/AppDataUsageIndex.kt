@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage.lib
+
+import android.app.usage.NetworkStats
+import android.content.Context
+import android.os.Process
+import android.os.UserHandle
+import android.text.format.DateUtils
+import android.util.ArrayMap
+import android.util.Range
+import android.util.SparseArray
+import android.util.SparseIntArray
+import android.util.SparseLongArray
+import com.android.settings.datausage.lib.AppDataUsageRepository.Companion.getAppUid
+import com.android.settingslib.AppItem
+import com.android.settingslib.net.UidDetailProvider
+import com.android.settingslib.spaprivileged.framework.common.userManager
+
+/**
+ * The data usage of the UIDs on a network, as a UID by cycle matrix.
+ *
+ * Each cycle is a column of the usage of every UID row, kept in a primitive array. The item a UID
+ * is collapsed into is resolved once per row rather than once per bucket, so that the app items of
+ * a cycle come out of its column without going through the buckets again.
+ */
+class AppDataUsageIndex(
+    private val context: Context,
+    private val currentUserId: Int,
+) {
+    private val rowByUid = SparseIntArray()
+    private var uids = IntArray(INITIAL_CAPACITY)
+    private var rowCount = 0
+
+    // key: cycle
+    private val columns = ArrayMap<Range<Long>, Column>()
+
+    // The items each row is collapsed into, resolved for resolvedProfiles.
+    private var collapseKeys = IntArray(INITIAL_CAPACITY)
+    private var categories = IntArray(INITIAL_CAPACITY)
+    private var userKeys = IntArray(INITIAL_CAPACITY)
+    private var resolvedRowCount = 0
+    private var resolvedProfiles: Map<Int, Boolean>? = null
+
+    private class Column(
+        // The usage of each row, shorter than the rows added after it.
+        val usage: LongArray,
+        // Whether the cycle had ended long enough before it was queried, so that it can't change
+        // anymore.
+        val isComplete: Boolean,
+    )
+
+    /** Returns whether the usage of the cycle is known and can't change anymore. */
+    @Synchronized
+    fun hasCompleteCycle(startTime: Long, endTime: Long): Boolean =
+        columns[Range(startTime, endTime)]?.isComplete == true
+
+    /**
+     * Puts the usage of each UID in the cycle, as queried at [queriedTime], replacing any previous
+     * one.
+     *
+     * The cycle is only complete once [COMPLETE_CYCLE_DELAY_MILLIS] has passed since its end, as
+     * NetworkStats persists the usage of the end of the cycle at its next poll.
+     */
+    @Synchronized
+    fun putCycle(startTime: Long, endTime: Long, usageByUid: SparseLongArray, queriedTime: Long) {
+        for (i in 0 until usageByUid.size()) {
+            getOrAddRow(usageByUid.keyAt(i))
+        }
+        val usage = LongArray(rowCount)
+        for (i in 0 until usageByUid.size()) {
+            usage[rowByUid[usageByUid.keyAt(i)]] = usageByUid.valueAt(i)
+        }
+        columns[Range(startTime, endTime)] = Column(
+            usage = usage,
+            isComplete = queriedTime - endTime >= COMPLETE_CYCLE_DELAY_MILLIS,
+        )
+    }
+
+    /**
+     * Returns the items the UIDs using data in the cycle are collapsed into, with their totals.
+     *
+     * @param userIdToIsHiddenMap the profiles of the current user, and whether they are hidden.
+     */
+    @Synchronized
+    fun getAppItems(
+        startTime: Long,
+        endTime: Long,
+        userIdToIsHiddenMap: Map<Int, Boolean>,
+    ): List<AppItem> {
+        val column = columns[Range(startTime, endTime)] ?: return emptyList()
+        resolveRows(userIdToIsHiddenMap)
+        val items = ArrayList<AppItem>()
+        val knownItems = SparseArray<AppItem>()
+        for (row in column.usage.indices) {
+            val usage = column.usage[row]
+            if (usage <= 0 || categories[row] == CATEGORY_HIDDEN) continue
+            if (userKeys[row] != NO_KEY) {
+                // Add to a managed user item.
+                accumulate(userKeys[row], AppItem.CATEGORY_USER, row, usage, knownItems, items)
+            }
+            accumulate(collapseKeys[row], categories[row], row, usage, knownItems, items)
+        }
+        return items
+    }
+
+    private fun getOrAddRow(uid: Int): Int {
+        val row = rowByUid.get(uid, -1)
+        if (row >= 0) return row
+        if (rowCount == uids.size) {
+            val capacity = rowCount * 2
+            uids = uids.copyOf(capacity)
+            collapseKeys = collapseKeys.copyOf(capacity)
+            categories = categories.copyOf(capacity)
+            userKeys = userKeys.copyOf(capacity)
+        }
+        uids[rowCount] = uid
+        rowByUid.put(uid, rowCount)
+        return rowCount++
+    }
+
+    private fun resolveRows(userIdToIsHiddenMap: Map<Int, Boolean>) {
+        if (userIdToIsHiddenMap != resolvedProfiles) {
+            resolvedProfiles = userIdToIsHiddenMap
+            resolvedRowCount = 0
+        }
+        for (row in resolvedRowCount until rowCount) {
+            resolveRow(row, userIdToIsHiddenMap)
+        }
+        resolvedRowCount = rowCount
+    }
+
+    /** Decides how to collapse the UID of the row together with the others. */
+    private fun resolveRow(row: Int, userIdToIsHiddenMap: Map<Int, Boolean>) {
+        val uid = uids[row]
+        val userId = UserHandle.getUserId(uid)
+        userKeys[row] = NO_KEY
+        if (userIdToIsHiddenMap[userId] == true) {
+            categories[row] = CATEGORY_HIDDEN
+        } else if (UserHandle.isApp(uid) || Process.isSdkSandboxUid(uid)) {
+            if (userIdToIsHiddenMap.keys.contains(userId)) {
+                if (userId != currentUserId) {
+                    userKeys[row] = UidDetailProvider.buildKeyForUser(userId)
+                }
+                collapseKeys[row] = getAppUid(uid)
+                categories[row] = AppItem.CATEGORY_APP
+            } else if (context.userManager.getUserInfo(userId) == null) {
+                // If it is a removed user add it to the removed users' key
+                collapseKeys[row] = NetworkStats.Bucket.UID_REMOVED
+                categories[row] = AppItem.CATEGORY_APP
+            } else {
+                // Add to other user item.
+                collapseKeys[row] = UidDetailProvider.buildKeyForUser(userId)
+                categories[row] = AppItem.CATEGORY_USER
+            }
+        } else if (uid == NetworkStats.Bucket.UID_REMOVED ||
+            uid == NetworkStats.Bucket.UID_TETHERING ||
+            uid == Process.OTA_UPDATE_UID
+        ) {
+            collapseKeys[row] = uid
+            categories[row] = AppItem.CATEGORY_APP
+        } else {
+            collapseKeys[row] = Process.SYSTEM_UID
+            categories[row] = AppItem.CATEGORY_APP
+        }
+    }
+
+    /**
+     * Accumulates the usage of the row for the item mapped by the collapse key, creating the item
+     * if needed.
+     */
+    private fun accumulate(
+        collapseKey: Int,
+        itemCategory: Int,
+        row: Int,
+        usage: Long,
+        knownItems: SparseArray<AppItem>,
+        items: ArrayList<AppItem>,
+    ) {
+        var item = knownItems[collapseKey]
+        if (item == null) {
+            item = AppItem(collapseKey)
+            item.category = itemCategory
+            items.add(item)
+            knownItems.put(item.key, item)
+        }
+        item.addUid(uids[row])
+        item.total += usage
+    }
+
+    companion object {
+        /** Longer than the poll interval of NetworkStats, which is 30 minutes by default. */
+        const val COMPLETE_CYCLE_DELAY_MILLIS = DateUtils.HOUR_IN_MILLIS
+
+        private const val INITIAL_CAPACITY = 64
+
+        // The category of the rows of hidden profiles, which aren't shown.
+        private const val CATEGORY_HIDDEN = -1
+
+        private const val NO_KEY = Int.MIN_VALUE
+    }
+}
@@ -16,7 +16,6 @@
 
 package com.android.settings.datausage.lib
 
-import android.app.usage.NetworkStats
 import android.content.Context
 import android.content.pm.UserProperties
 import android.net.NetworkPolicyManager
@@ -26,12 +25,12 @@ import android.os.UserHandle
 import android.os.UserManager
 import android.util.SparseArray
 import android.util.SparseBooleanArray
+import android.util.SparseLongArray
 import androidx.annotation.VisibleForTesting
 import androidx.core.util.keyIterator
 import com.android.settings.R
 import com.android.settings.datausage.lib.NetworkStatsRepository.Companion.Bucket
 import com.android.settingslib.AppItem
-import com.android.settingslib.net.UidDetailProvider
 import com.android.settingslib.spaprivileged.framework.common.userManager
 
 class AppDataUsageRepository(
@@ -41,22 +40,56 @@ class AppDataUsageRepository(
     private val getPackageName: (AppItem) -> String?,
 ) {
     private val networkStatsRepository = NetworkStatsRepository(context, template)
+    private val index = AppDataUsageIndex(context, currentUserId)
 
     fun getAppPercent(carrierId: Int?, startTime: Long, endTime: Long): List<Pair<AppItem, Int>> {
-        val buckets = networkStatsRepository.queryBuckets(startTime, endTime)
-        return getAppPercent(carrierId, buckets)
+        if (!index.hasCompleteCycle(startTime, endTime)) {
+            // Taken before the query, so that the usage after it can't be left out of a cycle
+            // taken as complete.
+            val queriedTime = System.currentTimeMillis()
+            index.putCycle(
+                startTime = startTime,
+                endTime = endTime,
+                usageByUid = networkStatsRepository.querySummaryByUid(startTime, endTime),
+                queriedTime = queriedTime,
+            )
+        }
+        return getAppPercentFromIndex(index, carrierId, startTime, endTime)
     }
 
     @VisibleForTesting
     fun getAppPercent(carrierId: Int?, buckets: List<Bucket>): List<Pair<AppItem, Int>> {
-        val items = ArrayList<AppItem>()
-        val knownItems = SparseArray<AppItem>()
+        val usageByUid = SparseLongArray()
+        for (bucket in buckets) {
+            usageByUid.put(bucket.uid, usageByUid[bucket.uid] + bucket.bytes)
+        }
+        // A throwaway index, so that the buckets are not taken as a cycle of the live one.
+        val bucketIndex = AppDataUsageIndex(context, currentUserId)
+        bucketIndex.putCycle(
+            startTime = 0,
+            endTime = 0,
+            usageByUid = usageByUid,
+            queriedTime = System.currentTimeMillis(),
+        )
+        return getAppPercentFromIndex(bucketIndex, carrierId, startTime = 0, endTime = 0)
+    }
+
+    private fun getAppPercentFromIndex(
+        index: AppDataUsageIndex,
+        carrierId: Int?,
+        startTime: Long,
+        endTime: Long,
+    ): List<Pair<AppItem, Int>> {
         val profiles = context.userManager.userProfiles
         val userManager : UserManager = context.getSystemService(Context.USER_SERVICE) as UserManager
         val userIdToIsHiddenMap = profiles.associate { profile ->
             profile.identifier to shouldSkipProfile(userManager, profile)
         }
-        bindStats(buckets, userIdToIsHiddenMap, knownItems, items)
+        val items = ArrayList(index.getAppItems(startTime, endTime, userIdToIsHiddenMap))
+        val knownItems = SparseArray<AppItem>(items.size)
+        for (item in items) {
+            knownItems.put(item.key, item)
+        }
         val restrictedUids = context.getSystemService(NetworkPolicyManager::class.java)!!
             .getUidsWithPolicy(NetworkPolicyManager.POLICY_REJECT_METERED_BACKGROUND)
         for (uid in restrictedUids) {
@@ -102,66 +135,6 @@ class AppDataUsageRepository(
         }
     }
 
-    private fun bindStats(
-        buckets: List<Bucket>,
-        userIdToIsHiddenMap: Map<Int, Boolean>,
-        knownItems: SparseArray<AppItem>,
-        items: ArrayList<AppItem>,
-    ) {
-        for (bucket in buckets) {
-            // Decide how to collapse items together
-            val uid = bucket.uid
-            val collapseKey: Int
-            val category: Int
-            val userId = UserHandle.getUserId(uid)
-            if(userIdToIsHiddenMap[userId] == true) {
-                continue
-            }
-            if (UserHandle.isApp(uid) || Process.isSdkSandboxUid(uid)) {
-                if (userIdToIsHiddenMap.keys.contains(userId)) {
-                    if (userId != currentUserId) {
-                        // Add to a managed user item.
-                        accumulate(
-                            collapseKey = UidDetailProvider.buildKeyForUser(userId),
-                            knownItems = knownItems,
-                            bucket = bucket,
-                            itemCategory = AppItem.CATEGORY_USER,
-                            items = items,
-                        )
-                    }
-                    collapseKey = getAppUid(uid)
-                    category = AppItem.CATEGORY_APP
-                } else {
-                    // If it is a removed user add it to the removed users' key
-                    if (context.userManager.getUserInfo(userId) == null) {
-                        collapseKey = NetworkStats.Bucket.UID_REMOVED
-                        category = AppItem.CATEGORY_APP
-                    } else {
-                        // Add to other user item.
-                        collapseKey = UidDetailProvider.buildKeyForUser(userId)
-                        category = AppItem.CATEGORY_USER
-                    }
-                }
-            } else if (uid == NetworkStats.Bucket.UID_REMOVED ||
-                uid == NetworkStats.Bucket.UID_TETHERING ||
-                uid == Process.OTA_UPDATE_UID
-            ) {
-                collapseKey = uid
-                category = AppItem.CATEGORY_APP
-            } else {
-                collapseKey = Process.SYSTEM_UID
-                category = AppItem.CATEGORY_APP
-            }
-            accumulate(
-                collapseKey = collapseKey,
-                knownItems = knownItems,
-                bucket = bucket,
-                itemCategory = category,
-                items = items,
-            )
-        }
-    }
-
     private fun shouldSkipProfile(userManager : UserManager, userHandle: UserHandle): Boolean {
         if (android.os.Flags.allowPrivateProfile()
                 && android.multiuser.Flags.enablePrivateSpaceFeatures()
@@ -173,33 +146,6 @@ class AppDataUsageRepository(
         return false
     }
 
-    /**
-     * Accumulate data usage of a network stats entry for the item mapped by the collapse key.
-     * Creates the item if needed.
-     *
-     * @param collapseKey  the collapse key used to map the item.
-     * @param knownItems   collection of known (already existing) items.
-     * @param bucket       the network stats bucket to extract data usage from.
-     * @param itemCategory the item is categorized on the list view by this category. Must be
-     */
-    private fun accumulate(
-        collapseKey: Int,
-        knownItems: SparseArray<AppItem>,
-        bucket: Bucket,
-        itemCategory: Int,
-        items: ArrayList<AppItem>,
-    ) {
-        var item = knownItems[collapseKey]
-        if (item == null) {
-            item = AppItem(collapseKey)
-            item.category = itemCategory
-            items.add(item)
-            knownItems.put(item.key, item)
-        }
-        item.addUid(bucket.uid)
-        item.total += bucket.bytes
-    }
-
     companion object {
         @JvmStatic
         fun getAppUidList(uids: SparseBooleanArray) =
@@ -23,26 +23,32 @@ import com.android.settings.datausage.lib.NetworkCycleDataRepository.Companion.a
 import com.android.settings.datausage.lib.NetworkCycleDataRepository.Companion.bucketRange
 import com.android.settings.datausage.lib.NetworkCycleDataRepository.Companion.getCycles
 import com.android.settings.datausage.lib.NetworkStatsRepository.Companion.Bucket
-import com.android.settings.datausage.lib.NetworkStatsRepository.Companion.aggregate
-import com.android.settings.datausage.lib.NetworkStatsRepository.Companion.filterTime
+import com.android.settings.datausage.lib.NetworkUsageRollup.Companion.toRollup
 
 class NetworkCycleBucketRepository(
     context: Context,
     networkTemplate: NetworkTemplate,
-    private val buckets: List<Bucket>,
+    private val rollup: NetworkUsageRollup,
     private val networkCycleDataRepository: NetworkCycleDataRepository =
         NetworkCycleDataRepository(context, networkTemplate)
 ) {
 
+    constructor(
+        context: Context,
+        networkTemplate: NetworkTemplate,
+        buckets: List<Bucket>,
+        networkCycleDataRepository: NetworkCycleDataRepository =
+            NetworkCycleDataRepository(context, networkTemplate),
+    ) : this(context, networkTemplate, buckets.toRollup(), networkCycleDataRepository)
+
     fun loadCycles(): List<NetworkUsageData> =
-        getCycles().map { aggregateUsage(it) }.filter { it.usage > 0 }
+        getCycles().map { rollup.queryUsage(it) }.filter { it.usage > 0 }
 
     private fun getCycles(): List<Range<Long>> =
         networkCycleDataRepository.getPolicy()?.getCycles().orEmpty()
             .ifEmpty { queryCyclesAsFourWeeks() }
 
-    private fun queryCyclesAsFourWeeks(): List<Range<Long>> =
-        buckets.aggregate()?.timeRange.asFourWeeks()
+    private fun queryCyclesAsFourWeeks(): List<Range<Long>> = rollup.timeRange.asFourWeeks()
 
     fun queryChartData(usageData: NetworkUsageData) = NetworkCycleChartData(
         total = usageData,
@@ -50,12 +56,6 @@ class NetworkCycleBucketRepository(
             startTime = usageData.startTime,
             endTime = usageData.endTime,
             step = NetworkCycleChartData.BUCKET_DURATION.inWholeMilliseconds,
-        ).map { aggregateUsage(it) },
-    )
-
-    private fun aggregateUsage(range: Range<Long>) = NetworkUsageData(
-        startTime = range.lower,
-        endTime = range.upper,
-        usage = buckets.filterTime(range.lower, range.upper).aggregate()?.usage ?: 0,
+        ).map { rollup.queryUsage(it) },
     )
 }
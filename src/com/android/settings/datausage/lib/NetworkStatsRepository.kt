@@ -20,8 +20,12 @@ import android.app.usage.NetworkStats
 import android.app.usage.NetworkStatsManager
 import android.content.Context
 import android.net.NetworkTemplate
+import android.os.SystemClock
+import android.text.format.DateUtils
 import android.util.Log
 import android.util.Range
+import android.util.SparseLongArray
+import java.util.concurrent.ConcurrentHashMap
 
 class NetworkStatsRepository(context: Context, private val template: NetworkTemplate) {
     private val networkStatsManager = context.getSystemService(NetworkStatsManager::class.java)!!
@@ -39,15 +43,35 @@ class NetworkStatsRepository(context: Context, private val template: NetworkTemp
         null
     }
 
-    fun queryDetailsForDevice(): List<Bucket> = try {
-        networkStatsManager.queryDetailsForDevice(template, Long.MIN_VALUE, Long.MAX_VALUE)
-            .convertToBuckets()
-    } catch (e: Exception) {
-        Log.e(TAG, "Exception queryDetailsForDevice", e)
-        emptyList()
+    /**
+     * Returns the rollup of the usage buckets of the device.
+     *
+     * The rollup is kept for the template, so that later calls only query the buckets since the
+     * last one, until [FULL_QUERY_INTERVAL_MILLIS] has passed. The buckets within
+     * [REQUERY_MILLIS] before the last one are queried again and replaced, since their usage may
+     * not have been persisted yet.
+     */
+    fun queryDeviceRollup(): NetworkUsageRollup {
+        val now = SystemClock.elapsedRealtime()
+        val cached = rollupCache[template]
+            ?.takeIf { now - it.queriedTime < FULL_QUERY_INTERVAL_MILLIS }
+        val rollup = try {
+            val base = cached?.rollup ?: NetworkUsageRollup.Empty
+            val startTime = base.lastStartTime?.let { it - REQUERY_MILLIS } ?: Long.MIN_VALUE
+            networkStatsManager.queryDetailsForDevice(template, startTime, Long.MAX_VALUE)
+                .convertToRollup(base, startTime)
+        } catch (e: Exception) {
+            Log.e(TAG, "Exception queryDetailsForDevice", e)
+            return cached?.rollup ?: NetworkUsageRollup.Empty
+        }
+        rollupCache[template] = CachedRollup(
+            rollup = rollup,
+            queriedTime = cached?.queriedTime ?: now,
+        )
+        return rollup
     }
 
-    fun getTimeRange(): Range<Long>? = queryDetailsForDevice().aggregate()?.timeRange
+    fun getTimeRange(): Range<Long>? = queryDeviceRollup().timeRange
 
     fun querySummaryForDevice(startTime: Long, endTime: Long): Long = try {
         networkStatsManager.querySummaryForDevice(template, startTime, endTime).bytes
@@ -63,9 +87,29 @@ class NetworkStatsRepository(context: Context, private val template: NetworkTemp
         emptyList()
     }
 
+    /** Returns the bytes used by each UID in the time range, without boxing the buckets. */
+    fun querySummaryByUid(startTime: Long, endTime: Long): SparseLongArray = try {
+        networkStatsManager.querySummary(template, startTime, endTime).sumByUid()
+    } catch (e: Exception) {
+        Log.e(TAG, "Exception querySummary", e)
+        SparseLongArray()
+    }
+
     companion object {
         private const val TAG = "NetworkStatsRepository"
 
+        private const val FULL_QUERY_INTERVAL_MILLIS = DateUtils.DAY_IN_MILLIS
+
+        private const val REQUERY_MILLIS = AppDataUsageIndex.COMPLETE_CYCLE_DELAY_MILLIS
+
+        private data class CachedRollup(
+            val rollup: NetworkUsageRollup,
+            // When all the buckets were last queried.
+            val queriedTime: Long,
+        )
+
+        private val rollupCache = ConcurrentHashMap<NetworkTemplate, CachedRollup>()
+
         val AllTimeRange = Range(Long.MIN_VALUE, Long.MAX_VALUE)
 
         data class Bucket(
@@ -106,6 +150,36 @@ class NetworkStatsRepository(context: Context, private val template: NetworkTemp
             buckets
         }
 
+        private fun NetworkStats.sumByUid(): SparseLongArray = use {
+            val usageByUid = SparseLongArray()
+            val bucket = NetworkStats.Bucket()
+            while (getNextBucket(bucket)) {
+                if (bucket.bytes > 0) {
+                    usageByUid.put(bucket.uid, usageByUid[bucket.uid] + bucket.bytes)
+                }
+            }
+            usageByUid
+        }
+
+        /**
+         * Appends the buckets starting at or after [startTime], replacing the ones of the [base],
+         * without boxing them.
+         */
+        private fun NetworkStats.convertToRollup(
+            base: NetworkUsageRollup,
+            startTime: Long,
+        ): NetworkUsageRollup = use {
+            val builder = NetworkUsageRollup.Builder(base, replaceFrom = startTime)
+            val bucket = NetworkStats.Bucket()
+            while (getNextBucket(bucket)) {
+                // The buckets before startTime are only partially covered by the query.
+                if (bucket.bytes > 0 && bucket.startTimeStamp >= startTime) {
+                    builder.add(bucket.startTimeStamp, bucket.endTimeStamp, bucket.bytes)
+                }
+            }
+            builder.build()
+        }
+
         private val NetworkStats.Bucket.bytes: Long
             get() = rxBytes + txBytes
     }
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage.lib
+
+import android.util.Range
+import com.android.settings.datausage.lib.NetworkStatsRepository.Companion.Bucket
+
+/**
+ * The usage buckets of the device on a network, rolled up for the usage of a time range to be
+ * queried in O(log n).
+ *
+ * The buckets are kept in primitive arrays sorted by start time, along with the running sums of
+ * their bytes and the running maximums of their end times.
+ */
+class NetworkUsageRollup private constructor(
+    private val startTimes: LongArray,
+    private val endTimes: LongArray,
+    // usageSums[i] is the total bytes of the buckets before i.
+    private val usageSums: LongArray,
+    // maxEndTimes[i] is the latest end time of the buckets up to i.
+    private val maxEndTimes: LongArray,
+) {
+    val size: Int
+        get() = startTimes.size
+
+    val lastStartTime: Long?
+        get() = startTimes.lastOrNull()
+
+    /** The time range covered by the buckets, or null if there is none. */
+    val timeRange: Range<Long>?
+        get() = if (size == 0) null else Range(startTimes.first(), maxEndTimes.last())
+
+    /**
+     * Returns the total bytes of the buckets within the given time range, the same buckets as
+     * [NetworkStatsRepository.Companion.filterTime].
+     */
+    fun queryUsage(startTime: Long, endTime: Long): Long {
+        val from = startTimes.lowerBound(startTime, size)
+        // Only the buckets starting within the range can end within it.
+        val to = startTimes.upperBound(endTime, size)
+        if (from >= to) return 0
+        // The buckets before the first one ending after the range all end within the range.
+        val within = maxOf(maxEndTimes.upperBound(endTime, to), from)
+        var usage = usageSums[within] - usageSums[from]
+        // Once the buckets are sorted by start time, only the ones crossing endTime are left.
+        for (i in within until to) {
+            if (endTimes[i] <= endTime) usage += usageSums[i + 1] - usageSums[i]
+        }
+        return usage
+    }
+
+    fun queryUsage(range: Range<Long>) = NetworkUsageData(
+        startTime = range.lower,
+        endTime = range.upper,
+        usage = queryUsage(range.lower, range.upper),
+    )
+
+    /**
+     * Builds a rollup by appending buckets to the [base] one.
+     *
+     * The buckets of the [base] starting at or after [replaceFrom] or the first added bucket are
+     * replaced, since the latest buckets keep growing until NetworkStats persists their end. The
+     * rest are kept without being summed again.
+     */
+    class Builder(
+        private val base: NetworkUsageRollup = Empty,
+        private val replaceFrom: Long = Long.MAX_VALUE,
+    ) {
+        private var startTimes = LongArray(INITIAL_CAPACITY)
+        private var endTimes = LongArray(INITIAL_CAPACITY)
+        private var bytes = LongArray(INITIAL_CAPACITY)
+        private var count = 0
+
+        fun add(startTime: Long, endTime: Long, bytes: Long): Builder {
+            if (count == startTimes.size) {
+                val capacity = count * 2
+                startTimes = startTimes.copyOf(capacity)
+                endTimes = endTimes.copyOf(capacity)
+                this.bytes = this.bytes.copyOf(capacity)
+            }
+            startTimes[count] = startTime
+            endTimes[count] = endTime
+            this.bytes[count] = bytes
+            count++
+            return this
+        }
+
+        fun build(): NetworkUsageRollup {
+            sortByStartTime()
+            val from = if (count == 0) replaceFrom else minOf(replaceFrom, startTimes[0])
+            val kept = base.startTimes.lowerBound(from, base.size)
+            if (kept == base.size && count == 0) return base
+            val size = kept + count
+            val rollup = NetworkUsageRollup(
+                startTimes = base.startTimes.copyOf(size),
+                endTimes = base.endTimes.copyOf(size),
+                usageSums = base.usageSums.copyOf(size + 1),
+                maxEndTimes = base.maxEndTimes.copyOf(size),
+            )
+            startTimes.copyInto(rollup.startTimes, kept, 0, count)
+            endTimes.copyInto(rollup.endTimes, kept, 0, count)
+            for (i in kept until size) {
+                rollup.usageSums[i + 1] = rollup.usageSums[i] + bytes[i - kept]
+                rollup.maxEndTimes[i] = if (i == 0) {
+                    rollup.endTimes[i]
+                } else {
+                    maxOf(rollup.maxEndTimes[i - 1], rollup.endTimes[i])
+                }
+            }
+            return rollup
+        }
+
+        // NetworkStats returns the buckets in order, so this rarely has anything to do.
+        private fun sortByStartTime() {
+            if ((1 until count).all { startTimes[it - 1] <= startTimes[it] }) return
+            val order = (0 until count).sortedBy { startTimes[it] }
+            startTimes = LongArray(count) { startTimes[order[it]] }
+            endTimes = LongArray(count) { endTimes[order[it]] }
+            bytes = LongArray(count) { bytes[order[it]] }
+        }
+    }
+
+    companion object {
+        private const val INITIAL_CAPACITY = 16
+
+        val Empty = NetworkUsageRollup(
+            startTimes = LongArray(0),
+            endTimes = LongArray(0),
+            usageSums = LongArray(1),
+            maxEndTimes = LongArray(0),
+        )
+
+        fun List<Bucket>.toRollup(): NetworkUsageRollup {
+            val builder = Builder()
+            for (bucket in this) {
+                builder.add(bucket.startTimeStamp, bucket.endTimeStamp, bucket.bytes)
+            }
+            return builder.build()
+        }
+
+        /** Returns the first index before [toIndex] whose value is at least [value]. */
+        private fun LongArray.lowerBound(value: Long, toIndex: Int): Int {
+            var low = 0
+            var high = toIndex
+            while (low < high) {
+                val mid = (low + high) ushr 1
+                if (this[mid] < value) low = mid + 1 else high = mid
+            }
+            return low
+        }
+
+        /** Returns the first index before [toIndex] whose value is greater than [value]. */
+        private fun LongArray.upperBound(value: Long, toIndex: Int): Int {
+            var low = 0
+            var high = toIndex
+            while (low < high) {
+                val mid = (low + high) ushr 1
+                if (this[mid] <= value) low = mid + 1 else high = mid
+            }
+            return low
+        }
+    }
+}
@@ -243,6 +243,8 @@ public class StorageDashboardFragment extends DashboardFragment
             return;
         }
 
+        mStorageCacheHelper = new StorageCacheHelper(getContext(),
+                mSelectedStorageEntry.getFsUuid(), mUserId);
         if (mStorageCacheHelper.hasCachedSizeInfo() && mSelectedStorageEntry.isPrivate()) {
             StorageCacheHelper.StorageCache cachedData = mStorageCacheHelper.retrieveCachedSize();
             mPreferenceController.setVolume(mSelectedStorageEntry.getVolumeInfo());
@@ -263,10 +265,16 @@ public class StorageDashboardFragment extends DashboardFragment
                 // onReceivedSizes will setVolume with the volume of selected storage.
                 mPreferenceController.setVolume(null);
             }
-            // Stats data is only available on private volumes.
-            getLoaderManager().restartLoader(STORAGE_JOB_ID, Bundle.EMPTY, this);
-            getLoaderManager()
-                 .restartLoader(VOLUME_SIZE_JOB_ID, Bundle.EMPTY, new VolumeSizeCallbacks());
+            // Stats data is only available on private volumes. The cached data is shown as is
+            // until it gets stale.
+            if (mStorageCacheHelper.hasCachedSizeInfo() && !mStorageCacheHelper.isStale()) {
+                updateNonCurrentUserControllers(mNonCurrentUsers, mAppsResult);
+                setNonCurrentUsersVisible(true);
+            } else {
+                getLoaderManager().restartLoader(STORAGE_JOB_ID, Bundle.EMPTY, this);
+                getLoaderManager()
+                        .restartLoader(VOLUME_SIZE_JOB_ID, Bundle.EMPTY, new VolumeSizeCallbacks());
+            }
             getLoaderManager().restartLoader(ICON_JOB_ID, Bundle.EMPTY, new IconLoaderCallbacks());
         } else {
             mPreferenceController.setVolume(mSelectedStorageEntry.getVolumeInfo());
@@ -292,6 +300,13 @@ public class StorageDashboardFragment extends DashboardFragment
 
         initializeOptionsMenu(activity);
 
+        mStorageCacheHelper = new StorageCacheHelper(getContext(),
+                mSelectedStorageEntry.getFsUuid(), mUserId);
+        if (!mStorageCacheHelper.isLoaded()) {
+            // The cache is still being read in the background, its sizes are shown once it is if
+            // they're still being computed.
+            mStorageCacheHelper.runWhenLoaded(this::onCacheLoaded);
+        }
         if (mStorageCacheHelper.hasCachedSizeInfo()) {
             mIsLoadedFromCache = true;
             mStorageEntries.clear();
@@ -379,6 +394,21 @@ public class StorageDashboardFragment extends DashboardFragment
         return R.string.help_url_storage_dashboard;
     }
 
+    private void onCacheLoaded() {
+        if (!isAdded() || mSelectedStorageEntry == null || !mSelectedStorageEntry.isMounted()
+                || !mSelectedStorageEntry.isPrivate()
+                || mStorageInfo != null && mAppsResult != null
+                || !mStorageCacheHelper.hasCachedSizeInfo()) {
+            return;
+        }
+        setLoading(false /* loading */, false /* animate */);
+        final StorageCacheHelper.StorageCache cachedData = mStorageCacheHelper.retrieveCachedSize();
+        mPreferenceController.setVolume(mSelectedStorageEntry.getVolumeInfo());
+        mPreferenceController.setUsedSize(cachedData.totalUsedSize);
+        mPreferenceController.setTotalSize(cachedData.totalSize);
+        mPreferenceController.onLoadFinished(null /* result */, mUserId);
+    }
+
     private void onReceivedSizes() {
         if (mStorageInfo == null || mAppsResult == null) {
             return;
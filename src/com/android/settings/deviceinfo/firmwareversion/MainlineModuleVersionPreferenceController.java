@@ -27,6 +27,7 @@ import android.util.Log;
 import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
 
+import com.android.settings.core.BackgroundStateController;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.flags.Flags;
 
@@ -39,7 +40,8 @@ import java.util.Locale;
 import java.util.Optional;
 import java.util.TimeZone;
 
-public class MainlineModuleVersionPreferenceController extends BasePreferenceController {
+public class MainlineModuleVersionPreferenceController extends BasePreferenceController
+        implements BackgroundStateController<Intent> {
 
     @VisibleForTesting
     static final Intent MODULE_UPDATE_INTENT =
@@ -88,26 +90,33 @@ public class MainlineModuleVersionPreferenceController extends BasePreferenceCon
 
     @Override
     public void updateState(Preference preference) {
-        super.updateState(preference);
+        applyState(preference, computeState());
+    }
 
+    /** Returns the intent updating the modules, or {@code null} if none can be resolved. */
+    @Override
+    public Intent computeState() {
         final ResolveInfo resolvedV2 =
                 mPackageManager.resolveActivity(MODULE_UPDATE_V2_INTENT, 0 /* flags */);
         if (resolvedV2 != null) {
-            preference.setIntent(MODULE_UPDATE_V2_INTENT);
-            preference.setSelectable(true);
-            return;
+            return MODULE_UPDATE_V2_INTENT;
         }
 
         final ResolveInfo resolved =
                 mPackageManager.resolveActivity(MODULE_UPDATE_INTENT, 0 /* flags */);
         if (resolved != null) {
-            preference.setIntent(MODULE_UPDATE_INTENT);
-            preference.setSelectable(true);
-        } else {
-            Log.d(TAG, "The ResolveInfo of the update intent is null.");
-            preference.setIntent(null);
-            preference.setSelectable(false);
+            return MODULE_UPDATE_INTENT;
         }
+        Log.d(TAG, "The ResolveInfo of the update intent is null.");
+        return null;
+    }
+
+    @Override
+    public void applyState(Preference preference, Intent updateIntent) {
+        super.updateState(preference);
+
+        preference.setIntent(updateIntent);
+        preference.setSelectable(updateIntent != null);
     }
 
     @Override
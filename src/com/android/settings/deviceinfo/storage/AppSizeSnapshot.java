@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import android.util.ArrayMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The sizes of the apps of a user on a volume, along with the total app bytes of the user
+ * reported by {@link android.app.usage.StorageStatsManager} when they were queried. Stored by
+ * {@link StorageSnapshotStore}.
+ */
+final class AppSizeSnapshot {
+
+    // When the sizes of all the packages were last queried.
+    final long mComputedTime;
+    // The code and data bytes of all the apps of the user, or -1 if unknown.
+    final long mTotalBytes;
+    // The change of mTotalBytes since mComputedTime not explained by the packages queried since.
+    long mDriftBytes;
+    // key: package name
+    private final Map<String, PackageSize> mPackages = new ArrayMap<>();
+
+    AppSizeSnapshot(long computedTime, long totalBytes) {
+        mComputedTime = computedTime;
+        mTotalBytes = totalBytes;
+    }
+
+    void put(PackageSize size) {
+        mPackages.put(size.mPackageName, size);
+    }
+
+    PackageSize get(String packageName) {
+        return mPackages.get(packageName);
+    }
+
+    Collection<PackageSize> getPackages() {
+        return mPackages.values();
+    }
+
+    long getGamesSize() {
+        long size = 0;
+        for (PackageSize packageSize : mPackages.values()) {
+            if (packageSize.mIsGame) {
+                size += packageSize.mBlamedBytes;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the size of the apps which aren't games. The drift isn't included, since it can't
+     * be told which apps it belongs to.
+     */
+    long getAppsExceptGamesSize() {
+        long size = 0;
+        for (PackageSize packageSize : mPackages.values()) {
+            if (!packageSize.mIsGame) {
+                size += packageSize.mBlamedBytes;
+            }
+        }
+        return size;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(mComputedTime);
+        out.writeLong(mTotalBytes);
+        out.writeLong(mDriftBytes);
+        out.writeInt(mPackages.size());
+        for (PackageSize size : mPackages.values()) {
+            out.writeUTF(size.mPackageName);
+            out.writeLong(size.mLastUpdateTime);
+            out.writeLong(size.mCodeBytes);
+            out.writeLong(size.mTotalBytes);
+            out.writeLong(size.mBlamedBytes);
+            out.writeBoolean(size.mIsGame);
+        }
+    }
+
+    static AppSizeSnapshot readFrom(DataInput in) throws IOException {
+        final AppSizeSnapshot snapshot = new AppSizeSnapshot(in.readLong(), in.readLong());
+        snapshot.mDriftBytes = in.readLong();
+        for (int i = in.readInt(); i > 0; i--) {
+            snapshot.put(new PackageSize(in.readUTF(), in.readLong(), in.readLong(),
+                    in.readLong(), in.readLong(), in.readBoolean()));
+        }
+        return snapshot;
+    }
+
+    /** The size of a package for the user. */
+    static final class PackageSize {
+        final String mPackageName;
+        final long mLastUpdateTime;
+        final long mCodeBytes;
+        // The code and data bytes, comparable to AppSizeSnapshot#mTotalBytes.
+        final long mTotalBytes;
+        // The bytes attributed to the app, its cache capped at its quota.
+        final long mBlamedBytes;
+        final boolean mIsGame;
+
+        PackageSize(String packageName, long lastUpdateTime, long codeBytes, long totalBytes,
+                long blamedBytes, boolean isGame) {
+            mPackageName = packageName;
+            mLastUpdateTime = lastUpdateTime;
+            mCodeBytes = codeBytes;
+            mTotalBytes = totalBytes;
+            mBlamedBytes = blamedBytes;
+            mIsGame = isGame;
+        }
+    }
+}
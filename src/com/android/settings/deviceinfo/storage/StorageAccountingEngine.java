@@ -0,0 +1,450 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static android.content.pm.ApplicationInfo.CATEGORY_AUDIO;
+import static android.content.pm.ApplicationInfo.CATEGORY_GAME;
+import static android.content.pm.ApplicationInfo.CATEGORY_IMAGE;
+import static android.content.pm.ApplicationInfo.CATEGORY_VIDEO;
+
+import android.app.usage.StorageStats;
+import android.app.usage.StorageStatsManager;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.content.pm.UserInfo;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Environment;
+import android.os.UserHandle;
+import android.os.storage.StorageManager;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Files.FileColumns;
+import android.provider.MediaStore.MediaColumns;
+import android.text.format.DateUtils;
+import android.util.ArraySet;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.deviceinfo.storage.StorageAsyncLoader.StorageResult;
+import com.android.settingslib.applications.StorageStatsSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the {@link StorageResult} of each user of a volume for {@link StorageAsyncLoader}.
+ *
+ * <p>The users are computed in parallel, and so are the app and media sizes of each user. The
+ * media sizes of a user are summed up by a single MediaStore query grouped by media type.
+ *
+ * <p>The app sizes of a user are kept in an {@link AppSizeSnapshot} by the
+ * {@link StorageSnapshotStore}. When they are computed again, only the packages installed,
+ * updated or removed since are queried, as long as the app bytes of the user reported by
+ * {@link StorageStatsManager}, shared storage media excluded, didn't drift by more than
+ * {@link #MAX_DRIFT_RATIO} from what these packages explain. Otherwise, or once the snapshot is
+ * older than {@link #MAX_SNAPSHOT_AGE_MS}, all the packages are queried again. The drift isn't
+ * attributed to the apps, it's left to the storage not attributed to any category.
+ */
+final class StorageAccountingEngine {
+    private static final String TAG = "StorageAccounting";
+
+    private static final int THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    @VisibleForTesting
+    static final double MAX_DRIFT_RATIO = 0.01;
+    @VisibleForTesting
+    static final long MAX_SNAPSHOT_AGE_MS = DateUtils.DAY_IN_MILLIS;
+
+    private static ThreadPoolExecutor sExecutor;
+
+    private final Context mContext;
+    private final String mUuid;
+    private final StorageStatsSource mStatsSource;
+    private final StorageStatsManager mStorageStatsManager;
+    private final PackageManager mPackageManager;
+    private final StorageSnapshotStore mSnapshotStore;
+
+    StorageAccountingEngine(Context context, String uuid, StorageStatsSource statsSource,
+            StorageStatsManager storageStatsManager, PackageManager packageManager) {
+        mContext = context;
+        mUuid = uuid;
+        mStatsSource = statsSource;
+        mStorageStatsManager = storageStatsManager;
+        mPackageManager = packageManager;
+        mSnapshotStore = StorageSnapshotStore.getInstance(context);
+    }
+
+    /** Returns the results of the {@param users}, sorted by user id ascending, by user id. */
+    SparseArray<StorageResult> compute(List<UserInfo> users) {
+        final ExecutorService executor = getExecutor();
+        final List<StorageResult> results = new ArrayList<>(users.size());
+        final List<Future<AppSizeSnapshot>> appFutures = new ArrayList<>(users.size());
+        final List<Future<?>> mediaFutures = new ArrayList<>(users.size());
+        for (UserInfo info : users) {
+            // The tasks of a user fill in distinct fields of its result.
+            final StorageResult result = new StorageResult();
+            results.add(result);
+            appFutures.add(executor.submit(() -> computeApps(info.id, result)));
+            mediaFutures.add(executor.submit(() -> computeMedia(info.id, result)));
+        }
+
+        final long systemSize = getSystemSize();
+        final SparseArray<StorageResult> resultsByUser = new SparseArray<>();
+        // Code bytes may share between different profiles. To know all the duplicate code size
+        // and we can get a reasonable system size in StorageItemPreferenceController. The code
+        // is owned by the user with the lowest id, whichever user finished first.
+        final Set<String> seenPackages = new ArraySet<>();
+        try {
+            for (int i = 0; i < users.size(); i++) {
+                final AppSizeSnapshot snapshot = appFutures.get(i).get();
+                mediaFutures.get(i).get();
+                final StorageResult result = results.get(i);
+                for (AppSizeSnapshot.PackageSize size : snapshot.getPackages()) {
+                    if (!seenPackages.add(size.mPackageName)) {
+                        result.duplicateCodeSize += size.mCodeBytes;
+                    }
+                }
+                result.systemSize = systemSize;
+                resultsByUser.put(users.get(i).id, result);
+            }
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted while computing the storage results");
+            appFutures.forEach(future -> future.cancel(true /* mayInterruptIfRunning */));
+            mediaFutures.forEach(future -> future.cancel(true /* mayInterruptIfRunning */));
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return resultsByUser;
+    }
+
+    private AppSizeSnapshot computeApps(int userId, StorageResult result) {
+        Log.d(TAG, "Loading apps of user " + userId);
+        final UserHandle user = UserHandle.of(userId);
+        final List<PackageInfo> packages = mPackageManager.getInstalledPackagesAsUser(0, userId);
+
+        Log.d(TAG, "Loading external stats of user " + userId);
+        try {
+            result.externalStats = mStatsSource.getExternalStorageStats(mUuid, user);
+        } catch (IOException e) {
+            Log.w(TAG, e);
+        }
+        final long totalBytes = getTotalAppBytes(user, result.externalStats);
+        final long now = System.currentTimeMillis();
+
+        // Without the total app bytes, there is no telling how much the data of the apps grew.
+        AppSizeSnapshot previous =
+                totalBytes >= 0 ? mSnapshotStore.getAppSizes(mUuid, userId) : null;
+        if (previous != null && (previous.mTotalBytes < 0 || previous.mComputedTime > now
+                || now - previous.mComputedTime > MAX_SNAPSHOT_AGE_MS)) {
+            previous = null;
+        }
+        AppSizeSnapshot snapshot = computeSnapshot(user, packages, totalBytes, now, previous);
+        if (snapshot == null) {
+            Log.d(TAG, "App sizes of user " + userId + " drifted, querying all the packages");
+            snapshot = computeSnapshot(user, packages, totalBytes, now, null /* previous */);
+        }
+        if (totalBytes >= 0) {
+            mSnapshotStore.putAppSizes(mUuid, userId, snapshot);
+        }
+        result.gamesSize = snapshot.getGamesSize();
+        result.allAppsExceptGamesSize = snapshot.getAppsExceptGamesSize();
+        return snapshot;
+    }
+
+    /**
+     * Returns the snapshot of the {@param packages}, reusing the sizes of the packages not
+     * updated since the {@param previous} snapshot, or null if that snapshot drifted too much.
+     */
+    private AppSizeSnapshot computeSnapshot(UserHandle user, List<PackageInfo> packages,
+            long totalBytes, long now, AppSizeSnapshot previous) {
+        final AppSizeSnapshot snapshot = new AppSizeSnapshot(
+                previous != null ? previous.mComputedTime : now, totalBytes);
+        // The change of the total app bytes explained by the packages queried again.
+        long explainedBytes = 0;
+        for (int i = 0, count = packages.size(); i < count; i++) {
+            final PackageInfo packageInfo = packages.get(i);
+            final ApplicationInfo app = packageInfo.applicationInfo;
+            if (app == null) {
+                continue;
+            }
+            final AppSizeSnapshot.PackageSize cached =
+                    previous != null ? previous.get(app.packageName) : null;
+            if (cached != null && cached.mLastUpdateTime == packageInfo.lastUpdateTime) {
+                snapshot.put(cached);
+                continue;
+            }
+            final AppSizeSnapshot.PackageSize size =
+                    queryPackageSize(app, packageInfo.lastUpdateTime, user);
+            if (size == null) {
+                continue;
+            }
+            snapshot.put(size);
+            explainedBytes += size.mTotalBytes - (cached != null ? cached.mTotalBytes : 0);
+        }
+        if (previous == null) {
+            return snapshot;
+        }
+        for (AppSizeSnapshot.PackageSize size : previous.getPackages()) {
+            if (snapshot.get(size.mPackageName) == null) {
+                explainedBytes -= size.mTotalBytes;
+            }
+        }
+        snapshot.mDriftBytes =
+                previous.mDriftBytes + totalBytes - previous.mTotalBytes - explainedBytes;
+        return Math.abs(snapshot.mDriftBytes) > totalBytes * MAX_DRIFT_RATIO ? null : snapshot;
+    }
+
+    private AppSizeSnapshot.PackageSize queryPackageSize(ApplicationInfo app, long lastUpdateTime,
+            UserHandle user) {
+        final StorageStatsSource.AppStorageStats stats;
+        try {
+            stats = mStatsSource.getStatsForPackage(mUuid, app.packageName, user);
+        } catch (NameNotFoundException | IOException e) {
+            // This may happen if the package was removed during our calculation.
+            Log.w(TAG, "App unexpectedly not found", e);
+            return null;
+        }
+
+        final long dataSize = stats.getDataBytes();
+        final long cacheQuota = mStatsSource.getCacheQuotaBytes(mUuid, app.uid);
+        final long cacheBytes = stats.getCacheBytes();
+        long blamedSize = dataSize + stats.getCodeBytes();
+        // Technically, we could overages as freeable on the storage settings screen.
+        // If the app is using more cache than its quota, we would accidentally subtract the
+        // overage from the system size (because it shows up as unused) during our attribution.
+        // Thus, we cap the attribution at the quota size.
+        if (cacheQuota < cacheBytes) {
+            blamedSize = blamedSize - cacheBytes + cacheQuota;
+        }
+        return new AppSizeSnapshot.PackageSize(app.packageName, lastUpdateTime,
+                stats.getCodeBytes(), dataSize + stats.getCodeBytes(), blamedSize, isGame(app));
+    }
+
+    private static boolean isGame(ApplicationInfo app) {
+        switch (app.category) {
+            case CATEGORY_GAME:
+                return true;
+            case CATEGORY_AUDIO:
+            case CATEGORY_VIDEO:
+            case CATEGORY_IMAGE:
+                return false;
+            default:
+                // The deprecated game flag does not set the category.
+                return (app.flags & ApplicationInfo.FLAG_IS_GAME) != 0;
+        }
+    }
+
+    /**
+     * Returns the code and data bytes of all the apps of the {@param user}, or -1. The data bytes
+     * of a user include the shared storage, whose media and other files not owned by an app are
+     * taken out with the {@param externalStats}.
+     */
+    private long getTotalAppBytes(UserHandle user,
+            StorageStatsSource.ExternalStorageStats externalStats) {
+        if (mStorageStatsManager == null || externalStats == null) {
+            return -1;
+        }
+        try {
+            final StorageStats stats = mStorageStatsManager.queryStatsForUser(mUuid, user);
+            return stats != null ? stats.getAppBytes() + stats.getDataBytes()
+                    - (externalStats.totalBytes - externalStats.appBytes) : -1;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to query the stats of " + user, e);
+            return -1;
+        }
+    }
+
+    private void computeMedia(int userId, StorageResult result) {
+        final Context perUserContext;
+        try {
+            perUserContext = mContext.createPackageContextAsUser(
+                    mContext.getApplicationContext().getPackageName(),
+                    0 /* flags= */,
+                    UserHandle.of(userId));
+        } catch (NameNotFoundException e) {
+            Log.e(TAG, "Not able to get Context for user ID " + userId);
+            return;
+        }
+        final ContentResolver resolver = perUserContext.getContentResolver();
+        if (queryGroupedMediaSizes(resolver, result)) {
+            return;
+        }
+
+        final Bundle media = new Bundle();
+        media.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, MediaColumns.VOLUME_NAME
+                + "= '" + MediaStore.VOLUME_EXTERNAL_PRIMARY + "'");
+        result.imagesSize = getFilesSize(resolver, MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                media /* queryArgs */);
+        result.videosSize = getFilesSize(resolver, MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
+                media /* queryArgs */);
+        result.audioSize = getFilesSize(resolver, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                media /* queryArgs */);
+
+        final Bundle documentsQueryArgs = new Bundle();
+        documentsQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                FileColumns.MEDIA_TYPE + "=" + FileColumns.MEDIA_TYPE_DOCUMENT);
+        result.documentsSize = getFilesSize(resolver,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
+                documentsQueryArgs);
+
+        final Bundle otherQueryArgs = new Bundle();
+        otherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_IMAGE
+                        + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
+                        + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
+                        + " AND " + FileColumns.MEDIA_TYPE + "!="
+                        + FileColumns.MEDIA_TYPE_DOCUMENT
+                        + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
+        result.otherSize = getFilesSize(resolver,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
+                otherQueryArgs);
+
+        final Bundle trashQueryArgs = new Bundle();
+        trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
+        result.trashSize = getFilesSize(resolver,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
+                trashQueryArgs);
+    }
+
+    /**
+     * Sums up the sizes of all the media categories with a single query, returns false if the
+     * provider doesn't support it.
+     */
+    private static boolean queryGroupedMediaSizes(ContentResolver resolver, StorageResult result) {
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_INCLUDE);
+        // Excludes the directories from the other files, media files always have a mime type.
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                FileColumns.MIME_TYPE + " IS NOT NULL");
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_GROUP_BY,
+                FileColumns.IS_TRASHED + "," + FileColumns.MEDIA_TYPE);
+        final String[] projection = new String[] {
+                FileColumns.IS_TRASHED,
+                FileColumns.MEDIA_TYPE,
+                "sum(" + MediaColumns.SIZE + ")",
+                // 1 in each group, more if the provider ignored the grouping.
+                "count(DISTINCT " + FileColumns.IS_TRASHED + ")",
+                "count(DISTINCT " + FileColumns.MEDIA_TYPE + ")"};
+        try (Cursor cursor = resolver.query(
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
+                projection, queryArgs, null /* cancellationSignal */)) {
+            if (cursor == null) {
+                return false;
+            }
+            if (cursor.getColumnCount() != projection.length
+                    || cursor.getColumnIndex(FileColumns.IS_TRASHED) != 0
+                    || cursor.getColumnIndex(FileColumns.MEDIA_TYPE) != 1) {
+                Log.w(TAG, "Unexpected columns of the grouped media query, querying each category");
+                return false;
+            }
+            while (cursor.moveToNext()) {
+                if (cursor.getInt(3) > 1 || cursor.getInt(4) > 1) {
+                    Log.w(TAG, "Grouped media query not grouped, querying each category");
+                    clearMediaSizes(result);
+                    return false;
+                }
+                final long size = cursor.getLong(2);
+                if (cursor.getInt(0) != 0) {
+                    result.trashSize += size;
+                    continue;
+                }
+                switch (cursor.getInt(1)) {
+                    case FileColumns.MEDIA_TYPE_IMAGE:
+                        result.imagesSize += size;
+                        break;
+                    case FileColumns.MEDIA_TYPE_VIDEO:
+                        result.videosSize += size;
+                        break;
+                    case FileColumns.MEDIA_TYPE_AUDIO:
+                        result.audioSize += size;
+                        break;
+                    case FileColumns.MEDIA_TYPE_DOCUMENT:
+                        result.documentsSize += size;
+                        break;
+                    default:
+                        result.otherSize += size;
+                        break;
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Grouped media query failed, querying each category", e);
+            clearMediaSizes(result);
+            return false;
+        }
+    }
+
+    private static void clearMediaSizes(StorageResult result) {
+        result.imagesSize = 0;
+        result.videosSize = 0;
+        result.audioSize = 0;
+        result.documentsSize = 0;
+        result.otherSize = 0;
+        result.trashSize = 0;
+    }
+
+    private static long getFilesSize(ContentResolver resolver, Uri uri, Bundle queryArgs) {
+        try (Cursor cursor = resolver.query(
+                uri,
+                new String[] {"sum(" + MediaColumns.SIZE + ")"},
+                queryArgs,
+                null /* cancellationSignal */)) {
+            if (cursor == null) {
+                return 0L;
+            }
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0L;
+        }
+    }
+
+    private long getSystemSize() {
+        try {
+            return mStatsSource.getTotalBytes(StorageManager.UUID_DEFAULT)
+                    - Environment.getDataDirectory().getTotalSpace();
+        } catch (IOException e) {
+            Log.e(TAG, "Exception in calculating System category size", e);
+            return 0;
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = new ThreadPoolExecutor(THREADS, THREADS, KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            sExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sExecutor;
+    }
+}
@@ -269,6 +269,9 @@ public class StorageItemPreferenceController extends AbstractPreferenceControlle
      */
     public void setVolume(VolumeInfo volume) {
         mVolume = volume;
+        if (volume != null) {
+            mStorageCacheHelper = new StorageCacheHelper(mContext, volume.getFsUuid(), mUserId);
+        }
 
         if (mPublicStoragePreference != null) {
             mPublicStoragePreference.setVisible(
@@ -605,6 +608,8 @@ public class StorageItemPreferenceController extends AbstractPreferenceControlle
         }
         mTrashPreference.setStorageSize(0, mTotalSize, true /* animate */);
         updatePrivateStorageCategoryPreferencesOrder();
+        // The cached trash size is outdated, compute all the sizes again next time.
+        StorageSnapshotStore.getInstance(mContext).invalidate();
     }
 
     private static long totalValues(StorageMeasurement.MeasurementDetails details, int userId,
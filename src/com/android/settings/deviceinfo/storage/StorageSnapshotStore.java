@@ -0,0 +1,516 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.util.ArrayMap;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.R;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stores the storage sizes last computed for each volume and user, so that the storage screens
+ * show them right away when opened again.
+ *
+ * <p>All the snapshots are kept in memory and written together, atomically, to a single binary
+ * file. A snapshot is stale once it is older than {@code config_storage_snapshot_max_age_millis},
+ * or once a package is installed, updated, removed or cleared, or the media of a volume changed,
+ * after it was taken.
+ *
+ * <p>The file is read in the background once the store is created, so that the main thread
+ * never waits on the disk: until then, the store reads as if nothing was stored, see
+ * {@link #runWhenLoaded(Runnable)}. Changes wait for the file to be read.
+ */
+public final class StorageSnapshotStore {
+    private static final String TAG = "StorageSnapshotStore";
+
+    @VisibleForTesting
+    static final String FILE_NAME = "storage_snapshot";
+    @VisibleForTesting
+    static final int FORMAT_VERSION = 1;
+    // The key of the internal storage, whose uuid is null.
+    private static final String INTERNAL_VOLUME = "";
+    // The SharedPreferences the sizes of the internal storage were stored in for each user,
+    // before this store.
+    private static final Pattern LEGACY_PREFERENCES_FILE =
+            Pattern.compile("(StorageCache(\\d{1,9}))\\.xml");
+
+    private static StorageSnapshotStore sInstance;
+
+    private final Context mContext;
+    private final long mMaxAgeMillis;
+    private final Object mLoadLock = new Object();
+    private final Object mWriteLock = new Object();
+    // Set once, before the snapshots are loaded.
+    private AtomicFile mFile;
+    private boolean mLoaded;
+    private final List<Runnable> mLoadedCallbacks = new ArrayList<>();
+    // key: volume uuid and user id, see getKey()
+    private final Map<String, Snapshot> mSnapshots = new ArrayMap<>();
+    // The last time packages or media changed, snapshots taken before are stale.
+    private long mInvalidatedTime;
+    private boolean mWritePending;
+    private int mWriteSequence;
+    // Guarded by mWriteLock.
+    private int mWrittenSequence;
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidate();
+        }
+    };
+
+    /** Returns the store of the application of the {@param context}. */
+    public static synchronized StorageSnapshotStore getInstance(Context context) {
+        final Context appContext = context.getApplicationContext();
+        // A new application, e.g. in tests, starts with a new store.
+        if (sInstance == null || sInstance.mContext != appContext) {
+            sInstance = new StorageSnapshotStore(appContext);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    StorageSnapshotStore(Context context) {
+        mContext = context;
+        mMaxAgeMillis = context.getResources().getInteger(
+                R.integer.config_storage_snapshot_max_age_millis);
+
+        final IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_DATA_CLEARED);
+        packageFilter.addDataScheme("package");
+        context.registerReceiver(mReceiver, packageFilter, Context.RECEIVER_NOT_EXPORTED);
+
+        final IntentFilter mediaFilter = new IntentFilter();
+        mediaFilter.addAction(Intent.ACTION_MEDIA_MOUNTED);
+        mediaFilter.addAction(Intent.ACTION_MEDIA_UNMOUNTED);
+        mediaFilter.addAction(Intent.ACTION_MEDIA_SCANNER_FINISHED);
+        mediaFilter.addDataScheme("file");
+        context.registerReceiver(mReceiver, mediaFilter, Context.RECEIVER_NOT_EXPORTED);
+
+        ThreadUtils.postOnBackgroundThread(this::ensureLoaded);
+    }
+
+    /** Returns true if sizes were stored for the {@param volumeUuid} and {@param userId}. */
+    public synchronized boolean hasSizes(String volumeUuid, int userId) {
+        final Snapshot snapshot = mSnapshots.get(getKey(volumeUuid, userId));
+        return snapshot != null && snapshot.mHasSizes;
+    }
+
+    /**
+     * Returns true if the sizes of the {@param volumeUuid} for the {@param userId} weren't
+     * computed, or were computed too long ago or before a change.
+     */
+    public synchronized boolean isStale(String volumeUuid, int userId) {
+        final Snapshot snapshot = mSnapshots.get(getKey(volumeUuid, userId));
+        final long now = System.currentTimeMillis();
+        return snapshot == null
+                || snapshot.mTimestamp <= mInvalidatedTime
+                || snapshot.mTimestamp > now
+                || now - snapshot.mTimestamp > mMaxAgeMillis;
+    }
+
+    /** Returns a copy of the category sizes, all 0 if there are none. */
+    synchronized StorageCacheHelper.StorageCache getSizes(String volumeUuid, int userId) {
+        final StorageCacheHelper.StorageCache sizes = new StorageCacheHelper.StorageCache();
+        final Snapshot snapshot = mSnapshots.get(getKey(volumeUuid, userId));
+        if (snapshot != null) {
+            snapshot.copySizesTo(sizes);
+        }
+        return sizes;
+    }
+
+    /** Stores the category sizes, which makes the snapshot fresh. The totals are kept. */
+    void putSizes(String volumeUuid, int userId, StorageCacheHelper.StorageCache sizes) {
+        ensureLoaded();
+        synchronized (this) {
+            final Snapshot snapshot = edit(volumeUuid, userId);
+            final long totalSize = snapshot.mSizes.totalSize;
+            final long totalUsedSize = snapshot.mSizes.totalUsedSize;
+            Snapshot.copySizes(sizes, snapshot.mSizes);
+            snapshot.mSizes.totalSize = totalSize;
+            snapshot.mSizes.totalUsedSize = totalUsedSize;
+            snapshot.mHasSizes = true;
+            snapshot.mTimestamp = System.currentTimeMillis();
+            write();
+        }
+    }
+
+    void putTotalSizes(String volumeUuid, int userId, long totalSize, long totalUsedSize) {
+        ensureLoaded();
+        synchronized (this) {
+            final Snapshot snapshot = edit(volumeUuid, userId);
+            snapshot.mSizes.totalSize = totalSize;
+            snapshot.mSizes.totalUsedSize = totalUsedSize;
+            snapshot.mHasSizes = true;
+            write();
+        }
+    }
+
+    synchronized long getUsedSize(String volumeUuid, int userId) {
+        final Snapshot snapshot = mSnapshots.get(getKey(volumeUuid, userId));
+        return snapshot != null ? snapshot.mUsedSize : 0;
+    }
+
+    void putUsedSize(String volumeUuid, int userId, long usedSize) {
+        ensureLoaded();
+        synchronized (this) {
+            final Snapshot snapshot = edit(volumeUuid, userId);
+            snapshot.mUsedSize = usedSize;
+            snapshot.mHasSizes = true;
+            write();
+        }
+    }
+
+    /**
+     * Returns the app sizes last computed, or null. Waits for the file to be read, so it mustn't
+     * be called on the main thread.
+     */
+    AppSizeSnapshot getAppSizes(String volumeUuid, int userId) {
+        ensureLoaded();
+        synchronized (this) {
+            final Snapshot snapshot = mSnapshots.get(getKey(volumeUuid, userId));
+            return snapshot != null ? snapshot.mAppSizes : null;
+        }
+    }
+
+    /** Stores the {@param appSizes}, which mustn't be modified afterwards. */
+    void putAppSizes(String volumeUuid, int userId, AppSizeSnapshot appSizes) {
+        ensureLoaded();
+        synchronized (this) {
+            edit(volumeUuid, userId).mAppSizes = appSizes;
+            write();
+        }
+    }
+
+    /** Returns true once the file is read. */
+    public synchronized boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * Runs the {@param callback} on the main thread once the file is read, right away if it
+     * already is.
+     */
+    public synchronized void runWhenLoaded(Runnable callback) {
+        if (mLoaded) {
+            ThreadUtils.postOnMainThread(callback);
+        } else {
+            mLoadedCallbacks.add(callback);
+        }
+    }
+
+    /**
+     * Marks all the snapshots as stale. This doesn't wait for the file to be read, the time is
+     * kept over the one read.
+     */
+    public synchronized void invalidate() {
+        mInvalidatedTime = System.currentTimeMillis();
+        write();
+    }
+
+    @VisibleForTesting
+    void clear() {
+        ensureLoaded();
+        synchronized (this) {
+            mSnapshots.clear();
+            mInvalidatedTime = 0;
+            mFile.delete();
+        }
+    }
+
+    /**
+     * Reads the snapshots, or migrates the legacy ones, unless already done. The disk is accessed
+     * without holding the lock of the store, so that its readers don't wait on it.
+     */
+    private void ensureLoaded() {
+        final List<Runnable> callbacks;
+        synchronized (mLoadLock) {
+            if (isLoaded()) {
+                return;
+            }
+            mFile = new AtomicFile(new File(mContext.getFilesDir(), FILE_NAME));
+            final Map<String, Snapshot> snapshots = new ArrayMap<>();
+            final long invalidatedTime = read(snapshots);
+            final boolean migrated =
+                    invalidatedTime < 0 && migrateLegacyPreferences(snapshots);
+            synchronized (this) {
+                // Nothing is edited before the snapshots are loaded.
+                mSnapshots.putAll(snapshots);
+                // An invalidation received before the file was read is kept.
+                mInvalidatedTime = Math.max(mInvalidatedTime, invalidatedTime);
+                mLoaded = true;
+                if (migrated) {
+                    write();
+                }
+                callbacks = new ArrayList<>(mLoadedCallbacks);
+                mLoadedCallbacks.clear();
+            }
+        }
+        for (Runnable callback : callbacks) {
+            ThreadUtils.postOnMainThread(callback);
+        }
+    }
+
+    private Snapshot edit(String volumeUuid, int userId) {
+        final String key = getKey(volumeUuid, userId);
+        Snapshot snapshot = mSnapshots.get(key);
+        if (snapshot == null) {
+            snapshot = new Snapshot();
+            mSnapshots.put(key, snapshot);
+        }
+        return snapshot;
+    }
+
+    /** Writes the snapshots in the background, once for all the changes made until then. */
+    private void write() {
+        if (mWritePending) {
+            return;
+        }
+        mWritePending = true;
+        ThreadUtils.postOnBackgroundThread(this::writeNow);
+    }
+
+    private static String getKey(String volumeUuid, int userId) {
+        return (volumeUuid != null ? volumeUuid : INTERNAL_VOLUME) + "/" + userId;
+    }
+
+    /**
+     * Reads the {@param snapshots}, and returns the time they were invalidated, -1 if nothing was
+     * stored yet.
+     */
+    private long read(Map<String, Snapshot> snapshots) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                mFile.openRead()))) {
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                Log.i(TAG, "Dropping snapshots of version " + version);
+                return 0;
+            }
+            final long invalidatedTime = in.readLong();
+            for (int i = in.readInt(); i > 0; i--) {
+                final String key = in.readUTF();
+                snapshots.put(key, Snapshot.readFrom(in));
+            }
+            return invalidatedTime;
+        } catch (FileNotFoundException e) {
+            return -1;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read the snapshots", e);
+            snapshots.clear();
+        }
+        return 0;
+    }
+
+    /**
+     * Moves the sizes of the SharedPreferences used before this store to stale snapshots, so that
+     * they're still shown while computed again, and deletes the SharedPreferences. Returns true
+     * if any was moved to the {@param snapshots}.
+     */
+    private boolean migrateLegacyPreferences(Map<String, Snapshot> snapshots) {
+        final String[] files = new File(mContext.getDataDir(), "shared_prefs").list();
+        if (files == null) {
+            return false;
+        }
+        boolean migrated = false;
+        for (String file : files) {
+            final Matcher matcher = LEGACY_PREFERENCES_FILE.matcher(file);
+            if (!matcher.matches()) {
+                continue;
+            }
+            final String name = matcher.group(1);
+            final int userId = Integer.parseInt(matcher.group(2));
+            final SharedPreferences preferences =
+                    mContext.getSharedPreferences(name, Context.MODE_PRIVATE);
+            if (!preferences.getAll().isEmpty()) {
+                final Snapshot snapshot = new Snapshot();
+                snapshot.readLegacyPreferences(preferences);
+                snapshots.put(getKey(null /* volumeUuid */, userId), snapshot);
+                migrated = true;
+            }
+            if (!mContext.deleteSharedPreferences(name)) {
+                Log.w(TAG, "Failed to delete " + name);
+            }
+        }
+        return migrated;
+    }
+
+    private void writeNow() {
+        // Never replaces the file with snapshots that weren't read from it.
+        ensureLoaded();
+        final byte[] bytes;
+        final int sequence;
+        synchronized (this) {
+            mWritePending = false;
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (DataOutputStream data = new DataOutputStream(buffer)) {
+                data.writeInt(FORMAT_VERSION);
+                data.writeLong(mInvalidatedTime);
+                data.writeInt(mSnapshots.size());
+                for (Map.Entry<String, Snapshot> entry : mSnapshots.entrySet()) {
+                    data.writeUTF(entry.getKey());
+                    entry.getValue().writeTo(data);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            bytes = buffer.toByteArray();
+            sequence = ++mWriteSequence;
+        }
+        // Writes may run concurrently, the file only ever goes forward.
+        synchronized (mWriteLock) {
+            if (sequence < mWrittenSequence) {
+                return;
+            }
+            mWrittenSequence = sequence;
+            FileOutputStream out = null;
+            try {
+                out = mFile.startWrite();
+                out.write(bytes);
+                mFile.finishWrite(out);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write the snapshots", e);
+                if (out != null) {
+                    mFile.failWrite(out);
+                }
+            }
+        }
+    }
+
+    /** The sizes of a volume for a user. */
+    private static final class Snapshot {
+        // When the category sizes were computed, 0 if they weren't.
+        long mTimestamp;
+        final StorageCacheHelper.StorageCache mSizes = new StorageCacheHelper.StorageCache();
+        // Whether any of the sizes below was stored, unlike only the app sizes.
+        boolean mHasSizes;
+        // The used size of a user other than the current one.
+        long mUsedSize;
+        AppSizeSnapshot mAppSizes;
+
+        /**
+         * Reads the sizes stored by the former StorageCacheHelper. The snapshot stays stale, as
+         * it doesn't know when they were computed.
+         */
+        void readLegacyPreferences(SharedPreferences preferences) {
+            mSizes.totalSize = preferences.getLong("total_size_key", 0);
+            mSizes.totalUsedSize = preferences.getLong("total_used_size_key", 0);
+            mSizes.gamesSize = preferences.getLong("games_size_key", 0);
+            mSizes.allAppsExceptGamesSize = preferences.getLong("apps_size_key", 0);
+            mSizes.audioSize = preferences.getLong("audio_size_key", 0);
+            mSizes.imagesSize = preferences.getLong("images_size_key", 0);
+            mSizes.videosSize = preferences.getLong("videos_size_key", 0);
+            mSizes.documentsSize = preferences.getLong("documents_size_key", 0);
+            mSizes.otherSize = preferences.getLong("other_size_key", 0);
+            mSizes.trashSize = preferences.getLong("trash_size_key", 0);
+            mSizes.systemSize = preferences.getLong("system_size_key", 0);
+            mSizes.temporaryFilesSize = preferences.getLong("temporary_files_size_key", 0);
+            mUsedSize = preferences.getLong("used_size_key", 0);
+            mHasSizes = true;
+        }
+
+        void copySizesTo(StorageCacheHelper.StorageCache sizes) {
+            copySizes(mSizes, sizes);
+        }
+
+        static void copySizes(StorageCacheHelper.StorageCache from,
+                StorageCacheHelper.StorageCache to) {
+            to.totalSize = from.totalSize;
+            to.totalUsedSize = from.totalUsedSize;
+            to.gamesSize = from.gamesSize;
+            to.allAppsExceptGamesSize = from.allAppsExceptGamesSize;
+            to.audioSize = from.audioSize;
+            to.imagesSize = from.imagesSize;
+            to.videosSize = from.videosSize;
+            to.documentsSize = from.documentsSize;
+            to.otherSize = from.otherSize;
+            to.trashSize = from.trashSize;
+            to.systemSize = from.systemSize;
+            to.temporaryFilesSize = from.temporaryFilesSize;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(mTimestamp);
+            out.writeBoolean(mHasSizes);
+            out.writeLong(mSizes.totalSize);
+            out.writeLong(mSizes.totalUsedSize);
+            out.writeLong(mSizes.gamesSize);
+            out.writeLong(mSizes.allAppsExceptGamesSize);
+            out.writeLong(mSizes.audioSize);
+            out.writeLong(mSizes.imagesSize);
+            out.writeLong(mSizes.videosSize);
+            out.writeLong(mSizes.documentsSize);
+            out.writeLong(mSizes.otherSize);
+            out.writeLong(mSizes.trashSize);
+            out.writeLong(mSizes.systemSize);
+            out.writeLong(mSizes.temporaryFilesSize);
+            out.writeLong(mUsedSize);
+            out.writeBoolean(mAppSizes != null);
+            if (mAppSizes != null) {
+                mAppSizes.writeTo(out);
+            }
+        }
+
+        static Snapshot readFrom(DataInputStream in) throws IOException {
+            final Snapshot snapshot = new Snapshot();
+            snapshot.mTimestamp = in.readLong();
+            snapshot.mHasSizes = in.readBoolean();
+            snapshot.mSizes.totalSize = in.readLong();
+            snapshot.mSizes.totalUsedSize = in.readLong();
+            snapshot.mSizes.gamesSize = in.readLong();
+            snapshot.mSizes.allAppsExceptGamesSize = in.readLong();
+            snapshot.mSizes.audioSize = in.readLong();
+            snapshot.mSizes.imagesSize = in.readLong();
+            snapshot.mSizes.videosSize = in.readLong();
+            snapshot.mSizes.documentsSize = in.readLong();
+            snapshot.mSizes.otherSize = in.readLong();
+            snapshot.mSizes.trashSize = in.readLong();
+            snapshot.mSizes.systemSize = in.readLong();
+            snapshot.mSizes.temporaryFilesSize = in.readLong();
+            snapshot.mUsedSize = in.readLong();
+            if (in.readBoolean()) {
+                snapshot.mAppSizes = AppSizeSnapshot.readFrom(in);
+            }
+            return snapshot;
+        }
+    }
+}
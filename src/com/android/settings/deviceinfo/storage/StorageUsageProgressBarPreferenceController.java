@@ -60,6 +60,10 @@ public class StorageUsageProgressBarPreferenceController extends BasePreferenceC
     /** Set StorageEntry to display. */
     public void setSelectedStorageEntry(StorageEntry storageEntry) {
         mStorageEntry = storageEntry;
+        if (storageEntry != null) {
+            mStorageCacheHelper = new StorageCacheHelper(mContext, storageEntry.getFsUuid(),
+                    UserHandle.myUserId());
+        }
         getStorageStatsAndUpdateUi();
     }
 
@@ -30,6 +30,8 @@ public class BatteryFlagParser implements BatteryInfo.BatteryDataParser, Battery
     private boolean mLastSet;
     private long mLength;
     private long mLastTime;
+    // Built from mData when it is first drawn after a change.
+    private SparseIntArray mColorArray;
 
     public BatteryFlagParser(int accent, boolean state2, int flag) {
         mAccentColor = accent;
@@ -50,7 +52,7 @@ public class BatteryFlagParser implements BatteryInfo.BatteryDataParser, Battery
     public void onDataPoint(long time, HistoryItem record) {
         boolean isSet = isSet(record);
         if (isSet != mLastSet) {
-            mData.put((int) time, isSet);
+            put(time, isSet);
             mLastSet = isSet;
         }
         mLastTime = time;
@@ -59,7 +61,7 @@ public class BatteryFlagParser implements BatteryInfo.BatteryDataParser, Battery
     @Override
     public void onDataGap() {
         if (mLastSet) {
-            mData.put((int) mLastTime, false);
+            put(mLastTime, false);
             mLastSet = false;
         }
     }
@@ -67,7 +69,7 @@ public class BatteryFlagParser implements BatteryInfo.BatteryDataParser, Battery
     @Override
     public void onParsingDone() {
         if (mLastSet) {
-            mData.put((int) mLastTime, false);
+            put(mLastTime, false);
             mLastSet = false;
         }
     }
@@ -84,11 +86,18 @@ public class BatteryFlagParser implements BatteryInfo.BatteryDataParser, Battery
 
     @Override
     public SparseIntArray getColorArray() {
-        SparseIntArray ret = new SparseIntArray();
-        for (int i = 0; i < mData.size(); i++) {
-            ret.put(mData.keyAt(i), getColor(mData.valueAt(i)));
+        if (mColorArray == null) {
+            mColorArray = new SparseIntArray(mData.size());
+            for (int i = 0; i < mData.size(); i++) {
+                mColorArray.put(mData.keyAt(i), getColor(mData.valueAt(i)));
+            }
         }
-        return ret;
+        return mColorArray;
+    }
+
+    private void put(long time, boolean isSet) {
+        mData.put((int) time, isSet);
+        mColorArray = null;
     }
 
     private int getColor(boolean b) {
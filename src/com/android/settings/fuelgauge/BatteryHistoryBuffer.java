@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import android.os.BatteryStats.HistoryItem;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.internal.os.BatteryStatsHistoryIterator;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+
+/**
+ * Reads the battery history in a single pass for {@link BatteryInfo#parseBatteryHistory}.
+ *
+ * <p>The chart bounds are only known once the whole history is read, so the fields of each record
+ * used by the {@link BatteryInfo.BatteryDataParser}s are kept in primitive arrays while the bounds
+ * are computed, and then replayed to all the parsers through a single reused
+ * {@link HistoryItem}. Only the command, times, states and battery fields are kept, the other
+ * fields of the replayed record are left at their defaults. The arrays are kept by a recycled
+ * buffer, held softly so that they are released under memory pressure once the screen is gone,
+ * and binding the history again while they are still around does not allocate them.
+ */
+final class BatteryHistoryBuffer {
+
+    @VisibleForTesting
+    static final int INITIAL_CAPACITY = 256;
+
+    private static final Object sPoolLock = new Object();
+    private static SoftReference<BatteryHistoryBuffer> sPool;
+
+    private final HistoryItem mRecord = new HistoryItem();
+
+    private int mSize;
+    private byte[] mCmd = new byte[INITIAL_CAPACITY];
+    private long[] mTime = new long[INITIAL_CAPACITY];
+    private long[] mCurrentTime = new long[INITIAL_CAPACITY];
+    private int[] mStates = new int[INITIAL_CAPACITY];
+    private int[] mStates2 = new int[INITIAL_CAPACITY];
+    private byte[] mBatteryLevel = new byte[INITIAL_CAPACITY];
+    private byte[] mBatteryStatus = new byte[INITIAL_CAPACITY];
+    private byte[] mBatteryHealth = new byte[INITIAL_CAPACITY];
+    private byte[] mBatteryPlugType = new byte[INITIAL_CAPACITY];
+    private short[] mBatteryTemperature = new short[INITIAL_CAPACITY];
+    private char[] mBatteryVoltage = new char[INITIAL_CAPACITY];
+
+    // The bounds of the history, computed while reading it.
+    private long mHistoryStart;
+    private long mStartWalltime;
+    private long mEndWalltime;
+    private long mLastRealtime;
+    private int mLastInteresting;
+
+    /** Returns a recycled buffer if there is one. */
+    static BatteryHistoryBuffer obtain() {
+        synchronized (sPoolLock) {
+            final BatteryHistoryBuffer buffer = sPool != null ? sPool.get() : null;
+            sPool = null;
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return new BatteryHistoryBuffer();
+    }
+
+    /** Gives back the buffer, it must not be used after this. */
+    void recycle() {
+        mSize = 0;
+        synchronized (sPoolLock) {
+            sPool = new SoftReference<>(this);
+        }
+    }
+
+    /** Reads all the records of {@param iterator} and computes the bounds of the history. */
+    void read(BatteryStatsHistoryIterator iterator) {
+        long startWalltime = 0;
+        long historyStart = 0;
+        long historyEnd = 0;
+        long lastWallTime = 0;
+        long lastRealtime = 0;
+        int lastInteresting = 0;
+        boolean first = true;
+        mSize = 0;
+        HistoryItem rec;
+        while ((rec = iterator.next()) != null) {
+            add(rec);
+            if (first) {
+                first = false;
+                historyStart = rec.time;
+            }
+            if (rec.cmd == HistoryItem.CMD_CURRENT_TIME || rec.cmd == HistoryItem.CMD_RESET) {
+                // If there is a ridiculously large jump in time, then we won't be
+                // able to create a good chart with that data, so just ignore the
+                // times we got before and pretend like our data extends back from
+                // the time we have now.
+                // Also, if we are getting a time change and we are less than 5 minutes
+                // since the start of the history real time, then also use this new
+                // time to compute the base time, since whatever time we had before is
+                // pretty much just noise.
+                if (rec.currentTime > (lastWallTime + (180 * 24 * 60 * 60 * 1000L))
+                        || rec.time < (historyStart + (5 * 60 * 1000L))) {
+                    startWalltime = 0;
+                }
+                lastWallTime = rec.currentTime;
+                lastRealtime = rec.time;
+                if (startWalltime == 0) {
+                    startWalltime = lastWallTime - (lastRealtime - historyStart);
+                }
+            }
+            if (rec.isDeltaData()) {
+                lastInteresting = mSize;
+                historyEnd = rec.time;
+            }
+        }
+        mHistoryStart = historyStart;
+        mStartWalltime = startWalltime;
+        mEndWalltime = lastWallTime + historyEnd - lastRealtime;
+        mLastRealtime = lastRealtime;
+        mLastInteresting = lastInteresting;
+    }
+
+    /** Feeds the records read up to the last data point to all the {@param parsers}. */
+    void replay(BatteryInfo.BatteryDataParser... parsers) {
+        final long startWalltime = mStartWalltime;
+        final long endWalltime = mEndWalltime;
+        for (int j = 0; j < parsers.length; j++) {
+            parsers[j].onParsingStarted(startWalltime, endWalltime);
+        }
+
+        if (endWalltime > startWalltime) {
+            long curWalltime = 0;
+            long lastRealtime = mLastRealtime;
+            for (int i = 0; i < mLastInteresting; i++) {
+                final HistoryItem rec = get(i);
+                if (rec.isDeltaData()) {
+                    curWalltime += rec.time - lastRealtime;
+                    lastRealtime = rec.time;
+                    long x = (curWalltime - startWalltime);
+                    if (x < 0) {
+                        x = 0;
+                    }
+                    for (int j = 0; j < parsers.length; j++) {
+                        parsers[j].onDataPoint(x, rec);
+                    }
+                } else {
+                    long lastWalltime = curWalltime;
+                    if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
+                            || rec.cmd == HistoryItem.CMD_RESET) {
+                        if (rec.currentTime >= startWalltime) {
+                            curWalltime = rec.currentTime;
+                        } else {
+                            curWalltime = startWalltime + (rec.time - mHistoryStart);
+                        }
+                        lastRealtime = rec.time;
+                    }
+
+                    if (rec.cmd != HistoryItem.CMD_OVERFLOW
+                            && (rec.cmd != HistoryItem.CMD_CURRENT_TIME
+                                    || Math.abs(lastWalltime - curWalltime) > (60 * 60 * 1000))) {
+                        for (int j = 0; j < parsers.length; j++) {
+                            parsers[j].onDataGap();
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int j = 0; j < parsers.length; j++) {
+            parsers[j].onParsingDone();
+        }
+    }
+
+    @VisibleForTesting
+    int size() {
+        return mSize;
+    }
+
+    @VisibleForTesting
+    int capacity() {
+        return mCmd.length;
+    }
+
+    private void add(HistoryItem rec) {
+        if (mSize == mCmd.length) {
+            grow();
+        }
+        final int i = mSize++;
+        mCmd[i] = rec.cmd;
+        mTime[i] = rec.time;
+        mCurrentTime[i] = rec.currentTime;
+        mStates[i] = rec.states;
+        mStates2[i] = rec.states2;
+        mBatteryLevel[i] = rec.batteryLevel;
+        mBatteryStatus[i] = rec.batteryStatus;
+        mBatteryHealth[i] = rec.batteryHealth;
+        mBatteryPlugType[i] = rec.batteryPlugType;
+        mBatteryTemperature[i] = rec.batteryTemperature;
+        mBatteryVoltage[i] = rec.batteryVoltage;
+    }
+
+    /**
+     * Returns the reused record filled with the fields kept for the record at {@param i}, its
+     * other fields are cleared.
+     */
+    private HistoryItem get(int i) {
+        final HistoryItem rec = mRecord;
+        rec.clear();
+        rec.cmd = mCmd[i];
+        rec.time = mTime[i];
+        rec.currentTime = mCurrentTime[i];
+        rec.states = mStates[i];
+        rec.states2 = mStates2[i];
+        rec.batteryLevel = mBatteryLevel[i];
+        rec.batteryStatus = mBatteryStatus[i];
+        rec.batteryHealth = mBatteryHealth[i];
+        rec.batteryPlugType = mBatteryPlugType[i];
+        rec.batteryTemperature = mBatteryTemperature[i];
+        rec.batteryVoltage = mBatteryVoltage[i];
+        return rec;
+    }
+
+    private void grow() {
+        final int capacity = mCmd.length * 2;
+        mCmd = Arrays.copyOf(mCmd, capacity);
+        mTime = Arrays.copyOf(mTime, capacity);
+        mCurrentTime = Arrays.copyOf(mCurrentTime, capacity);
+        mStates = Arrays.copyOf(mStates, capacity);
+        mStates2 = Arrays.copyOf(mStates2, capacity);
+        mBatteryLevel = Arrays.copyOf(mBatteryLevel, capacity);
+        mBatteryStatus = Arrays.copyOf(mBatteryStatus, capacity);
+        mBatteryHealth = Arrays.copyOf(mBatteryHealth, capacity);
+        mBatteryPlugType = Arrays.copyOf(mBatteryPlugType, capacity);
+        mBatteryTemperature = Arrays.copyOf(mBatteryTemperature, capacity);
+        mBatteryVoltage = Arrays.copyOf(mBatteryVoltage, capacity);
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batterytip;
+
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.instrumentation.LatencyTracker;
+import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the battery tip detectors of {@link BatteryTipLoader} concurrently.
+ *
+ * <p>Each detector has {@link #DETECTOR_TIMEOUT_MS} from the start of a run to report its tips. A
+ * slower detector is reported with its tips of a previous run with the same inputs, if any, and
+ * keeps running in the background. The {@link Listener} is told about the tips of all the
+ * detectors each time one of them finishes after the deadline.
+ *
+ * <p>The latency of each detector is reported through {@link LatencyTracker}.
+ *
+ * <p>The tips of a detector are cached for {@link #CACHE_WINDOW_MS} and reused by the next run
+ * with the same inputs, so that restarting the loader does not run all the detectors again. The
+ * cached tips are copies, since the tips shown on the screen are updated in place.
+ */
+public class BatteryTipDetectorRunner {
+    private static final String TAG = "BatteryTipDetectorRunner";
+
+    private static final int THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    @VisibleForTesting
+    static final long DETECTOR_TIMEOUT_MS = 2000;
+    @VisibleForTesting
+    static final long CACHE_WINDOW_MS = 10000;
+
+    private static BatteryTipDetectorRunner sInstance;
+
+    private final ThreadPoolExecutor mExecutor;
+    // The last result (key: detector name)
+    private final Map<String, Result> mResults = new ArrayMap<>();
+    private int mGeneration;
+    @VisibleForTesting
+    long mTimeoutMs = DETECTOR_TIMEOUT_MS;
+
+    /** Receives the tips of all the detectors when one of them finishes after the deadline. */
+    public interface Listener {
+        void onTipsDetected(List<BatteryTip> tips);
+    }
+
+    public static synchronized BatteryTipDetectorRunner getInstance() {
+        if (sInstance == null) {
+            sInstance = new BatteryTipDetectorRunner();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    BatteryTipDetectorRunner() {
+        mExecutor = new ThreadPoolExecutor(THREADS, THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs the {@param detectors} and returns the tips of the ones which finished before their
+     * deadline, or which have tips of a previous run with the same inputs, in order.
+     *
+     * @param inputs the values the detectors depend on, a cached result is only reused for the
+     *               same inputs
+     */
+    public List<BatteryTip> run(Object inputs, Map<String, Callable<List<BatteryTip>>> detectors,
+            @Nullable Listener listener) {
+        final long deadline = SystemClock.elapsedRealtime() + mTimeoutMs;
+        final int generation;
+        synchronized (this) {
+            generation = mGeneration;
+        }
+        final Run run = new Run(detectors.size(), listener);
+        final List<String> names = new ArrayList<>(detectors.keySet());
+        final List<Future<?>> futures = new ArrayList<>(detectors.size());
+        int index = 0;
+        for (Map.Entry<String, Callable<List<BatteryTip>>> detector : detectors.entrySet()) {
+            final int detectorIndex = index++;
+            final String name = detector.getKey();
+            final Result cachedResult = getCachedResult(name, inputs);
+            if (cachedResult != null) {
+                run.setTips(detectorIndex, copyOf(cachedResult.mTips));
+                futures.add(null);
+                continue;
+            }
+            futures.add(mExecutor.submit(() -> {
+                final long startTime = SystemClock.elapsedRealtime();
+                List<BatteryTip> tips;
+                try {
+                    tips = detector.getValue().call();
+                } catch (Exception e) {
+                    Log.e(TAG, "Failed to detect battery tips in " + name, e);
+                    tips = Collections.emptyList();
+                }
+                final long latencyMs = SystemClock.elapsedRealtime() - startTime;
+                Log.d(TAG, name + " took " + latencyMs + " ms");
+                LatencyTracker.record(TAG, name, latencyMs);
+                synchronized (this) {
+                    // Drop the tips detected before the last invalidation.
+                    if (generation == mGeneration) {
+                        mResults.put(name, new Result(inputs, copyOf(tips)));
+                    }
+                }
+                run.setTips(detectorIndex, tips);
+            }));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            final Future<?> future = futures.get(i);
+            if (future == null) {
+                continue;
+            }
+            try {
+                future.get(Math.max(0, deadline - SystemClock.elapsedRealtime()),
+                        TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                final Result lastResult = getLastResult(names.get(i), inputs);
+                if (lastResult != null) {
+                    Log.w(TAG, names.get(i) + " missed its deadline, its last tips are used");
+                    run.setLastTips(i, copyOf(lastResult.mTips));
+                } else {
+                    Log.w(TAG, names.get(i) + " missed its deadline");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Failed to run " + names.get(i), e);
+            }
+        }
+        return run.finish();
+    }
+
+    /** Drops the cached tips, for example once a tip is handled. */
+    public synchronized void invalidate() {
+        mGeneration++;
+        mResults.clear();
+    }
+
+    private synchronized Result getCachedResult(String name, Object inputs) {
+        final Result result = getLastResult(name, inputs);
+        if (result == null
+                || SystemClock.elapsedRealtime() - result.mTimestamp >= CACHE_WINDOW_MS) {
+            return null;
+        }
+        return result;
+    }
+
+    /** Returns the last result of the detector {@param name} for the same inputs, if any. */
+    private synchronized Result getLastResult(String name, Object inputs) {
+        final Result result = mResults.get(name);
+        if (result == null || !Objects.equals(result.mInputs, inputs)) {
+            return null;
+        }
+        return result;
+    }
+
+    /** Copies the {@param tips} through a parcel, so that they can be updated separately. */
+    private static List<BatteryTip> copyOf(List<BatteryTip> tips) {
+        final List<BatteryTip> copies = new ArrayList<>(tips.size());
+        for (BatteryTip tip : tips) {
+            final Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeParcelable(tip, 0 /* flags */);
+                parcel.setDataPosition(0);
+                copies.add(parcel.readParcelable(tip.getClass().getClassLoader()));
+            } finally {
+                parcel.recycle();
+            }
+        }
+        return copies;
+    }
+
+    private static final class Result {
+        final Object mInputs;
+        final List<BatteryTip> mTips;
+        final long mTimestamp;
+
+        Result(Object inputs, List<BatteryTip> tips) {
+            mInputs = inputs;
+            mTips = tips;
+            mTimestamp = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /** The tips reported by the detectors of a run so far. */
+    private static final class Run {
+        private final List<List<BatteryTip>> mTips;
+        @Nullable
+        private final Listener mListener;
+        private boolean mFinished;
+
+        Run(int size, @Nullable Listener listener) {
+            mTips = new ArrayList<>(Collections.nCopies(size, null));
+            mListener = listener;
+        }
+
+        void setTips(int index, List<BatteryTip> tips) {
+            final List<BatteryTip> allTips;
+            synchronized (this) {
+                mTips.set(index, tips);
+                if (!mFinished || mListener == null) {
+                    return;
+                }
+                allTips = getTips();
+            }
+            mListener.onTipsDetected(allTips);
+        }
+
+        /** Uses the {@param tips} of a previous run until the detector finishes. */
+        synchronized void setLastTips(int index, List<BatteryTip> tips) {
+            if (mTips.get(index) == null) {
+                mTips.set(index, tips);
+            }
+        }
+
+        /** Returns the tips reported so far, the detectors finishing later go to the listener. */
+        synchronized List<BatteryTip> finish() {
+            mFinished = true;
+            return getTips();
+        }
+
+        private List<BatteryTip> getTips() {
+            final List<BatteryTip> allTips = new ArrayList<>();
+            for (List<BatteryTip> tips : mTips) {
+                if (tips != null) {
+                    allTips.addAll(tips);
+                }
+            }
+            Collections.sort(allTips);
+            return allTips;
+        }
+    }
+}
@@ -18,10 +18,13 @@ package com.android.settings.fuelgauge.batterytip;
 
 import android.content.Context;
 import android.os.BatteryUsageStats;
+import android.util.ArrayMap;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.fuelgauge.BatteryInfo;
+import com.android.settings.fuelgauge.BatterySettingsFeatureProvider;
 import com.android.settings.fuelgauge.BatteryUtils;
 import com.android.settings.fuelgauge.batterytip.detectors.BatteryDefenderDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.HighUsageDetector;
@@ -29,45 +32,148 @@ import com.android.settings.fuelgauge.batterytip.detectors.IncompatibleChargerDe
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Loader to compute and return a battery tip list. It will always return a full length list even
- * though some tips may have state {@code BaseBatteryTip.StateType.INVISIBLE}.
+ * Loader to compute and return a battery tip list, sorted by {@link BatteryTip#compareTo}. Some
+ * tips may have state {@code BaseBatteryTip.StateType.INVISIBLE}. The list lacks the tips of a
+ * built-in detector which misses its deadline without tips of a previous run, so callers find
+ * tips by type or visibility, never by position.
+ *
+ * <p>The built-in detectors run concurrently through {@link BatteryTipDetectorRunner}, then the
+ * detectors of {@link BatterySettingsFeatureProvider} are added to their tips. When a detector
+ * finishes after the deadline, the tips are delivered again only if the first visible tip, the
+ * one shown and logged, changes.
  */
 public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
     private static final String TAG = "BatteryTipLoader";
 
     private BatteryUsageStats mBatteryUsageStats;
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    // The load and the first visible tip delivered last, only used on the main thread.
+    private int mDeliveredGeneration;
+    @Nullable private BatteryTip mDeliveredTip;
+    // The tips detected late for a load not delivered yet, only used on the main thread.
+    private int mPendingGeneration;
+    @Nullable private List<BatteryTip> mPendingTips;
 
     @VisibleForTesting BatteryUtils mBatteryUtils;
+    @VisibleForTesting BatteryTipDetectorRunner mDetectorRunner;
 
     public BatteryTipLoader(Context context, BatteryUsageStats batteryUsageStats) {
         super(context);
         mBatteryUsageStats = batteryUsageStats;
         mBatteryUtils = BatteryUtils.getInstance(context);
+        mDetectorRunner = BatteryTipDetectorRunner.getInstance();
     }
 
     @Override
     public List<BatteryTip> loadInBackground() {
-        final List<BatteryTip> tips = new ArrayList<>();
         final BatteryTipPolicy batteryTipPolicy = new BatteryTipPolicy(getContext());
         final BatteryInfo batteryInfo = mBatteryUtils.getBatteryInfo(TAG);
         final Context context = getContext().getApplicationContext();
 
-        tips.add(
+        final Map<String, Callable<List<BatteryTip>>> detectors = new ArrayMap<>();
+        detectors.put(HighUsageDetector.class.getSimpleName(), () -> Arrays.asList(
                 new HighUsageDetector(context, batteryTipPolicy, mBatteryUsageStats, batteryInfo)
-                        .detect());
-        tips.add(new BatteryDefenderDetector(batteryInfo, context).detect());
-        tips.add(new IncompatibleChargerDetector(context).detect());
+                        .detect()));
+        detectors.put(BatteryDefenderDetector.class.getSimpleName(), () -> Arrays.asList(
+                new BatteryDefenderDetector(batteryInfo, context).detect()));
+        detectors.put(IncompatibleChargerDetector.class.getSimpleName(), () -> Arrays.asList(
+                new IncompatibleChargerDetector(context).detect()));
+
+        final int generation = mGeneration.incrementAndGet();
+        final List<BatteryTip> tips = mDetectorRunner.run(getInputs(batteryInfo), detectors,
+                lateTips -> {
+                    final List<BatteryTip> allTips =
+                            addProviderTips(context, lateTips, batteryInfo, batteryTipPolicy);
+                    ThreadUtils.postOnMainThread(() -> deliverLateTips(generation, allTips));
+                });
+        return addProviderTips(context, tips, batteryInfo, batteryTipPolicy);
+    }
+
+    @Override
+    public void deliverResult(List<BatteryTip> tips) {
+        mDeliveredGeneration = mGeneration.get();
+        mDeliveredTip = getFirstVisibleTip(tips);
+        super.deliverResult(tips);
+        if (mPendingTips != null && mPendingGeneration == mDeliveredGeneration) {
+            final List<BatteryTip> pendingTips = mPendingTips;
+            mPendingTips = null;
+            deliverLateTips(mPendingGeneration, pendingTips);
+        }
+    }
+
+    /** Delivers the tips detected after the deadline if they change the tip shown. */
+    @VisibleForTesting
+    void deliverLateTips(int generation, List<BatteryTip> tips) {
+        if (generation != mGeneration.get() || !isStarted() || isAbandoned()) {
+            return;
+        }
+        if (mDeliveredGeneration != generation) {
+            // Wait for the result of the load, so that it doesn't replace the late tips.
+            mPendingGeneration = generation;
+            mPendingTips = tips;
+            return;
+        }
+        // Only the first visible tip is shown and logged.
+        if (!isSameTip(getFirstVisibleTip(tips), mDeliveredTip)) {
+            deliverResult(tips);
+        }
+    }
+
+    /** Returns the {@param tips} with the ones of {@link BatterySettingsFeatureProvider}. */
+    private static List<BatteryTip> addProviderTips(Context context, List<BatteryTip> tips,
+            BatteryInfo batteryInfo, BatteryTipPolicy batteryTipPolicy) {
+        final List<BatteryTip> allTips = new ArrayList<>(tips);
         FeatureFactory.getFeatureFactory()
                 .getBatterySettingsFeatureProvider()
-                .addBatteryTipDetector(context, tips, batteryInfo, batteryTipPolicy);
-        Collections.sort(tips);
-        return tips;
+                .addBatteryTipDetector(context, allTips, batteryInfo, batteryTipPolicy);
+        Collections.sort(allTips);
+        return allTips;
+    }
+
+    @Nullable
+    private static BatteryTip getFirstVisibleTip(@Nullable List<BatteryTip> tips) {
+        if (tips != null) {
+            for (BatteryTip tip : tips) {
+                if (tip.isVisible()) {
+                    return tip;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSameTip(@Nullable BatteryTip tip1, @Nullable BatteryTip tip2) {
+        if (tip1 == null || tip2 == null) {
+            return tip1 == tip2;
+        }
+        return tip1.getType() == tip2.getType() && tip1.getState() == tip2.getState();
+    }
+
+    /** The values the detectors depend on, their cached tips are reused while they are equal. */
+    private List<Object> getInputs(BatteryInfo batteryInfo) {
+        // The usage stats are compared by their time range, they are not kept by the cache.
+        final List<Object> inputs = new ArrayList<>();
+        if (mBatteryUsageStats != null) {
+            inputs.add(mBatteryUsageStats.getStatsStartTimestamp());
+            inputs.add(mBatteryUsageStats.getStatsEndTimestamp());
+        }
+        if (batteryInfo != null) {
+            inputs.addAll(Arrays.asList(batteryInfo.batteryLevel, batteryInfo.batteryStatus,
+                    batteryInfo.pluggedStatus, batteryInfo.discharging,
+                    batteryInfo.isBatteryDefender));
+        }
+        return inputs;
     }
 
     @Override
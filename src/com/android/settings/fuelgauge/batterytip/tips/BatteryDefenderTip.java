@@ -47,6 +47,7 @@ public class BatteryDefenderTip extends BatteryTip {
 
     private BatteryDefenderTip(Parcel in) {
         super(in);
+        mIsPluggedIn = in.readBoolean();
     }
 
     @Override
@@ -121,6 +122,12 @@ public class BatteryDefenderTip extends BatteryTip {
         cardPreference.buildContent();
     }
 
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        super.writeToParcel(dest, flags);
+        dest.writeBoolean(mIsPluggedIn);
+    }
+
     private void resumeCharging(Context context) {
         final Intent intent =
                 FeatureFactory.getFeatureFactory()
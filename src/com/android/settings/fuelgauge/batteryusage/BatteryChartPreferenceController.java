@@ -47,8 +47,6 @@ import com.android.settingslib.core.lifecycle.events.OnDestroy;
 import com.android.settingslib.core.lifecycle.events.OnResume;
 import com.android.settingslib.core.lifecycle.events.OnSaveInstanceState;
 
-import com.google.common.base.Objects;
-
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
@@ -207,8 +205,7 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
         }
         mDailyViewModel =
                 new BatteryChartViewModel(
-                        batteryLevelData.getDailyBatteryLevels().getLevels(),
-                        batteryLevelData.getDailyBatteryLevels().getTimestamps(),
+                        batteryLevelData.getDailyBatteryLevels().getLevelSeries(),
                         BatteryChartViewModel.AxisLabelPosition.CENTER_OF_TRAPEZOIDS,
                         mDailyChartLabelTextGenerator);
         mHourlyViewModels = new ArrayList<>();
@@ -216,8 +213,7 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
                 batteryLevelData.getHourlyBatteryLevelsPerDay()) {
             mHourlyViewModels.add(
                     new BatteryChartViewModel(
-                            hourlyBatteryLevelsPerDay.getLevels(),
-                            hourlyBatteryLevelsPerDay.getTimestamps(),
+                            hourlyBatteryLevelsPerDay.getLevelSeries(),
                             BatteryChartViewModel.AxisLabelPosition.BETWEEN_TRAPEZOIDS,
                             mHourlyChartLabelTextGenerator.updateSpecialCaseContext(
                                     batteryLevelData)));
@@ -608,26 +604,26 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
     private abstract class BaseLabelTextGenerator
             implements BatteryChartViewModel.LabelTextGenerator {
         @Override
-        public String generateContentDescription(List<Long> timestamps, int index) {
-            return generateFullText(timestamps, index);
+        public String generateContentDescription(BatteryLevelSeries levelSeries, int index) {
+            return generateFullText(levelSeries, index);
         }
 
         @Override
-        public String generateSlotBatteryLevelText(List<Integer> levels, int index) {
+        public String generateSlotBatteryLevelText(BatteryLevelSeries levelSeries, int index) {
             final int fromBatteryLevelIndex =
                     index == BatteryChartViewModel.SELECTED_INDEX_ALL ? 0 : index;
             final int toBatteryLevelIndex =
                     index == BatteryChartViewModel.SELECTED_INDEX_ALL
-                            ? levels.size() - 1
+                            ? levelSeries.size() - 1
                             : index + 1;
             return mPrefContext.getString(
                     R.string.battery_level_percentage,
-                    generateBatteryLevelText(levels.get(fromBatteryLevelIndex)),
-                    generateBatteryLevelText(levels.get(toBatteryLevelIndex)));
+                    generateBatteryLevelText(levelSeries.getLevel(fromBatteryLevelIndex)),
+                    generateBatteryLevelText(levelSeries.getLevel(toBatteryLevelIndex)));
         }
 
         @VisibleForTesting
-        private static String generateBatteryLevelText(Integer level) {
+        private static String generateBatteryLevelText(int level) {
             return Utils.formatPercentage(level);
         }
     }
@@ -635,15 +631,15 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
     private final class DailyChartLabelTextGenerator extends BaseLabelTextGenerator
             implements BatteryChartViewModel.LabelTextGenerator {
         @Override
-        public String generateText(List<Long> timestamps, int index) {
+        public String generateText(BatteryLevelSeries levelSeries, int index) {
             return ConvertUtils.utcToLocalTimeDayOfWeek(
-                    mContext, timestamps.get(index), /* isAbbreviation= */ true);
+                    mContext, levelSeries.getTimestamp(index), /* isAbbreviation= */ true);
         }
 
         @Override
-        public String generateFullText(List<Long> timestamps, int index) {
+        public String generateFullText(BatteryLevelSeries levelSeries, int index) {
             return ConvertUtils.utcToLocalTimeDayOfWeek(
-                    mContext, timestamps.get(index), /* isAbbreviation= */ false);
+                    mContext, levelSeries.getTimestamp(index), /* isAbbreviation= */ false);
         }
     }
 
@@ -654,14 +650,14 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
         private long mLatestTimestamp;
 
         @Override
-        public String generateText(List<Long> timestamps, int index) {
-            if (Objects.equal(timestamps.get(index), mLatestTimestamp)) {
+        public String generateText(BatteryLevelSeries levelSeries, int index) {
+            long timestamp = levelSeries.getTimestamp(index);
+            if (timestamp == mLatestTimestamp) {
                 // Replaces the latest timestamp text to "now".
                 return mContext.getString(R.string.battery_usage_chart_label_now);
             }
-            long timestamp = timestamps.get(index);
             boolean showMinute = false;
-            if (Objects.equal(timestamp, mFistTimestamp)) {
+            if (timestamp == mFistTimestamp) {
                 if (mIsStartTimestamp) {
                     showMinute = true;
                 } else {
@@ -674,23 +670,23 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
         }
 
         @Override
-        public String generateFullText(List<Long> timestamps, int index) {
-            return index == timestamps.size() - 1
-                    ? generateText(timestamps, index)
+        public String generateFullText(BatteryLevelSeries levelSeries, int index) {
+            return index == levelSeries.size() - 1
+                    ? generateText(levelSeries, index)
                     : mContext.getString(
                             R.string.battery_usage_timestamps_hyphen,
-                            generateText(timestamps, index),
-                            generateText(timestamps, index + 1));
+                            generateText(levelSeries, index),
+                            generateText(levelSeries, index + 1));
         }
 
         @Override
-        public String generateContentDescription(List<Long> timestamps, int index) {
-            return index == timestamps.size() - 1
-                    ? generateText(timestamps, index)
+        public String generateContentDescription(BatteryLevelSeries levelSeries, int index) {
+            return index == levelSeries.size() - 1
+                    ? generateText(levelSeries, index)
                     : mContext.getString(
                     R.string.battery_usage_timestamps_content_description,
-                    generateText(timestamps, index),
-                    generateText(timestamps, index + 1));
+                    generateText(levelSeries, index),
+                    generateText(levelSeries, index + 1));
         }
 
         HourlyChartLabelTextGenerator updateSpecialCaseContext(
@@ -21,7 +21,6 @@ import static com.android.settingslib.fuelgauge.BatteryStatus.BATTERY_LEVEL_UNKN
 
 import static java.lang.Math.abs;
 import static java.lang.Math.round;
-import static java.util.Objects.requireNonNull;
 
 import android.content.Context;
 import android.content.res.Resources;
@@ -630,14 +629,8 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
                     mHoveredIndex == index && isValidToDraw(mViewModel, mHoveredIndex);
             mTrapezoidPaint.setColor(isHoverState ? mTrapezoidHoverColor : trapezoidColor);
 
-            float leftTop =
-                    round(
-                            trapezoidBottom
-                                    - requireNonNull(mViewModel.getLevel(index)) * unitHeight);
-            float rightTop =
-                    round(
-                            trapezoidBottom
-                                    - requireNonNull(mViewModel.getLevel(index + 1)) * unitHeight);
+            float leftTop = round(trapezoidBottom - mViewModel.getLevel(index) * unitHeight);
+            float rightTop = round(trapezoidBottom - mViewModel.getLevel(index + 1) * unitHeight);
             // Mirror the shape of the trapezoid for RTL
             if (isRTL()) {
                 float temp = leftTop;
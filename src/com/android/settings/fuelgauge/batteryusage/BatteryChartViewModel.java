@@ -41,20 +41,19 @@ class BatteryChartViewModel {
 
     interface LabelTextGenerator {
         /** Generates the label text. The text may be abbreviated to save space. */
-        String generateText(List<Long> timestamps, int index);
+        String generateText(BatteryLevelSeries levelSeries, int index);
 
         /** Generates the full text for slot information. */
-        String generateFullText(List<Long> timestamps, int index);
+        String generateFullText(BatteryLevelSeries levelSeries, int index);
 
         /** Generates the full text for accessibility. */
-        String generateContentDescription(List<Long> timestamps, int index);
+        String generateContentDescription(BatteryLevelSeries levelSeries, int index);
 
         /** Generates the battery level text of a slot for accessibility.*/
-        String generateSlotBatteryLevelText(List<Integer> levels, int index);
+        String generateSlotBatteryLevelText(BatteryLevelSeries levelSeries, int index);
     }
 
-    private final List<Integer> mLevels;
-    private final List<Long> mTimestamps;
+    private final BatteryLevelSeries mLevelSeries;
     private final AxisLabelPosition mAxisLabelPosition;
     private final LabelTextGenerator mLabelTextGenerator;
     private final String[] mTexts;
@@ -70,15 +69,20 @@ class BatteryChartViewModel {
             @NonNull List<Long> timestamps,
             @NonNull AxisLabelPosition axisLabelPosition,
             @NonNull LabelTextGenerator labelTextGenerator) {
+        this(toLevelSeries(levels, timestamps), axisLabelPosition, labelTextGenerator);
+    }
+
+    BatteryChartViewModel(
+            @NonNull BatteryLevelSeries levelSeries,
+            @NonNull AxisLabelPosition axisLabelPosition,
+            @NonNull LabelTextGenerator labelTextGenerator) {
         Preconditions.checkArgument(
-                levels.size() == timestamps.size() && levels.size() >= MIN_LEVELS_DATA_SIZE,
+                levelSeries.size() >= MIN_LEVELS_DATA_SIZE,
                 String.format(
                         Locale.ENGLISH,
-                        "Invalid BatteryChartViewModel levels.size: %d, timestamps.size: %d.",
-                        levels.size(),
-                        timestamps.size()));
-        mLevels = levels;
-        mTimestamps = timestamps;
+                        "Invalid BatteryChartViewModel levelSeries.size: %d.",
+                        levelSeries.size()));
+        mLevelSeries = levelSeries;
         mAxisLabelPosition = axisLabelPosition;
         mLabelTextGenerator = labelTextGenerator;
         mTexts = new String[size()];
@@ -89,23 +93,23 @@ class BatteryChartViewModel {
     }
 
     public int size() {
-        return mLevels.size();
+        return mLevelSeries.size();
     }
 
-    public Integer getLevel(int index) {
-        return mLevels.get(index);
+    public int getLevel(int index) {
+        return mLevelSeries.getLevel(index);
     }
 
     public String getText(int index) {
         if (mTexts[index] == null) {
-            mTexts[index] = mLabelTextGenerator.generateText(mTimestamps, index);
+            mTexts[index] = mLabelTextGenerator.generateText(mLevelSeries, index);
         }
         return mTexts[index];
     }
 
     public String getFullText(int index) {
         if (mFullTexts[index] == null) {
-            mFullTexts[index] = mLabelTextGenerator.generateFullText(mTimestamps, index);
+            mFullTexts[index] = mLabelTextGenerator.generateFullText(mLevelSeries, index);
         }
         return mFullTexts[index];
     }
@@ -113,7 +117,7 @@ class BatteryChartViewModel {
     public String getContentDescription(int index) {
         if (mContentDescription[index] == null) {
             mContentDescription[index] =
-                    mLabelTextGenerator.generateContentDescription(mTimestamps, index);
+                    mLabelTextGenerator.generateContentDescription(mLevelSeries, index);
         }
         return mContentDescription[index];
     }
@@ -122,7 +126,7 @@ class BatteryChartViewModel {
         final int textIndex = index != SELECTED_INDEX_ALL ? index : size();
         if (mBatteryLevelTexts[textIndex] == null) {
             mBatteryLevelTexts[textIndex] =
-                    mLabelTextGenerator.generateSlotBatteryLevelText(mLevels, index);
+                    mLabelTextGenerator.generateSlotBatteryLevelText(mLevelSeries, index);
         }
         return mBatteryLevelTexts[textIndex];
     }
@@ -149,7 +153,7 @@ class BatteryChartViewModel {
 
     @Override
     public int hashCode() {
-        return Objects.hash(mLevels, mTimestamps, mSelectedIndex, mAxisLabelPosition);
+        return Objects.hash(mLevelSeries, mSelectedIndex, mAxisLabelPosition);
     }
 
     @Override
@@ -160,8 +164,7 @@ class BatteryChartViewModel {
             return false;
         }
         final BatteryChartViewModel batteryChartViewModel = (BatteryChartViewModel) other;
-        return Objects.equals(mLevels, batteryChartViewModel.mLevels)
-                && Objects.equals(mTimestamps, batteryChartViewModel.mTimestamps)
+        return Objects.equals(mLevelSeries, batteryChartViewModel.mLevelSeries)
                 && mAxisLabelPosition == batteryChartViewModel.mAxisLabelPosition
                 && mSelectedIndex == batteryChartViewModel.mSelectedIndex;
     }
@@ -175,12 +178,28 @@ class BatteryChartViewModel {
         }
 
         return new StringBuilder()
-                .append("levels: " + Objects.toString(mLevels))
-                .append(", timestamps: " + Objects.toString(mTimestamps))
+                .append("levels: " + Objects.toString(mLevelSeries.toLevelList()))
+                .append(", timestamps: " + Objects.toString(mLevelSeries.toTimestampList()))
                 .append(", texts: " + Arrays.toString(mTexts))
                 .append(", fullTexts: " + Arrays.toString(mFullTexts))
                 .append(", axisLabelPosition: " + mAxisLabelPosition)
                 .append(", selectedIndex: " + mSelectedIndex)
                 .toString();
     }
+
+    private static BatteryLevelSeries toLevelSeries(
+            @NonNull List<Integer> levels, @NonNull List<Long> timestamps) {
+        Preconditions.checkArgument(
+                levels.size() == timestamps.size(),
+                String.format(
+                        Locale.ENGLISH,
+                        "Invalid BatteryChartViewModel levels.size: %d, timestamps.size: %d.",
+                        levels.size(),
+                        timestamps.size()));
+        final BatteryLevelSeries.Builder builder = new BatteryLevelSeries.Builder(levels.size());
+        for (int index = 0; index < levels.size(); index++) {
+            builder.add(timestamps.get(index), levels.get(index));
+        }
+        return builder.build();
+    }
 }
@@ -29,7 +29,6 @@ import androidx.core.util.Preconditions;
 
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -45,25 +44,40 @@ public final class BatteryLevelData {
 
     /** A container for the battery timestamp and level data. */
     public static final class PeriodBatteryLevelData {
-        // The length of mTimestamps and mLevels must be the same. mLevels[index] might be null when
-        // there is no level data for the corresponding timestamp.
+        // The timestamps and levels are kept in mLevelSeries, the level might be
+        // BATTERY_LEVEL_UNKNOWN when there is no level data for the corresponding timestamp.
+        private final BatteryLevelSeries mLevelSeries;
         private final List<Long> mTimestamps;
-        private final List<Integer> mLevels;
         private final boolean mIsStartTimestamp;
+        // Boxed levels are only created for the callers still working on lists.
+        private List<Integer> mLevels;
 
         public PeriodBatteryLevelData(
                 @NonNull Map<Long, Integer> batteryLevelMap,
                 @NonNull List<Long> timestamps,
                 boolean isStartTimestamp) {
+            this(BatteryLevelSeries.of(batteryLevelMap), timestamps, isStartTimestamp);
+        }
+
+        PeriodBatteryLevelData(
+                @NonNull BatteryLevelSeries batteryLevelSeries,
+                @NonNull List<Long> timestamps,
+                boolean isStartTimestamp) {
+            final BatteryLevelSeries.Builder builder =
+                    new BatteryLevelSeries.Builder(timestamps.size());
+            for (int index = 0; index < timestamps.size(); index++) {
+                final long timestamp = timestamps.get(index);
+                builder.add(
+                        timestamp, batteryLevelSeries.findLevel(timestamp, BATTERY_LEVEL_UNKNOWN));
+            }
+            mLevelSeries = builder.build();
             mTimestamps = timestamps;
-            mLevels = new ArrayList<>(timestamps.size());
             mIsStartTimestamp = isStartTimestamp;
-            for (Long timestamp : timestamps) {
-                mLevels.add(
-                        batteryLevelMap.containsKey(timestamp)
-                                ? batteryLevelMap.get(timestamp)
-                                : BATTERY_LEVEL_UNKNOWN);
-            }
+        }
+
+        /** Gets the timestamp and level data without boxing, which is preferred over lists. */
+        public BatteryLevelSeries getLevelSeries() {
+            return mLevelSeries;
         }
 
         public List<Long> getTimestamps() {
@@ -71,6 +85,9 @@ public final class BatteryLevelData {
         }
 
         public List<Integer> getLevels() {
+            if (mLevels == null) {
+                mLevels = mLevelSeries.toLevelList();
+            }
             return mLevels;
         }
 
@@ -84,15 +101,17 @@ public final class BatteryLevelData {
                     Locale.ENGLISH,
                     "timestamps: %s; levels: %s",
                     Objects.toString(mTimestamps),
-                    Objects.toString(mLevels));
+                    Objects.toString(getLevels()));
         }
 
         private int getIndexByTimestamps(long startTimestamp, long endTimestamp) {
-            for (int index = 0; index < mTimestamps.size() - 1; index++) {
-                if (mTimestamps.get(index) <= startTimestamp
-                        && endTimestamp <= mTimestamps.get(index + 1)) {
-                    return index;
-                }
+            // The first slot whose end timestamp is no earlier than endTimestamp.
+            final int endIndex = mLevelSeries.ceilingIndex(endTimestamp);
+            final int index = Math.max(endIndex, 1) - 1;
+            if (endIndex >= 0
+                    && index < mLevelSeries.size() - 1
+                    && mLevelSeries.getTimestamp(index) <= startTimestamp) {
+                return index;
             }
             return BatteryChartViewModel.SELECTED_INDEX_INVALID;
         }
@@ -112,26 +131,31 @@ public final class BatteryLevelData {
     private final List<PeriodBatteryLevelData> mHourlyBatteryLevelsPerDay;
 
     public BatteryLevelData(@NonNull Map<Long, Integer> batteryLevelMap) {
-        final int mapSize = batteryLevelMap.size();
-        Preconditions.checkArgument(mapSize >= MIN_SIZE, "batteryLevelMap size:" + mapSize);
+        this(BatteryLevelSeries.of(batteryLevelMap));
+    }
 
-        final List<Long> timestampList = new ArrayList<>(batteryLevelMap.keySet());
-        Collections.sort(timestampList);
-        final long minTimestamp = timestampList.get(0);
+    BatteryLevelData(@NonNull BatteryLevelSeries batteryLevelSeries) {
+        final int seriesSize = batteryLevelSeries.size();
+        Preconditions.checkArgument(seriesSize >= MIN_SIZE, "batteryLevelMap size:" + seriesSize);
+
+        final long minTimestamp = batteryLevelSeries.getTimestamp(0);
+        final long maxTimestamp = batteryLevelSeries.getTimestamp(seriesSize - 1);
         final long sixDaysAgoTimestamp =
                 DatabaseUtils.getTimestampSixDaysAgo(sTestCalendar != null ? sTestCalendar : null);
         final boolean isStartTimestamp = minTimestamp > sixDaysAgoTimestamp;
-        final List<Long> dailyTimestamps = getDailyTimestamps(timestampList);
+        final List<Long> dailyTimestamps = getDailyTimestamps(minTimestamp, maxTimestamp);
         final List<List<Long>> hourlyTimestamps = getHourlyTimestamps(dailyTimestamps);
 
         mDailyBatteryLevels =
-                new PeriodBatteryLevelData(batteryLevelMap, dailyTimestamps, isStartTimestamp);
+                new PeriodBatteryLevelData(batteryLevelSeries, dailyTimestamps, isStartTimestamp);
         mHourlyBatteryLevelsPerDay = new ArrayList<>(hourlyTimestamps.size());
         for (int i = 0; i < hourlyTimestamps.size(); i++) {
             final List<Long> hourlyTimestampsPerDay = hourlyTimestamps.get(i);
             mHourlyBatteryLevelsPerDay.add(
                     new PeriodBatteryLevelData(
-                            batteryLevelMap, hourlyTimestampsPerDay, isStartTimestamp && i == 0));
+                            batteryLevelSeries,
+                            hourlyTimestampsPerDay,
+                            isStartTimestamp && i == 0));
         }
     }
 
@@ -200,9 +224,13 @@ public final class BatteryLevelData {
     static List<Long> getDailyTimestamps(final List<Long> timestampList) {
         Preconditions.checkArgument(
                 timestampList.size() >= MIN_SIZE, "timestampList size:" + timestampList.size());
+        return getDailyTimestamps(
+                timestampList.get(0), timestampList.get(timestampList.size() - 1));
+    }
+
+    private static List<Long> getDailyTimestamps(
+            final long startTimestamp, final long endTimestamp) {
         final List<Long> dailyTimestampList = new ArrayList<>();
-        final long startTimestamp = timestampList.get(0);
-        final long endTimestamp = timestampList.get(timestampList.size() - 1);
         for (long timestamp = startTimestamp;
                 timestamp < endTimestamp;
                 timestamp = TimestampUtils.getNextDayTimestamp(timestamp)) {
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import static com.android.settingslib.fuelgauge.BatteryStatus.BATTERY_LEVEL_UNKNOWN;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact battery level time series backed by parallel primitive arrays, which are sorted by
+ * timestamp in ascending order.
+ *
+ * <p>Lookups are binary searches over the timestamps, and iterating through {@link #size()} with
+ * {@link #getTimestamp(int)} and {@link #getLevel(int)} or {@link #forEach(RecordConsumer)} does
+ * not allocate or box any value.
+ */
+public final class BatteryLevelSeries {
+    static final BatteryLevelSeries EMPTY = new BatteryLevelSeries(new long[0], new int[0], 0);
+
+    /** Consumes a record of the series. */
+    public interface RecordConsumer {
+        /** Accepts the record in {@code index}. */
+        void accept(int index, long timestamp, int level);
+    }
+
+    private final long[] mTimestamps;
+    private final int[] mLevels;
+    private final int mSize;
+
+    private BatteryLevelSeries(final long[] timestamps, final int[] levels, final int size) {
+        mTimestamps = timestamps;
+        mLevels = levels;
+        mSize = size;
+    }
+
+    /** Gets the number of records. */
+    public int size() {
+        return mSize;
+    }
+
+    /** Whether there is no record. */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /** Gets the timestamp of the record in {@code index}. */
+    public long getTimestamp(final int index) {
+        checkIndex(index);
+        return mTimestamps[index];
+    }
+
+    /** Gets the battery level of the record in {@code index}. */
+    public int getLevel(final int index) {
+        checkIndex(index);
+        return mLevels[index];
+    }
+
+    /** Gets the index of the record with {@code timestamp}, or -1 if there is no such record. */
+    public int indexOf(final long timestamp) {
+        final int index = Arrays.binarySearch(mTimestamps, 0, mSize, timestamp);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Gets the index of the latest record no later than {@code timestamp}, or -1 if all the
+     * records are later than it.
+     */
+    public int floorIndex(final long timestamp) {
+        final int index = Arrays.binarySearch(mTimestamps, 0, mSize, timestamp);
+        return index >= 0 ? lastIndexOf(index) : -index - 2;
+    }
+
+    /**
+     * Gets the index of the earliest record no earlier than {@code timestamp}, or -1 if all the
+     * records are earlier than it.
+     */
+    public int ceilingIndex(final long timestamp) {
+        final int index = Arrays.binarySearch(mTimestamps, 0, mSize, timestamp);
+        if (index >= 0) {
+            return firstIndexOf(index);
+        }
+        final int insertionPoint = -index - 1;
+        return insertionPoint < mSize ? insertionPoint : -1;
+    }
+
+    /** Gets the battery level in {@code timestamp}, or {@code defaultLevel} if not found. */
+    public int findLevel(final long timestamp, final int defaultLevel) {
+        final int index = indexOf(timestamp);
+        return index >= 0 ? mLevels[index] : defaultLevel;
+    }
+
+    /** Performs the {@code consumer} for each record in ascending timestamp order. */
+    public void forEach(@NonNull final RecordConsumer consumer) {
+        for (int index = 0; index < mSize; index++) {
+            consumer.accept(index, mTimestamps[index], mLevels[index]);
+        }
+    }
+
+    /** Gets a boxed copy of the timestamps, only for the callers still working on lists. */
+    @NonNull
+    public List<Long> toTimestampList() {
+        final List<Long> timestamps = new ArrayList<>(mSize);
+        for (int index = 0; index < mSize; index++) {
+            timestamps.add(mTimestamps[index]);
+        }
+        return Collections.unmodifiableList(timestamps);
+    }
+
+    /** Gets a boxed copy of the battery levels, only for the callers still working on lists. */
+    @NonNull
+    public List<Integer> toLevelList() {
+        final List<Integer> levels = new ArrayList<>(mSize);
+        for (int index = 0; index < mSize; index++) {
+            levels.add(mLevels[index]);
+        }
+        return Collections.unmodifiableList(levels);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mSize;
+        for (int index = 0; index < mSize; index++) {
+            result = 31 * result + Long.hashCode(mTimestamps[index]);
+            result = 31 * result + mLevels[index];
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        } else if (!(other instanceof BatteryLevelSeries)) {
+            return false;
+        }
+        final BatteryLevelSeries series = (BatteryLevelSeries) other;
+        return mSize == series.mSize
+                && Arrays.equals(mTimestamps, 0, mSize, series.mTimestamps, 0, mSize)
+                && Arrays.equals(mLevels, 0, mSize, series.mLevels, 0, mSize);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("BatteryLevelSeries{size:" + mSize);
+        for (int index = 0; index < mSize; index++) {
+            builder.append(index == 0 ? "|" : ",")
+                    .append(ConvertUtils.utcToLocalTimeForLogging(mTimestamps[index]))
+                    .append("=")
+                    .append(mLevels[index]);
+        }
+        return builder.append("}").toString();
+    }
+
+    /** Creates the series from a timestamp to battery level map in any order. */
+    @NonNull
+    static BatteryLevelSeries of(@NonNull final Map<Long, Integer> batteryLevelMap) {
+        final long[] timestamps = new long[batteryLevelMap.size()];
+        int size = 0;
+        for (Long timestamp : batteryLevelMap.keySet()) {
+            timestamps[size++] = timestamp;
+        }
+        Arrays.sort(timestamps);
+        final Builder builder = new Builder(size);
+        for (long timestamp : timestamps) {
+            final Integer level = batteryLevelMap.get(timestamp);
+            builder.add(timestamp, level != null ? level : BATTERY_LEVEL_UNKNOWN);
+        }
+        return builder.build();
+    }
+
+    // Binary search may hit any of the records with the same timestamp.
+    private int firstIndexOf(int index) {
+        while (index > 0 && mTimestamps[index - 1] == mTimestamps[index]) {
+            index--;
+        }
+        return index;
+    }
+
+    private int lastIndexOf(int index) {
+        while (index < mSize - 1 && mTimestamps[index + 1] == mTimestamps[index]) {
+            index++;
+        }
+        return index;
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index=" + index + " size=" + mSize);
+        }
+    }
+
+    /** A builder to append the records in ascending timestamp order. */
+    public static final class Builder {
+        private long[] mTimestamps;
+        private int[] mLevels;
+        private int mSize;
+
+        public Builder() {
+            this(/* initialCapacity= */ 16);
+        }
+
+        public Builder(final int initialCapacity) {
+            final int capacity = Math.max(initialCapacity, 1);
+            mTimestamps = new long[capacity];
+            mLevels = new int[capacity];
+        }
+
+        /** Appends a record, the timestamp should not be earlier than the last one. */
+        @NonNull
+        public Builder add(final long timestamp, final int level) {
+            if (mSize > 0 && timestamp < mTimestamps[mSize - 1]) {
+                throw new IllegalArgumentException(
+                        "timestamp " + timestamp + " is earlier than " + mTimestamps[mSize - 1]);
+            }
+            if (mSize == mTimestamps.length) {
+                final int newCapacity = mSize * 2;
+                mTimestamps = Arrays.copyOf(mTimestamps, newCapacity);
+                mLevels = Arrays.copyOf(mLevels, newCapacity);
+            }
+            mTimestamps[mSize] = timestamp;
+            mLevels[mSize] = level;
+            mSize++;
+            return this;
+        }
+
+        /** Builds the {@link BatteryLevelSeries}, the builder should not be used after that. */
+        @NonNull
+        public BatteryLevelSeries build() {
+            return mSize == 0 ? EMPTY : new BatteryLevelSeries(mTimestamps, mLevels, mSize);
+        }
+    }
+}
@@ -134,7 +134,7 @@ public class BatteryUsageContentProvider extends ContentProvider {
             @Nullable String s1) {
         switch (sUriMatcher.match(uri)) {
             case BATTERY_STATE_CODE:
-                return getBatteryStates(uri);
+                return getBatteryStates(uri, strings);
             case APP_USAGE_EVENT_CODE:
                 return getAppUsageEvents(uri);
             case APP_USAGE_LATEST_TIMESTAMP_CODE:
@@ -234,20 +234,26 @@ public class BatteryUsageContentProvider extends ContentProvider {
         return cursor;
     }
 
-    private Cursor getBatteryStates(Uri uri) {
+    private Cursor getBatteryStates(Uri uri, @Nullable String[] projection) {
         final long queryTimestamp = getQueryTimestamp(uri);
+        final boolean isBatteryHistEntryProjection = isBatteryHistEntryProjection(projection);
         final long timestamp = mClock.millis();
         Cursor cursor = null;
         try {
-            cursor = mBatteryStateDao.getBatteryStatesAfter(queryTimestamp);
+            cursor =
+                    isBatteryHistEntryProjection
+                            ? mBatteryStateDao.getBatteryHistEntriesAfter(queryTimestamp)
+                            : mBatteryStateDao.getBatteryStatesAfter(queryTimestamp);
         } catch (RuntimeException e) {
             Log.e(TAG, "query() from:" + uri + " error:", e);
         }
         Log.d(
                 TAG,
                 String.format(
-                        "getBatteryStates() after %d in %d/ms",
-                        queryTimestamp, mClock.millis() - timestamp));
+                        "getBatteryStates() after %d projection=%b in %d/ms",
+                        queryTimestamp,
+                        isBatteryHistEntryProjection,
+                        mClock.millis() - timestamp));
         return cursor;
     }
 
@@ -318,6 +324,19 @@ public class BatteryUsageContentProvider extends ContentProvider {
         return cursor;
     }
 
+    // Whether all the projection columns are covered by the BatteryHistEntry columns.
+    private static boolean isBatteryHistEntryProjection(@Nullable String[] projection) {
+        if (projection == null || projection.length == 0) {
+            return false;
+        }
+        for (String column : projection) {
+            if (!DatabaseUtils.BATTERY_HIST_ENTRY_PROJECTION_SET.contains(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private List<Integer> getQueryBatteryEventTypes(Uri uri) {
         Log.d(TAG, "getQueryBatteryEventTypes from uri: " + uri);
         final String batteryEventTypesParameter =
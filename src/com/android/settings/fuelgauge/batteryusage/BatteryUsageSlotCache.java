@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Keeps the materialized hourly {@link BatteryUsageSlot} data in memory, so that only the slots
+ * newer than the last materialized one are loaded from the database on each battery usage load.
+ *
+ * <p>The cached slots are anchored to the last full charge timestamp. A different last full
+ * charge timestamp or an explicit {@link #invalidate()} (e.g. the database is cleared) drops all
+ * the cached slots and the next load falls back to the full load path.
+ *
+ * <p>Only the slot rows are cached, the daily and total usage maps are still generated from all
+ * the slots on each load. Every {@link #VERIFY_INTERVAL}th incremental load is checked against
+ * the full load path, and falls back to its result on mismatch.
+ */
+final class BatteryUsageSlotCache {
+    private static final String TAG = "BatteryUsageSlotCache";
+
+    private static final BatteryUsageSlotCache sInstance = new BatteryUsageSlotCache();
+
+    /** The number of incremental loads between two checks against the full load path. */
+    @VisibleForTesting static final int VERIFY_INTERVAL = 12;
+
+    /** Enables the correctness check against the full load path for each incremental load. */
+    @VisibleForTesting
+    static boolean sVerifyIncrementalLoad = Log.isLoggable(TAG, Log.VERBOSE);
+
+    /** Loads the {@link BatteryUsageSlot} data with start timestamp >= {@code queryTimestamp}. */
+    interface SlotLoader {
+        /** Loads the slot list sorted by start timestamp. */
+        List<BatteryUsageSlot> load(long queryTimestamp);
+    }
+
+    private final TreeMap<Long, BatteryUsageSlot> mSlotMap = new TreeMap<>();
+    private long mLastFullChargeTimestamp = -1L;
+    private int mIncrementalLoadCount = 0;
+
+    @VisibleForTesting
+    BatteryUsageSlotCache() {}
+
+    static BatteryUsageSlotCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Returns all the {@link BatteryUsageSlot} data after {@code lastFullChargeTimestamp} and
+     * {@code earliestTimestamp}, sorted by start timestamp.
+     *
+     * <p>The latest materialized slot is always reloaded since it may be replaced in the database.
+     */
+    @NonNull
+    synchronized List<BatteryUsageSlot> getSlots(
+            final long lastFullChargeTimestamp,
+            final long earliestTimestamp,
+            @NonNull final SlotLoader slotLoader) {
+        final long startTime = System.currentTimeMillis();
+        if (mLastFullChargeTimestamp != lastFullChargeTimestamp) {
+            mSlotMap.clear();
+            mLastFullChargeTimestamp = lastFullChargeTimestamp;
+            mIncrementalLoadCount = 0;
+        }
+        // Drops the expired slots, which are also out of the full load query range.
+        mSlotMap.headMap(earliestTimestamp).clear();
+
+        final boolean isIncremental = !mSlotMap.isEmpty();
+        final long queryTimestamp = isIncremental ? mSlotMap.lastKey() : lastFullChargeTimestamp;
+        final List<BatteryUsageSlot> loadedSlots = slotLoader.load(queryTimestamp);
+        if (loadedSlots != null) {
+            for (BatteryUsageSlot slot : loadedSlots) {
+                mSlotMap.put(slot.getStartTimestamp(), slot);
+            }
+        }
+        if (isIncremental
+                && (++mIncrementalLoadCount % VERIFY_INTERVAL == 0 || sVerifyIncrementalLoad)) {
+            verifyWithFullLoad(slotLoader);
+        }
+        Log.d(
+                TAG,
+                String.format(
+                        "getSlots() incremental=%b loaded=%d total=%d in %d/ms",
+                        isIncremental,
+                        loadedSlots == null ? 0 : loadedSlots.size(),
+                        mSlotMap.size(),
+                        System.currentTimeMillis() - startTime));
+        return new ArrayList<>(mSlotMap.values());
+    }
+
+    /** Drops all the cached slots. */
+    synchronized void invalidate() {
+        mSlotMap.clear();
+        mLastFullChargeTimestamp = -1L;
+        mIncrementalLoadCount = 0;
+    }
+
+    @VisibleForTesting
+    synchronized int size() {
+        return mSlotMap.size();
+    }
+
+    private void verifyWithFullLoad(final SlotLoader slotLoader) {
+        final List<BatteryUsageSlot> fullSlots = slotLoader.load(mLastFullChargeTimestamp);
+        final List<BatteryUsageSlot> cachedSlots = new ArrayList<>(mSlotMap.values());
+        if (fullSlots != null && fullSlots.equals(cachedSlots)) {
+            return;
+        }
+        Log.w(
+                TAG,
+                String.format(
+                        "incremental load mismatch: cached=%d full=%d, use full load result",
+                        cachedSlots.size(),
+                        fullSlots == null ? 0 : fullSlots.size()));
+        mSlotMap.clear();
+        if (fullSlots != null) {
+            for (BatteryUsageSlot slot : fullSlots) {
+                mSlotMap.put(slot.getStartTimestamp(), slot);
+            }
+        }
+    }
+}
@@ -18,9 +18,11 @@ package com.android.settings.fuelgauge.batteryusage;
 
 import android.app.usage.UsageEvents;
 import android.content.Context;
-import android.os.AsyncTask;
+import android.os.CancellationSignal;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Process;
+import android.os.Trace;
 import android.util.ArrayMap;
 import android.util.Log;
 
@@ -28,6 +30,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.settings.core.instrumentation.LatencyTracker;
 import com.android.settings.fuelgauge.PowerUsageFeatureProvider;
 import com.android.settings.overlay.FeatureFactory;
 
@@ -37,45 +40,64 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
- * Manages the async tasks to process battery and app usage data.
+ * Manages the loading pipeline to process battery and app usage data.
  *
- * <p>For now, there exist 4 async tasks in this manager:
+ * <p>For now, there exist 6 loading stages in this manager:
  *
  * <ul>
  *   <li>loadCurrentBatteryHistoryMap: load the latest battery history data from battery stats
  *       service.
  *   <li>loadCurrentAppUsageList: load the latest app usage data (last timestamp in database - now)
  *       from usage stats service.
+ *   <li>loadBatteryUsageSlotList: load the materialized battery usage slots from database.
  *   <li>loadDatabaseAppUsageList: load the necessary app usage data (after last full charge) from
  *       database
+ *   <li>loadPowerConnectionBatteryEventList: load the power connection events from database.
  *   <li>loadAndApplyBatteryMapFromServiceOnly: load all the battery history data (should be after
  *       last full charge) from battery stats service and apply the callback function directly
  * </ul>
  *
- * If there is battery level data, the first 3 async tasks will be started at the same time.
+ * If there is battery level data, the first 5 stages are independent and will be started at the
+ * same time on a bounded executor.
  *
  * <ul>
- *   <li>After loadCurrentAppUsageList and loadDatabaseAppUsageList complete, which means all app
- *       usage data has been loaded, the intermediate usage result will be generated.
- *   <li>Then after all 3 async tasks complete, the battery history data and app usage data will be
+ *   <li>After loadCurrentAppUsageList, loadDatabaseAppUsageList and
+ *       loadPowerConnectionBatteryEventList complete, which means all app usage data has been
+ *       loaded, the intermediate usage result will be generated.
+ *   <li>Then after all stages complete, the battery history data and app usage data will be
  *       combined to generate final data used for UI rendering. And the callback function will be
  *       applied.
  *   <li>If current user is locked, which means we couldn't get the latest app usage data, screen-on
  *       time will not be shown in the UI and empty screen-on time data will be returned.
  * </ul>
  *
- * If there is no battery level data, the 4th async task will be started only and the usage map
+ * If there is no battery level data, the last stage will be started only and the usage map
  * callback function will be applied directly to show the app list on the UI.
+ *
+ * <p>The whole pipeline can be stopped by {@link #cancel()}, e.g. when the page is destroyed.
  */
 public class DataProcessManager {
     private static final String TAG = "DataProcessManager";
     private static final List<BatteryEventType> POWER_CONNECTION_EVENTS =
             List.of(BatteryEventType.POWER_CONNECTED, BatteryEventType.POWER_DISCONNECTED);
+    private static final int MAX_LOADING_THREADS = 3;
+    private static final long LOADING_THREAD_KEEP_ALIVE_SECONDS = 10L;
+    // The managers started with each cancellation signal, released along with the signal.
+    private static final Map<CancellationSignal, List<DataProcessManager>> sManagersBySignal =
+            new WeakHashMap<>();
 
     // For testing only.
     @VisibleForTesting static Map<Long, Map<String, BatteryHistEntry>> sFakeBatteryHistoryMap;
+    @VisibleForTesting static Executor sTestExecutor;
 
     // Raw start timestamp with round to the nearest hour.
     private final long mRawStartTimestamp;
@@ -91,15 +113,20 @@ public class DataProcessManager {
     private final List<BatteryLevelData.PeriodBatteryLevelData> mHourlyBatteryLevelsPerDay;
     private final Map<Long, Map<String, BatteryHistEntry>> mBatteryHistoryMap;
 
-    private boolean mIsCurrentBatteryHistoryLoaded = false;
-    private boolean mIsCurrentAppUsageLoaded = false;
-    private boolean mIsDatabaseAppUsageLoaded = false;
-    private boolean mIsBatteryEventLoaded = false;
-    private boolean mIsBatteryUsageSlotLoaded = false;
+    private volatile boolean mIsCurrentBatteryHistoryLoaded = false;
+    private volatile boolean mIsCurrentAppUsageLoaded = false;
+    private volatile boolean mIsDatabaseAppUsageLoaded = false;
+    private volatile boolean mIsBatteryEventLoaded = false;
+    private volatile boolean mIsBatteryUsageSlotLoaded = false;
+    private volatile boolean mIsCanceled = false;
+    // Loaded in parallel, and merged into mAppUsageEventList in this order once both are loaded.
+    private volatile List<AppUsageEvent> mCurrentAppUsageList;
+    private volatile List<AppUsageEvent> mDatabaseAppUsageList;
     // Used to identify whether screen-on time data should be shown in the UI.
     private boolean mShowScreenOnTime = true;
     private Set<String> mSystemAppsPackageNames = null;
     private Set<Integer> mSystemAppsUids = null;
+    private volatile CompletableFuture<Void> mPipelineFuture;
 
     /**
      * The indexed {@link AppUsagePeriod} list data for each corresponding time slot.
@@ -112,7 +139,7 @@ public class DataProcessManager {
             mAppUsagePeriodMap;
 
     /**
-     * A callback listener when all the data is processed. This happens when all the async tasks
+     * A callback listener when all the data is processed. This happens when all the loading stages
      * complete and generate the final callback.
      */
     public interface OnBatteryDiffDataMapLoadedListener {
@@ -120,6 +147,31 @@ public class DataProcessManager {
         void onBatteryDiffDataMapLoaded(Map<Long, BatteryDiffData> batteryDiffDataMap);
     }
 
+    /** Lazily creates the bounded executor shared by all the loading pipelines. */
+    private static final class LoadingExecutorHolder {
+        private static final ThreadPoolExecutor EXECUTOR = createLoadingExecutor();
+
+        private static ThreadPoolExecutor createLoadingExecutor() {
+            final ThreadPoolExecutor executor =
+                    new ThreadPoolExecutor(
+                            MAX_LOADING_THREADS,
+                            MAX_LOADING_THREADS,
+                            LOADING_THREAD_KEEP_ALIVE_SECONDS,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(),
+                            runnable ->
+                                    new Thread(
+                                            () -> {
+                                                Process.setThreadPriority(
+                                                        Process.THREAD_PRIORITY_BACKGROUND);
+                                                runnable.run();
+                                            },
+                                            TAG));
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
     /** Constructor when there exists battery level data. */
     DataProcessManager(
             Context context,
@@ -162,34 +214,100 @@ public class DataProcessManager {
         mShowScreenOnTime = false;
     }
 
-    /** Starts the async tasks to load battery history data and app usage data. */
+    /** Starts the loading pipeline to load battery history data and app usage data. */
     public void start() {
-        // If we have battery level data, load the battery history map and app usage simultaneously.
-        if (mHourlyBatteryLevelsPerDay != null) {
-            if (mIsFromPeriodJob) {
-                mIsCurrentBatteryHistoryLoaded = true;
-                mIsCurrentAppUsageLoaded = true;
-                mIsBatteryUsageSlotLoaded = true;
-            } else {
-                // Loads the latest battery history data from the service.
-                loadCurrentBatteryHistoryMap();
-                // Loads the latest app usage list from the service.
-                loadCurrentAppUsageList();
-                // Loads existing battery usage slots from database.
-                if (mUserIdsSeries.isMainUserProfileOnly()) {
-                    loadBatteryUsageSlotList();
-                } else {
-                    mIsBatteryUsageSlotLoaded = true;
-                }
+        if (mIsCanceled) {
+            Log.d(TAG, "start() is ignored since the pipeline is canceled");
+            return;
+        }
+        // If there is no battery level data, only load the battery history data from service
+        // and show it as the app list directly.
+        if (mHourlyBatteryLevelsPerDay == null) {
+            mPipelineFuture =
+                    runStage(
+                                    "loadAndApplyBatteryMapFromServiceOnly",
+                                    this::loadBatteryMapFromService,
+                                    ArrayMap::new)
+                            .thenAccept(this::applyCallback);
+            if (mIsCanceled) {
+                mPipelineFuture.cancel(/* mayInterruptIfRunning= */ false);
             }
-            // Loads app usage list from database.
-            loadDatabaseAppUsageList();
-            // Loads the battery event list from database.
-            loadPowerConnectionBatteryEventList();
+            return;
+        }
+        // If we have battery level data, load the battery history map and app usage
+        // simultaneously. The stages are submitted in the same order as they are declared.
+        final CompletableFuture<Void> currentBatteryHistoryFuture;
+        final CompletableFuture<Void> currentAppUsageFuture;
+        final CompletableFuture<Void> batteryUsageSlotFuture;
+        if (mIsFromPeriodJob) {
+            mIsCurrentBatteryHistoryLoaded = true;
+            mIsCurrentAppUsageLoaded = true;
+            mIsBatteryUsageSlotLoaded = true;
+            currentBatteryHistoryFuture = CompletableFuture.completedFuture(null);
+            currentAppUsageFuture = CompletableFuture.completedFuture(null);
+            batteryUsageSlotFuture = CompletableFuture.completedFuture(null);
         } else {
-            // If there is no battery level data, only load the battery history data from service
-            // and show it as the app list directly.
-            loadAndApplyBatteryMapFromServiceOnly();
+            // Loads the latest battery history data from the service.
+            currentBatteryHistoryFuture =
+                    runStage("loadCurrentBatteryHistoryMap", this::loadCurrentBatteryHistoryMap);
+            // Loads the latest app usage list from the service.
+            currentAppUsageFuture =
+                    runStage("loadCurrentAppUsageList", this::loadCurrentAppUsageList);
+            // Loads existing battery usage slots from database.
+            if (mUserIdsSeries.isMainUserProfileOnly()) {
+                batteryUsageSlotFuture =
+                        runStage("loadBatteryUsageSlotList", this::loadBatteryUsageSlotList);
+            } else {
+                mIsBatteryUsageSlotLoaded = true;
+                batteryUsageSlotFuture = CompletableFuture.completedFuture(null);
+            }
+        }
+        // Loads app usage list from database.
+        final CompletableFuture<Void> databaseAppUsageFuture =
+                runStage("loadDatabaseAppUsageList", this::loadDatabaseAppUsageList);
+        // Loads the battery event list from database.
+        final CompletableFuture<Void> batteryEventFuture =
+                runStage(
+                        "loadPowerConnectionBatteryEventList",
+                        this::loadPowerConnectionBatteryEventList);
+
+        // Joins all the app usage data before processing them.
+        final CompletableFuture<Void> appUsageDataFuture =
+                CompletableFuture.allOf(
+                                currentAppUsageFuture, databaseAppUsageFuture, batteryEventFuture)
+                        .thenCompose(
+                                unused ->
+                                        runStage(
+                                                "processAppUsageData",
+                                                this::processAppUsageData));
+        // Joins all the data before generating the final data.
+        mPipelineFuture =
+                CompletableFuture.allOf(
+                                currentBatteryHistoryFuture,
+                                batteryUsageSlotFuture,
+                                appUsageDataFuture)
+                        .thenCompose(
+                                unused ->
+                                        runStage(
+                                                "generateFinalDataAndApplyCallback",
+                                                this::generateFinalData,
+                                                ArrayMap::new))
+                        .thenAccept(this::applyCallback);
+        if (mIsCanceled) {
+            mPipelineFuture.cancel(/* mayInterruptIfRunning= */ false);
+        }
+    }
+
+    /** Cancels the loading pipeline, the callback function will not be applied after that. */
+    public void cancel() {
+        if (mIsCanceled) {
+            return;
+        }
+        Log.d(TAG, "cancel the loading pipeline");
+        mIsCanceled = true;
+        final CompletableFuture<Void> pipelineFuture = mPipelineFuture;
+        if (pipelineFuture != null) {
+            pipelineFuture.cancel(/* mayInterruptIfRunning= */ false);
         }
     }
 
@@ -229,245 +347,176 @@ public class DataProcessManager {
         return mShowScreenOnTime;
     }
 
-    private void loadCurrentBatteryHistoryMap() {
-        new AsyncTask<Void, Void, Map<String, BatteryHistEntry>>() {
-            @Override
-            protected Map<String, BatteryHistEntry> doInBackground(Void... voids) {
-                final long startTime = System.currentTimeMillis();
-                // Loads the current battery usage data from the battery stats service.
-                final Map<String, BatteryHistEntry> currentBatteryHistoryMap =
-                        DataProcessor.getCurrentBatteryHistoryMapFromStatsService(mContext);
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute loadCurrentBatteryHistoryMap size=%d in %d/ms",
-                                currentBatteryHistoryMap.size(),
-                                (System.currentTimeMillis() - startTime)));
-                return currentBatteryHistoryMap;
-            }
+    @VisibleForTesting
+    boolean isCanceled() {
+        return mIsCanceled;
+    }
 
-            @Override
-            protected void onPostExecute(
-                    final Map<String, BatteryHistEntry> currentBatteryHistoryMap) {
-                if (mBatteryHistoryMap != null) {
-                    // Replaces the placeholder in mBatteryHistoryMap.
-                    for (Map.Entry<Long, Map<String, BatteryHistEntry>> mapEntry :
-                            mBatteryHistoryMap.entrySet()) {
-                        if (mapEntry.getValue()
-                                .containsKey(
-                                        DataProcessor.CURRENT_TIME_BATTERY_HISTORY_PLACEHOLDER)) {
-                            mapEntry.setValue(currentBatteryHistoryMap);
-                        }
-                    }
-                }
-                mIsCurrentBatteryHistoryLoaded = true;
-                tryToGenerateFinalDataAndApplyCallback();
-            }
-        }.execute();
+    @VisibleForTesting
+    CompletableFuture<Void> getPipelineFuture() {
+        return mPipelineFuture;
     }
 
-    private void loadCurrentAppUsageList() {
-        new AsyncTask<Void, Void, List<AppUsageEvent>>() {
-            @Override
-            @Nullable
-            protected List<AppUsageEvent> doInBackground(Void... voids) {
-                if (!shouldLoadAppUsageData()) {
-                    Log.d(TAG, "not loadCurrentAppUsageList");
-                    return null;
-                }
-                final long startTime = System.currentTimeMillis();
-                // Loads the current battery usage data from the battery stats service.
-                final Map<Long, UsageEvents> usageEventsMap = new ArrayMap<>();
-                for (int userId : mUserIdsSeries.getVisibleUserIds()) {
-                    final UsageEvents usageEventsForCurrentUser =
-                            DataProcessor.getCurrentAppUsageEventsForUser(
-                                    mContext, mUserIdsSeries, userId, mRawStartTimestamp);
-                    if (usageEventsForCurrentUser == null) {
-                        // If fail to load usage events for any user, return null directly and
-                        // screen-on time will not be shown in the UI.
-                        if (userId == mUserIdsSeries.getCurrentUserId()) {
-                            return null;
-                        }
-                    } else {
-                        usageEventsMap.put(Long.valueOf(userId), usageEventsForCurrentUser);
-                    }
+    private Void loadCurrentBatteryHistoryMap() {
+        // Loads the current battery usage data from the battery stats service.
+        final Map<String, BatteryHistEntry> currentBatteryHistoryMap =
+                DataProcessor.getCurrentBatteryHistoryMapFromStatsService(mContext);
+        Log.d(
+                TAG,
+                String.format(
+                        "execute loadCurrentBatteryHistoryMap size=%d",
+                        currentBatteryHistoryMap.size()));
+        if (mBatteryHistoryMap != null) {
+            // Replaces the placeholder in mBatteryHistoryMap.
+            for (Map.Entry<Long, Map<String, BatteryHistEntry>> mapEntry :
+                    mBatteryHistoryMap.entrySet()) {
+                if (mapEntry.getValue()
+                        .containsKey(DataProcessor.CURRENT_TIME_BATTERY_HISTORY_PLACEHOLDER)) {
+                    mapEntry.setValue(currentBatteryHistoryMap);
                 }
-                final List<AppUsageEvent> appUsageEventList =
-                        DataProcessor.generateAppUsageEventListFromUsageEvents(
-                                mContext, usageEventsMap);
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute loadCurrentAppUsageList size=%d in %d/ms",
-                                appUsageEventList.size(),
-                                (System.currentTimeMillis() - startTime)));
-                return appUsageEventList;
             }
+        }
+        mIsCurrentBatteryHistoryLoaded = true;
+        return null;
+    }
 
-            @Override
-            protected void onPostExecute(final List<AppUsageEvent> currentAppUsageList) {
-                if (currentAppUsageList == null || currentAppUsageList.isEmpty()) {
-                    Log.d(TAG, "currentAppUsageList is null or empty");
-                } else {
-                    mAppUsageEventList.addAll(currentAppUsageList);
-                }
-                mIsCurrentAppUsageLoaded = true;
-                tryToProcessAppUsageData();
-            }
-        }.execute();
+    private Void loadCurrentAppUsageList() {
+        final List<AppUsageEvent> currentAppUsageList = getCurrentAppUsageList();
+        if (currentAppUsageList == null || currentAppUsageList.isEmpty()) {
+            Log.d(TAG, "currentAppUsageList is null or empty");
+        } else {
+            mCurrentAppUsageList = currentAppUsageList;
+        }
+        mIsCurrentAppUsageLoaded = true;
+        return null;
     }
 
-    private void loadDatabaseAppUsageList() {
-        new AsyncTask<Void, Void, List<AppUsageEvent>>() {
-            @Override
-            protected List<AppUsageEvent> doInBackground(Void... voids) {
-                if (!shouldLoadAppUsageData()) {
-                    Log.d(TAG, "not loadDatabaseAppUsageList");
+    @Nullable
+    private List<AppUsageEvent> getCurrentAppUsageList() {
+        if (!shouldLoadAppUsageData()) {
+            Log.d(TAG, "not loadCurrentAppUsageList");
+            return null;
+        }
+        // Loads the current battery usage data from the battery stats service.
+        final Map<Long, UsageEvents> usageEventsMap = new ArrayMap<>();
+        for (int userId : mUserIdsSeries.getVisibleUserIds()) {
+            final UsageEvents usageEventsForCurrentUser =
+                    DataProcessor.getCurrentAppUsageEventsForUser(
+                            mContext, mUserIdsSeries, userId, mRawStartTimestamp);
+            if (usageEventsForCurrentUser == null) {
+                // If fail to load usage events for any user, return null directly and screen-on
+                // time will not be shown in the UI.
+                if (userId == mUserIdsSeries.getCurrentUserId()) {
                     return null;
                 }
-                final long startTime = System.currentTimeMillis();
-                // Loads the app usage data from the database.
-                final List<AppUsageEvent> appUsageEventList =
-                        DatabaseUtils.getAppUsageEventForUsers(
-                                mContext,
-                                Calendar.getInstance(),
-                                mUserIdsSeries.getVisibleUserIds(),
-                                mRawStartTimestamp);
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute loadDatabaseAppUsageList size=%d in %d/ms",
-                                appUsageEventList.size(),
-                                (System.currentTimeMillis() - startTime)));
-                return appUsageEventList;
-            }
-
-            @Override
-            protected void onPostExecute(final List<AppUsageEvent> databaseAppUsageList) {
-                if (databaseAppUsageList == null || databaseAppUsageList.isEmpty()) {
-                    Log.d(TAG, "databaseAppUsageList is null or empty");
-                } else {
-                    mAppUsageEventList.addAll(databaseAppUsageList);
-                }
-                mIsDatabaseAppUsageLoaded = true;
-                tryToProcessAppUsageData();
-            }
-        }.execute();
-    }
-
-    private void loadPowerConnectionBatteryEventList() {
-        new AsyncTask<Void, Void, List<BatteryEvent>>() {
-            @Override
-            protected List<BatteryEvent> doInBackground(Void... voids) {
-                final long startTime = System.currentTimeMillis();
-                // Loads the battery event data from the database.
-                final List<BatteryEvent> batteryEventList =
-                        DatabaseUtils.getBatteryEvents(
-                                mContext,
-                                Calendar.getInstance(),
-                                mRawStartTimestamp,
-                                POWER_CONNECTION_EVENTS);
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute loadPowerConnectionBatteryEventList size=%d in %d/ms",
-                                batteryEventList.size(), (System.currentTimeMillis() - startTime)));
-                return batteryEventList;
+            } else {
+                usageEventsMap.put(Long.valueOf(userId), usageEventsForCurrentUser);
             }
+        }
+        final List<AppUsageEvent> appUsageEventList =
+                DataProcessor.generateAppUsageEventListFromUsageEvents(mContext, usageEventsMap);
+        Log.d(
+                TAG,
+                String.format(
+                        "execute loadCurrentAppUsageList size=%d", appUsageEventList.size()));
+        return appUsageEventList;
+    }
 
-            @Override
-            protected void onPostExecute(final List<BatteryEvent> batteryEventList) {
-                if (batteryEventList == null || batteryEventList.isEmpty()) {
-                    Log.d(TAG, "batteryEventList is null or empty");
-                } else {
-                    mBatteryEventList.clear();
-                    mBatteryEventList.addAll(batteryEventList);
-                }
-                mIsBatteryEventLoaded = true;
-                tryToProcessAppUsageData();
-            }
-        }.execute();
-    }
-
-    private void loadBatteryUsageSlotList() {
-        new AsyncTask<Void, Void, List<BatteryUsageSlot>>() {
-            @Override
-            protected List<BatteryUsageSlot> doInBackground(Void... voids) {
-                final long startTime = System.currentTimeMillis();
-                // Loads the battery usage slot data from the database.
-                final List<BatteryUsageSlot> batteryUsageSlotList =
-                        DatabaseUtils.getBatteryUsageSlots(
-                                mContext, Calendar.getInstance(), mLastFullChargeTimestamp);
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute loadBatteryUsageSlotList size=%d in %d/ms",
-                                batteryUsageSlotList.size(),
-                                (System.currentTimeMillis() - startTime)));
-                return batteryUsageSlotList;
-            }
+    private Void loadDatabaseAppUsageList() {
+        List<AppUsageEvent> databaseAppUsageList = null;
+        if (shouldLoadAppUsageData()) {
+            // Loads the app usage data from the database.
+            databaseAppUsageList =
+                    DatabaseUtils.getAppUsageEventForUsers(
+                            mContext,
+                            Calendar.getInstance(),
+                            mUserIdsSeries.getVisibleUserIds(),
+                            mRawStartTimestamp);
+        } else {
+            Log.d(TAG, "not loadDatabaseAppUsageList");
+        }
+        if (databaseAppUsageList == null || databaseAppUsageList.isEmpty()) {
+            Log.d(TAG, "databaseAppUsageList is null or empty");
+        } else {
+            Log.d(
+                    TAG,
+                    String.format(
+                            "execute loadDatabaseAppUsageList size=%d",
+                            databaseAppUsageList.size()));
+            mDatabaseAppUsageList = databaseAppUsageList;
+        }
+        mIsDatabaseAppUsageLoaded = true;
+        return null;
+    }
 
-            @Override
-            protected void onPostExecute(final List<BatteryUsageSlot> batteryUsageSlotList) {
-                if (batteryUsageSlotList == null || batteryUsageSlotList.isEmpty()) {
-                    Log.d(TAG, "batteryUsageSlotList is null or empty");
-                } else {
-                    mBatteryUsageSlotList.clear();
-                    mBatteryUsageSlotList.addAll(batteryUsageSlotList);
-                }
-                mIsBatteryUsageSlotLoaded = true;
-                tryToGenerateFinalDataAndApplyCallback();
-            }
-        }.execute();
-    }
-
-    private void loadAndApplyBatteryMapFromServiceOnly() {
-        new AsyncTask<Void, Void, Map<Long, BatteryDiffData>>() {
-            @Override
-            protected Map<Long, BatteryDiffData> doInBackground(Void... voids) {
-                final long startTime = System.currentTimeMillis();
-                final Map<Long, BatteryDiffData> batteryDiffDataMap =
-                        DataProcessor.getBatteryDiffDataMapFromStatsService(
-                                mContext,
-                                mUserIdsSeries,
-                                mRawStartTimestamp,
-                                getSystemAppsPackageNames(),
-                                getSystemAppsUids());
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute loadAndApplyBatteryMapFromServiceOnly size=%d in %d/ms",
-                                batteryDiffDataMap.size(),
-                                (System.currentTimeMillis() - startTime)));
-                return batteryDiffDataMap;
+    private Void loadPowerConnectionBatteryEventList() {
+        // Loads the battery event data from the database.
+        final List<BatteryEvent> batteryEventList =
+                DatabaseUtils.getBatteryEvents(
+                        mContext,
+                        Calendar.getInstance(),
+                        mRawStartTimestamp,
+                        POWER_CONNECTION_EVENTS);
+        if (batteryEventList == null || batteryEventList.isEmpty()) {
+            Log.d(TAG, "batteryEventList is null or empty");
+        } else {
+            synchronized (mBatteryEventList) {
+                mBatteryEventList.clear();
+                mBatteryEventList.addAll(batteryEventList);
             }
+        }
+        mIsBatteryEventLoaded = true;
+        return null;
+    }
 
-            @Override
-            protected void onPostExecute(final Map<Long, BatteryDiffData> batteryDiffDataMap) {
-                // Post results back to main thread to refresh UI.
-                if (mHandler != null && mCallbackFunction != null) {
-                    mHandler.post(
-                            () -> {
-                                mCallbackFunction.onBatteryDiffDataMapLoaded(batteryDiffDataMap);
-                            });
-                }
+    private Void loadBatteryUsageSlotList() {
+        // Loads the battery usage slot data newer than the last materialized slot from the
+        // database, and merges them with the cached ones.
+        final Calendar calendar = Calendar.getInstance();
+        final List<BatteryUsageSlot> batteryUsageSlotList =
+                BatteryUsageSlotCache.getInstance()
+                        .getSlots(
+                                mLastFullChargeTimestamp,
+                                DatabaseUtils.getTimestampSixDaysAgo(calendar),
+                                queryTimestamp ->
+                                        DatabaseUtils.getBatteryUsageSlots(
+                                                mContext, calendar, queryTimestamp));
+        if (batteryUsageSlotList == null || batteryUsageSlotList.isEmpty()) {
+            Log.d(TAG, "batteryUsageSlotList is null or empty");
+        } else {
+            synchronized (mBatteryUsageSlotList) {
+                mBatteryUsageSlotList.clear();
+                mBatteryUsageSlotList.addAll(batteryUsageSlotList);
             }
-        }.execute();
+        }
+        mIsBatteryUsageSlotLoaded = true;
+        return null;
     }
 
-    private void tryToProcessAppUsageData() {
-        // Ignore processing the data if any required data is not loaded.
-        if (!mIsCurrentAppUsageLoaded || !mIsDatabaseAppUsageLoaded || !mIsBatteryEventLoaded) {
-            return;
-        }
-        processAppUsageData();
-        tryToGenerateFinalDataAndApplyCallback();
+    private Map<Long, BatteryDiffData> loadBatteryMapFromService() {
+        return DataProcessor.getBatteryDiffDataMapFromStatsService(
+                mContext,
+                mUserIdsSeries,
+                mRawStartTimestamp,
+                getSystemAppsPackageNames(),
+                getSystemAppsUids());
     }
 
-    private void processAppUsageData() {
+    private Void processAppUsageData() {
+        // Merges the app usage lists in a fixed order, since they may be loaded in any order.
+        synchronized (mAppUsageEventList) {
+            if (mCurrentAppUsageList != null) {
+                mAppUsageEventList.addAll(mCurrentAppUsageList);
+            }
+            if (mDatabaseAppUsageList != null) {
+                mAppUsageEventList.addAll(mDatabaseAppUsageList);
+            }
+            Collections.sort(
+                    mAppUsageEventList, DataProcessor.APP_USAGE_EVENT_TIMESTAMP_COMPARATOR);
+        }
         // If there is no screen-on time data, no need to process.
         if (!mShowScreenOnTime) {
-            return;
+            return null;
         }
         // Generates the indexed AppUsagePeriod list data for each corresponding time slot for
         // further use.
@@ -477,72 +526,101 @@ public class DataProcessManager {
                         mHourlyBatteryLevelsPerDay,
                         mAppUsageEventList,
                         mBatteryEventList);
+        return null;
+    }
+
+    private Map<Long, BatteryDiffData> generateFinalData() {
+        final Map<Long, BatteryDiffData> batteryDiffDataMap = new ArrayMap<>();
+        for (BatteryUsageSlot batteryUsageSlot : mBatteryUsageSlotList) {
+            batteryDiffDataMap.put(
+                    batteryUsageSlot.getStartTimestamp(),
+                    ConvertUtils.convertToBatteryDiffData(
+                            mContext,
+                            batteryUsageSlot,
+                            getSystemAppsPackageNames(),
+                            getSystemAppsUids()));
+        }
+        batteryDiffDataMap.putAll(
+                DataProcessor.getBatteryDiffDataMap(
+                        mContext,
+                        mUserIdsSeries,
+                        mHourlyBatteryLevelsPerDay,
+                        mBatteryHistoryMap,
+                        mAppUsagePeriodMap,
+                        getSystemAppsPackageNames(),
+                        getSystemAppsUids()));
+        // Process the reattributate data for the following two cases:
+        // 1) the latest slot for the timestamp "until now"
+        // 2) walkthrough all BatteryDiffData again to handle "re-compute" case
+        final PowerUsageFeatureProvider featureProvider =
+                FeatureFactory.getFeatureFactory().getPowerUsageFeatureProvider();
+        featureProvider.processBatteryReattributeData(
+                mContext, batteryDiffDataMap, mBatteryEventList, mIsFromPeriodJob);
+        Log.d(
+                TAG,
+                String.format(
+                        "execute generateFinalDataAndApplyCallback size=%d",
+                        batteryDiffDataMap.size()));
+        return batteryDiffDataMap;
     }
 
-    private void tryToGenerateFinalDataAndApplyCallback() {
-        // Ignore processing the data if any required data is not loaded.
-        if (!mIsCurrentBatteryHistoryLoaded
-                || !mIsCurrentAppUsageLoaded
-                || !mIsDatabaseAppUsageLoaded
-                || !mIsBatteryEventLoaded
-                || !mIsBatteryUsageSlotLoaded) {
+    private void applyCallback(@Nullable final Map<Long, BatteryDiffData> batteryDiffDataMap) {
+        // Post results back to main thread to refresh UI.
+        if (mIsCanceled || batteryDiffDataMap == null) {
             return;
         }
-        generateFinalDataAndApplyCallback();
-    }
-
-    private synchronized void generateFinalDataAndApplyCallback() {
-        new AsyncTask<Void, Void, Map<Long, BatteryDiffData>>() {
-            @Override
-            protected Map<Long, BatteryDiffData> doInBackground(Void... voids) {
-                final long startTime = System.currentTimeMillis();
-                final Map<Long, BatteryDiffData> batteryDiffDataMap = new ArrayMap<>();
-                for (BatteryUsageSlot batteryUsageSlot : mBatteryUsageSlotList) {
-                    batteryDiffDataMap.put(
-                            batteryUsageSlot.getStartTimestamp(),
-                            ConvertUtils.convertToBatteryDiffData(
-                                    mContext,
-                                    batteryUsageSlot,
-                                    getSystemAppsPackageNames(),
-                                    getSystemAppsUids()));
-                }
-                batteryDiffDataMap.putAll(
-                        DataProcessor.getBatteryDiffDataMap(
-                                mContext,
-                                mUserIdsSeries,
-                                mHourlyBatteryLevelsPerDay,
-                                mBatteryHistoryMap,
-                                mAppUsagePeriodMap,
-                                getSystemAppsPackageNames(),
-                                getSystemAppsUids()));
-                // Process the reattributate data for the following two cases:
-                // 1) the latest slot for the timestamp "until now"
-                // 2) walkthrough all BatteryDiffData again to handle "re-compute" case
-                final PowerUsageFeatureProvider featureProvider =
-                        FeatureFactory.getFeatureFactory()
-                                .getPowerUsageFeatureProvider();
-                featureProvider.processBatteryReattributeData(
-                        mContext, batteryDiffDataMap, mBatteryEventList, mIsFromPeriodJob);
-
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute generateFinalDataAndApplyCallback size=%d in %d/ms",
-                                batteryDiffDataMap.size(), System.currentTimeMillis() - startTime));
-                return batteryDiffDataMap;
-            }
+        if (mHandler != null && mCallbackFunction != null) {
+            mHandler.post(
+                    () -> {
+                        if (!mIsCanceled) {
+                            mCallbackFunction.onBatteryDiffDataMapLoaded(batteryDiffDataMap);
+                        }
+                    });
+        }
+    }
 
-            @Override
-            protected void onPostExecute(final Map<Long, BatteryDiffData> batteryDiffDataMap) {
-                // Post results back to main thread to refresh UI.
-                if (mHandler != null && mCallbackFunction != null) {
-                    mHandler.post(
-                            () -> {
-                                mCallbackFunction.onBatteryDiffDataMapLoaded(batteryDiffDataMap);
-                            });
-                }
-            }
-        }.execute();
+    /**
+     * Runs a loading stage on the shared executor. The stage is skipped and completes with {@code
+     * null} if the pipeline is canceled.
+     */
+    private CompletableFuture<Void> runStage(final String stageName, final Supplier<Void> stage) {
+        return runStage(stageName, stage, () -> null);
+    }
+
+    /**
+     * Runs a loading stage on the shared executor, and traces and reports its latency. The stage
+     * completes with the {@code fallback} result if it fails, so that the callback is still
+     * applied, or with {@code null} if the pipeline is canceled.
+     */
+    private <T> CompletableFuture<T> runStage(
+            final String stageName, final Supplier<T> stage, final Supplier<T> fallback) {
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    if (mIsCanceled) {
+                        return null;
+                    }
+                    Trace.beginSection(TAG + "#" + stageName);
+                    final long startTime = System.currentTimeMillis();
+                    try {
+                        return stage.get();
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "failed to run stage " + stageName, e);
+                        return fallback.get();
+                    } finally {
+                        Trace.endSection();
+                        logStageLatency(stageName, System.currentTimeMillis() - startTime);
+                    }
+                },
+                getExecutor());
+    }
+
+    private void logStageLatency(final String stageName, final long latencyMs) {
+        Log.d(TAG, String.format("execute %s in %d/ms", stageName, latencyMs));
+        LatencyTracker.record(TAG, stageName, latencyMs);
+    }
+
+    private static Executor getExecutor() {
+        return sTestExecutor != null ? sTestExecutor : LoadingExecutorHolder.EXECUTOR;
     }
 
     // Whether we should load app usage data from service or database.
@@ -585,6 +663,28 @@ public class DataProcessManager {
             final UserIdsSeries userIdsSeries,
             final boolean isFromPeriodJob,
             final OnBatteryDiffDataMapLoadedListener onBatteryUsageMapLoadedListener) {
+        return getBatteryLevelData(
+                context,
+                handler,
+                userIdsSeries,
+                isFromPeriodJob,
+                onBatteryUsageMapLoadedListener,
+                /* cancellationSignal= */ null);
+    }
+
+    /**
+     * @return Returns battery level data and start async task to compute battery diff usage data
+     *     and load app labels + icons. Returns null if the input is invalid or not having at least
+     *     2 hours data. The started loading pipeline is canceled with {@code cancellationSignal}.
+     */
+    @Nullable
+    public static BatteryLevelData getBatteryLevelData(
+            Context context,
+            @Nullable Handler handler,
+            final UserIdsSeries userIdsSeries,
+            final boolean isFromPeriodJob,
+            final OnBatteryDiffDataMapLoadedListener onBatteryUsageMapLoadedListener,
+            @Nullable final CancellationSignal cancellationSignal) {
         final long start = System.currentTimeMillis();
         final long lastFullChargeTime = DatabaseUtils.getLastFullChargeTime(context);
         final List<BatteryEvent> batteryLevelRecordEvents =
@@ -606,7 +706,8 @@ public class DataProcessManager {
                         startTimestamp,
                         lastFullChargeTime,
                         isFromPeriodJob,
-                        onBatteryUsageMapLoadedListener);
+                        onBatteryUsageMapLoadedListener,
+                        cancellationSignal);
         Log.d(
                 TAG,
                 String.format(
@@ -626,7 +727,8 @@ public class DataProcessManager {
             final long startTimestamp,
             final long lastFullChargeTime,
             final boolean isFromPeriodJob,
-            final OnBatteryDiffDataMapLoadedListener onBatteryDiffDataMapLoadedListener) {
+            final OnBatteryDiffDataMapLoadedListener onBatteryDiffDataMapLoadedListener,
+            @Nullable final CancellationSignal cancellationSignal) {
         final long currentTime = System.currentTimeMillis();
         Log.d(
                 TAG,
@@ -650,9 +752,10 @@ public class DataProcessManager {
                                 lastFullChargeTime);
         if (batteryHistoryMap == null || batteryHistoryMap.isEmpty()) {
             Log.d(TAG, "batteryHistoryMap is null in getPeriodBatteryLevelData()");
-            new DataProcessManager(
-                            context, handler, userIdsSeries, onBatteryDiffDataMapLoadedListener)
-                    .start();
+            startDataProcessManager(
+                    new DataProcessManager(
+                            context, handler, userIdsSeries, onBatteryDiffDataMapLoadedListener),
+                    cancellationSignal);
             return null;
         }
 
@@ -680,15 +783,17 @@ public class DataProcessManager {
                 DataProcessor.getLevelDataThroughProcessedHistoryMap(
                         context, processedBatteryHistoryMap);
         if (batteryLevelData == null) {
-            new DataProcessManager(
-                            context, handler, userIdsSeries, onBatteryDiffDataMapLoadedListener)
-                    .start();
+            startDataProcessManager(
+                    new DataProcessManager(
+                            context, handler, userIdsSeries, onBatteryDiffDataMapLoadedListener),
+                    cancellationSignal);
             Log.d(TAG, "getBatteryLevelData() returns null");
             return null;
         }
 
         // Start the async task to compute diff usage data and load labels and icons.
-        new DataProcessManager(
+        startDataProcessManager(
+                new DataProcessManager(
                         context,
                         handler,
                         userIdsSeries,
@@ -697,9 +802,47 @@ public class DataProcessManager {
                         lastFullChargeTime,
                         onBatteryDiffDataMapLoadedListener,
                         batteryLevelData.getHourlyBatteryLevelsPerDay(),
-                        processedBatteryHistoryMap)
-                .start();
+                        processedBatteryHistoryMap),
+                cancellationSignal);
 
         return batteryLevelData;
     }
+
+    private static void startDataProcessManager(
+            final DataProcessManager dataProcessManager,
+            @Nullable final CancellationSignal cancellationSignal) {
+        if (cancellationSignal != null) {
+            if (cancellationSignal.isCanceled()) {
+                return;
+            }
+            final boolean isFirstManager;
+            synchronized (sManagersBySignal) {
+                if (cancellationSignal.isCanceled()) {
+                    return;
+                }
+                List<DataProcessManager> managers = sManagersBySignal.get(cancellationSignal);
+                isFirstManager = managers == null;
+                if (isFirstManager) {
+                    managers = new ArrayList<>();
+                    sManagersBySignal.put(cancellationSignal, managers);
+                }
+                managers.add(dataProcessManager);
+            }
+            // A signal only keeps one listener, which cancels all the managers started with it.
+            if (isFirstManager) {
+                cancellationSignal.setOnCancelListener(() -> cancelManagers(cancellationSignal));
+            }
+        }
+        dataProcessManager.start();
+    }
+
+    private static void cancelManagers(final CancellationSignal cancellationSignal) {
+        final List<DataProcessManager> managers;
+        synchronized (sManagersBySignal) {
+            managers = sManagersBySignal.remove(cancellationSignal);
+        }
+        if (managers != null) {
+            managers.forEach(DataProcessManager::cancel);
+        }
+    }
 }
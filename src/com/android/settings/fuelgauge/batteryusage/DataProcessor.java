@@ -60,6 +60,7 @@ import com.google.common.base.Preconditions;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
@@ -426,7 +427,11 @@ public final class DataProcessor {
         final long currentTime = getCurrentTimeMillis();
         final List<Long> expectedTimestampList = getTimestampSlots(rawTimestampList, currentTime);
         interpolateHistory(
-                context, rawTimestampList, expectedTimestampList, batteryHistoryMap, resultMap);
+                context,
+                toLongArray(rawTimestampList),
+                expectedTimestampList,
+                batteryHistoryMap,
+                resultMap);
         Log.d(
                 TAG,
                 String.format(
@@ -444,12 +449,14 @@ public final class DataProcessor {
         if (processedBatteryHistoryMap.size() < MIN_DAILY_DATA_SIZE) {
             return null;
         }
-        Map<Long, Integer> batteryLevelMap = new ArrayMap<>();
-        for (Long timestamp : processedBatteryHistoryMap.keySet()) {
-            batteryLevelMap.put(
-                    timestamp, getLevel(context, processedBatteryHistoryMap, timestamp));
+        final long[] timestamps = toLongArray(processedBatteryHistoryMap.keySet());
+        Arrays.sort(timestamps);
+        final BatteryLevelSeries.Builder builder =
+                new BatteryLevelSeries.Builder(timestamps.length);
+        for (long timestamp : timestamps) {
+            builder.add(timestamp, getLevel(context, processedBatteryHistoryMap, timestamp));
         }
-        return new BatteryLevelData(batteryLevelMap);
+        return new BatteryLevelData(builder.build());
     }
 
     /**
@@ -498,20 +505,25 @@ public final class DataProcessor {
 
     @VisibleForTesting
     static long[] findNearestTimestamp(final List<Long> timestamps, final long target) {
-        final long[] results = new long[] {Long.MIN_VALUE, Long.MAX_VALUE};
-        // Searches the nearest lower and upper timestamp value.
-        timestamps.forEach(
-                timestamp -> {
-                    if (timestamp <= target && timestamp > results[0]) {
-                        results[0] = timestamp;
-                    }
-                    if (timestamp >= target && timestamp < results[1]) {
-                        results[1] = timestamp;
-                    }
-                });
+        final long[] sortedTimestamps = toLongArray(timestamps);
+        Arrays.sort(sortedTimestamps);
+        return findNearestTimestamp(sortedTimestamps, target);
+    }
+
+    /** Searches the nearest lower and upper timestamp value in the sorted timestamps. */
+    static long[] findNearestTimestamp(final long[] sortedTimestamps, final long target) {
+        final long[] results = new long[2];
+        final int index = Arrays.binarySearch(sortedTimestamps, target);
+        if (index >= 0) {
+            results[0] = sortedTimestamps[index];
+            results[1] = sortedTimestamps[index];
+            return results;
+        }
         // Uses zero value to represent invalid searching result.
-        results[0] = results[0] == Long.MIN_VALUE ? 0 : results[0];
-        results[1] = results[1] == Long.MAX_VALUE ? 0 : results[1];
+        final int insertionPoint = -index - 1;
+        results[0] = insertionPoint > 0 ? sortedTimestamps[insertionPoint - 1] : 0;
+        results[1] =
+                insertionPoint < sortedTimestamps.length ? sortedTimestamps[insertionPoint] : 0;
         return results;
     }
 
@@ -1109,11 +1121,11 @@ public final class DataProcessor {
      */
     private static void interpolateHistory(
             Context context,
-            final List<Long> rawTimestampList,
+            final long[] rawTimestamps,
             final List<Long> expectedTimestampSlots,
             final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap,
             final Map<Long, Map<String, BatteryHistEntry>> resultMap) {
-        if (rawTimestampList.isEmpty() || expectedTimestampSlots.isEmpty()) {
+        if (rawTimestamps.length == 0 || expectedTimestampSlots.isEmpty()) {
             return;
         }
         final int expectedTimestampSlotsSize = expectedTimestampSlots.size();
@@ -1125,7 +1137,7 @@ public final class DataProcessor {
             interpolateHistoryForSlot(
                     context,
                     expectedTimestampSlots.get(index),
-                    rawTimestampList,
+                    rawTimestamps,
                     batteryHistoryMap,
                     resultMap);
         }
@@ -1137,10 +1149,10 @@ public final class DataProcessor {
     private static void interpolateHistoryForSlot(
             Context context,
             final long currentSlot,
-            final List<Long> rawTimestampList,
+            final long[] rawTimestamps,
             final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap,
             final Map<Long, Map<String, BatteryHistEntry>> resultMap) {
-        final long[] nearestTimestamps = findNearestTimestamp(rawTimestampList, currentSlot);
+        final long[] nearestTimestamps = findNearestTimestamp(rawTimestamps, currentSlot);
         final long lowerTimestamp = nearestTimestamps[0];
         final long upperTimestamp = nearestTimestamps[1];
         // Case 1: upper timestamp is zero since scheduler is delayed!
@@ -1233,7 +1245,7 @@ public final class DataProcessor {
         resultMap.put(currentSlot, newHistEntryMap);
     }
 
-    private static Integer getLevel(
+    private static int getLevel(
             Context context,
             final Map<Long, Map<String, BatteryHistEntry>> processedBatteryHistoryMap,
             final long timestamp) {
@@ -1873,6 +1885,15 @@ public final class DataProcessor {
         return v2 > v1 ? v2 - v1 : 0;
     }
 
+    private static long[] toLongArray(final Collection<Long> values) {
+        final long[] results = new long[values.size()];
+        int index = 0;
+        for (Long value : values) {
+            results[index++] = value;
+        }
+        return results;
+    }
+
     private static long getCurrentTimeMillis() {
         return sTestCurrentTimeMillis > 0 ? sTestCurrentTimeMillis : System.currentTimeMillis();
     }
@@ -103,6 +103,21 @@ public final class DatabaseUtils {
     /** A path name for app usage latest timestamp query. */
     public static final String APP_USAGE_LATEST_TIMESTAMP_PATH = "appUsageLatestTimestamp";
 
+    /** The battery state columns used by {@link BatteryHistEntry}. */
+    public static final String[] BATTERY_HIST_ENTRY_PROJECTION =
+            new String[] {
+                BatteryHistEntry.KEY_UID,
+                BatteryHistEntry.KEY_USER_ID,
+                BatteryHistEntry.KEY_PACKAGE_NAME,
+                BatteryHistEntry.KEY_TIMESTAMP,
+                BatteryHistEntry.KEY_CONSUMER_TYPE,
+                BatteryHistEntry.KEY_IS_FULL_CHARGE_CYCLE_START,
+                BatteryHistEntry.KEY_BATTERY_INFORMATION
+            };
+
+    static final Set<String> BATTERY_HIST_ENTRY_PROJECTION_SET =
+            Set.of(BATTERY_HIST_ENTRY_PROJECTION);
+
     /** Key for query parameter timestamp used in BATTERY_CONTENT_URI */
     public static final String QUERY_KEY_TIMESTAMP = "timestamp";
 
@@ -357,21 +372,37 @@ public final class DatabaseUtils {
                         .appendQueryParameter(QUERY_KEY_TIMESTAMP, Long.toString(queryTimestamp))
                         .build();
 
-        final List<BatteryHistEntry> batteryHistEntryList =
-                loadListFromContentProvider(
-                        context, batteryStateUri, cursor -> new BatteryHistEntry(cursor));
-        final Map<Long, Map<String, BatteryHistEntry>> resultMap = new ArrayMap();
-        for (final BatteryHistEntry entry : batteryHistEntryList) {
-            final long timestamp = entry.mTimestamp;
-            final String key = entry.getKey();
-            Map batteryHistEntryMap = resultMap.get(timestamp);
-            // Creates new one if there is no corresponding map.
-            if (batteryHistEntryMap == null) {
-                batteryHistEntryMap = new ArrayMap();
-                resultMap.put(timestamp, batteryHistEntryMap);
-            }
-            batteryHistEntryMap.put(key, entry);
-        }
+        // Streams the entries into the result map directly without an intermediate list, and
+        // only queries the columns used by BatteryHistEntry.
+        final Map<Long, Map<String, BatteryHistEntry>> resultMap =
+                loadFromContentProvider(
+                        context,
+                        batteryStateUri,
+                        BATTERY_HIST_ENTRY_PROJECTION,
+                        new ArrayMap<>(),
+                        cursor -> {
+                            final Map<Long, Map<String, BatteryHistEntry>> historyMap =
+                                    new ArrayMap<>();
+                            long lastTimestamp = INVALID_TIMESTAMP;
+                            Map<String, BatteryHistEntry> batteryHistEntryMap = null;
+                            while (cursor.moveToNext()) {
+                                final BatteryHistEntry entry = new BatteryHistEntry(cursor);
+                                // The cursor is sorted by timestamp, only looks up the map when
+                                // the timestamp is changed.
+                                if (batteryHistEntryMap == null
+                                        || entry.mTimestamp != lastTimestamp) {
+                                    lastTimestamp = entry.mTimestamp;
+                                    batteryHistEntryMap = historyMap.get(lastTimestamp);
+                                    // Creates new one if there is no corresponding map.
+                                    if (batteryHistEntryMap == null) {
+                                        batteryHistEntryMap = new ArrayMap<>();
+                                        historyMap.put(lastTimestamp, batteryHistEntryMap);
+                                    }
+                                }
+                                batteryHistEntryMap.put(entry.getKey(), entry);
+                            }
+                            return historyMap;
+                        });
 
         if (resultMap == null || resultMap.isEmpty()) {
             Log.d(TAG, "getBatteryHistoryMap() returns empty or null");
@@ -429,6 +460,7 @@ public final class DatabaseUtils {
                         database.batteryEventDao().clearAll();
                         database.batteryStateDao().clearAll();
                         database.batteryUsageSlotDao().clearAll();
+                        BatteryUsageSlotCache.getInstance().invalidate();
                         database.batteryReattributeDao().clearAll();
                     } catch (RuntimeException e) {
                         Log.e(TAG, "clearAll() failed", e);
@@ -447,6 +479,7 @@ public final class DatabaseUtils {
                         database.batteryEventDao().clearAllAfter(startTimestamp);
                         database.batteryStateDao().clearAllAfter(startTimestamp);
                         database.batteryUsageSlotDao().clearAllAfter(startTimestamp);
+                        BatteryUsageSlotCache.getInstance().invalidate();
                     } catch (RuntimeException e) {
                         Log.e(TAG, "clearAllAfter() failed", e);
                     }
@@ -879,6 +912,16 @@ public final class DatabaseUtils {
     @VisibleForTesting
     static <T> T loadFromContentProvider(
             Context context, Uri uri, T defaultValue, Function<Cursor, T> cursorReader) {
+        return loadFromContentProvider(
+                context, uri, /* projection= */ null, defaultValue, cursorReader);
+    }
+
+    private static <T> T loadFromContentProvider(
+            Context context,
+            Uri uri,
+            String[] projection,
+            T defaultValue,
+            Function<Cursor, T> cursorReader) {
         // Transfer work profile to user profile. Please see b/297036263.
         context = getParentContext(context);
         if (context == null) {
@@ -887,7 +930,7 @@ public final class DatabaseUtils {
         try (Cursor cursor =
                 sFakeSupplier != null
                         ? sFakeSupplier.get()
-                        : context.getContentResolver().query(uri, null, null, null)) {
+                        : context.getContentResolver().query(uri, projection, null, null)) {
             return (cursor == null || cursor.getCount() == 0)
                     ? defaultValue
                     : cursorReader.apply(cursor);
@@ -23,6 +23,7 @@ import android.database.ContentObserver;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.CancellationSignal;
 import android.os.Handler;
 import android.os.Looper;
 import android.provider.SearchIndexableResource;
@@ -72,6 +73,7 @@ public class PowerUsageAdvanced extends PowerUsageBase {
     private Map<Integer, Map<Integer, BatteryDiffData>> mBatteryUsageMap;
 
     private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final CancellationSignal mCancellationSignal = new CancellationSignal();
     private final Handler mHandler = new Handler(Looper.getMainLooper());
     private final ContentObserver mBatteryObserver =
             new ContentObserver(mHandler) {
@@ -109,6 +111,7 @@ public class PowerUsageAdvanced extends PowerUsageBase {
             BatteryEntry.clearUidCache();
         }
         mExecutor.shutdown();
+        mCancellationSignal.cancel();
     }
 
     @Override
@@ -506,7 +509,8 @@ public class PowerUsageAdvanced extends PowerUsageBase {
                             mHandler,
                             new UserIdsSeries(getContext(), /* isNonUIRequest= */ false),
                             /* isFromPeriodJob= */ false,
-                            PowerUsageAdvanced.this::onBatteryDiffDataMapUpdate);
+                            PowerUsageAdvanced.this::onBatteryDiffDataMapUpdate,
+                            mCancellationSignal);
                 }
             };
         }
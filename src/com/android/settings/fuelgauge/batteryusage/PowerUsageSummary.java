@@ -39,6 +39,7 @@ import com.android.settings.fuelgauge.BatteryInfo;
 import com.android.settings.fuelgauge.BatteryInfoLoader;
 import com.android.settings.fuelgauge.BatteryUtils;
 import com.android.settings.fuelgauge.PowerUsageFeatureProvider;
+import com.android.settings.fuelgauge.batterytip.BatteryTipDetectorRunner;
 import com.android.settings.fuelgauge.batterytip.BatteryTipLoader;
 import com.android.settings.fuelgauge.batterytip.BatteryTipPreferenceController;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
@@ -265,6 +266,7 @@ public class PowerUsageSummary extends PowerUsageBase
 
     @Override
     public void onBatteryTipHandled(BatteryTip batteryTip) {
+        BatteryTipDetectorRunner.getInstance().invalidate();
         restartBatteryTipLoader();
     }
 
@@ -45,6 +45,16 @@ public interface BatteryStateDao {
     @Query("SELECT * FROM BatteryState WHERE timestamp >= :timestamp ORDER BY timestamp ASC")
     Cursor getBatteryStatesAfter(long timestamp);
 
+    /**
+     * Lists all recorded battery states after a specific timestamp, only with the columns used by
+     * {@code BatteryHistEntry}.
+     */
+    @Query(
+            "SELECT uid, userId, packageName, timestamp, consumerType, isFullChargeCycleStart,"
+                    + " batteryInformation FROM BatteryState WHERE timestamp >= :timestamp"
+                    + " ORDER BY timestamp ASC")
+    Cursor getBatteryHistEntriesAfter(long timestamp);
+
     /** Lists all recorded data after a specific timestamp. */
     @Query("SELECT * FROM BatteryState WHERE timestamp > :timestamp ORDER BY timestamp DESC")
     List<BatteryState> getAllAfter(long timestamp);
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import android.net.Uri;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.slice.Slice;
+
+import java.util.Map;
+
+/**
+ * Caches the result of {@link EligibleCardChecker} per card slice {@link Uri} across the loads of
+ * {@link ContextualCardLoader}.
+ *
+ * <p>A result is fresh for {@link #FRESH_DURATION_MS} after the check. After that, or once the
+ * slice notifies a change, it turns stale: it is still returned so the homepage does not wait for
+ * the check, and the caller should refresh it in the background. A result older than
+ * {@link #MAX_STALE_DURATION_MS} is dropped and the card has to be checked again.
+ */
+class CardEligibilityCache {
+
+    @VisibleForTesting
+    static final long FRESH_DURATION_MS = DateUtils.MINUTE_IN_MILLIS;
+    @VisibleForTesting
+    static final long MAX_STALE_DURATION_MS = DateUtils.HOUR_IN_MILLIS;
+
+    private static CardEligibilityCache sInstance;
+
+    private final Map<Uri, Entry> mEntries = new ArrayMap<>();
+
+    static synchronized CardEligibilityCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new CardEligibilityCache();
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the cached result of the card with {@param sliceUri}, or {@code null} if there is
+     * none or it is too old to be used at {@param now}.
+     */
+    synchronized Entry get(Uri sliceUri, long now) {
+        final Entry entry = mEntries.get(sliceUri);
+        if (entry != null && now - entry.mCheckedTime >= MAX_STALE_DURATION_MS) {
+            mEntries.remove(sliceUri);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Caches the result of {@link EligibleCardChecker#call()}, where a {@code null}
+     * {@param eligibleCard} means the card is not eligible to display.
+     */
+    synchronized void put(Uri sliceUri, ContextualCard eligibleCard, long checkedTime) {
+        mEntries.put(sliceUri, new Entry(eligibleCard, checkedTime));
+    }
+
+    /** Marks the result of {@param sliceUri} stale, as the slice content has changed. */
+    synchronized void invalidate(Uri sliceUri) {
+        final Entry entry = mEntries.get(sliceUri);
+        if (entry != null) {
+            entry.mInvalidated = true;
+        }
+    }
+
+    /**
+     * Marks the stale result of {@param sliceUri} being refreshed.
+     *
+     * @return {@code false} if it is already being refreshed by another load.
+     */
+    synchronized boolean startRefresh(Uri sliceUri) {
+        final Entry entry = mEntries.get(sliceUri);
+        if (entry == null || entry.mRefreshing) {
+            return false;
+        }
+        entry.mRefreshing = true;
+        return true;
+    }
+
+    synchronized void remove(Uri sliceUri) {
+        mEntries.remove(sliceUri);
+    }
+
+    synchronized void clear() {
+        mEntries.clear();
+    }
+
+    /** The eligibility of a card and the slice bound while checking it. */
+    static final class Entry {
+        private final boolean mEligible;
+        private final Slice mSlice;
+        private final boolean mHasInlineAction;
+        private final long mCheckedTime;
+        private volatile boolean mInvalidated;
+        private volatile boolean mRefreshing;
+
+        private Entry(ContextualCard eligibleCard, long checkedTime) {
+            mEligible = eligibleCard != null;
+            mSlice = mEligible ? eligibleCard.getSlice() : null;
+            mHasInlineAction = mEligible && eligibleCard.hasInlineAction();
+            mCheckedTime = checkedTime;
+        }
+
+        boolean isEligible() {
+            return mEligible;
+        }
+
+        boolean isFresh(long now) {
+            return !mInvalidated && now - mCheckedTime < FRESH_DURATION_MS;
+        }
+
+        /** Applies the cached result to the {@param candidate} loaded this time. */
+        ContextualCard apply(ContextualCard candidate) {
+            return candidate.mutate()
+                    .setSlice(mSlice)
+                    .setHasInlineAction(mHasInlineAction)
+                    .build();
+        }
+    }
+}
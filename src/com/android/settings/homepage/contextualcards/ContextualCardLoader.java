@@ -26,7 +26,11 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.provider.Settings;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -35,15 +39,23 @@ import androidx.annotation.VisibleForTesting;
 import com.android.settings.R;
 import com.android.settings.homepage.contextualcards.logging.ContextualCardLogUtils;
 import com.android.settings.overlay.FeatureFactory;
+import com.android.settings.slices.SliceDataCache;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>> {
@@ -56,6 +68,20 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
 
     private static final String TAG = "ContextualCardLoader";
     private static final long ELIGIBILITY_CHECKER_TIMEOUT_MS = 400;
+    private static final long ELIGIBILITY_CHECKER_KEEP_ALIVE_SECONDS = 30;
+    private static final int ELIGIBILITY_CHECKER_THREADS = 8;
+    private static final int ELIGIBILITY_CHECKER_QUEUE_SIZE = 16;
+
+    // Shared by all loads, idle threads are released after the keep alive time. It has enough
+    // threads for the checks of a load to run in parallel, a check rejected when the queue is full
+    // hides its card this time.
+    private static final ThreadPoolExecutor sEligibilityExecutor = createEligibilityExecutor();
+    // The checks running per slice uri. A load reuses the check of an earlier load, so a slice
+    // which hangs past the deadline holds a single thread whatever the number of reloads.
+    private static final Map<Uri, Future<ContextualCard>> sPendingChecks = new ArrayMap<>();
+    // The refreshes of stale cached results run one at a time at background priority, nobody
+    // waits for them.
+    private static final ThreadPoolExecutor sRefreshExecutor = createRefreshExecutor();
 
     private final ContentObserver mObserver = new ContentObserver(
             new Handler(Looper.getMainLooper())) {
@@ -68,10 +94,23 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
         }
     };
 
+    private final ContentObserver mSliceObserver = new ContentObserver(null /* handler */) {
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            if (uri != null) {
+                mEligibilityCache.invalidate(uri);
+            }
+        }
+    };
+
     @VisibleForTesting
     Uri mNotifyUri;
 
+    @VisibleForTesting
+    CardEligibilityCache mEligibilityCache = CardEligibilityCache.getInstance();
+
     private final Context mContext;
+    private final Set<Uri> mObservedSliceUris = Collections.synchronizedSet(new ArraySet<>());
 
     ContextualCardLoader(Context context) {
         super(context);
@@ -92,6 +131,8 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
     protected void onStopLoading() {
         super.onStopLoading();
         mContext.getContentResolver().unregisterContentObserver(mObserver);
+        mContext.getContentResolver().unregisterContentObserver(mSliceObserver);
+        mObservedSliceUris.clear();
     }
 
     @Override
@@ -119,7 +160,19 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
                 }
             }
         }
-        return getDisplayableCards(result);
+        final List<ContextualCard> displayableCards = getDisplayableCards(result);
+        prefetchSliceData(displayableCards);
+        return displayableCards;
+    }
+
+    // Warm up the slice data of all cards with one query, so binding them does not return
+    // placeholder slices first.
+    private void prefetchSliceData(List<ContextualCard> cards) {
+        final List<Uri> sliceUris = cards.stream()
+                .filter(card -> card.getCardType() == ContextualCard.CardType.SLICE)
+                .map(ContextualCard::getSliceUri)
+                .collect(Collectors.toList());
+        SliceDataCache.getInstance().prefetch(mContext, sliceUris);
     }
 
     // Get final displayed cards and log what cards will be displayed/hidden
@@ -187,46 +240,168 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
             return candidates;
         }
 
-        final ExecutorService executor = Executors.newFixedThreadPool(candidates.size());
-        final List<ContextualCard> cards = new ArrayList<>();
-        List<Future<ContextualCard>> eligibleCards = new ArrayList<>();
-
-        final List<EligibleCardChecker> checkers = candidates.stream()
-                .map(card -> new EligibleCardChecker(mContext, card))
-                .collect(Collectors.toList());
-        try {
-            eligibleCards = executor.invokeAll(checkers, ELIGIBILITY_CHECKER_TIMEOUT_MS,
-                    TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Log.w(TAG, "Failed to get eligible states for all cards", e);
+        final int size = candidates.size();
+        final long startTime = SystemClock.elapsedRealtime();
+        final ContextualCard[] results = new ContextualCard[size];
+        final List<Future<ContextualCard>> futures = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            final ContextualCard candidate = candidates.get(i);
+            final Uri sliceUri = candidate.getSliceUri();
+            observeSliceUri(sliceUri);
+            // A card ranked below zero is ineligible whatever its slice, which the checker tells
+            // without binding it, while a cached entry may be from a load where it was ranked.
+            final CardEligibilityCache.Entry entry = candidate.getRankingScore() < 0
+                    ? null : mEligibilityCache.get(sliceUri, startTime);
+            if (entry == null) {
+                futures.add(submitCheck(candidate));
+                continue;
+            }
+            futures.add(null);
+            results[i] = entry.isEligible() ? entry.apply(candidate) : null;
+            // The checker logs the loading time of the cards it checks, including the refresh of
+            // a stale result, so only a fresh result is logged here.
+            if (entry.isFresh(startTime)) {
+                logCardLoadTime(candidate, SystemClock.elapsedRealtime() - startTime);
+            } else if (mEligibilityCache.startRefresh(sliceUri)) {
+                sRefreshExecutor.submit(() -> checkEligibility(candidate));
+            }
         }
-        executor.shutdown();
 
-        // Collect future and eligible cards
-        for (int i = 0; i < eligibleCards.size(); i++) {
-            final Future<ContextualCard> cardFuture = eligibleCards.get(i);
-            if (cardFuture.isCancelled()) {
-                Log.w(TAG, "Timeout getting eligible state for card: "
-                        + candidates.get(i).getSliceUri());
+        // Wait for the cards without a cached result against a single deadline. A card timing out
+        // is hidden this time, but its check keeps running and fills the cache for the next load.
+        final long deadline = startTime + ELIGIBILITY_CHECKER_TIMEOUT_MS;
+        for (int i = 0; i < size; i++) {
+            final Future<ContextualCard> future = futures.get(i);
+            if (future == null) {
                 continue;
             }
-
             try {
-                final ContextualCard card = cardFuture.get();
-                if (card != null) {
-                    cards.add(card);
-                }
-            } catch (Exception e) {
+                final ContextualCard result = future.get(
+                        Math.max(0, deadline - SystemClock.elapsedRealtime()),
+                        TimeUnit.MILLISECONDS);
+                // The check may be shared with another load, which had its own candidate.
+                results[i] = result != null ? candidates.get(i).mutate()
+                        .setSlice(result.getSlice())
+                        .setHasInlineAction(result.hasInlineAction())
+                        .build() : null;
+            } catch (TimeoutException e) {
+                Log.w(TAG, "Timeout getting eligible state for card: "
+                        + candidates.get(i).getSliceUri());
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Interrupted getting eligible state for card", e);
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
                 Log.w(TAG, "Failed to get eligible state for card", e);
             }
         }
+
+        final List<ContextualCard> cards = new ArrayList<>();
+        for (ContextualCard card : results) {
+            if (card != null) {
+                cards.add(card);
+            }
+        }
         return cards;
     }
 
+    @VisibleForTesting
+    EligibleCardChecker createEligibleCardChecker(ContextualCard card) {
+        return new EligibleCardChecker(mContext, card);
+    }
+
+    /**
+     * Starts checking the {@param candidate}, or returns the check of its slice already running.
+     *
+     * @return {@code null} if the check is rejected.
+     */
+    private Future<ContextualCard> submitCheck(ContextualCard candidate) {
+        final Uri sliceUri = candidate.getSliceUri();
+        // A card ranked below zero is checked without binding, so it shares no check.
+        final boolean isShared = candidate.getRankingScore() >= 0;
+        synchronized (sPendingChecks) {
+            final Future<ContextualCard> pendingCheck =
+                    isShared ? sPendingChecks.get(sliceUri) : null;
+            if (pendingCheck != null) {
+                return pendingCheck;
+            }
+            final Future<ContextualCard> check;
+            try {
+                check = sEligibilityExecutor.submit(() -> {
+                    try {
+                        return checkEligibility(candidate);
+                    } finally {
+                        if (isShared) {
+                            synchronized (sPendingChecks) {
+                                sPendingChecks.remove(sliceUri);
+                            }
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                Log.w(TAG, "Too many pending checks, skipping card: " + sliceUri);
+                return null;
+            }
+            if (isShared) {
+                sPendingChecks.put(sliceUri, check);
+            }
+            return check;
+        }
+    }
+
+    private ContextualCard checkEligibility(ContextualCard card) {
+        final Uri sliceUri = card.getSliceUri();
+        try {
+            final ContextualCard result = createEligibleCardChecker(card).call();
+            mEligibilityCache.put(sliceUri, result, SystemClock.elapsedRealtime());
+            return result;
+        } catch (RuntimeException e) {
+            mEligibilityCache.remove(sliceUri);
+            throw e;
+        }
+    }
+
+    private void logCardLoadTime(ContextualCard card, long latencyMs) {
+        FeatureFactory.getFeatureFactory().getMetricsFeatureProvider().action(
+                SettingsEnums.PAGE_UNKNOWN,
+                SettingsEnums.ACTION_CONTEXTUAL_CARD_LOAD,
+                SettingsEnums.SETTINGS_HOMEPAGE,
+                card.getTextSliceUri() /* key */,
+                (int) latencyMs /* value */);
+    }
+
+    // Registered until the loader stops, a change of the slice makes its cached result stale.
+    private void observeSliceUri(Uri sliceUri) {
+        if (mObservedSliceUris.add(sliceUri)) {
+            mContext.getContentResolver().registerContentObserver(sliceUri,
+                    false /*notifyForDescendants*/, mSliceObserver);
+        }
+    }
+
     private boolean isLargeCard(ContextualCard card) {
         return card.getSliceUri().equals(BLUETOOTH_DEVICES_SLICE_URI);
     }
 
+    private static ThreadPoolExecutor createEligibilityExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(ELIGIBILITY_CHECKER_THREADS,
+                ELIGIBILITY_CHECKER_THREADS, ELIGIBILITY_CHECKER_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<>(ELIGIBILITY_CHECKER_QUEUE_SIZE),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadPoolExecutor createRefreshExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1 /* corePoolSize */,
+                1 /* maximumPoolSize */, ELIGIBILITY_CHECKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, TAG));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     public interface CardContentLoaderListener {
         void onFinishCardLoading(List<ContextualCard> contextualCards);
     }
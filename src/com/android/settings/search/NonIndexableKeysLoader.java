@@ -0,0 +1,455 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.app.admin.DevicePolicyManager;
+import android.bluetooth.BluetoothAdapter;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.res.Configuration;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.net.wifi.WifiManager;
+import android.os.Bundle;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.UserManager;
+import android.provider.SearchIndexableResource;
+import android.provider.Settings;
+import android.telephony.TelephonyManager;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.PreferenceXmlParserUtils;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+import com.android.settingslib.search.Indexable;
+import com.android.settingslib.search.SearchIndexableData;
+import com.android.settingslib.search.SearchIndexableRaw;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads the non-indexable keys of all the {@link Indexable.SearchIndexProvider}s.
+ *
+ * <p>Most providers create every controller of their page and check its availability, which often
+ * needs a binder call. Which providers run in parallel is decided by what they override: the
+ * providers which use {@link BaseSearchIndexProvider#getNonIndexableKeys} as is only read their
+ * XML and ask controllers created for the call, so they share no state and are evaluated in
+ * parallel on a small pool of background threads. The providers with their own
+ * {@code getNonIndexableKeys} may keep state across calls, so they are evaluated one at a time on
+ * another background thread.
+ *
+ * <p>No load waits for a provider more than {@link #LOAD_TIMEOUT_MS} after it starts. A provider
+ * not done by then is reported with its last known keys, and keeps running to cache its new ones
+ * for the next load. A provider which never reported its keys has all the keys of its page
+ * reported instead, read from its XML and raw data, so that its unavailable settings are never
+ * indexed. A provider runs once at a time: a load reuses its computation still running from an
+ * earlier load. A provider which throws only loses its own keys.
+ *
+ * <p>The keys of each provider are cached until the configuration changes, developer options are
+ * turned on or off, or one of the broadcasts which changes what is available on the device is
+ * received, and for at most {@link #MAX_AGE_MS}, which bounds how long a change of another
+ * setting takes to show up.
+ */
+class NonIndexableKeysLoader {
+
+    private static final String TAG = "NonIndexableKeysLoader";
+
+    private static final int THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    @VisibleForTesting
+    static final long LOAD_TIMEOUT_MS = 5000;
+    @VisibleForTesting
+    static final long MAX_AGE_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Collection<String> INVALID_KEYS;
+    // The settings hiding or showing whole pages.
+    private static final Uri[] SETTINGS_URIS = {
+            Settings.Global.getUriFor(Settings.Global.DEVELOPMENT_SETTINGS_ENABLED)};
+
+    private static final ThreadPoolExecutor sExecutor = createExecutor(THREADS);
+    private static final ThreadPoolExecutor sSerialExecutor = createExecutor(1 /* threads */);
+
+    static {
+        INVALID_KEYS = new ArraySet<>();
+        INVALID_KEYS.add(null);
+        INVALID_KEYS.add("");
+    }
+
+    // Cached keys (key: provider class name)
+    private final ArrayMap<String, Entry> mEntries = new ArrayMap<>();
+    // The last keys computed, kept across invalidations (key: provider class name)
+    private final ArrayMap<String, Entry> mLastEntries = new ArrayMap<>();
+    // The computations queued or running (key: provider class name)
+    private final ArrayMap<String, PendingEntry> mPendingEntries = new ArrayMap<>();
+    // Whether a provider is safe to evaluate in parallel with the others (key: provider class)
+    private final ArrayMap<Class<?>, Boolean> mParallelProviders = new ArrayMap<>();
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidate();
+        }
+    };
+    private final ContentObserver mSettingsObserver = new ContentObserver(null /* handler */) {
+        @Override
+        public void onChange(boolean selfChange) {
+            invalidate();
+        }
+    };
+
+    private int mGeneration;
+    private Configuration mConfiguration;
+    private boolean mListening;
+    private long mLastLoadMs;
+    private int mLastHitCount;
+    private int mLastTimeoutCount;
+    private int mLastErrorCount;
+    @VisibleForTesting
+    long mLoadTimeoutMs = LOAD_TIMEOUT_MS;
+
+    /**
+     * @return the non-indexable keys of all the providers in {@param bundles}, in order.
+     * @throws RuntimeException if a provider throws while {@link
+     * SettingsSearchIndexablesProvider#SYSPROP_CRASH_ON_ERROR} is set.
+     */
+    List<String> load(Context context, Collection<SearchIndexableData> bundles) {
+        final long startTime = SystemClock.elapsedRealtime();
+        startListening(context);
+        final int generation = checkConfiguration(context);
+
+        final List<Future<Entry>> results = new ArrayList<>(bundles.size());
+        int hitCount = 0;
+        for (SearchIndexableData bundle : bundles) {
+            final Entry entry = getFreshEntry(bundle.getTargetClass().getName(), generation);
+            if (entry != null) {
+                results.add(CompletableFuture.completedFuture(entry));
+                hitCount++;
+            } else {
+                results.add(submitEntry(context, bundle, generation));
+            }
+        }
+
+        final List<String> nonIndexableKeys = new ArrayList<>();
+        final long deadline = startTime + mLoadTimeoutMs;
+        int timeoutCount = 0;
+        int errorCount = 0;
+        int index = 0;
+        for (SearchIndexableData bundle : bundles) {
+            final String name = bundle.getTargetClass().getName();
+            final Future<Entry> result = results.get(index++);
+            Entry entry;
+            try {
+                try {
+                    entry = result.get(Math.max(0, deadline - SystemClock.elapsedRealtime()),
+                            TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    timeoutCount++;
+                    entry = getLastEntry(name);
+                    if (entry != null) {
+                        // Let it finish in the background, its keys are cached for the next load.
+                        Log.w(TAG, "Timed out getting non-indexable keys from: " + name
+                                + ", using its last keys");
+                    } else {
+                        // Its unavailable settings can't be told apart, so none of its settings
+                        // are indexed by this load.
+                        Log.w(TAG, "Timed out getting non-indexable keys from: " + name
+                                + ", leaving out all of its keys");
+                        entry = getPageEntry(context, bundle, generation);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                entry = new Entry(null /* keys */, 0 /* elapsedMs */, generation, e);
+            }
+            if (entry.mError != null) {
+                // We crash when the system property exists so that we can test if crashes need
+                // to be fixed.
+                if (System.getProperty(SettingsSearchIndexablesProvider.SYSPROP_CRASH_ON_ERROR)
+                        != null) {
+                    throw new RuntimeException(entry.mError);
+                }
+                Log.e(TAG, "Error trying to get non-indexable keys from: " + name, entry.mError);
+                errorCount++;
+                continue;
+            }
+            nonIndexableKeys.addAll(entry.mKeys);
+        }
+
+        synchronized (this) {
+            mLastLoadMs = SystemClock.elapsedRealtime() - startTime;
+            mLastHitCount = hitCount;
+            mLastTimeoutCount = timeoutCount;
+            mLastErrorCount = errorCount;
+        }
+        return nonIndexableKeys;
+    }
+
+    /** Drops the cached keys of all the providers. */
+    synchronized void invalidate() {
+        mGeneration++;
+        mEntries.clear();
+    }
+
+    synchronized void dump(PrintWriter writer) {
+        writer.println(TAG + ":");
+        writer.println("  last load: " + mLastLoadMs + " ms, cached: " + mLastHitCount
+                + ", timeouts: " + mLastTimeoutCount + ", errors: " + mLastErrorCount);
+        final long now = SystemClock.elapsedRealtime();
+        for (int i = 0; i < mEntries.size(); i++) {
+            final Entry entry = mEntries.valueAt(i);
+            writer.println("  " + mEntries.keyAt(i) + ": "
+                    + entry.mElapsedMs + " ms, " + entry.mKeys.size() + " keys, age "
+                    + (now - entry.mTimestamp) + " ms");
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int getCachedCount() {
+        return mEntries.size();
+    }
+
+    /**
+     * Queues the computation of the keys of the provider in {@param bundle}, or returns the one
+     * already pending for {@param generation}. The computation for a newer generation starts once
+     * the pending one is done, so that a provider never runs twice at once.
+     */
+    private synchronized Future<Entry> submitEntry(Context context, SearchIndexableData bundle,
+            int generation) {
+        final String name = bundle.getTargetClass().getName();
+        final PendingEntry pending = mPendingEntries.get(name);
+        if (pending != null && pending.mGeneration == generation) {
+            return pending.mFuture;
+        }
+        final CompletableFuture<?> previous = pending != null
+                ? pending.mFuture : CompletableFuture.completedFuture(null);
+        final Executor executor = isParallelProvider(bundle.getSearchIndexProvider())
+                ? sExecutor : sSerialExecutor;
+        final CompletableFuture<Entry> future = previous
+                .handle((result, error) -> null)
+                .thenApplyAsync(unused -> getOrComputeEntry(context, bundle, generation), executor);
+        final PendingEntry newPending = new PendingEntry(future, generation);
+        mPendingEntries.put(name, newPending);
+        future.whenComplete((result, error) -> {
+            synchronized (this) {
+                if (mPendingEntries.get(name) == newPending) {
+                    mPendingEntries.remove(name);
+                }
+            }
+        });
+        return future;
+    }
+
+    /** Returns whether {@param provider} uses {@link BaseSearchIndexProvider}'s keys as is. */
+    private boolean isParallelProvider(Indexable.SearchIndexProvider provider) {
+        final Class<?> providerClass = provider.getClass();
+        Boolean isParallel = mParallelProviders.get(providerClass);
+        if (isParallel == null) {
+            try {
+                isParallel = providerClass.getMethod("getNonIndexableKeys", Context.class)
+                        .getDeclaringClass() == BaseSearchIndexProvider.class;
+            } catch (NoSuchMethodException e) {
+                isParallel = false;
+            }
+            mParallelProviders.put(providerClass, isParallel);
+        }
+        return isParallel;
+    }
+
+    /** Returns the cached keys if computed since the task was queued, or computes them. */
+    private Entry getOrComputeEntry(Context context, SearchIndexableData bundle,
+            int generation) {
+        final Entry entry = getFreshEntry(bundle.getTargetClass().getName(), generation);
+        return entry != null ? entry : computeEntry(context, bundle, generation);
+    }
+
+    private Entry computeEntry(Context context, SearchIndexableData bundle, int generation) {
+        final long startTime = SystemClock.elapsedRealtime();
+        final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+        List<String> keys;
+        try {
+            keys = provider.getNonIndexableKeys(context);
+        } catch (Exception e) {
+            // Catch a generic crash so that a crash in a specific controller doesn't lose all
+            // non-indexable keys.
+            return new Entry(null /* keys */, 0 /* elapsedMs */, generation, e);
+        }
+        if (keys == null) {
+            keys = new ArrayList<>();
+        } else if (keys.removeAll(INVALID_KEYS)) {
+            Log.v(TAG, provider + " tried to add an empty non-indexable key");
+        }
+        final Entry entry = new Entry(keys, SystemClock.elapsedRealtime() - startTime,
+                generation, null /* error */);
+        synchronized (this) {
+            mLastEntries.put(bundle.getTargetClass().getName(), entry);
+            // Drop the keys computed before the last invalidation.
+            if (generation == mGeneration) {
+                mEntries.put(bundle.getTargetClass().getName(), entry);
+            }
+        }
+        return entry;
+    }
+
+    private synchronized Entry getFreshEntry(String name, int generation) {
+        final Entry entry = mEntries.get(name);
+        if (entry == null || entry.mGeneration != generation) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() - entry.mTimestamp >= MAX_AGE_MS) {
+            mEntries.remove(name);
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized Entry getLastEntry(String name) {
+        return mLastEntries.get(name);
+    }
+
+    /**
+     * Returns all the keys of the page of the provider in {@param bundle}, from its XML and raw
+     * data only, without creating its controllers. They aren't cached.
+     */
+    private static Entry getPageEntry(Context context, SearchIndexableData bundle,
+            int generation) {
+        final long startTime = SystemClock.elapsedRealtime();
+        final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+        final List<String> keys = new ArrayList<>();
+        try {
+            final List<SearchIndexableResource> resources =
+                    provider.getXmlResourcesToIndex(context, true /* enabled */);
+            if (resources != null) {
+                for (SearchIndexableResource resource : resources) {
+                    for (Bundle metadata : PreferenceXmlParserUtils.extractMetadata(context,
+                            resource.xmlResId, MetadataFlag.FLAG_NEED_KEY
+                                    | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN)) {
+                        keys.add(metadata.getString(PreferenceXmlParserUtils.METADATA_KEY));
+                    }
+                }
+            }
+            final List<SearchIndexableRaw> rawData =
+                    provider.getRawDataToIndex(context, true /* enabled */);
+            if (rawData != null) {
+                for (SearchIndexableRaw raw : rawData) {
+                    keys.add(raw.key);
+                }
+            }
+        } catch (Exception e) {
+            return new Entry(null /* keys */, 0 /* elapsedMs */, generation, e);
+        }
+        keys.removeAll(INVALID_KEYS);
+        return new Entry(keys, SystemClock.elapsedRealtime() - startTime, generation,
+                null /* error */);
+    }
+
+    /** Invalidates the cached keys if the configuration changed, returns the generation. */
+    private synchronized int checkConfiguration(Context context) {
+        final Configuration configuration = context.getResources().getConfiguration();
+        if (!configuration.equals(mConfiguration)) {
+            mConfiguration = new Configuration(configuration);
+            invalidate();
+        }
+        return mGeneration;
+    }
+
+    private synchronized void startListening(Context context) {
+        if (mListening) {
+            return;
+        }
+        mListening = true;
+        final Context appContext = context.getApplicationContext();
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+        filter.addAction(Intent.ACTION_USER_ADDED);
+        filter.addAction(Intent.ACTION_USER_REMOVED);
+        filter.addAction(Intent.ACTION_MANAGED_PROFILE_AVAILABLE);
+        filter.addAction(Intent.ACTION_MANAGED_PROFILE_UNAVAILABLE);
+        filter.addAction(UserManager.ACTION_USER_RESTRICTIONS_CHANGED);
+        filter.addAction(DevicePolicyManager.ACTION_DEVICE_POLICY_MANAGER_STATE_CHANGED);
+        filter.addAction(BluetoothAdapter.ACTION_STATE_CHANGED);
+        filter.addAction(WifiManager.WIFI_STATE_CHANGED_ACTION);
+        filter.addAction(TelephonyManager.ACTION_SIM_CARD_STATE_CHANGED);
+        appContext.registerReceiver(mReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
+
+        final IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addDataScheme("package");
+        appContext.registerReceiver(mReceiver, packageFilter, Context.RECEIVER_NOT_EXPORTED);
+
+        for (Uri uri : SETTINGS_URIS) {
+            appContext.getContentResolver().registerContentObserver(uri,
+                    false /* notifyForDescendants */, mSettingsObserver);
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor(int threads) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, TAG));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static final class PendingEntry {
+        final CompletableFuture<Entry> mFuture;
+        final int mGeneration;
+
+        PendingEntry(CompletableFuture<Entry> future, int generation) {
+            mFuture = future;
+            mGeneration = generation;
+        }
+    }
+
+    private static final class Entry {
+        final List<String> mKeys;
+        final long mElapsedMs;
+        final long mTimestamp;
+        final int mGeneration;
+        final Exception mError;
+
+        Entry(List<String> keys, long elapsedMs, int generation, Exception error) {
+            mKeys = keys;
+            mElapsedMs = elapsedMs;
+            mTimestamp = SystemClock.elapsedRealtime();
+            mGeneration = generation;
+            mError = error;
+        }
+    }
+}
@@ -56,7 +56,6 @@ import android.provider.SearchIndexablesProvider;
 import android.provider.SettingsSlicesContract;
 import android.text.TextUtils;
 import android.util.ArrayMap;
-import android.util.ArraySet;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
@@ -77,6 +76,8 @@ import com.android.settingslib.search.Indexable;
 import com.android.settingslib.search.SearchIndexableData;
 import com.android.settingslib.search.SearchIndexableRaw;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -95,23 +96,23 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
 
     private static final String TAG = "SettingsSearchProvider";
 
-    private static final Collection<String> INVALID_KEYS;
-
     // Search enabled states for injection (key: category key, value: search enabled)
     private Map<String, Boolean> mSearchEnabledByCategoryKeyMap;
-
-    static {
-        INVALID_KEYS = new ArraySet<>();
-        INVALID_KEYS.add(null);
-        INVALID_KEYS.add("");
-    }
+    private NonIndexableKeysLoader mNonIndexableKeysLoader;
 
     @Override
     public boolean onCreate() {
         mSearchEnabledByCategoryKeyMap = new ArrayMap<>();
+        mNonIndexableKeysLoader = new NonIndexableKeysLoader();
         return true;
     }
 
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        mNonIndexableKeysLoader.dump(writer);
+    }
+
     @Override
     public Cursor queryXmlResources(String[] projection) {
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_XML_RES_COLUMNS);
@@ -273,51 +274,13 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     private List<String> getNonIndexableKeysFromProvider(Context context) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFeatureFactory()
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-
-        final List<String> nonIndexableKeys = new ArrayList<>();
-
-        for (SearchIndexableData bundle : bundles) {
-            final long startTime = System.currentTimeMillis();
-            Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
-            List<String> providerNonIndexableKeys;
-            try {
-                providerNonIndexableKeys = provider.getNonIndexableKeys(context);
-            } catch (Exception e) {
-                // Catch a generic crash. In the absence of the catch, the background thread will
-                // silently fail anyway, so we aren't losing information by catching the exception.
-                // We crash when the system property exists so that we can test if crashes need to
-                // be fixed.
-                // The gain is that if there is a crash in a specific controller, we don't lose all
-                // non-indexable keys, but we can still find specific crashes in development.
-                if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
-                    throw new RuntimeException(e);
-                }
-                Log.e(TAG, "Error trying to get non-indexable keys from: "
-                        + bundle.getTargetClass().getName(), e);
-                continue;
-            }
-
-            if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
-                if (DEBUG) {
-                    final long totalTime = System.currentTimeMillis() - startTime;
-                    Log.d(TAG, "No indexable, total time " + totalTime);
-                }
-                continue;
-            }
-
-            if (providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
-                Log.v(TAG, provider + " tried to add an empty non-indexable key");
-            }
-
-            if (DEBUG) {
-                final long totalTime = System.currentTimeMillis() - startTime;
-                Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
-                        + totalTime);
-            }
-
-            nonIndexableKeys.addAll(providerNonIndexableKeys);
+        final long startTime = System.currentTimeMillis();
+        final List<String> nonIndexableKeys = mNonIndexableKeysLoader.load(context, bundles);
+        if (DEBUG) {
+            final long totalTime = System.currentTimeMillis() - startTime;
+            Log.d(TAG, "Non-indexables " + nonIndexableKeys.size() + ", total time "
+                    + totalTime);
         }
-
         return nonIndexableKeys;
     }
 
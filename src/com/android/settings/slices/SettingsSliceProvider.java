@@ -56,6 +56,8 @@ import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.SliceBroadcastRelay;
 import com.android.settingslib.utils.ThreadUtils;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -63,7 +65,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -78,7 +79,7 @@ import java.util.stream.Collectors;
  * return an stub {@link Slice} with the correct {@link Uri} immediately. In the background, the
  * data corresponding to the key in the {@link Uri} is read by {@link SlicesDatabaseAccessor}, and
  * the entire row is converted into a {@link SliceData}. Once complete, it is stored in
- * {@link #mSliceWeakDataCache}, and then an update sent via the Slice framework to the Slice.
+ * {@link SliceDataCache}, and then an update sent via the Slice framework to the Slice.
  * The {@link Slice} displayed by the Slice-presenter will re-query this Slice-provider and find
  * the {@link SliceData} cached to build the full {@link Slice}.
  *
@@ -136,7 +137,13 @@ public class SettingsSliceProvider extends SliceProvider {
     SlicesDatabaseAccessor mSlicesDatabaseAccessor;
 
     @VisibleForTesting
-    Map<Uri, SliceData> mSliceWeakDataCache;
+    SliceDataCache mSliceDataCache;
+
+    /**
+     * {@link Uri}s whose intent filter and background worker are registered. The cache may
+     * already hold the {@link SliceData} of a prefetched {@link Uri} which has never been loaded.
+     */
+    private final Set<Uri> mRegisteredSliceUris = Collections.synchronizedSet(new ArraySet<>());
 
     @VisibleForTesting
     final Map<Uri, SliceBackgroundWorker> mPinnedWorkers = new ArrayMap<>();
@@ -154,7 +161,7 @@ public class SettingsSliceProvider extends SliceProvider {
     public boolean onCreateSliceProvider() {
         Log.d(TAG, "onCreateSliceProvider");
         mSlicesDatabaseAccessor = new SlicesDatabaseAccessor(getContext());
-        mSliceWeakDataCache = new WeakHashMap<>();
+        mSliceDataCache = SliceDataCache.getInstance();
         return true;
     }
 
@@ -197,7 +204,8 @@ public class SettingsSliceProvider extends SliceProvider {
 
     @Override
     public void onSliceUnpinned(Uri sliceUri) {
-        mSliceWeakDataCache.remove(sliceUri);
+        mSliceDataCache.remove(sliceUri);
+        mRegisteredSliceUris.remove(sliceUri);
         final Context context = getContext();
         if (!VolumeSliceHelper.unregisterUri(context, sliceUri)) {
             SliceBroadcastRelay.unregisterReceivers(context, sliceUri);
@@ -272,7 +280,7 @@ public class SettingsSliceProvider extends SliceProvider {
                         .createWifiCallingPreferenceSlice(sliceUri);
             }
 
-            final SliceData cachedSliceData = mSliceWeakDataCache.get(sliceUri);
+            final SliceData cachedSliceData = mSliceDataCache.get(sliceUri);
             if (cachedSliceData == null) {
                 loadSliceInBackground(sliceUri);
                 return getSliceStub(sliceUri);
@@ -393,6 +401,12 @@ public class SettingsSliceProvider extends SliceProvider {
         }
     }
 
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        mSliceDataCache.dump(writer);
+    }
+
     @Override
     public void shutdown() {
         ThreadUtils.postOnMainThread(() -> {
@@ -402,38 +416,52 @@ public class SettingsSliceProvider extends SliceProvider {
 
     @VisibleForTesting
     void loadSlice(Uri uri) {
-        if (mSliceWeakDataCache.containsKey(uri)) {
+        SliceData sliceData = mSliceDataCache.peek(uri);
+        final boolean isCached = sliceData != null;
+        if (isCached && mRegisteredSliceUris.contains(uri)) {
             Log.d(TAG, uri + " loaded from cache");
             return;
         }
         long startBuildTime = System.currentTimeMillis();
 
-        final SliceData sliceData;
-        try {
-            sliceData = mSlicesDatabaseAccessor.getSliceDataFromUri(uri);
-        } catch (IllegalStateException e) {
-            Log.d(TAG, "Could not create slicedata for uri: " + uri, e);
-            return;
+        if (!isCached) {
+            try {
+                sliceData = mSlicesDatabaseAccessor.getSliceDataFromUri(uri);
+            } catch (IllegalStateException e) {
+                Log.d(TAG, "Could not create slicedata for uri: " + uri, e);
+                return;
+            }
         }
 
-        final BasePreferenceController controller = SliceBuilderUtils.getPreferenceController(
-                getContext(), sliceData);
-
-        final IntentFilter filter = controller.getIntentFilter();
-        if (filter != null) {
-            if (controller instanceof VolumeSeekBarPreferenceController) {
-                // Register volume slices to a broadcast relay to reduce unnecessary UI updates
-                VolumeSliceHelper.registerIntentToUri(getContext(), filter, uri,
-                        ((VolumeSeekBarPreferenceController) controller).getAudioStream());
-            } else {
-                registerIntentToUri(filter, uri);
+        // Registration is tracked apart from the data, which the cache may evict or prefetch on
+        // its own, so each uri is registered exactly once until it is unpinned.
+        final boolean isFirstRegistration = mRegisteredSliceUris.add(uri);
+        if (isFirstRegistration) {
+            final BasePreferenceController controller = SliceBuilderUtils.getPreferenceController(
+                    getContext(), sliceData);
+
+            final IntentFilter filter = controller.getIntentFilter();
+            if (filter != null) {
+                if (controller instanceof VolumeSeekBarPreferenceController) {
+                    // Register volume slices to a broadcast relay to reduce unnecessary UI updates
+                    VolumeSliceHelper.registerIntentToUri(getContext(), filter, uri,
+                            ((VolumeSeekBarPreferenceController) controller).getAudioStream());
+                } else {
+                    registerIntentToUri(filter, uri);
+                }
             }
-        }
 
-        ThreadUtils.postOnMainThread(() -> startBackgroundWorker(controller, uri));
+            ThreadUtils.postOnMainThread(() -> startBackgroundWorker(controller, uri));
+        }
 
-        mSliceWeakDataCache.put(uri, sliceData);
-        getContext().getContentResolver().notifyChange(uri, null /* content observer */);
+        if (!isCached) {
+            mSliceDataCache.put(uri, sliceData);
+        }
+        // A host bound before this load may still be showing the stub, even when the data was
+        // prefetched in the meantime.
+        if (isFirstRegistration || !isCached) {
+            getContext().getContentResolver().notifyChange(uri, null /* content observer */);
+        }
 
         Log.d(TAG, "Built slice (" + uri + ") in: " +
                 (System.currentTimeMillis() - startBuildTime));
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.settings.slices;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteException;
+import android.net.Uri;
+import android.provider.SettingsSlicesContract;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A bounded, process-wide LRU cache of the {@link SliceData} read from
+ * {@link SlicesDatabaseHelper.Tables#TABLE_SLICES_INDEX}, shared by every pin of
+ * {@link SettingsSliceProvider} and the screens prefetching their slices.
+ *
+ * <p>An entry is evicted when:
+ * <ul>
+ * <li>the cache holds more than its max size, the least recently used entry goes first;</li>
+ * <li>the last pin of its {@link Uri} is released, see
+ * {@link SettingsSliceProvider#onSliceUnpinned(Uri)};</li>
+ * <li>the default {@link Locale} changes, since the indexed titles and summaries are localized.
+ * </li>
+ * </ul>
+ */
+public class SliceDataCache {
+
+    private static final String TAG = "SliceDataCache";
+
+    @VisibleForTesting
+    static final int MAX_SIZE = 64;
+
+    private static SliceDataCache sInstance;
+
+    private final int mMaxSize;
+    private final LinkedHashMap<Uri, SliceData> mCache;
+
+    private Locale mLocale;
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+    private int mPrefetchCount;
+
+    /** Returns the cache shared in the process. */
+    public static synchronized SliceDataCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new SliceDataCache(MAX_SIZE);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    SliceDataCache(int maxSize) {
+        mMaxSize = maxSize;
+        mLocale = Locale.getDefault();
+        mCache = new LinkedHashMap<Uri, SliceData>(16 /* initialCapacity */,
+                0.75f /* loadFactor */, true /* accessOrder */) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Uri, SliceData> eldest) {
+                if (size() > mMaxSize) {
+                    mEvictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the {@link SliceData} of {@param uri} and counts a hit, or {@code null} and counts a
+     * miss if it is not cached.
+     */
+    public synchronized SliceData get(Uri uri) {
+        evictIfLocaleChanged();
+        final SliceData sliceData = mCache.get(uri);
+        if (sliceData != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return sliceData;
+    }
+
+    /**
+     * @return the {@link SliceData} of {@param uri} without counting a hit or a miss, used when
+     * the provider loads a slice rather than binds it.
+     */
+    public synchronized SliceData peek(Uri uri) {
+        evictIfLocaleChanged();
+        return mCache.get(uri);
+    }
+
+    /** @return whether {@param uri} is cached, without refreshing its recency. */
+    public synchronized boolean contains(Uri uri) {
+        evictIfLocaleChanged();
+        return mCache.containsKey(uri);
+    }
+
+    /** Caches {@param sliceData} for {@param uri}, evicting the least recently used one if full. */
+    public synchronized void put(Uri uri, SliceData sliceData) {
+        evictIfLocaleChanged();
+        mCache.put(uri, sliceData);
+    }
+
+    /** Removes the {@link SliceData} of {@param uri}. */
+    public synchronized void remove(Uri uri) {
+        mCache.remove(uri);
+    }
+
+    /** Removes all the cached {@link SliceData}. */
+    public synchronized void clear() {
+        mCache.clear();
+    }
+
+    /** @return the number of cached {@link SliceData}. */
+    public synchronized int size() {
+        return mCache.size();
+    }
+
+    /**
+     * Loads the {@link SliceData} of all the {@param uris} which are backed by the slices database
+     * and not cached yet, with a single query. Custom slices and slices of other apps are skipped.
+     * Should not be called on the main thread.
+     */
+    public void prefetch(Context context, Collection<Uri> uris) {
+        final List<Uri> missingUris = new ArrayList<>();
+        for (Uri uri : uris) {
+            if (isIndexedSliceUri(uri) && !contains(uri)) {
+                missingUris.add(uri);
+            }
+        }
+        if (missingUris.isEmpty()) {
+            return;
+        }
+
+        final Map<Uri, SliceData> sliceDataMap;
+        try {
+            sliceDataMap = new SlicesDatabaseAccessor(context).getSliceDataFromUris(missingUris);
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Failed to prefetch " + missingUris.size() + " slices", e);
+            return;
+        }
+        synchronized (this) {
+            evictIfLocaleChanged();
+            for (Map.Entry<Uri, SliceData> entry : sliceDataMap.entrySet()) {
+                if (mCache.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+                    mPrefetchCount++;
+                }
+            }
+        }
+        Log.d(TAG, "Prefetched " + sliceDataMap.size() + "/" + missingUris.size() + " slices");
+    }
+
+    /** Dumps the size and the hit rate of the cache to tune {@link #MAX_SIZE}. */
+    public synchronized void dump(PrintWriter writer) {
+        final int lookupCount = mHitCount + mMissCount;
+        writer.println(TAG + ":");
+        writer.println("  size: " + mCache.size() + "/" + mMaxSize);
+        writer.println("  hits: " + mHitCount + ", misses: " + mMissCount + ", hit rate: "
+                + (lookupCount == 0 ? 0 : mHitCount * 100 / lookupCount) + "%");
+        writer.println("  evictions: " + mEvictionCount + ", prefetched: " + mPrefetchCount);
+    }
+
+    @VisibleForTesting
+    synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    @VisibleForTesting
+    synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    private void evictIfLocaleChanged() {
+        final Locale locale = Locale.getDefault();
+        if (!locale.equals(mLocale)) {
+            Log.d(TAG, "Locale changed, clear " + mCache.size() + " slices");
+            mEvictionCount += mCache.size();
+            mCache.clear();
+            mLocale = locale;
+        }
+    }
+
+    private static boolean isIndexedSliceUri(Uri uri) {
+        if (uri == null || CustomSliceRegistry.isValidUri(uri)) {
+            return false;
+        }
+        final String authority = uri.getAuthority();
+        return TextUtils.equals(authority, SettingsSliceProvider.SLICE_AUTHORITY)
+                || TextUtils.equals(authority, SettingsSlicesContract.AUTHORITY);
+    }
+}
@@ -40,6 +40,7 @@ import android.os.Bundle;
 import android.provider.SearchIndexableResource;
 import android.provider.SettingsSlicesContract;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.Log;
 import android.view.accessibility.AccessibilityManager;
 
@@ -67,6 +68,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -100,6 +102,23 @@ class SliceDataConverter {
     public List<SliceData> getSliceData() {
         List<SliceData> sliceData = new ArrayList<>();
 
+        for (Map.Entry<String, List<Integer>> entry : getXmlResources().entrySet()) {
+            sliceData.addAll(getSliceData(entry.getKey(), entry.getValue()));
+        }
+
+        final List<SliceData> a11ySliceData = getAccessibilitySliceData();
+        sliceData.addAll(a11ySliceData);
+        return sliceData;
+    }
+
+    /**
+     * Returns the XML resources the slices of each fragment indexed by settings search are
+     * converted from, by fragment class name. The resources are neither parsed nor their
+     * controllers created.
+     */
+    Map<String, List<Integer>> getXmlResources() {
+        final Map<String, List<Integer>> xmlResources = new ArrayMap<>();
+
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFeatureFactory()
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
 
@@ -114,41 +133,46 @@ class SliceDataConverter {
                 continue;
             }
 
-            final List<SliceData> providerSliceData = getSliceDataFromProvider(provider,
-                    fragmentName);
-            sliceData.addAll(providerSliceData);
+            xmlResources.put(fragmentName, getXmlResourcesFromProvider(provider, fragmentName));
+        }
+        return xmlResources;
+    }
+
+    /** Converts the {@param xmlResIds} of the {@param fragmentName} into slice data. */
+    List<SliceData> getSliceData(String fragmentName, List<Integer> xmlResIds) {
+        final List<SliceData> sliceData = new ArrayList<>();
+
+        // TODO (b/67996923) get a list of permanent NIKs and skip the invalid keys.
+
+        for (int xmlResId : xmlResIds) {
+            List<SliceData> xmlSliceData = getSliceDataFromXML(xmlResId, fragmentName);
+            sliceData.addAll(xmlSliceData);
         }
 
-        final List<SliceData> a11ySliceData = getAccessibilitySliceData();
-        sliceData.addAll(a11ySliceData);
         return sliceData;
     }
 
-    private List<SliceData> getSliceDataFromProvider(SearchIndexProvider provider,
+    private List<Integer> getXmlResourcesFromProvider(SearchIndexProvider provider,
             String fragmentName) {
-        final List<SliceData> sliceData = new ArrayList<>();
+        final List<Integer> xmlResIds = new ArrayList<>();
 
         final List<SearchIndexableResource> resList =
                 provider.getXmlResourcesToIndex(mContext, true /* enabled */);
 
         if (resList == null) {
-            return sliceData;
+            return xmlResIds;
         }
 
-        // TODO (b/67996923) get a list of permanent NIKs and skip the invalid keys.
-
         for (SearchIndexableResource resource : resList) {
             int xmlResId = resource.xmlResId;
             if (xmlResId == 0) {
                 Log.e(TAG, fragmentName + " provides invalid XML (0) in search provider.");
                 continue;
             }
-
-            List<SliceData> xmlSliceData = getSliceDataFromXML(xmlResId, fragmentName);
-            sliceData.addAll(xmlSliceData);
+            xmlResIds.add(xmlResId);
         }
 
-        return sliceData;
+        return xmlResIds;
     }
 
     private List<SliceData> getSliceDataFromXML(int xmlResId, String fragmentName) {
@@ -250,7 +274,7 @@ class SliceDataConverter {
         return xmlSliceData;
     }
 
-    private List<SliceData> getAccessibilitySliceData() {
+    List<SliceData> getAccessibilitySliceData() {
         final List<SliceData> sliceData = new ArrayList<>();
 
         final String accessibilityControllerClassName =
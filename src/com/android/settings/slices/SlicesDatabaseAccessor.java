@@ -24,6 +24,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Binder;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.Pair;
 
 import androidx.slice.Slice;
@@ -32,7 +33,10 @@ import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class used to map a {@link Uri} from {@link SettingsSliceProvider} to a Slice.
@@ -89,6 +93,47 @@ public class SlicesDatabaseAccessor {
         }
     }
 
+    /**
+     * Query the slices database once for all the {@param uris} and return the {@link SliceData}
+     * of each {@link Uri} whose key is indexed. Invalid {@link Uri}s and unknown keys are skipped
+     * instead of throwing, as the callers only use this to warm up {@link SliceDataCache}.
+     */
+    public Map<Uri, SliceData> getSliceDataFromUris(Collection<Uri> uris) {
+        final Map<Uri, SliceData> sliceDataMap = new ArrayMap<>();
+        final Map<String, List<Uri>> keyToUris = new ArrayMap<>();
+        for (Uri uri : uris) {
+            final Pair<Boolean, String> pathData = SliceBuilderUtils.getPathData(uri);
+            if (pathData != null) {
+                keyToUris.computeIfAbsent(pathData.second, key -> new ArrayList<>()).add(uri);
+            }
+        }
+        if (keyToUris.isEmpty()) {
+            return sliceDataMap;
+        }
+        verifyIndexing();
+
+        final String whereClause = IndexColumns.KEY + " IN ("
+                + TextUtils.join(",", Collections.nCopies(keyToUris.size(), "?")) + ")";
+        final String[] selection = keyToUris.keySet().toArray(new String[0]);
+        final SQLiteDatabase database = mHelper.getReadableDatabase();
+        try (Cursor cursor = database.query(TABLE_SLICES_INDEX, SELECT_COLUMNS_ALL,
+                whereClause, selection, null /* groupBy */, null /* having */,
+                null /* orderBy */)) {
+            final int keyIndex = cursor.getColumnIndex(IndexColumns.KEY);
+            while (cursor.moveToNext()) {
+                final List<Uri> matchedUris = keyToUris.get(cursor.getString(keyIndex));
+                if (matchedUris == null) {
+                    continue;
+                }
+                for (Uri uri : matchedUris) {
+                    final boolean isIntentOnly = SliceBuilderUtils.getPathData(uri).first;
+                    sliceDataMap.put(uri, buildSliceData(cursor, uri, isIntentOnly));
+                }
+            }
+        }
+        return sliceDataMap;
+    }
+
     /**
      * @return a list of Slice {@link Uri}s based on their visibility {@param isPublicSlice } and
      * {@param authority}.
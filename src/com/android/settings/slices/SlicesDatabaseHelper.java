@@ -36,10 +36,11 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "slices_index.db";
     private static final String SHARED_PREFS_TAG = "slices_shared_prefs";
 
-    private static final int DATABASE_VERSION = 10;
+    private static final int DATABASE_VERSION = 11;
 
     public interface Tables {
         String TABLE_SLICES_INDEX = "slices_index";
+        String TABLE_SLICES_FINGERPRINT = "slices_fingerprint";
     }
 
     public interface IndexColumns {
@@ -115,6 +116,18 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
         String USER_RESTRICTION = "user_restriction";
     }
 
+    public interface FingerprintColumns {
+        /**
+         * Classname of the fragment whose slices are indexed.
+         */
+        String FRAGMENT = "fragment";
+
+        /**
+         * Fingerprint of the indexed slice data of the fragment.
+         */
+        String FINGERPRINT = "fingerprint";
+    }
+
     private static final String CREATE_SLICES_TABLE =
             "CREATE VIRTUAL TABLE " + Tables.TABLE_SLICES_INDEX + " USING fts4"
                     + "("
@@ -148,6 +161,15 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
                     + " INTEGER DEFAULT 0 "
                     + ");";
 
+    private static final String CREATE_FINGERPRINT_TABLE =
+            "CREATE TABLE " + Tables.TABLE_SLICES_FINGERPRINT
+                    + "("
+                    + FingerprintColumns.FRAGMENT
+                    + " TEXT PRIMARY KEY, "
+                    + FingerprintColumns.FINGERPRINT
+                    + " TEXT"
+                    + ");";
+
     private final Context mContext;
 
     private static SlicesDatabaseHelper sSingleton;
@@ -183,12 +205,20 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
      * {@link#isNewIndexingState(Context)} will return {@code true}.
      */
     void reconstruct(SQLiteDatabase db) {
+        clearIndexedState();
+        dropTables(db);
+        createDatabases(db);
+    }
+
+    /**
+     * Un-marks the state of the data for all the builds and locales, such that the data indexed
+     * for a previous state is not regarded as valid anymore.
+     */
+    void clearIndexedState() {
         mContext.getSharedPreferences(SHARED_PREFS_TAG, Context.MODE_PRIVATE)
                 .edit()
                 .clear()
                 .apply();
-        dropTables(db);
-        createDatabases(db);
     }
 
     /**
@@ -211,11 +241,13 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
 
     private void createDatabases(SQLiteDatabase db) {
         db.execSQL(CREATE_SLICES_TABLE);
+        db.execSQL(CREATE_FINGERPRINT_TABLE);
         Log.d(TAG, "Created databases");
     }
 
     private void dropTables(SQLiteDatabase db) {
         db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_SLICES_INDEX);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_SLICES_FINGERPRINT);
     }
 
     private void setBuildIndexed() {
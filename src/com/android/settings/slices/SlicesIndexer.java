@@ -18,27 +18,72 @@ package com.android.settings.slices;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Trace;
+import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settings.accessibility.AccessibilitySettings;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.instrumentation.LatencyTracker;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.overlay.FeatureFactory;
+import com.android.settings.slices.SlicesDatabaseHelper.FingerprintColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.Tables;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Manages the conversion of {@link DashboardFragment} and {@link BasePreferenceController} to
  * indexable data {@link SliceData} to be stored for Slices.
+ *
+ * <p>The slice data is indexed per fragment. Each fragment keeps a fingerprint of the sources of
+ * its indexed slice data, which reflects the locale, the installed Settings and its XML, and only
+ * the fragments whose fingerprint changed are converted and re-indexed.
  */
 class SlicesIndexer implements Runnable {
 
     private static final String TAG = "SlicesIndexer";
 
+    private static final String INSERT_SLICE_SQL =
+            "INSERT INTO " + Tables.TABLE_SLICES_INDEX
+                    + "("
+                    + TextUtils.join(", ", new String[] {
+                            IndexColumns.KEY,
+                            IndexColumns.SLICE_URI,
+                            IndexColumns.TITLE,
+                            IndexColumns.SUMMARY,
+                            IndexColumns.SCREENTITLE,
+                            IndexColumns.KEYWORDS,
+                            IndexColumns.ICON_RESOURCE,
+                            IndexColumns.FRAGMENT,
+                            IndexColumns.CONTROLLER,
+                            IndexColumns.SLICE_TYPE,
+                            IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
+                            IndexColumns.PUBLIC_SLICE,
+                            IndexColumns.HIGHLIGHT_MENU_RESOURCE,
+                            IndexColumns.USER_RESTRICTION})
+                    + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String FRAGMENT_SELECTION = IndexColumns.FRAGMENT + " = ?";
+
     private Context mContext;
 
     private SlicesDatabaseHelper mHelper;
@@ -58,7 +103,8 @@ class SlicesIndexer implements Runnable {
 
     /**
      * Synchronously takes data obtained from {@link SliceDataConverter} and indexes it into a
-     * SQLite database
+     * SQLite database. Only the fragments whose sources changed since the last indexing are
+     * converted and re-indexed.
      */
     protected void indexSliceData() {
         if (mHelper.isSliceDataIndexed()) {
@@ -69,58 +115,225 @@ class SlicesIndexer implements Runnable {
         final SQLiteDatabase database = mHelper.getWritableDatabase();
 
         long startTime = System.currentTimeMillis();
+        final int updatedFragmentCount;
+        Trace.beginSection("SlicesIndexer#indexSliceData");
         database.beginTransaction();
         try {
-            mHelper.reconstruct(database);
-            List<SliceData> indexData = getSliceData();
-            insertSliceData(database, indexData);
+            updatedFragmentCount = updateSliceData(database, getSliceDataConverter());
 
+            // Clears the indexed state of previous builds and locales before marking the current
+            // one, since the data indexed for them is replaced.
+            mHelper.clearIndexedState();
             mHelper.setIndexedState();
-
-            // TODO (b/71503044) Log indexing time.
-            Log.d(TAG,
-                    "Indexing slices database took: " + (System.currentTimeMillis() - startTime));
             database.setTransactionSuccessful();
         } finally {
             database.endTransaction();
+            Trace.endSection();
         }
+        final long indexingTime = System.currentTimeMillis() - startTime;
+        Log.d(TAG, "Indexing slices database took: " + indexingTime
+                + ", updated fragments: " + updatedFragmentCount);
+        LatencyTracker.record(TAG, "indexSliceData", indexingTime);
     }
 
     @VisibleForTesting
-    List<SliceData> getSliceData() {
+    SliceDataConverter getSliceDataConverter() {
         return FeatureFactory.getFeatureFactory()
                 .getSlicesFeatureProvider()
-                .getSliceDataConverter(mContext)
-                .getSliceData();
+                .getSliceDataConverter(mContext);
     }
 
+    /**
+     * Converts and re-indexes the slice data of the fragments whose fingerprint changed, and
+     * removes the data of the fragments which are no longer indexed.
+     *
+     * <p>The fingerprint is taken from the sources of the slice data, before they're converted,
+     * so that the XML of the unchanged fragments isn't parsed and their controllers aren't
+     * created.
+     *
+     * @return the number of the updated fragments.
+     */
     @VisibleForTesting
-    void insertSliceData(SQLiteDatabase database, List<SliceData> indexData) {
-        ContentValues values;
+    int updateSliceData(SQLiteDatabase database, SliceDataConverter converter) {
+        final Map<String, List<Integer>> xmlResources = converter.getXmlResources();
+        // The accessibility slices are listed from the installed services, which is cheap, and
+        // indexed with the fragment of the accessibility settings.
+        final String a11yFragmentName = AccessibilitySettings.class.getName();
+        final List<SliceData> a11ySliceData = converter.getAccessibilitySliceData();
+        if (!a11ySliceData.isEmpty() && !xmlResources.containsKey(a11yFragmentName)) {
+            xmlResources.put(a11yFragmentName, new ArrayList<>());
+        }
+
+        final String sourceVersion = getSourceVersion();
+        final Map<String, String> indexedFingerprints = getIndexedFingerprints(database);
+        int updatedFragmentCount = 0;
+        try (SQLiteStatement insertStatement = database.compileStatement(INSERT_SLICE_SQL)) {
+            for (Map.Entry<String, List<Integer>> entry : xmlResources.entrySet()) {
+                final String fragmentName = entry.getKey();
+                final List<SliceData> extraSliceData = fragmentName.equals(a11yFragmentName)
+                        ? a11ySliceData : new ArrayList<>();
+                final String fingerprint = getFingerprint(sourceVersion, entry.getValue(),
+                        extraSliceData);
+                final String indexedFingerprint = indexedFingerprints.remove(fragmentName);
+                if (fingerprint != null && fingerprint.equals(indexedFingerprint)) {
+                    continue;
+                }
+                final List<SliceData> sliceData =
+                        converter.getSliceData(fragmentName, entry.getValue());
+                sliceData.addAll(extraSliceData);
+                database.delete(Tables.TABLE_SLICES_INDEX, FRAGMENT_SELECTION,
+                        new String[] {fragmentName});
+                insertSliceData(insertStatement, sliceData);
+
+                // Also kept for the fragments without slices, so that they aren't converted
+                // again either.
+                final ContentValues values = new ContentValues();
+                values.put(FingerprintColumns.FRAGMENT, fragmentName);
+                values.put(FingerprintColumns.FINGERPRINT, fingerprint);
+                database.replaceOrThrow(Tables.TABLE_SLICES_FINGERPRINT,
+                        null /* nullColumnHack */, values);
+                updatedFragmentCount++;
+            }
+        }
 
+        // The remaining fragments are no longer indexed.
+        for (String fragmentName : indexedFingerprints.keySet()) {
+            database.delete(Tables.TABLE_SLICES_INDEX, FRAGMENT_SELECTION,
+                    new String[] {fragmentName});
+            database.delete(Tables.TABLE_SLICES_FINGERPRINT,
+                    FingerprintColumns.FRAGMENT + " = ?", new String[] {fragmentName});
+            updatedFragmentCount++;
+        }
+        return updatedFragmentCount;
+    }
+
+    @VisibleForTesting
+    void insertSliceData(SQLiteStatement insertStatement, List<SliceData> indexData) {
         for (SliceData dataRow : indexData) {
-            values = new ContentValues();
-            values.put(IndexColumns.KEY, dataRow.getKey());
-            values.put(IndexColumns.SLICE_URI, dataRow.getUri().toString());
-            values.put(IndexColumns.TITLE, dataRow.getTitle());
-            values.put(IndexColumns.SUMMARY, dataRow.getSummary());
+            insertStatement.clearBindings();
+            bindString(insertStatement, 1, dataRow.getKey());
+            bindString(insertStatement, 2, dataRow.getUri().toString());
+            bindString(insertStatement, 3, dataRow.getTitle());
+            bindString(insertStatement, 4, dataRow.getSummary());
             final CharSequence screenTitle = dataRow.getScreenTitle();
-            if (screenTitle != null) {
-                values.put(IndexColumns.SCREENTITLE, screenTitle.toString());
+            bindString(insertStatement, 5, screenTitle != null ? screenTitle.toString() : null);
+            bindString(insertStatement, 6, dataRow.getKeywords());
+            insertStatement.bindLong(7, dataRow.getIconResource());
+            bindString(insertStatement, 8, dataRow.getFragmentClassName());
+            bindString(insertStatement, 9, dataRow.getPreferenceController());
+            insertStatement.bindLong(10, dataRow.getSliceType());
+            bindString(insertStatement, 11, dataRow.getUnavailableSliceSubtitle());
+            insertStatement.bindLong(12, dataRow.isPublicSlice() ? 1 : 0);
+            insertStatement.bindLong(13, dataRow.getHighlightMenuRes());
+            bindString(insertStatement, 14, dataRow.getUserRestriction());
+            insertStatement.executeInsert();
+        }
+    }
+
+    /**
+     * Gets what the slice data depends on besides the XML of the fragments: the locale its
+     * strings are resolved in, and the installed Settings, whose controllers convert the XML.
+     */
+    @VisibleForTesting
+    String getSourceVersion() {
+        final StringBuilder version = new StringBuilder(
+                mContext.getResources().getConfiguration().getLocales().toLanguageTags());
+        try {
+            final PackageInfo packageInfo = mContext.getPackageManager()
+                    .getPackageInfo(mContext.getPackageName(), 0 /* flags */);
+            version.append('/').append(packageInfo.getLongVersionCode())
+                    .append('/').append(packageInfo.lastUpdateTime);
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "Cannot find the Settings package", e);
+        }
+        return version.toString();
+    }
+
+    /**
+     * Gets the fingerprint of the sources of the slice data of a fragment: the
+     * {@param sourceVersion}, the content of its {@param xmlResIds}, which declares the
+     * controllers of its slices, and its {@param extraSliceData} not converted from XML. Returns
+     * {@code null} if it's not available so that the fragment is always re-indexed.
+     */
+    @VisibleForTesting
+    @Nullable
+    String getFingerprint(String sourceVersion, List<Integer> xmlResIds,
+            List<SliceData> extraSliceData) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            Log.w(TAG, "Cannot get the fingerprint of slice data", e);
+            return null;
+        }
+        updateDigest(digest, sourceVersion);
+        final Resources resources = mContext.getResources();
+        final byte[] buffer = new byte[8192];
+        for (int xmlResId : xmlResIds) {
+            try (InputStream in = resources.openRawResource(xmlResId)) {
+                updateDigest(digest, resources.getResourceName(xmlResId));
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, count);
+                }
+            } catch (IOException | Resources.NotFoundException e) {
+                Log.w(TAG, "Cannot read the XML of slice data", e);
+                return null;
+            }
+        }
+        for (SliceData dataRow : extraSliceData) {
+            final CharSequence screenTitle = dataRow.getScreenTitle();
+            final Object[] fields = new Object[] {
+                    dataRow.getKey(),
+                    dataRow.getUri(),
+                    dataRow.getTitle(),
+                    dataRow.getSummary(),
+                    screenTitle != null ? screenTitle.toString() : null,
+                    dataRow.getKeywords(),
+                    dataRow.getIconResource(),
+                    dataRow.getPreferenceController(),
+                    dataRow.getSliceType(),
+                    dataRow.getUnavailableSliceSubtitle(),
+                    dataRow.isPublicSlice(),
+                    dataRow.getHighlightMenuRes(),
+                    dataRow.getUserRestriction()};
+            for (Object field : fields) {
+                updateDigest(digest, String.valueOf(field));
             }
-            values.put(IndexColumns.KEYWORDS, dataRow.getKeywords());
-            values.put(IndexColumns.ICON_RESOURCE, dataRow.getIconResource());
-            values.put(IndexColumns.FRAGMENT, dataRow.getFragmentClassName());
-            values.put(IndexColumns.CONTROLLER, dataRow.getPreferenceController());
-            values.put(IndexColumns.SLICE_TYPE, dataRow.getSliceType());
-            values.put(IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
-                    dataRow.getUnavailableSliceSubtitle());
-            values.put(IndexColumns.PUBLIC_SLICE, dataRow.isPublicSlice());
-            values.put(IndexColumns.HIGHLIGHT_MENU_RESOURCE, dataRow.getHighlightMenuRes());
-            values.put(IndexColumns.USER_RESTRICTION, dataRow.getUserRestriction());
-
-            database.replaceOrThrow(Tables.TABLE_SLICES_INDEX, null /* nullColumnHack */,
-                    values);
+        }
+        final StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    private static void updateDigest(MessageDigest digest, String field) {
+        // Prefixes the length to keep the field boundaries.
+        final byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    private static Map<String, String> getIndexedFingerprints(SQLiteDatabase database) {
+        final Map<String, String> fingerprints = new ArrayMap<>();
+        try (Cursor cursor = database.query(Tables.TABLE_SLICES_FINGERPRINT,
+                new String[] {FingerprintColumns.FRAGMENT, FingerprintColumns.FINGERPRINT},
+                null /* selection */, null /* selectionArgs */, null /* groupBy */,
+                null /* having */, null /* orderBy */)) {
+            while (cursor.moveToNext()) {
+                fingerprints.put(cursor.getString(0), cursor.getString(1));
+            }
+        }
+        return fingerprints;
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
         }
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.benchmark.Benchmark;
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Benchmarks typing a query in the app list search with {@link AppSearchIndex}, against the
+ * label scan it replaced, for several counts of apps.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AppSearchIndexBenchmark {
+
+    private static final int[] ENTRY_COUNTS = {100, 600, 1200};
+    private static final String[] WORDS = {
+            "Calendar", "Camera", "Chrome", "Clock", "Contacts", "Drive", "Files", "Gallery",
+            "Keep", "Maps", "Messages", "Music", "Phone", "Photos", "Settings", "Weather"};
+    // The queries a user types one character after another.
+    private static final String[] KEYSTROKES = {"m", "ma", "map", "maps", "maps 1"};
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+    }
+
+    @Test
+    public void typeQuery_labelScan() {
+        for (int entryCount : ENTRY_COUNTS) {
+            final List<AppEntry> entries = createEntries(entryCount);
+            assertThat(scanAll(entries)).isGreaterThan(0);
+
+            Benchmark.measure("AppSearchIndex#search/labelScan/" + entryCount,
+                    () -> scanAll(entries));
+        }
+    }
+
+    @Test
+    public void typeQuery_buildIndex() {
+        for (int entryCount : ENTRY_COUNTS) {
+            final List<AppEntry> entries = createEntries(entryCount);
+            assertThat(searchAll(new AppSearchIndex(entries, Locale.US)))
+                    .isEqualTo(scanAll(entries));
+
+            Benchmark.measure("AppSearchIndex#search/buildIndex/" + entryCount,
+                    () -> searchAll(new AppSearchIndex(entries, Locale.US)));
+        }
+    }
+
+    @Test
+    public void typeQuery_builtIndex() {
+        for (int entryCount : ENTRY_COUNTS) {
+            final List<AppEntry> entries = createEntries(entryCount);
+            final AppSearchIndex index = new AppSearchIndex(entries, Locale.US);
+            assertThat(searchAll(index)).isEqualTo(scanAll(entries));
+
+            Benchmark.measure("AppSearchIndex#search/builtIndex/" + entryCount,
+                    () -> searchAll(index));
+        }
+    }
+
+    private List<AppEntry> createEntries(int entryCount) {
+        final List<AppEntry> entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            final ApplicationInfo info = new ApplicationInfo();
+            info.packageName = "pkg" + i;
+            info.sourceDir = "abc";
+            final AppEntry entry = new AppEntry(mContext, info, i);
+            entry.label = WORDS[i % WORDS.length] + " " + i;
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static int searchAll(AppSearchIndex index) {
+        int matches = 0;
+        for (String query : KEYSTROKES) {
+            matches += index.search(query).size();
+        }
+        return matches;
+    }
+
+    // The label scan used before AppSearchIndex.
+    private static int scanAll(List<AppEntry> entries) {
+        int matches = 0;
+        for (String query : KEYSTROKES) {
+            for (AppEntry entry : entries) {
+                if (entry.label.toLowerCase().contains(query.toLowerCase())) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import android.os.Bundle;
+
+import com.android.settings.Settings;
+import com.android.settings.benchmark.ScreenBenchmark;
+import com.android.settings.testutils.shadow.ShadowUserManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/** Benchmarks opening the list of all apps. */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = ShadowUserManager.class)
+public class ManageApplicationsScreenBenchmark {
+
+    @Test
+    public void openAllApps() {
+        final Bundle args = new Bundle();
+        args.putString(ManageApplications.EXTRA_CLASSNAME,
+                Settings.ManageApplicationsActivity.class.getName());
+
+        ScreenBenchmark.measureOpen("ManageApplications#open",
+                ScreenBenchmark.settingsActivity(ManageApplications.class, args),
+                ScreenBenchmark.showsFragment(ManageApplications.class));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.benchmark;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Measures an operation the way a JMH benchmark does: it runs warmup iterations first, then
+ * reports the median and 90th percentile time, and the bytes allocated, per operation over the
+ * measured iterations.
+ */
+public final class Benchmark {
+
+    public static final int DEFAULT_WARMUP_ITERATIONS = 3;
+    public static final int DEFAULT_MEASURE_ITERATIONS = 10;
+
+    private static final String OUTPUT_PROPERTY = "settings.benchmark.output";
+
+    // Consumes the results of the operations, so that they can't be optimized out.
+    private static volatile Object sBlackhole;
+
+    private Benchmark() {
+    }
+
+    /** Measures the {@param operation} and reports it as {@param name}. */
+    public static Result measure(String name, Supplier<?> operation) {
+        return measure(name, () -> null, input -> operation.get());
+    }
+
+    /**
+     * Measures the {@param operation} applied to a new {@param input} at each iteration, and
+     * reports it as {@param name}. Creating the input isn't measured.
+     */
+    public static <T> Result measure(String name, Supplier<T> input,
+            Function<T, ?> operation) {
+        for (int i = 0; i < DEFAULT_WARMUP_ITERATIONS; i++) {
+            sBlackhole = operation.apply(input.get());
+        }
+        final long[] times = new long[DEFAULT_MEASURE_ITERATIONS];
+        long allocatedBytes = 0;
+        for (int i = 0; i < DEFAULT_MEASURE_ITERATIONS; i++) {
+            final T in = input.get();
+            final long startBytes = getAllocatedBytes();
+            final long startTime = System.nanoTime();
+            sBlackhole = operation.apply(in);
+            times[i] = System.nanoTime() - startTime;
+            allocatedBytes += getAllocatedBytes() - startBytes;
+        }
+        final Result result = new Result(name)
+                .put("median", getPercentile(times, 50))
+                .put("p90", getPercentile(times, 90))
+                .put("allocated", allocatedBytes / DEFAULT_MEASURE_ITERATIONS);
+        result.report();
+        return result;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far, or 0 if the JVM can't tell.
+     */
+    static long getAllocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()
+                    && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the {@param percentile} of the {@param values}, by nearest rank. */
+    static long getPercentile(long[] values, int percentile) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+
+    /** The metrics of a benchmark, in nanoseconds for times and in bytes for allocations. */
+    public static final class Result {
+        private final String mName;
+        private final Map<String, Long> mMetrics = new LinkedHashMap<>();
+
+        Result(String name) {
+            mName = name;
+        }
+
+        Result put(String metric, long value) {
+            mMetrics.put(metric, value);
+            return this;
+        }
+
+        /** Returns the value of the {@param metric}. */
+        public long get(String metric) {
+            return mMetrics.get(metric);
+        }
+
+        /**
+         * Prints the metrics, and appends them to the file named by the
+         * {@code settings.benchmark.output} system property if set.
+         */
+        void report() {
+            System.out.println("SettingsBenchmark " + this);
+            final String output = System.getProperty(OUTPUT_PROPERTY);
+            if (output == null) {
+                return;
+            }
+            try (Writer writer = new FileWriter(output, true /* append */)) {
+                writer.write(toJson() + "\n");
+            } catch (IOException e) {
+                System.err.println("Failed to write the results of " + mName + ": " + e);
+            }
+        }
+
+        private String toJson() {
+            final StringBuilder sb = new StringBuilder("{\"name\":\"").append(mName).append('"');
+            mMetrics.forEach((metric, value) ->
+                    sb.append(",\"").append(metric).append("\":").append(value));
+            return sb.append('}').toString();
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder(mName);
+            mMetrics.forEach((metric, value) -> sb.append(' ').append(metric).append('=')
+                    .append(value));
+            return sb.toString();
+        }
+    }
+}
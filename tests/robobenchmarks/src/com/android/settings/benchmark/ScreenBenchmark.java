@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.benchmark;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Looper;
+
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentActivity;
+
+import com.android.settings.R;
+import com.android.settings.SettingsActivity;
+
+import org.robolectric.Robolectric;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Measures opening a screen: the time until its activity is resumed and its main thread is
+ * idle, the main thread tasks taking longer than a frame, and the bytes allocated on the main
+ * thread.
+ *
+ * <p>Robolectric doesn't render frames, so a main thread task taking longer than a frame stands
+ * for a dropped frame.
+ */
+public final class ScreenBenchmark {
+
+    // The budget of a frame at 60 Hz.
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    private ScreenBenchmark() {
+    }
+
+    /**
+     * Opens the screen launched by the {@param activityController} once cold, then again warm,
+     * and reports it as {@param name}. The {@param verifier} is called on the first opened
+     * activity, to check that the screen opened successfully.
+     */
+    public static <T extends Activity> Benchmark.Result measureOpen(String name,
+            Supplier<ActivityController<T>> activityController, Consumer<T> verifier) {
+        final Open cold = open(activityController, verifier);
+        for (int i = 0; i < Benchmark.DEFAULT_WARMUP_ITERATIONS; i++) {
+            open(activityController, null /* verifier */);
+        }
+        final long[] times = new long[Benchmark.DEFAULT_MEASURE_ITERATIONS];
+        long jankyFrames = 0;
+        long longestTask = 0;
+        long allocatedBytes = 0;
+        for (int i = 0; i < Benchmark.DEFAULT_MEASURE_ITERATIONS; i++) {
+            final Open warm = open(activityController, null /* verifier */);
+            times[i] = warm.mTime;
+            jankyFrames += warm.mJankyFrames;
+            longestTask = Math.max(longestTask, warm.mLongestTask);
+            allocatedBytes += warm.mAllocatedBytes;
+        }
+        final Benchmark.Result result = new Benchmark.Result(name)
+                .put("cold", cold.mTime)
+                .put("warm", Benchmark.getPercentile(times, 50))
+                .put("warmP90", Benchmark.getPercentile(times, 90))
+                .put("jankyFrames", jankyFrames / Benchmark.DEFAULT_MEASURE_ITERATIONS)
+                .put("longestTask", longestTask)
+                .put("allocated", allocatedBytes / Benchmark.DEFAULT_MEASURE_ITERATIONS);
+        result.report();
+        return result;
+    }
+
+    /** Returns a supplier of controllers of a {@link SettingsActivity} showing the fragment. */
+    public static Supplier<ActivityController<SettingsActivity>> settingsActivity(
+            Class<? extends Fragment> fragment, Bundle args) {
+        return () -> Robolectric.buildActivity(SettingsActivity.class, new Intent()
+                .putExtra(SettingsActivity.EXTRA_SHOW_FRAGMENT, fragment.getName())
+                .putExtra(SettingsActivity.EXTRA_SHOW_FRAGMENT_ARGUMENTS, args));
+    }
+
+    /** Returns a verifier checking that the activity shows the {@param fragment}. */
+    public static <T extends FragmentActivity> Consumer<T> showsFragment(
+            Class<? extends Fragment> fragment) {
+        return activity -> {
+            final Fragment shown =
+                    activity.getSupportFragmentManager().findFragmentById(R.id.main_content);
+            if (!fragment.isInstance(shown)) {
+                throw new AssertionError("Expected " + fragment.getSimpleName() + " to be shown"
+                        + ", but was " + shown);
+            }
+        };
+    }
+
+    private static <T extends Activity> Open open(
+            Supplier<ActivityController<T>> activityController, Consumer<T> verifier) {
+        final ShadowLooper mainLooper = shadowOf(Looper.getMainLooper());
+        final Open open = new Open();
+        final long startBytes = Benchmark.getAllocatedBytes();
+        final long startTime = System.nanoTime();
+
+        // The activity lifecycle runs in a single main thread task on a device as well.
+        final ActivityController<T> controller = activityController.get().setup();
+        open.onTask(System.nanoTime() - startTime);
+        while (!mainLooper.isIdle()) {
+            final long taskStartTime = System.nanoTime();
+            mainLooper.runOneTask();
+            open.onTask(System.nanoTime() - taskStartTime);
+        }
+
+        open.mTime = System.nanoTime() - startTime;
+        open.mAllocatedBytes = Benchmark.getAllocatedBytes() - startBytes;
+        if (verifier != null) {
+            verifier.accept(controller.get());
+        }
+        controller.pause().stop().destroy();
+        mainLooper.idle();
+        return open;
+    }
+
+    private static final class Open {
+        long mTime;
+        long mJankyFrames;
+        long mLongestTask;
+        long mAllocatedBytes;
+
+        void onTask(long taskTime) {
+            if (taskTime > FRAME_NANOS) {
+                mJankyFrames++;
+            }
+            mLongestTask = Math.max(mLongestTask, taskTime);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_CONTROLLER;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.text.TextUtils;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.R;
+import com.android.settings.benchmark.Benchmark;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks creating the controllers declared in the xml of the top level and developer options
+ * screens with {@link PreferenceControllerRegistry}, cold and warm, against the reflection used
+ * before it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceControllerRegistryBenchmark {
+
+    private static final int[] XML_RES_IDS = {R.xml.top_level_settings, R.xml.development_settings};
+
+    private Context mContext;
+    private List<Bundle> mMetadata;
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = ApplicationProvider.getApplicationContext();
+        PreferenceControllerRegistry.clearConstructors();
+        mMetadata = new ArrayList<>();
+        for (int xmlResId : XML_RES_IDS) {
+            mMetadata.addAll(PreferenceXmlParserUtils.extractMetadata(mContext, xmlResId,
+                    MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_PREF_CONTROLLER
+                            | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN));
+        }
+    }
+
+    @Test
+    public void createControllers_reflection() {
+        assertThat(createByReflection()).isGreaterThan(0);
+
+        Benchmark.measure("PreferenceControllerRegistry/reflection", this::createByReflection);
+    }
+
+    @Test
+    public void createControllers_registryCold() {
+        assertThat(createByRegistry()).isGreaterThan(0);
+
+        Benchmark.measure("PreferenceControllerRegistry/cold", () -> {
+            PreferenceControllerRegistry.clearConstructors();
+            return null;
+        }, input -> createByRegistry());
+    }
+
+    @Test
+    public void createControllers_registryWarm() {
+        assertThat(createByRegistry()).isGreaterThan(0);
+
+        Benchmark.measure("PreferenceControllerRegistry/warm", this::createByRegistry);
+    }
+
+    /**
+     * Creates the controllers the same way as {@link PreferenceControllerListHelper}, and
+     * returns how many were created.
+     */
+    private int createByRegistry() {
+        int count = 0;
+        for (Bundle bundle : mMetadata) {
+            final String controllerName = bundle.getString(METADATA_CONTROLLER);
+            if (TextUtils.isEmpty(controllerName)) {
+                continue;
+            }
+            BasePreferenceController controller = null;
+            if (PreferenceControllerRegistry.hasContextConstructor(controllerName)) {
+                try {
+                    controller = BasePreferenceController.createInstance(mContext,
+                            controllerName);
+                } catch (IllegalStateException e) {
+                    // Tries the key constructor below.
+                }
+            }
+            if (controller == null) {
+                try {
+                    controller = BasePreferenceController.createInstance(mContext,
+                            controllerName, bundle.getString(METADATA_KEY));
+                } catch (IllegalStateException e) {
+                    continue;
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Creates the controllers the way {@link PreferenceControllerListHelper} used to, and returns
+     * how many were created.
+     */
+    private int createByReflection() {
+        int count = 0;
+        for (Bundle bundle : mMetadata) {
+            final String controllerName = bundle.getString(METADATA_CONTROLLER);
+            if (TextUtils.isEmpty(controllerName)) {
+                continue;
+            }
+            try {
+                final Constructor<?> constructor =
+                        Class.forName(controllerName).getConstructor(Context.class);
+                constructor.newInstance(mContext);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                try {
+                    final Constructor<?> constructor = Class.forName(controllerName)
+                            .getConstructor(Context.class, String.class);
+                    constructor.newInstance(mContext, bundle.getString(METADATA_KEY));
+                } catch (ReflectiveOperationException | RuntimeException e2) {
+                    continue;
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.provider.SearchIndexableResource;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.benchmark.Benchmark;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+import com.android.settings.search.SearchFeatureProviderImpl;
+import com.android.settingslib.search.Indexable;
+import com.android.settingslib.search.SearchIndexableData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Benchmarks extracting the search metadata of every indexable preference xml, parsed and read
+ * from {@link PreferenceXmlMetadataCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceXmlMetadataCacheBenchmark {
+
+    // The flags used by BaseSearchIndexProvider to find the non indexable keys.
+    private static final int FLAGS = MetadataFlag.FLAG_NEED_KEY
+            | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN | MetadataFlag.FLAG_NEED_SEARCHABLE;
+
+    private Context mContext;
+    private PreferenceXmlMetadataCache mCache;
+    private Set<Integer> mXmlResIds;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mCache = PreferenceXmlMetadataCache.getInstance();
+        mCache.clear();
+        mXmlResIds = getIndexableXml();
+    }
+
+    @Test
+    public void extractAllIndexableXml_parse() {
+        assertThat(extractAll()).isGreaterThan(0);
+
+        Benchmark.measure("PreferenceXmlMetadataCache/indexableXml/parse", () -> {
+            mCache.clear();
+            return null;
+        }, input -> extractAll());
+    }
+
+    @Test
+    public void extractAllIndexableXml_cached() {
+        assertThat(extractAll()).isGreaterThan(0);
+
+        Benchmark.measure("PreferenceXmlMetadataCache/indexableXml/cached", this::extractAll);
+    }
+
+    // Returns the count of the preferences found, the xml which fail to parse are skipped.
+    private int extractAll() {
+        int count = 0;
+        for (int xmlResId : mXmlResIds) {
+            try {
+                count += PreferenceXmlParserUtils.extractMetadata(mContext, xmlResId, FLAGS)
+                        .size();
+            } catch (Exception e) {
+                // Skipped, as BaseSearchIndexProvider does.
+            }
+        }
+        return count;
+    }
+
+    private Set<Integer> getIndexableXml() {
+        final Set<Integer> xmlResIds = new LinkedHashSet<>();
+        for (SearchIndexableData data :
+                new SearchFeatureProviderImpl().getSearchIndexableResources()
+                        .getProviderValues()) {
+            final Indexable.SearchIndexProvider provider = data.getSearchIndexProvider();
+            if (provider == null) {
+                continue;
+            }
+            final List<SearchIndexableResource> resources;
+            try {
+                resources = provider.getXmlResourcesToIndex(mContext, true);
+            } catch (RuntimeException e) {
+                // Some providers need services not available here.
+                continue;
+            }
+            if (resources == null) {
+                continue;
+            }
+            for (SearchIndexableResource resource : resources) {
+                if (resource.xmlResId > 0) {
+                    xmlResIds.add(resource.xmlResId);
+                }
+            }
+        }
+        return xmlResIds;
+    }
+}
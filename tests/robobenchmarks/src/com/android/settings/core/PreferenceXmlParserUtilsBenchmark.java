@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.R;
+import com.android.settings.benchmark.Benchmark;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Benchmarks {@link PreferenceXmlParserUtils#extractMetadata} on the xml of large screens. */
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceXmlParserUtilsBenchmark {
+
+    private static final int[] XML_RES_IDS = {
+            R.xml.top_level_settings,
+            R.xml.power_usage_summary,
+            R.xml.network_provider_settings,
+            R.xml.storage_dashboard_fragment,
+            R.xml.display_settings,
+            R.xml.sound_settings,
+            R.xml.security_dashboard_settings,
+    };
+    // The flags used to create the controllers of a screen.
+    private static final int FLAGS = MetadataFlag.FLAG_NEED_KEY
+            | MetadataFlag.FLAG_NEED_PREF_CONTROLLER | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN
+            | MetadataFlag.FLAG_FOR_WORK;
+
+    private Context mContext;
+    private PreferenceXmlMetadataCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mCache = PreferenceXmlMetadataCache.getInstance();
+    }
+
+    @Test
+    public void extractMetadata_parse() {
+        assertThat(extractAll()).isNotEmpty();
+
+        Benchmark.measure("PreferenceXmlParserUtils#extractMetadata/parse", () -> {
+            mCache.clear();
+            return null;
+        }, input -> extractAll());
+    }
+
+    @Test
+    public void extractMetadata_cached() {
+        assertThat(extractAll()).isNotEmpty();
+
+        Benchmark.measure("PreferenceXmlParserUtils#extractMetadata/cached", this::extractAll);
+    }
+
+    private List<Bundle> extractAll() {
+        final List<Bundle> metadata = new ArrayList<>();
+        for (int xmlResId : XML_RES_IDS) {
+            try {
+                metadata.addAll(PreferenceXmlParserUtils.extractMetadata(mContext, xmlResId,
+                        FLAGS));
+            } catch (Exception e) {
+                throw new AssertionError("Failed to parse xml " + xmlResId, e);
+            }
+        }
+        return metadata;
+    }
+}
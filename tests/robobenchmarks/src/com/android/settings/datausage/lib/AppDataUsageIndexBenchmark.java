@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage.lib;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.UserHandle;
+import android.util.SparseLongArray;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.benchmark.Benchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks {@link AppDataUsageIndex} on {@link #BUCKETS} synthetic summary buckets of
+ * {@link #UIDS} UIDs per cycle, over {@link #CYCLES} cycles.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AppDataUsageIndexBenchmark {
+
+    private static final int BUCKETS = 10_000;
+    private static final int UIDS = 500;
+    private static final int CYCLES = 12;
+    private static final long START_TIME = 1695555555000L;
+    private static final long CYCLE_MS = 28 * 24 * 60 * 60 * 1000L;
+    private static final int USER_ID = UserHandle.USER_SYSTEM;
+    private static final Map<Integer, Boolean> PROFILES = Map.of(USER_ID, false);
+
+    private Context mContext;
+    // The UIDs and bytes of the buckets of each cycle, the way NetworkStats returns them.
+    private final int[][] mBucketUids = new int[CYCLES][BUCKETS];
+    private final long[][] mBucketBytes = new long[CYCLES][BUCKETS];
+    private int mCycle;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        final Random random = new Random(0 /* seed */);
+        for (int cycle = 0; cycle < CYCLES; cycle++) {
+            for (int i = 0; i < BUCKETS; i++) {
+                // A few system UIDs among the apps, and several buckets per UID for the states,
+                // tags and metered or roaming sets of a summary.
+                final int uid = i % 10 == 0
+                        ? Process.SYSTEM_UID + random.nextInt(10)
+                        : UserHandle.getUid(USER_ID, Process.FIRST_APPLICATION_UID
+                                + random.nextInt(UIDS));
+                mBucketUids[cycle][i] = uid;
+                mBucketBytes[cycle][i] = 1 + random.nextInt(1_000_000);
+            }
+        }
+    }
+
+    @Test
+    public void putCycle() {
+        assertThat(putCycle(new AppDataUsageIndex(mContext, USER_ID), 0).getAppItems(
+                getStartTime(0), getEndTime(0), PROFILES)).isNotEmpty();
+
+        Benchmark.measure("AppDataUsageIndex#putCycle",
+                () -> new AppDataUsageIndex(mContext, USER_ID), index -> putCycle(index, 0));
+    }
+
+    @Test
+    public void getAppItems() {
+        final AppDataUsageIndex index = new AppDataUsageIndex(mContext, USER_ID);
+        for (int cycle = 0; cycle < CYCLES; cycle++) {
+            putCycle(index, cycle);
+        }
+        assertThat(index.getAppItems(getStartTime(0), getEndTime(0), PROFILES)).isNotEmpty();
+
+        // Switches to another cycle at each call, the way the user does.
+        Benchmark.measure("AppDataUsageIndex#getAppItems", () -> {
+            mCycle = (mCycle + 1) % CYCLES;
+            return index.getAppItems(getStartTime(mCycle), getEndTime(mCycle), PROFILES);
+        });
+    }
+
+    /** Sums the buckets of the cycle by UID, and puts them in the index. */
+    private AppDataUsageIndex putCycle(AppDataUsageIndex index, int cycle) {
+        final SparseLongArray usageByUid = new SparseLongArray();
+        for (int i = 0; i < BUCKETS; i++) {
+            final int uid = mBucketUids[cycle][i];
+            usageByUid.put(uid, usageByUid.get(uid) + mBucketBytes[cycle][i]);
+        }
+        index.putCycle(getStartTime(cycle), getEndTime(cycle), usageByUid,
+                getEndTime(CYCLES) /* queriedTime */);
+        return index;
+    }
+
+    private static long getStartTime(int cycle) {
+        return START_TIME + cycle * CYCLE_MS;
+    }
+
+    private static long getEndTime(int cycle) {
+        return getStartTime(cycle) + CYCLE_MS;
+    }
+}
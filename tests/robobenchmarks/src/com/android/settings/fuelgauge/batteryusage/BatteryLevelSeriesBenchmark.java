@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+
+import com.android.settings.benchmark.Benchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmarks {@link BatteryLevelSeries} against the boxed map it replaced, on seven days of
+ * battery levels recorded every 15 minutes.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BatteryLevelSeriesBenchmark {
+
+    private static final long RECORD_INTERVAL = 15 * DateUtils.MINUTE_IN_MILLIS;
+
+    private final List<Long> mTimestampList = new ArrayList<>();
+    private final Map<Long, Integer> mBatteryLevelMap = new ArrayMap<>();
+    private final List<Long> mHourlySlots = new ArrayList<>();
+    private BatteryLevelSeries mBatteryLevelSeries;
+    private long[] mTimestamps;
+
+    @Before
+    public void setUp() {
+        final long endTimestamp =
+                System.currentTimeMillis() / DateUtils.HOUR_IN_MILLIS * DateUtils.HOUR_IN_MILLIS;
+        final long startTimestamp = endTimestamp - 7 * DateUtils.DAY_IN_MILLIS;
+        final BatteryLevelSeries.Builder builder = new BatteryLevelSeries.Builder();
+        int index = 0;
+        for (long timestamp = startTimestamp; timestamp <= endTimestamp;
+                timestamp += RECORD_INTERVAL) {
+            final int level = 100 - (index++ % 100);
+            mTimestampList.add(timestamp);
+            mBatteryLevelMap.put(timestamp, level);
+            builder.add(timestamp, level);
+        }
+        mBatteryLevelSeries = builder.build();
+        mTimestamps = new long[mTimestampList.size()];
+        for (int i = 0; i < mTimestamps.length; i++) {
+            mTimestamps[i] = mTimestampList.get(i);
+        }
+        for (long timestamp = startTimestamp + DateUtils.HOUR_IN_MILLIS / 2;
+                timestamp < endTimestamp; timestamp += DateUtils.HOUR_IN_MILLIS) {
+            mHourlySlots.add(timestamp);
+        }
+    }
+
+    @Test
+    public void findNearestTimestamp_linearSearch() {
+        assertThat(findAllInList()).isEqualTo(findAllInArray());
+
+        Benchmark.measure("DataProcessor#findNearestTimestamp/linear", this::findAllInList);
+    }
+
+    @Test
+    public void findNearestTimestamp_binarySearch() {
+        assertThat(findAllInArray()).isNotEqualTo(0L);
+
+        Benchmark.measure("DataProcessor#findNearestTimestamp/binary", this::findAllInArray);
+    }
+
+    @Test
+    public void batteryLevelData_fromMap() {
+        assertThat(sumLevels(new BatteryLevelData(mBatteryLevelMap))).isGreaterThan(0L);
+
+        Benchmark.measure("BatteryLevelData/map",
+                () -> sumLevels(new BatteryLevelData(mBatteryLevelMap)));
+    }
+
+    @Test
+    public void batteryLevelData_fromSeries() {
+        assertThat(sumLevels(new BatteryLevelData(mBatteryLevelSeries))).isGreaterThan(0L);
+
+        Benchmark.measure("BatteryLevelData/series",
+                () -> sumLevels(new BatteryLevelData(mBatteryLevelSeries)));
+    }
+
+    // The linear search over the boxed timestamps used before BatteryLevelSeries.
+    private long findAllInList() {
+        long checksum = 0;
+        for (Long slot : mHourlySlots) {
+            long lower = 0;
+            for (Long timestamp : mTimestampList) {
+                if (timestamp <= slot && timestamp > lower) {
+                    lower = timestamp;
+                }
+            }
+            checksum += lower;
+        }
+        return checksum;
+    }
+
+    private long findAllInArray() {
+        long checksum = 0;
+        for (int i = 0; i < mHourlySlots.size(); i++) {
+            checksum += DataProcessor.findNearestTimestamp(mTimestamps, mHourlySlots.get(i))[0];
+        }
+        return checksum;
+    }
+
+    private static long sumLevels(BatteryLevelData batteryLevelData) {
+        long checksum = 0;
+        for (BatteryLevelData.PeriodBatteryLevelData periodData :
+                batteryLevelData.getHourlyBatteryLevelsPerDay()) {
+            final BatteryLevelSeries series = periodData.getLevelSeries();
+            for (int index = 0; index < series.size(); index++) {
+                checksum += series.getLevel(index);
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.util.ArrayMap;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.benchmark.Benchmark;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Benchmarks {@link DataProcessor#generateBatteryUsageMap} on a day of hourly battery history
+ * with {@link #APPS} apps.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DataProcessorBenchmark {
+
+    private static final int HOURS = 24;
+    private static final int APPS = 100;
+    private static final long START_TIME = 1641045600000L; // 2022-01-01 22:00:00 GMT+8
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    private Context mContext;
+    private UserIdsSeries mUserIdsSeries;
+    private BatteryLevelData mBatteryLevelData;
+    private Map<Long, Map<String, BatteryHistEntry>> mBatteryHistoryMap;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mUserIdsSeries = new UserIdsSeries(mContext, /* isNonUIRequest= */ true);
+        DataProcessor.sTestSystemAppsPackageNames = Set.of();
+
+        final Map<Long, Integer> batteryLevelMap = new ArrayMap<>();
+        mBatteryHistoryMap = new HashMap<>();
+        for (int hour = 0; hour <= HOURS; hour++) {
+            final long timestamp = START_TIME + hour * HOUR_MS;
+            batteryLevelMap.put(timestamp, 100 - hour);
+            final Map<String, BatteryHistEntry> entries = new HashMap<>();
+            for (int app = 0; app < APPS; app++) {
+                // The power consumed so far, since the history keeps accumulated values.
+                final BatteryHistEntry entry = createEntry(app, /* consumePower= */ hour * app);
+                entries.put(entry.getKey(), entry);
+            }
+            mBatteryHistoryMap.put(timestamp, entries);
+        }
+        mBatteryLevelData = new BatteryLevelData(batteryLevelMap);
+    }
+
+    @After
+    public void tearDown() {
+        DataProcessor.sTestSystemAppsPackageNames = null;
+    }
+
+    @Test
+    public void generateBatteryUsageMap() {
+        assertThat(generateBatteryUsageMap(getBatteryDiffDataMap())).isNotEmpty();
+
+        Benchmark.measure("DataProcessor#generateBatteryUsageMap", this::getBatteryDiffDataMap,
+                this::generateBatteryUsageMap);
+    }
+
+    private Map<Long, BatteryDiffData> getBatteryDiffDataMap() {
+        return DataProcessor.getBatteryDiffDataMap(mContext, mUserIdsSeries,
+                mBatteryLevelData.getHourlyBatteryLevelsPerDay(), mBatteryHistoryMap,
+                /* appUsagePeriodMap= */ null, Set.of(), Set.of());
+    }
+
+    private Map<Integer, Map<Integer, BatteryDiffData>> generateBatteryUsageMap(
+            Map<Long, BatteryDiffData> batteryDiffDataMap) {
+        return DataProcessor.generateBatteryUsageMap(mContext, batteryDiffDataMap,
+                mBatteryLevelData);
+    }
+
+    private BatteryHistEntry createEntry(int app, double consumePower) {
+        final BatteryInformation batteryInformation =
+                BatteryInformation.newBuilder()
+                        .setAppLabel("label" + app)
+                        .setConsumePower(consumePower)
+                        .setForegroundUsageConsumePower(consumePower / 2)
+                        .setBackgroundUsageConsumePower(consumePower / 2)
+                        .setForegroundUsageTimeInMs((long) consumePower * 1000)
+                        .setBackgroundUsageTimeInMs((long) consumePower * 1000)
+                        .build();
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_PACKAGE_NAME, "package" + app);
+        values.put(BatteryHistEntry.KEY_UID, 10000L + app);
+        values.put(BatteryHistEntry.KEY_USER_ID, (long) mContext.getUserId());
+        values.put(BatteryHistEntry.KEY_CONSUMER_TYPE, ConvertUtils.CONSUMER_TYPE_UID_BATTERY);
+        values.put(BatteryHistEntry.KEY_BATTERY_INFORMATION,
+                ConvertUtils.convertBatteryInformationToString(batteryInformation));
+        return new BatteryHistEntry(values);
+    }
+}
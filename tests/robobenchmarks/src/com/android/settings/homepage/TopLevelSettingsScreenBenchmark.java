@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.provider.Settings;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.R;
+import com.android.settings.benchmark.ScreenBenchmark;
+import com.android.settings.testutils.shadow.ShadowUserManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/** Benchmarks opening the homepage, which shows {@link TopLevelSettings}. */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = ShadowUserManager.class)
+public class TopLevelSettingsScreenBenchmark {
+
+    @Before
+    public void setUp() {
+        Settings.Global.putInt(ApplicationProvider.getApplicationContext().getContentResolver(),
+                Settings.Global.DEVICE_PROVISIONED, 1);
+    }
+
+    @Test
+    public void openHomepage() {
+        ScreenBenchmark.measureOpen("TopLevelSettings#open",
+                () -> Robolectric.buildActivity(SettingsHomepageActivity.class),
+                activity -> assertThat(activity.getSupportFragmentManager()
+                        .findFragmentById(R.id.main_content))
+                        .isInstanceOf(TopLevelSettings.class));
+    }
+}
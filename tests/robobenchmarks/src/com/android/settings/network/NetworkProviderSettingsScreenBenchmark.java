@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import com.android.settings.benchmark.ScreenBenchmark;
+import com.android.settings.testutils.shadow.ShadowConnectivityManager;
+import com.android.settings.testutils.shadow.ShadowUserManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/** Benchmarks opening the internet screen, with the Wi-Fi disabled and no networks. */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {ShadowConnectivityManager.class, ShadowUserManager.class})
+public class NetworkProviderSettingsScreenBenchmark {
+
+    @Test
+    public void openInternet() {
+        ScreenBenchmark.measureOpen("NetworkProviderSettings#open",
+                ScreenBenchmark.settingsActivity(NetworkProviderSettings.class, null /* args */),
+                ScreenBenchmark.showsFragment(NetworkProviderSettings.class));
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.AppOpsManager;
+import android.app.AppOpsManager.OpEntry;
+import android.app.AppOpsManager.PackageOps;
+import android.content.pm.IPackageManager;
+import android.os.RemoteException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppStateBulkLoaderTest {
+
+    private static final String PERMISSION = "permission";
+    private static final int USER_ID = 0;
+
+    @Mock
+    private AppOpsManager mAppOpsManager;
+    @Mock
+    private IPackageManager mPackageManager;
+
+    private AppStateBulkLoader mLoader;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mLoader = new AppStateBulkLoader();
+        when(mAppOpsManager.getPackagesForOps(any(int[].class))).thenReturn(Arrays.asList(
+                new PackageOps("pkg1", 1, Arrays.asList(
+                        new OpEntry(AppOpsManager.OP_SYSTEM_ALERT_WINDOW,
+                                AppOpsManager.MODE_ALLOWED, Collections.emptyMap()),
+                        new OpEntry(AppOpsManager.OP_WRITE_SETTINGS,
+                                AppOpsManager.MODE_IGNORED, Collections.emptyMap()))),
+                new PackageOps("pkg2", 2, Arrays.asList(
+                        new OpEntry(AppOpsManager.OP_WRITE_SETTINGS,
+                                AppOpsManager.MODE_ALLOWED, Collections.emptyMap())))));
+    }
+
+    @Test
+    public void getPackagesForOps_registeredOps_loadsAllOpsOnce() {
+        final int[] overlayOps = new int[]{AppOpsManager.OP_SYSTEM_ALERT_WINDOW};
+        final int[] writeSettingsOps = new int[]{AppOpsManager.OP_WRITE_SETTINGS};
+        mLoader.registerOps(overlayOps);
+        mLoader.registerOps(writeSettingsOps);
+
+        mLoader.getPackagesForOps(mAppOpsManager, overlayOps);
+        mLoader.getPackagesForOps(mAppOpsManager, writeSettingsOps);
+
+        final ArgumentCaptor<int[]> captor = ArgumentCaptor.forClass(int[].class);
+        verify(mAppOpsManager, times(1)).getPackagesForOps(captor.capture());
+        assertThat(captor.getValue()).asList().containsExactly(
+                AppOpsManager.OP_SYSTEM_ALERT_WINDOW, AppOpsManager.OP_WRITE_SETTINGS);
+    }
+
+    @Test
+    public void getPackagesForOps_returnsRequestedOpsOnly() {
+        mLoader.registerOps(new int[]{AppOpsManager.OP_WRITE_SETTINGS});
+
+        final List<PackageOps> packageOps = mLoader.getPackagesForOps(mAppOpsManager,
+                new int[]{AppOpsManager.OP_SYSTEM_ALERT_WINDOW});
+
+        assertThat(packageOps).hasSize(1);
+        assertThat(packageOps.get(0).getPackageName()).isEqualTo("pkg1");
+        assertThat(packageOps.get(0).getUid()).isEqualTo(1);
+        assertThat(packageOps.get(0).getOps()).hasSize(1);
+        assertThat(packageOps.get(0).getOps().get(0).getOp())
+                .isEqualTo(AppOpsManager.OP_SYSTEM_ALERT_WINDOW);
+        assertThat(packageOps.get(0).getOps().get(0).getMode())
+                .isEqualTo(AppOpsManager.MODE_ALLOWED);
+    }
+
+    @Test
+    public void getPackagesForOps_unregisteredOp_loadsAgain() {
+        mLoader.getPackagesForOps(mAppOpsManager, new int[]{AppOpsManager.OP_SYSTEM_ALERT_WINDOW});
+
+        final List<PackageOps> packageOps = mLoader.getPackagesForOps(mAppOpsManager,
+                new int[]{AppOpsManager.OP_WRITE_SETTINGS});
+
+        verify(mAppOpsManager, times(2)).getPackagesForOps(any(int[].class));
+        assertThat(packageOps).hasSize(2);
+    }
+
+    @Test
+    public void getPackagesForOps_opChanged_loadsAgain() {
+        final int[] ops = new int[]{AppOpsManager.OP_SYSTEM_ALERT_WINDOW};
+        mLoader.getPackagesForOps(mAppOpsManager, ops);
+        final ArgumentCaptor<AppOpsManager.OnOpChangedListener> captor =
+                ArgumentCaptor.forClass(AppOpsManager.OnOpChangedListener.class);
+        verify(mAppOpsManager).startWatchingMode(anyInt(), isNull(), captor.capture());
+
+        captor.getValue().onOpChanged(AppOpsManager.OPSTR_SYSTEM_ALERT_WINDOW, "pkg1");
+        mLoader.getPackagesForOps(mAppOpsManager, ops);
+
+        verify(mAppOpsManager, times(2)).getPackagesForOps(any(int[].class));
+    }
+
+    @Test
+    public void unregisterOps_lastBridge_stopsWatchingAndLoadsAgain() {
+        final int[] ops = new int[]{AppOpsManager.OP_SYSTEM_ALERT_WINDOW};
+        mLoader.registerOps(ops);
+        mLoader.registerOps(ops);
+        mLoader.getPackagesForOps(mAppOpsManager, ops);
+
+        mLoader.unregisterOps(mAppOpsManager);
+        verify(mAppOpsManager, never()).stopWatchingMode(any());
+        mLoader.unregisterOps(mAppOpsManager);
+
+        verify(mAppOpsManager).stopWatchingMode(any());
+        mLoader.getPackagesForOps(mAppOpsManager, ops);
+        verify(mAppOpsManager, times(2)).getPackagesForOps(any(int[].class));
+        verify(mAppOpsManager, times(2)).startWatchingMode(anyInt(), isNull(), any());
+    }
+
+    @Test
+    public void getAppOpPermissionPackages_invalidatedWhileQuerying_queriesAgain()
+            throws RemoteException {
+        when(mPackageManager.getAppOpPermissionPackages(PERMISSION, USER_ID)).thenAnswer(
+                invocation -> {
+                    mLoader.invalidate();
+                    return new String[]{"pkg1"};
+                });
+
+        mLoader.getAppOpPermissionPackages(mPackageManager, PERMISSION, USER_ID);
+        mLoader.getAppOpPermissionPackages(mPackageManager, PERMISSION, USER_ID);
+
+        verify(mPackageManager, times(2)).getAppOpPermissionPackages(PERMISSION, USER_ID);
+    }
+
+    @Test
+    public void getAppOpPermissionPackages_calledTwice_queriesOnce() throws RemoteException {
+        final String[] packages = new String[]{"pkg1"};
+        when(mPackageManager.getAppOpPermissionPackages(PERMISSION, USER_ID)).thenReturn(packages);
+
+        mLoader.getAppOpPermissionPackages(mPackageManager, PERMISSION, USER_ID);
+
+        assertThat(mLoader.getAppOpPermissionPackages(mPackageManager, PERMISSION, USER_ID))
+                .isEqualTo(packages);
+        verify(mPackageManager, times(1)).getAppOpPermissionPackages(PERMISSION, USER_ID);
+    }
+
+    @Test
+    public void getAppOpPermissionPackages_invalidated_queriesAgain() throws RemoteException {
+        mLoader.getAppOpPermissionPackages(mPackageManager, PERMISSION, USER_ID);
+
+        mLoader.invalidate();
+        mLoader.getAppOpPermissionPackages(mPackageManager, PERMISSION, USER_ID);
+
+        verify(mPackageManager, times(2)).getAppOpPermissionPackages(PERMISSION, USER_ID);
+    }
+
+    @Test
+    public void isPackageAvailable_expired_queriesAgain() throws RemoteException {
+        when(mPackageManager.isPackageAvailable("pkg1", USER_ID)).thenReturn(true);
+        mLoader.isPackageAvailable(mPackageManager, "pkg1", USER_ID);
+
+        ShadowSystemClock.advanceBy(Duration.ofMillis(AppStateBulkLoader.MAX_AGE_MS));
+
+        assertThat(mLoader.isPackageAvailable(mPackageManager, "pkg1", USER_ID)).isTrue();
+        verify(mPackageManager, times(2)).isPackageAvailable("pkg1", USER_ID);
+    }
+}
@@ -18,8 +18,12 @@ package com.android.settings.applications;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.app.role.RoleManager;
@@ -27,6 +31,8 @@ import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 
+import androidx.preference.Preference;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -176,4 +182,24 @@ public class DefaultAppsPreferenceControllerTest {
 
         assertThat(mPreferenceController.getSummary()).isNull();
     }
+
+    @Test
+    public void computeState_shouldReturnSummary() {
+        when(mRoleManager.getRoleHolders(RoleManager.ROLE_BROWSER)).thenReturn(
+                Collections.singletonList(BROWSER_PACKAGE_NAME));
+        when(mRoleManager.getRoleHolders(RoleManager.ROLE_DIALER)).thenReturn(
+                Collections.emptyList());
+        when(mRoleManager.getRoleHolders(RoleManager.ROLE_SMS)).thenReturn(Collections.emptyList());
+
+        assertThat(mPreferenceController.computeState()).isEqualTo("Browser1");
+    }
+
+    @Test
+    public void applyState_nullSummary_shouldKeepSummary() {
+        final Preference preference = mock(Preference.class);
+
+        mPreferenceController.applyState(preference, null);
+
+        verify(preference, never()).setSummary(any(CharSequence.class));
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.app.ActivityManager.RunningAppProcessInfo;
+import android.app.ActivityManager.RunningServiceInfo;
+import android.content.ComponentName;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+public class RunningStateTest {
+
+    private static final String PACKAGE_NAME = "com.example.app";
+
+    @Test
+    public void snapshot_sameValues_isSame() {
+        final RunningState.Snapshot snapshot = new RunningState.Snapshot(
+                Arrays.asList(createService(1000L)), Arrays.asList(createProcess(
+                        RunningAppProcessInfo.IMPORTANCE_SERVICE)));
+        final RunningState.Snapshot other = new RunningState.Snapshot(
+                Arrays.asList(createService(1000L)), Arrays.asList(createProcess(
+                        RunningAppProcessInfo.IMPORTANCE_SERVICE)));
+
+        assertThat(snapshot.sameAs(other)).isTrue();
+    }
+
+    @Test
+    public void snapshot_serviceRestarted_isNotSame() {
+        final RunningState.Snapshot snapshot = new RunningState.Snapshot(
+                Arrays.asList(createService(1000L)), Collections.emptyList());
+        final RunningState.Snapshot other = new RunningState.Snapshot(
+                Arrays.asList(createService(2000L)), Collections.emptyList());
+
+        assertThat(snapshot.sameAs(other)).isFalse();
+    }
+
+    @Test
+    public void snapshot_processImportanceChanged_isNotSame() {
+        final RunningState.Snapshot snapshot = new RunningState.Snapshot(
+                Collections.emptyList(), Arrays.asList(createProcess(
+                        RunningAppProcessInfo.IMPORTANCE_SERVICE)));
+        final RunningState.Snapshot other = new RunningState.Snapshot(
+                Collections.emptyList(), Arrays.asList(createProcess(
+                        RunningAppProcessInfo.IMPORTANCE_CACHED)));
+
+        assertThat(snapshot.sameAs(other)).isFalse();
+    }
+
+    @Test
+    public void snapshot_nullLists_isSameAsEmptyLists() {
+        final RunningState.Snapshot snapshot = new RunningState.Snapshot(null, null);
+
+        assertThat(snapshot.sameAs(new RunningState.Snapshot(Collections.emptyList(),
+                Collections.emptyList()))).isTrue();
+        assertThat(snapshot.sameAs(null)).isFalse();
+    }
+
+    private static RunningServiceInfo createService(long activeSince) {
+        final RunningServiceInfo service = new RunningServiceInfo();
+        service.service = new ComponentName(PACKAGE_NAME, PACKAGE_NAME + ".Service");
+        service.uid = 10001;
+        service.pid = 123;
+        service.process = PACKAGE_NAME;
+        service.started = true;
+        service.activeSince = activeSince;
+        return service;
+    }
+
+    private static RunningAppProcessInfo createProcess(int importance) {
+        final RunningAppProcessInfo process = new RunningAppProcessInfo(PACKAGE_NAME, 123,
+                new String[]{PACKAGE_NAME});
+        process.uid = 10001;
+        process.importance = importance;
+        return process;
+    }
+}
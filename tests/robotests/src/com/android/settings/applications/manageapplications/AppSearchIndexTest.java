@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.pm.ApplicationInfo;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppSearchIndexTest {
+
+    @Test
+    public void search_matchLabelIgnoringCase_returnMatchedEntriesInOrder() {
+        final AppSearchIndex index = new AppSearchIndex(
+                getAppList("Apricot", "Banana", "Cantaloupe", "Fig", "Mango"), Locale.US);
+
+        assertThat(getLabels(index.search("AN"))).containsExactly("Banana", "Cantaloupe", "Mango")
+                .inOrder();
+    }
+
+    @Test
+    public void search_matchPackageName_returnMatchedEntries() {
+        final List<AppEntry> entries = new ArrayList<>();
+        entries.add(createAppEntry("Maps", "com.google.android.apps.maps", 0));
+        entries.add(createAppEntry("Camera", "com.android.camera2", 1));
+        final AppSearchIndex index = new AppSearchIndex(entries, Locale.US);
+
+        assertThat(getLabels(index.search("camera2"))).containsExactly("Camera");
+        assertThat(getLabels(index.search("google"))).containsExactly("Maps");
+    }
+
+    @Test
+    public void search_labelWithDiacritics_matchQueryWithoutDiacritics() {
+        final AppSearchIndex index =
+                new AppSearchIndex(getAppList("Café", "Crème brûlée", "Tea"), Locale.FRANCE);
+
+        assertThat(getLabels(index.search("cafe"))).containsExactly("Café");
+        assertThat(getLabels(index.search("BRÛL"))).containsExactly("Crème brûlée");
+    }
+
+    @Test
+    public void search_turkishLocale_lowerCaseWithLocale() {
+        final AppSearchIndex index = new AppSearchIndex(getAppList("İzmir", "Istanbul"),
+                new Locale("tr"));
+
+        assertThat(getLabels(index.search("iz"))).containsExactly("İzmir");
+        assertThat(getLabels(index.search("ıst"))).containsExactly("Istanbul");
+    }
+
+    @Test
+    public void search_nonLatinLabel_matchTransliteratedQuery() {
+        final AppSearchIndex index =
+                new AppSearchIndex(getAppList("Карты", "Калькулятор", "Clock"), Locale.US);
+
+        assertThat(getLabels(index.search("kart"))).containsExactly("Карты");
+        assertThat(getLabels(index.search("Кал"))).containsExactly("Калькулятор");
+    }
+
+    @Test
+    public void search_appendAndRemoveCharacters_returnSameResultAsNewIndex() {
+        final List<AppEntry> entries =
+                getAppList("Apricot", "Banana", "Cantaloupe", "Fig", "Mango", "Anagram");
+        final AppSearchIndex index = new AppSearchIndex(entries, Locale.US);
+
+        for (String query : new String[]{"a", "an", "ana", "anag", "an", "n", "ng", "g"}) {
+            assertThat(index.search(query))
+                    .containsExactlyElementsIn(new AppSearchIndex(entries, Locale.US).search(query))
+                    .inOrder();
+        }
+    }
+
+    @Test
+    public void isBuiltFrom_sameEntriesAndLocale_returnTrue() {
+        final List<AppEntry> entries = getAppList("Apricot");
+        final AppSearchIndex index = new AppSearchIndex(entries, Locale.US);
+
+        assertThat(index.isBuiltFrom(entries, Locale.US)).isTrue();
+        assertThat(index.isBuiltFrom(new ArrayList<>(entries), Locale.US)).isFalse();
+        assertThat(index.isBuiltFrom(entries, Locale.GERMANY)).isFalse();
+    }
+
+    @Test
+    public void search_manyEntries_returnSameResultAsLabelScan() {
+        final String[] words = {"Calendar", "Camera", "Chrome", "Clock", "Maps", "Messages"};
+        final String[] labels = new String[1200];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = words[i % words.length] + " " + i;
+        }
+        final List<AppEntry> entries = getAppList(labels);
+        final AppSearchIndex index = new AppSearchIndex(entries, Locale.US);
+
+        for (String query : new String[]{"m", "ma", "map", "maps", "maps 1"}) {
+            final List<AppEntry> matchedEntries = new ArrayList<>();
+            for (AppEntry entry : entries) {
+                if (entry.label.toLowerCase(Locale.US).contains(query)) {
+                    matchedEntries.add(entry);
+                }
+            }
+            assertThat(index.search(query)).containsExactlyElementsIn(matchedEntries).inOrder();
+        }
+    }
+
+    private static List<AppEntry> getAppList(String... labels) {
+        final List<AppEntry> entries = new ArrayList<>();
+        for (String label : labels) {
+            entries.add(createAppEntry(label, "pkg" + entries.size(), entries.size()));
+        }
+        return entries;
+    }
+
+    private static AppEntry createAppEntry(String label, String packageName, long id) {
+        final ApplicationInfo info = new ApplicationInfo();
+        info.packageName = packageName;
+        info.sourceDir = "abc";
+        final AppEntry entry = new AppEntry(RuntimeEnvironment.application, info, id);
+        entry.label = label;
+        return entry;
+    }
+
+    private static List<String> getLabels(List<AppEntry> entries) {
+        return entries.stream().map(entry -> entry.label).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.bluetooth;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothProfile;
+import android.os.Looper;
+
+import com.android.settingslib.bluetooth.BluetoothEventManager;
+import com.android.settingslib.bluetooth.CachedBluetoothDevice;
+import com.android.settingslib.bluetooth.CachedBluetoothDeviceManager;
+import com.android.settingslib.bluetooth.LocalBluetoothManager;
+import com.android.settingslib.bluetooth.LocalBluetoothProfileManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class BluetoothDeviceUpdateDispatcherTest {
+
+    @Mock
+    private LocalBluetoothManager mLocalManager;
+    @Mock
+    private BluetoothEventManager mEventManager;
+    @Mock
+    private LocalBluetoothProfileManager mProfileManager;
+    @Mock
+    private CachedBluetoothDeviceManager mCachedDeviceManager;
+    @Mock
+    private CachedBluetoothDevice mCachedDevice1;
+    @Mock
+    private CachedBluetoothDevice mCachedDevice2;
+    @Mock
+    private BluetoothDevice mDevice1;
+    @Mock
+    private BluetoothDeviceUpdater mUpdater1;
+    @Mock
+    private BluetoothDeviceUpdater mUpdater2;
+
+    private BluetoothDeviceUpdateDispatcher mDispatcher;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mLocalManager.getEventManager()).thenReturn(mEventManager);
+        when(mLocalManager.getProfileManager()).thenReturn(mProfileManager);
+        when(mLocalManager.getCachedDeviceManager()).thenReturn(mCachedDeviceManager);
+        when(mCachedDeviceManager.getCachedDevicesCopy())
+                .thenReturn(List.of(mCachedDevice1, mCachedDevice2));
+        when(mCachedDevice1.getDevice()).thenReturn(mDevice1);
+        mDispatcher = new BluetoothDeviceUpdateDispatcher(mLocalManager);
+        mDispatcher.addUpdater(mUpdater1);
+        mDispatcher.addUpdater(mUpdater2);
+    }
+
+    @Test
+    public void addUpdater_registersCallbackOnce() {
+        verify(mEventManager).registerCallback(mDispatcher);
+        verify(mProfileManager).addServiceListener(mDispatcher);
+    }
+
+    @Test
+    public void removeUpdater_lastUpdater_unregistersCallback() {
+        mDispatcher.removeUpdater(mUpdater1);
+        verify(mEventManager, never()).unregisterCallback(mDispatcher);
+
+        mDispatcher.removeUpdater(mUpdater2);
+
+        verify(mEventManager).unregisterCallback(mDispatcher);
+        verify(mProfileManager).removeServiceListener(mDispatcher);
+    }
+
+    @Test
+    public void dispatch_eventsOfSameDevice_updatedOnceWithSingleSnapshot() {
+        mDispatcher.onProfileConnectionStateChanged(mCachedDevice1,
+                BluetoothProfile.STATE_CONNECTED, BluetoothProfile.A2DP);
+        mDispatcher.onAclConnectionStateChanged(mCachedDevice1, BluetoothAdapter.STATE_CONNECTED);
+        mDispatcher.onDeviceBondStateChanged(mCachedDevice2, BluetoothDevice.BOND_BONDED);
+
+        mDispatcher.dispatch();
+
+        final ArgumentCaptor<Collection<CachedBluetoothDevice>> captor =
+                ArgumentCaptor.forClass(Collection.class);
+        verify(mUpdater1).dispatchUpdate(any(), eq(List.of()), captor.capture());
+        assertThat(captor.getValue()).containsExactly(mCachedDevice1, mCachedDevice2);
+        verify(mUpdater2).dispatchUpdate(any(), eq(List.of()), eq(captor.getValue()));
+        verify(mCachedDeviceManager, times(1)).getCachedDevicesCopy();
+    }
+
+    @Test
+    public void dispatch_deviceDeletedAfterUpdate_onlyDeleted() {
+        mDispatcher.onDeviceAdded(mCachedDevice1);
+        mDispatcher.onDeviceDeleted(mCachedDevice1);
+
+        mDispatcher.dispatch();
+
+        verify(mUpdater1).dispatchUpdate(any(), eq(List.of(mCachedDevice1)), eq(List.of()));
+    }
+
+    @Test
+    public void dispatch_bluetoothStateChanged_updatesAllDevices() {
+        mDispatcher.onProfileConnectionStateChanged(mCachedDevice1,
+                BluetoothProfile.STATE_CONNECTED, BluetoothProfile.A2DP);
+        mDispatcher.onBluetoothStateChanged(BluetoothAdapter.STATE_ON);
+
+        mDispatcher.dispatch();
+
+        verify(mUpdater1).dispatchUpdate(any(), eq(List.of()), isNull());
+        verify(mUpdater2).dispatchUpdate(any(), eq(List.of()), isNull());
+    }
+
+    @Test
+    public void dispatch_audioModeChanged_onlyUpdatesAudioModeDependentUpdaters() {
+        when(mUpdater1.shouldUpdateOnAudioModeChanged()).thenReturn(true);
+        mDispatcher.onAudioModeChanged();
+
+        mDispatcher.dispatch();
+
+        verify(mUpdater1).dispatchUpdate(any(), eq(List.of()), isNull());
+        verify(mUpdater2, never()).dispatchUpdate(any(), anyCollection(), any());
+    }
+
+    @Test
+    public void dispatch_audioModeAndDeviceChanged_otherUpdatersOnlyUpdateDevice() {
+        when(mUpdater1.shouldUpdateOnAudioModeChanged()).thenReturn(true);
+        mDispatcher.onAudioModeChanged();
+        mDispatcher.onDeviceAdded(mCachedDevice1);
+
+        mDispatcher.dispatch();
+
+        verify(mUpdater1).dispatchUpdate(any(), eq(List.of()), isNull());
+        verify(mUpdater2).dispatchUpdate(any(), eq(List.of()), eq(List.of(mCachedDevice1)));
+    }
+
+    @Test
+    public void dispatch_noEvent_doesNothing() {
+        mDispatcher.onBluetoothStateChanged(BluetoothAdapter.STATE_TURNING_ON);
+
+        mDispatcher.dispatch();
+
+        verify(mUpdater1, never()).dispatchUpdate(any(), anyCollection(), any());
+        verify(mCachedDeviceManager, never()).getCachedDevicesCopy();
+    }
+
+    @Test
+    public void onServiceConnected_dispatchedOnNextFrame() {
+        mDispatcher.onServiceConnected();
+        mDispatcher.onAudioModeChanged();
+        verify(mUpdater1, never()).dispatchUpdate(any(), anyCollection(), any());
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(1));
+
+        verify(mUpdater1, times(1)).dispatchUpdate(any(), eq(List.of()), isNull());
+    }
+
+    @Test
+    public void removeUpdater_pendingEvents_notDispatched() {
+        mDispatcher.onServiceConnected();
+
+        mDispatcher.removeUpdater(mUpdater1);
+        mDispatcher.removeUpdater(mUpdater2);
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(1));
+
+        verify(mUpdater1, never()).dispatchUpdate(any(), anyCollection(), any());
+    }
+
+    @Test
+    public void snapshot_queriesConnectionStateOnce() {
+        when(mDevice1.getBondState()).thenReturn(BluetoothDevice.BOND_BONDED);
+        when(mDevice1.isConnected()).thenReturn(true);
+        final BluetoothDeviceUpdateDispatcher.Snapshot snapshot =
+                new BluetoothDeviceUpdateDispatcher.Snapshot(List.of(mCachedDevice1));
+
+        assertThat(snapshot.isBondedAndConnected(mCachedDevice1)).isTrue();
+        assertThat(snapshot.isBondedAndConnected(mCachedDevice1)).isTrue();
+
+        verify(mDevice1, times(1)).isConnected();
+        assertThat(snapshot.isCachedDevice(mCachedDevice1)).isTrue();
+        assertThat(snapshot.isCachedDevice(mock(CachedBluetoothDevice.class))).isFalse();
+    }
+}
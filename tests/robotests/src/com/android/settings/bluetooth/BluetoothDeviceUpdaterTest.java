@@ -233,6 +233,32 @@ public class BluetoothDeviceUpdaterTest {
         verify(mDevicePreferenceCallback).onDeviceAdded(any(Preference.class));
     }
 
+    @Test
+    public void dispatchUpdate_allDevices_addPreferenceFromSnapshot() {
+        mShadowBluetoothAdapter.setEnabled(true);
+        final BluetoothDeviceUpdateDispatcher.Snapshot snapshot =
+                new BluetoothDeviceUpdateDispatcher.Snapshot(mCachedDevices);
+
+        mBluetoothDeviceUpdater.dispatchUpdate(snapshot, List.of() /* deletedDevices */,
+                null /* updatedDevices */);
+
+        verify(mDevicePreferenceCallback).onDeviceAdded(any(Preference.class));
+        verify(mCachedDeviceManager, never()).getCachedDevicesCopy();
+    }
+
+    @Test
+    public void dispatchUpdate_deletedDevice_removePreference() {
+        mBluetoothDeviceUpdater.mPreferenceMap.put(mBluetoothDevice, mPreference);
+        final BluetoothDeviceUpdateDispatcher.Snapshot snapshot =
+                new BluetoothDeviceUpdateDispatcher.Snapshot(List.of());
+
+        mBluetoothDeviceUpdater.dispatchUpdate(snapshot, List.of(mCachedBluetoothDevice),
+                List.of() /* updatedDevices */);
+
+        verify(mDevicePreferenceCallback).onDeviceRemoved(mPreference);
+        assertThat(mBluetoothDeviceUpdater.mPreferenceMap).isEmpty();
+    }
+
     @Test
     public void onBluetoothStateChanged_bluetoothStateIsOn_forceUpdate() {
         mShadowBluetoothAdapter.setEnabled(true);
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_CONTROLLER;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import static org.junit.Assert.assertThrows;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.text.TextUtils;
+
+import com.android.settings.R;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+import com.android.settings.fuelgauge.TopLevelBatteryPreferenceController;
+import com.android.settings.testutils.FakeFeatureFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceControllerRegistryTest {
+
+    private static final String KEY = "key";
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        PreferenceControllerRegistry.clearConstructors();
+    }
+
+    @Test
+    public void registeredControllers_noContextConstructor() throws Exception {
+        for (String controllerName : PreferenceControllerRegistry.FACTORIES.keySet()) {
+            final Class<?> clazz = Class.forName(controllerName);
+
+            assertWithMessage(controllerName).that(
+                    BasePreferenceController.class.isAssignableFrom(clazz)).isTrue();
+            assertThrows(controllerName, NoSuchMethodException.class,
+                    () -> clazz.getConstructor(Context.class));
+        }
+    }
+
+    @Test
+    public void createInstance_registeredController_createsWithKey() {
+        final BasePreferenceController controller = BasePreferenceController.createInstance(
+                mContext, TopLevelBatteryPreferenceController.class.getName(), KEY);
+
+        assertThat(controller).isInstanceOf(TopLevelBatteryPreferenceController.class);
+        assertThat(controller.getPreferenceKey()).isEqualTo(KEY);
+    }
+
+    @Test
+    public void createInstance_registeredControllerWithoutKey_throwsException() {
+        assertThrows(IllegalStateException.class, () -> BasePreferenceController.createInstance(
+                mContext, TopLevelBatteryPreferenceController.class.getName()));
+    }
+
+    @Test
+    public void createInstance_unregisteredController_createsByReflection() {
+        final BasePreferenceController controller = BasePreferenceController.createInstance(
+                mContext, UnavailablePreferenceController.class.getName(), KEY, false);
+
+        assertThat(controller).isInstanceOf(UnavailablePreferenceController.class);
+        assertThat(controller.getPreferenceKey()).isEqualTo(KEY);
+    }
+
+    @Test
+    public void createInstance_contextOnlyController_createsByReflection() {
+        final String controllerName = ContextOnlyController.class.getName();
+
+        assertThat(PreferenceControllerRegistry.hasContextConstructor(controllerName)).isTrue();
+        assertThat(BasePreferenceController.createInstance(mContext, controllerName))
+                .isInstanceOf(ContextOnlyController.class);
+        assertThrows(IllegalStateException.class,
+                () -> BasePreferenceController.createInstance(mContext, controllerName, KEY));
+    }
+
+    @Test
+    public void createInstance_constructorThrows_throwsException() {
+        assertThrows(IllegalStateException.class, () -> BasePreferenceController.createInstance(
+                mContext, BadPreferenceController.class.getName(), KEY));
+    }
+
+    @Test
+    public void createInstance_unknownClass_throwsException() {
+        assertThat(PreferenceControllerRegistry.hasContextConstructor("not.a.Controller"))
+                .isFalse();
+        assertThrows(IllegalStateException.class, () -> BasePreferenceController.createInstance(
+                mContext, "not.a.Controller", KEY));
+    }
+
+    @Test
+    public void createInstance_screenControllers_sameAsReflection() throws Exception {
+        FakeFeatureFactory.setupForTest();
+        final List<Bundle> metadata = new ArrayList<>();
+        for (int xmlResId : new int[]{R.xml.top_level_settings, R.xml.development_settings}) {
+            metadata.addAll(PreferenceXmlParserUtils.extractMetadata(mContext, xmlResId,
+                    MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_PREF_CONTROLLER
+                            | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN));
+        }
+
+        assertThat(createByRegistry(metadata))
+                .containsExactlyElementsIn(createByReflection(metadata)).inOrder();
+    }
+
+    /** Creates the controllers the same way as {@link PreferenceControllerListHelper}. */
+    private List<String> createByRegistry(List<Bundle> metadata) {
+        final List<String> result = new ArrayList<>();
+        for (Bundle bundle : metadata) {
+            final String controllerName = bundle.getString(METADATA_CONTROLLER);
+            if (TextUtils.isEmpty(controllerName)) {
+                continue;
+            }
+            BasePreferenceController controller = null;
+            if (PreferenceControllerRegistry.hasContextConstructor(controllerName)) {
+                try {
+                    controller = BasePreferenceController.createInstance(mContext,
+                            controllerName);
+                } catch (IllegalStateException e) {
+                    // Tries the key constructor below.
+                }
+            }
+            if (controller == null) {
+                try {
+                    controller = BasePreferenceController.createInstance(mContext,
+                            controllerName, bundle.getString(METADATA_KEY));
+                } catch (IllegalStateException e) {
+                    result.add(controllerName + ":" + e.getClass().getSimpleName());
+                    continue;
+                }
+            }
+            result.add(controller.getClass().getName() + ":" + controller.getPreferenceKey());
+        }
+        return result;
+    }
+
+    /** Creates the controllers the way {@link PreferenceControllerListHelper} used to. */
+    private List<String> createByReflection(List<Bundle> metadata) {
+        final List<String> result = new ArrayList<>();
+        for (Bundle bundle : metadata) {
+            final String controllerName = bundle.getString(METADATA_CONTROLLER);
+            if (TextUtils.isEmpty(controllerName)) {
+                continue;
+            }
+            BasePreferenceController controller;
+            try {
+                final Constructor<?> constructor =
+                        Class.forName(controllerName).getConstructor(Context.class);
+                controller = (BasePreferenceController) constructor.newInstance(mContext);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                try {
+                    final Constructor<?> constructor = Class.forName(controllerName)
+                            .getConstructor(Context.class, String.class);
+                    controller = (BasePreferenceController) constructor.newInstance(mContext,
+                            bundle.getString(METADATA_KEY));
+                } catch (ReflectiveOperationException | RuntimeException e2) {
+                    result.add(controllerName + ":" + IllegalStateException.class.getSimpleName());
+                    continue;
+                }
+            }
+            result.add(controller.getClass().getName() + ":" + controller.getPreferenceKey());
+        }
+        return result;
+    }
+
+    public static class ContextOnlyController extends BasePreferenceController {
+
+        public ContextOnlyController(Context context) {
+            super(context, KEY);
+        }
+
+        @Override
+        public int getAvailabilityStatus() {
+            return AVAILABLE;
+        }
+    }
+}
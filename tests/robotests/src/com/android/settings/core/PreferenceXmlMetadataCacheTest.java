@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_SEARCHABLE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Bundle;
+import android.os.LocaleList;
+import android.provider.SearchIndexableResource;
+
+import com.android.settings.R;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+import com.android.settings.search.SearchFeatureProvider;
+import com.android.settings.search.SearchFeatureProviderImpl;
+import com.android.settings.testutils.FakeFeatureFactory;
+import com.android.settingslib.search.Indexable;
+import com.android.settingslib.search.SearchIndexableData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceXmlMetadataCacheTest {
+
+    private static final int FLAGS = MetadataFlag.FLAG_NEED_KEY
+            | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN | MetadataFlag.FLAG_NEED_SEARCHABLE;
+
+    private Context mContext;
+    private PreferenceXmlMetadataCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = getApplicationContext();
+        mCache = new PreferenceXmlMetadataCache();
+        PreferenceXmlMetadataCache.getInstance().clear();
+    }
+
+    @Test
+    public void extractMetadata_calledTwice_returnsCachedCopy() throws Exception {
+        final List<Bundle> metadata = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.display_settings, FLAGS);
+        metadata.get(0).putString(METADATA_KEY, "modified");
+
+        final List<Bundle> cachedMetadata = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.display_settings, FLAGS);
+
+        assertThat(PreferenceXmlMetadataCache.getInstance().size()).isEqualTo(1);
+        assertThat(cachedMetadata).hasSize(metadata.size());
+        assertThat(cachedMetadata.get(0)).isNotSameInstanceAs(metadata.get(0));
+        assertThat(cachedMetadata.get(0).getString(METADATA_KEY)).isNotEqualTo("modified");
+    }
+
+    @Test
+    public void get_differentFlags_returnsNull() {
+        mCache.put(mContext, R.xml.display_settings, FLAGS, createMetadata("key"));
+
+        assertThat(mCache.get(mContext, R.xml.display_settings, FLAGS)).isNotNull();
+        assertThat(mCache.get(mContext, R.xml.display_settings, MetadataFlag.FLAG_NEED_KEY))
+                .isNull();
+    }
+
+    @Test
+    public void get_overMaxEntries_evictsEldest() {
+        for (int i = 1; i <= PreferenceXmlMetadataCache.MAX_ENTRIES + 1; i++) {
+            mCache.put(mContext, i, FLAGS, createMetadata("key" + i));
+        }
+
+        assertThat(mCache.size()).isEqualTo(PreferenceXmlMetadataCache.MAX_ENTRIES);
+        assertThat(mCache.get(mContext, 1, FLAGS)).isNull();
+        assertThat(mCache.get(mContext, 2, FLAGS)).isNotNull();
+    }
+
+    @Test
+    public void getConfigurationKey_differentLocale_isDifferent() {
+        final Configuration config = new Configuration();
+        config.setLocales(new LocaleList(Locale.US));
+        final Configuration otherConfig = new Configuration(config);
+        otherConfig.setLocales(new LocaleList(Locale.FRANCE));
+
+        assertThat(PreferenceXmlMetadataCache.getConfigurationKey(config))
+                .isNotEqualTo(PreferenceXmlMetadataCache.getConfigurationKey(otherConfig));
+    }
+
+    @Test
+    public void readFromDisk_written_returnsMetadata() {
+        final PreferenceXmlMetadataCache.Key key =
+                new PreferenceXmlMetadataCache.Key(mContext, R.xml.display_settings, FLAGS);
+        mCache.writeToDisk(mContext, key, createMetadata("key1", "key2"));
+
+        final List<Bundle> metadata =
+                new PreferenceXmlMetadataCache().readFromDisk(mContext, key);
+
+        assertThat(metadata).hasSize(2);
+        assertThat(metadata.get(0).getString(METADATA_KEY)).isEqualTo("key1");
+        assertThat(metadata.get(1).getString(METADATA_KEY)).isEqualTo("key2");
+    }
+
+    @Test
+    public void readFromDisk_notWritten_returnsNull() {
+        final PreferenceXmlMetadataCache.Key key =
+                new PreferenceXmlMetadataCache.Key(mContext, R.xml.sound_settings, FLAGS);
+
+        assertThat(mCache.readFromDisk(mContext, key)).isNull();
+    }
+
+    @Test
+    public void extractMetadata_allIndexableXml_cachedSameAsParsed() {
+        final SearchFeatureProvider searchProvider = new SearchFeatureProviderImpl();
+        FakeFeatureFactory.setupForTest().searchFeatureProvider = searchProvider;
+        final Set<Integer> xmlResIds = getIndexableXml(searchProvider);
+        assertThat(xmlResIds).isNotEmpty();
+
+        final List<String> parsedMetadata = extractAll(xmlResIds);
+
+        assertThat(extractAll(xmlResIds)).containsExactlyElementsIn(parsedMetadata).inOrder();
+    }
+
+    private List<String> extractAll(Set<Integer> xmlResIds) {
+        final List<String> result = new ArrayList<>();
+        for (int xmlResId : xmlResIds) {
+            try {
+                for (Bundle bundle : PreferenceXmlParserUtils.extractMetadata(mContext, xmlResId,
+                        FLAGS)) {
+                    result.add(bundle.getString(METADATA_KEY) + ":"
+                            + bundle.getBoolean(METADATA_SEARCHABLE, true));
+                }
+            } catch (Exception e) {
+                result.add(xmlResId + ":" + e.getClass().getSimpleName());
+            }
+        }
+        return result;
+    }
+
+    private Set<Integer> getIndexableXml(SearchFeatureProvider searchProvider) {
+        final Set<Integer> xmlResIds = new LinkedHashSet<>();
+        for (SearchIndexableData data :
+                searchProvider.getSearchIndexableResources().getProviderValues()) {
+            final Indexable.SearchIndexProvider provider = data.getSearchIndexProvider();
+            if (provider == null) {
+                continue;
+            }
+            final List<SearchIndexableResource> resources;
+            try {
+                resources = provider.getXmlResourcesToIndex(mContext, true);
+            } catch (RuntimeException e) {
+                // Some providers need services not available here.
+                continue;
+            }
+            if (resources == null) {
+                continue;
+            }
+            for (SearchIndexableResource resource : resources) {
+                if (resource.xmlResId > 0) {
+                    xmlResIds.add(resource.xmlResId);
+                }
+            }
+        }
+        return xmlResIds;
+    }
+
+    private static List<Bundle> createMetadata(String... keys) {
+        final List<Bundle> metadata = new ArrayList<>();
+        for (String key : keys) {
+            final Bundle bundle = new Bundle();
+            bundle.putString(METADATA_KEY, key);
+            metadata.add(bundle);
+        }
+        return metadata;
+    }
+}
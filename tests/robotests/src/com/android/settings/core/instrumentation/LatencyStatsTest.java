@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.instrumentation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class LatencyStatsTest {
+
+    private static final String SCREEN = "TestSettings";
+
+    private LatencyStats mStats;
+
+    @Before
+    public void setUp() {
+        mStats = new LatencyStats();
+    }
+
+    @Test
+    public void getPercentile_neverRecorded_returnsMinusOne() {
+        assertThat(mStats.getPercentile(SCREEN, ScreenLatencyTracker.PHASE_INFLATE, 50))
+                .isEqualTo(-1);
+    }
+
+    @Test
+    public void getPercentile_returnsNearestRank() {
+        for (int latency = LatencyStats.WINDOW_SIZE; latency >= 1; latency--) {
+            mStats.record(SCREEN, ScreenLatencyTracker.PHASE_INFLATE, latency);
+        }
+
+        assertThat(mStats.getPercentile(SCREEN, ScreenLatencyTracker.PHASE_INFLATE, 50))
+                .isEqualTo(LatencyStats.WINDOW_SIZE / 2);
+        assertThat(mStats.getPercentile(SCREEN, ScreenLatencyTracker.PHASE_INFLATE, 100))
+                .isEqualTo(LatencyStats.WINDOW_SIZE);
+    }
+
+    @Test
+    public void record_overWindowSize_onlyKeepsRecentLatencies() {
+        for (int i = 0; i < LatencyStats.WINDOW_SIZE; i++) {
+            mStats.record(SCREEN, ScreenLatencyTracker.PHASE_LAUNCH, 1000);
+        }
+        for (int i = 0; i < LatencyStats.WINDOW_SIZE; i++) {
+            mStats.record(SCREEN, ScreenLatencyTracker.PHASE_LAUNCH, 10);
+        }
+
+        assertThat(mStats.getPercentile(SCREEN, ScreenLatencyTracker.PHASE_LAUNCH, 99))
+                .isEqualTo(10);
+    }
+
+    @Test
+    public void toJson_reportsPhasesByScreen() throws Exception {
+        mStats.record(SCREEN, ScreenLatencyTracker.PHASE_LAUNCH, 10);
+        mStats.record(SCREEN, ScreenLatencyTracker.PHASE_LAUNCH, 30);
+        mStats.record(SCREEN, ScreenLatencyTracker.PHASE_INFLATE, 5);
+
+        final JSONObject launch = mStats.toJson().getJSONObject(SCREEN)
+                .getJSONObject(ScreenLatencyTracker.PHASE_LAUNCH);
+
+        assertThat(launch.getLong("count")).isEqualTo(2);
+        assertThat(launch.getLong("max")).isEqualTo(30);
+        assertThat(launch.getLong("p50")).isEqualTo(10);
+        assertThat(launch.getLong("p99")).isEqualTo(30);
+    }
+}
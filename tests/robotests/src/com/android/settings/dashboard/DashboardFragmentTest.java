@@ -31,6 +31,7 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
 
 import android.app.PendingIntent;
 import android.app.settings.SettingsEnums;
@@ -41,6 +42,7 @@ import android.content.pm.ActivityInfo;
 import android.content.pm.ProviderInfo;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Looper;
 import android.os.UserHandle;
 import android.preference.PreferenceManager.OnActivityResultListener;
 
@@ -54,6 +56,7 @@ import androidx.test.core.app.ApplicationProvider;
 
 import com.android.internal.logging.nano.MetricsProto.MetricsEvent;
 import com.android.settings.R;
+import com.android.settings.core.BackgroundStateController;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settings.slices.BlockingSlicePrefController;
 import com.android.settings.testutils.FakeFeatureFactory;
@@ -325,6 +328,94 @@ public class DashboardFragmentTest {
         verify(mockController2).getPreferenceKey();
     }
 
+    @Test
+    public void updatePreferenceStates_backgroundController_appliesComputedStateOnMainThread() {
+        final TestBackgroundStateController controller =
+                new TestBackgroundStateController(mContext);
+        final Preference preference = new Preference(mContext);
+        when(mTestFragment.mScreen.findPreference(controller.getPreferenceKey()))
+                .thenReturn(preference);
+        mTestFragment.mStateUpdater = new PreferenceStateUpdater(Runnable::run);
+        mTestFragment.addPreferenceController(controller);
+
+        mTestFragment.updatePreferenceStates();
+
+        assertThat(controller.mComputeCount).isEqualTo(1);
+        assertThat(controller.mAppliedState).isNull();
+        shadowOf(Looper.getMainLooper()).idle();
+        assertThat(controller.mAppliedState).isEqualTo(TestBackgroundStateController.STATE);
+    }
+
+    @Test
+    public void updatePreferenceStates_cancelled_doesNotApplyComputedState() {
+        final TestBackgroundStateController controller =
+                new TestBackgroundStateController(mContext);
+        when(mTestFragment.mScreen.findPreference(controller.getPreferenceKey()))
+                .thenReturn(new Preference(mContext));
+        mTestFragment.mStateUpdater = new PreferenceStateUpdater(Runnable::run);
+        mTestFragment.addPreferenceController(controller);
+
+        mTestFragment.updatePreferenceStates();
+        mTestFragment.mStateUpdater.cancel();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertThat(controller.mAppliedState).isNull();
+    }
+
+    @Test
+    public void stateUpdater_superseded_cancelsPreviousBatch() {
+        final List<Runnable> tasks = new ArrayList<>();
+        final PreferenceStateUpdater updater = new PreferenceStateUpdater(tasks::add);
+        final List<AbstractPreferenceController> controllers =
+                Arrays.asList(new TestBackgroundStateController(mContext));
+        final PreferenceStateUpdater.Callback callback1 =
+                mock(PreferenceStateUpdater.Callback.class);
+        final PreferenceStateUpdater.Callback callback2 =
+                mock(PreferenceStateUpdater.Callback.class);
+
+        updater.update(controllers, callback1);
+        updater.update(controllers, callback2);
+        tasks.forEach(Runnable::run);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        verify(callback1).onCancelled();
+        verify(callback1, never()).onStatesComputed(any());
+        verify(callback2).onStatesComputed(any());
+        verify(callback2, never()).onCancelled();
+    }
+
+    @Test
+    public void stateUpdater_cancelled_notifiesPendingBatchOnce() {
+        final PreferenceStateUpdater updater = new PreferenceStateUpdater(task -> {});
+        final PreferenceStateUpdater.Callback callback =
+                mock(PreferenceStateUpdater.Callback.class);
+
+        updater.update(Arrays.asList(new TestBackgroundStateController(mContext)), callback);
+        updater.cancel();
+        updater.cancel();
+
+        verify(callback, times(1)).onCancelled();
+    }
+
+    @Test
+    public void checkUiBlocker_hasBackgroundController_blocksUntilStateApplied() {
+        final BlockingSlicePrefController blockingController =
+                new BlockingSlicePrefController(mContext, "pref_key");
+        blockingController.setSliceUri(Uri.parse("testUri"));
+        final TestBackgroundStateController controller =
+                new TestBackgroundStateController(mContext);
+        mControllers.add(blockingController);
+        mControllers.add(controller);
+        mTestFragment.checkUiBlocker(mControllers);
+
+        mTestFragment.applyPreferenceStates(Arrays.asList(new PreferenceStateUpdater.ComputedState(
+                controller, true /* available */, false /* failed */,
+                TestBackgroundStateController.STATE)));
+
+        assertThat(mTestFragment.mBlockerController.countDown(controller.getPreferenceKey()))
+                .isFalse();
+    }
+
     @Test
     public void onExpandButtonClick_shouldLogAdvancedButtonExpand() {
         final MetricsFeatureProvider metricsFeatureProvider
@@ -515,6 +606,39 @@ public class DashboardFragmentTest {
         }
     }
 
+    public static class TestBackgroundStateController extends AbstractPreferenceController
+            implements BackgroundStateController<String> {
+        private static final String STATE = "state";
+
+        private int mComputeCount;
+        private String mAppliedState;
+
+        private TestBackgroundStateController(Context context) {
+            super(context);
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public String getPreferenceKey() {
+            return "background_key";
+        }
+
+        @Override
+        public String computeState() {
+            mComputeCount++;
+            return STATE;
+        }
+
+        @Override
+        public void applyState(Preference preference, String state) {
+            mAppliedState = state;
+        }
+    }
+
     public static class SubTestPreferenceController extends TestPreferenceController {
 
         private SubTestPreferenceController(Context context) {
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.android.settingslib.drawer.SwitchesProvider.METHOD_GET_DYNAMIC_SUMMARY;
+import static com.android.settingslib.drawer.SwitchesProvider.METHOD_IS_CHECKED;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.testutils.shadow.ShadowTileUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = ShadowTileUtils.class)
+public class DynamicTileResolverTest {
+
+    private static final Uri SUMMARY_URI =
+            Uri.parse("content://com.android.settings/getDynamicSummary/summary");
+    private static final Uri SWITCH_URI =
+            Uri.parse("content://com.android.settings/isChecked/switch");
+
+    private DynamicTileResolver mResolver;
+    private List<Object> mResolved;
+
+    @Before
+    public void setUp() {
+        mResolver = new DynamicTileResolver(ApplicationProvider.getApplicationContext());
+        mResolved = new ArrayList<>();
+    }
+
+    @Test
+    public void request_noBatch_shouldFetchAndCache() {
+        mResolver.request(SUMMARY_URI, METHOD_GET_DYNAMIC_SUMMARY, mResolved::add);
+
+        assertThat(mResolved).containsExactly(ShadowTileUtils.MOCK_TEXT);
+        assertThat(mResolver.getCached(SUMMARY_URI)).isEqualTo(ShadowTileUtils.MOCK_TEXT);
+    }
+
+    @Test
+    public void request_inBatch_shouldFetchAtEndOfBatch() {
+        ShadowTileUtils.setProviderChecked(true);
+        mResolver.beginBatch();
+        mResolver.request(SUMMARY_URI, METHOD_GET_DYNAMIC_SUMMARY, mResolved::add);
+        mResolver.request(SWITCH_URI, METHOD_IS_CHECKED, mResolved::add);
+
+        assertThat(mResolved).isEmpty();
+
+        mResolver.endBatch();
+
+        assertThat(mResolved).containsExactly(ShadowTileUtils.MOCK_TEXT, true);
+    }
+
+    @Test
+    public void request_nestedBatch_shouldFetchAtEndOfOutermostBatch() {
+        mResolver.beginBatch();
+        mResolver.beginBatch();
+        mResolver.request(SUMMARY_URI, METHOD_GET_DYNAMIC_SUMMARY, mResolved::add);
+        mResolver.endBatch();
+
+        assertThat(mResolved).isEmpty();
+
+        mResolver.endBatch();
+
+        assertThat(mResolved).containsExactly(ShadowTileUtils.MOCK_TEXT);
+    }
+
+    @Test
+    public void request_sameUriInBatch_shouldReportToAllCallbacks() {
+        final List<Object> otherResolved = new ArrayList<>();
+        mResolver.beginBatch();
+        mResolver.request(SUMMARY_URI, METHOD_GET_DYNAMIC_SUMMARY, mResolved::add);
+        mResolver.request(SUMMARY_URI, METHOD_GET_DYNAMIC_SUMMARY, otherResolved::add);
+        mResolver.endBatch();
+
+        assertThat(mResolved).containsExactly(ShadowTileUtils.MOCK_TEXT);
+        assertThat(otherResolved).containsExactly(ShadowTileUtils.MOCK_TEXT);
+    }
+
+    @Test
+    public void invalidate_shouldDropCachedData() {
+        mResolver.request(SUMMARY_URI, METHOD_GET_DYNAMIC_SUMMARY, mResolved::add);
+
+        mResolver.invalidate(SUMMARY_URI);
+
+        assertThat(mResolver.getCached(SUMMARY_URI)).isNull();
+    }
+}
@@ -212,6 +212,29 @@ public class MainlineModuleVersionPreferenceControllerTest {
         assertThat(controller.getSummary()).isEqualTo("May 13, 2019");
     }
 
+    @Test
+    public void computeState_cannotHandleIntent_returnNull() throws Exception {
+        setupModulePackage("test version 123");
+        when(mPackageManager.resolveActivity(MODULE_UPDATE_V2_INTENT, 0)).thenReturn(null);
+        when(mPackageManager.resolveActivity(MODULE_UPDATE_INTENT, 0)).thenReturn(null);
+        final MainlineModuleVersionPreferenceController controller =
+                new MainlineModuleVersionPreferenceController(mContext, "key");
+
+        assertThat(controller.computeState()).isNull();
+    }
+
+    @Test
+    public void applyState_updateIntent_setIntentAndSelectable() throws Exception {
+        setupModulePackage("test version 123");
+        final MainlineModuleVersionPreferenceController controller =
+                new MainlineModuleVersionPreferenceController(mContext, "key");
+
+        controller.applyState(mPreference, MODULE_UPDATE_INTENT);
+
+        assertThat(mPreference.getIntent()).isEqualTo(MODULE_UPDATE_INTENT);
+        assertThat(mPreference.isSelectable()).isTrue();
+    }
+
     private void setupModulePackage(String version) throws Exception {
         final String provider = "test.provider";
         final PackageInfo info = new PackageInfo();
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppSizeSnapshotTest {
+    private static final String PACKAGE_NAME_1 = "com.android.test1";
+    private static final String PACKAGE_NAME_2 = "com.android.test2";
+    private static final long COMPUTED_TIME = 1000L;
+    private static final long TOTAL_BYTES = 5000L;
+
+    @Test
+    public void getSizes_splitGamesFromOtherApps() {
+        final AppSizeSnapshot snapshot = createSnapshot();
+
+        assertThat(snapshot.getGamesSize()).isEqualTo(300L);
+        assertThat(snapshot.getAppsExceptGamesSize()).isEqualTo(30L);
+    }
+
+    @Test
+    public void getAppsExceptGamesSize_withDrift_driftNotIncluded() {
+        final AppSizeSnapshot snapshot = createSnapshot();
+
+        snapshot.mDriftBytes = 40L;
+
+        assertThat(snapshot.getAppsExceptGamesSize()).isEqualTo(30L);
+    }
+
+    @Test
+    public void put_samePackage_replacesSize() {
+        final AppSizeSnapshot snapshot = createSnapshot();
+
+        snapshot.put(new AppSizeSnapshot.PackageSize(PACKAGE_NAME_1, 2L /* lastUpdateTime */,
+                1L /* codeBytes */, 50L /* totalBytes */, 50L /* blamedBytes */,
+                false /* isGame */));
+
+        assertThat(snapshot.getPackages()).hasSize(2);
+        assertThat(snapshot.get(PACKAGE_NAME_1).mLastUpdateTime).isEqualTo(2L);
+        assertThat(snapshot.getAppsExceptGamesSize()).isEqualTo(50L);
+    }
+
+    @Test
+    public void readFrom_written_sameSnapshot() throws Exception {
+        final AppSizeSnapshot snapshot = createSnapshot();
+        snapshot.mDriftBytes = -40L;
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.writeTo(new DataOutputStream(bytes));
+
+        final AppSizeSnapshot read = AppSizeSnapshot.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(read.mComputedTime).isEqualTo(COMPUTED_TIME);
+        assertThat(read.mTotalBytes).isEqualTo(TOTAL_BYTES);
+        assertThat(read.mDriftBytes).isEqualTo(-40L);
+        assertThat(read.getPackages()).hasSize(2);
+        final AppSizeSnapshot.PackageSize size = read.get(PACKAGE_NAME_2);
+        assertThat(size.mLastUpdateTime).isEqualTo(1L);
+        assertThat(size.mCodeBytes).isEqualTo(100L);
+        assertThat(size.mTotalBytes).isEqualTo(400L);
+        assertThat(size.mBlamedBytes).isEqualTo(300L);
+        assertThat(size.mIsGame).isTrue();
+    }
+
+    private static AppSizeSnapshot createSnapshot() {
+        final AppSizeSnapshot snapshot = new AppSizeSnapshot(COMPUTED_TIME, TOTAL_BYTES);
+        snapshot.put(new AppSizeSnapshot.PackageSize(PACKAGE_NAME_1, 0L /* lastUpdateTime */,
+                10L /* codeBytes */, 30L /* totalBytes */, 30L /* blamedBytes */,
+                false /* isGame */));
+        snapshot.put(new AppSizeSnapshot.PackageSize(PACKAGE_NAME_2, 1L /* lastUpdateTime */,
+                100L /* codeBytes */, 400L /* totalBytes */, 300L /* blamedBytes */,
+                true /* isGame */));
+        return snapshot;
+    }
+}
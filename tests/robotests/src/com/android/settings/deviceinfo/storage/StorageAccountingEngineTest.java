@@ -0,0 +1,390 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.usage.StorageStats;
+import android.app.usage.StorageStatsManager;
+import android.content.ContentProvider;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.UserInfo;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.UserHandle;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Files.FileColumns;
+import android.util.SparseArray;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.deviceinfo.storage.StorageAsyncLoader.StorageResult;
+import com.android.settingslib.applications.StorageStatsSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class StorageAccountingEngineTest {
+    private static final String VOLUME_UUID = "volume";
+    private static final int PRIMARY_USER_ID = 0;
+    private static final int SECONDARY_USER_ID = 10;
+    private static final String PACKAGE_NAME_1 = "com.android.test1";
+    private static final String PACKAGE_NAME_2 = "com.android.test2";
+    private static final long DEFAULT_QUOTA = 1_000_000L;
+
+    @Mock
+    private StorageStatsSource mSource;
+    @Mock
+    private StorageStatsManager mStorageStatsManager;
+    @Mock
+    private PackageManager mPackageManager;
+
+    private Context mContext;
+    private FakeMediaProvider mMediaProvider;
+    private StorageAccountingEngine mEngine;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mContext = spy(ApplicationProvider.getApplicationContext());
+        doReturn(mContext).when(mContext)
+                .createPackageContextAsUser(anyString(), anyInt(), any(UserHandle.class));
+        mMediaProvider = new FakeMediaProvider();
+        ShadowContentResolver.registerProviderInternal(MediaStore.AUTHORITY, mMediaProvider);
+        when(mSource.getCacheQuotaBytes(anyString(), anyInt())).thenReturn(DEFAULT_QUOTA);
+        StorageSnapshotStore.getInstance(mContext).clear();
+        mEngine = new StorageAccountingEngine(mContext, VOLUME_UUID, mSource,
+                mStorageStatsManager, mPackageManager);
+    }
+
+    @After
+    public void tearDown() {
+        StorageSnapshotStore.getInstance(mContext).clear();
+    }
+
+    @Test
+    public void compute_groupedMediaQuery_sumsEachCategoryWithOneQuery() {
+        mMediaProvider.mGroupedRows = new Object[][] {
+                {0, FileColumns.MEDIA_TYPE_IMAGE, 100L, 1, 1},
+                {0, FileColumns.MEDIA_TYPE_VIDEO, 200L, 1, 1},
+                {0, FileColumns.MEDIA_TYPE_AUDIO, 300L, 1, 1},
+                {0, FileColumns.MEDIA_TYPE_DOCUMENT, 400L, 1, 1},
+                {0, FileColumns.MEDIA_TYPE_NONE, 500L, 1, 1},
+                {1, FileColumns.MEDIA_TYPE_IMAGE, 600L, 1, 1}};
+
+        final StorageResult result = computePrimaryUser();
+
+        assertThat(mMediaProvider.mQueryCount).isEqualTo(1);
+        assertThat(result.imagesSize).isEqualTo(100L);
+        assertThat(result.videosSize).isEqualTo(200L);
+        assertThat(result.audioSize).isEqualTo(300L);
+        assertThat(result.documentsSize).isEqualTo(400L);
+        assertThat(result.otherSize).isEqualTo(500L);
+        assertThat(result.trashSize).isEqualTo(600L);
+    }
+
+    @Test
+    public void compute_mediaQueryNotGrouped_queriesEachCategoryInstead() {
+        // The second row mixes media types, the sizes of the first one are dropped.
+        mMediaProvider.mGroupedRows = new Object[][] {
+                {0, FileColumns.MEDIA_TYPE_IMAGE, 100L, 1, 1},
+                {0, FileColumns.MEDIA_TYPE_VIDEO, 200L, 1, 2}};
+
+        final StorageResult result = computePrimaryUser();
+
+        assertFallbackSizes(result);
+    }
+
+    @Test
+    public void compute_mediaQueryUnexpectedColumns_queriesEachCategoryInstead() {
+        mMediaProvider.mGroupedColumns = new String[] {FileColumns.MEDIA_TYPE};
+        mMediaProvider.mGroupedRows = new Object[][] {{FileColumns.MEDIA_TYPE_IMAGE}};
+
+        final StorageResult result = computePrimaryUser();
+
+        assertFallbackSizes(result);
+    }
+
+    @Test
+    public void compute_driftWithinOnePercent_reusesSnapshot() throws Exception {
+        addPackage(PRIMARY_USER_ID, PACKAGE_NAME_1, 1, 10);
+        setTotalAppBytes(100_000);
+        computePrimaryUser();
+        // 1000 bytes not explained by the packages, within 1% of the total.
+        setTotalAppBytes(101_000);
+
+        final StorageResult result = computePrimaryUser();
+
+        verify(mSource, times(1))
+                .getStatsForPackage(anyString(), eq(PACKAGE_NAME_1), any(UserHandle.class));
+        assertThat(result.allAppsExceptGamesSize).isEqualTo(11L);
+    }
+
+    @Test
+    public void compute_driftOverOnePercent_queriesAllPackages() throws Exception {
+        addPackage(PRIMARY_USER_ID, PACKAGE_NAME_1, 1, 10);
+        setTotalAppBytes(100_000);
+        computePrimaryUser();
+        // 2000 bytes not explained by the packages, over 1% of the total.
+        setTotalAppBytes(102_000);
+
+        computePrimaryUser();
+
+        verify(mSource, times(2))
+                .getStatsForPackage(anyString(), eq(PACKAGE_NAME_1), any(UserHandle.class));
+    }
+
+    @Test
+    public void compute_driftAddsUpOverLoads_queriesAllPackages() throws Exception {
+        addPackage(PRIMARY_USER_ID, PACKAGE_NAME_1, 1, 10);
+        setTotalAppBytes(100_000);
+        computePrimaryUser();
+        setTotalAppBytes(100_800);
+        computePrimaryUser();
+        // Each load drifted 800 bytes, 1600 bytes in total is over 1% of the total.
+        setTotalAppBytes(101_600);
+
+        computePrimaryUser();
+
+        verify(mSource, times(2))
+                .getStatsForPackage(anyString(), eq(PACKAGE_NAME_1), any(UserHandle.class));
+    }
+
+    @Test
+    public void compute_snapshotTooOld_queriesAllPackages() throws Exception {
+        addPackage(PRIMARY_USER_ID, PACKAGE_NAME_1, 1, 10);
+        setTotalAppBytes(1_000);
+        computePrimaryUser();
+        final StorageSnapshotStore store = StorageSnapshotStore.getInstance(mContext);
+        final AppSizeSnapshot snapshot = store.getAppSizes(VOLUME_UUID, PRIMARY_USER_ID);
+        final AppSizeSnapshot oldSnapshot = new AppSizeSnapshot(System.currentTimeMillis()
+                - StorageAccountingEngine.MAX_SNAPSHOT_AGE_MS - 1, snapshot.mTotalBytes);
+        snapshot.getPackages().forEach(oldSnapshot::put);
+        store.putAppSizes(VOLUME_UUID, PRIMARY_USER_ID, oldSnapshot);
+
+        computePrimaryUser();
+
+        verify(mSource, times(2))
+                .getStatsForPackage(anyString(), eq(PACKAGE_NAME_1), any(UserHandle.class));
+        assertThat(store.getAppSizes(VOLUME_UUID, PRIMARY_USER_ID).mComputedTime)
+                .isGreaterThan(oldSnapshot.mComputedTime);
+    }
+
+    @Test
+    public void compute_usersFinishingOutOfOrder_mergedByUserId() throws Exception {
+        // The primary user only finishes once the secondary user queried its package.
+        final CountDownLatch secondaryQueried = new CountDownLatch(1);
+        addPackage(PRIMARY_USER_ID, PACKAGE_NAME_1, 1, 10);
+        addPackage(SECONDARY_USER_ID, PACKAGE_NAME_1, 1, 20);
+        addPackage(SECONDARY_USER_ID, PACKAGE_NAME_2, 100, 1000);
+        final StorageStatsSource.AppStorageStats primaryStats =
+                mSource.getStatsForPackage(VOLUME_UUID, PACKAGE_NAME_1,
+                        UserHandle.of(PRIMARY_USER_ID));
+        final StorageStatsSource.AppStorageStats secondaryStats =
+                mSource.getStatsForPackage(VOLUME_UUID, PACKAGE_NAME_1,
+                        UserHandle.of(SECONDARY_USER_ID));
+        when(mSource.getStatsForPackage(anyString(), eq(PACKAGE_NAME_1),
+                eq(UserHandle.of(PRIMARY_USER_ID)))).thenAnswer(invocation -> {
+                    if (!secondaryQueried.await(5, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Users not computed in parallel");
+                    }
+                    return primaryStats;
+                });
+        when(mSource.getStatsForPackage(anyString(), eq(PACKAGE_NAME_1),
+                eq(UserHandle.of(SECONDARY_USER_ID)))).thenAnswer(invocation -> {
+                    secondaryQueried.countDown();
+                    return secondaryStats;
+                });
+
+        final SparseArray<StorageResult> results = mEngine.compute(
+                Arrays.asList(createUser(PRIMARY_USER_ID), createUser(SECONDARY_USER_ID)));
+
+        assertThat(results.size()).isEqualTo(2);
+        assertThat(results.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(11L);
+        assertThat(results.get(SECONDARY_USER_ID).allAppsExceptGamesSize).isEqualTo(1121L);
+        // The shared code is owned by the user with the lowest id, whichever finished first.
+        assertThat(results.get(PRIMARY_USER_ID).duplicateCodeSize).isEqualTo(0L);
+        assertThat(results.get(SECONDARY_USER_ID).duplicateCodeSize).isEqualTo(1L);
+    }
+
+    private StorageResult computePrimaryUser() {
+        return mEngine.compute(Arrays.asList(createUser(PRIMARY_USER_ID))).get(PRIMARY_USER_ID);
+    }
+
+    private static void assertFallbackSizes(StorageResult result) {
+        assertThat(result.imagesSize).isEqualTo(FakeMediaProvider.IMAGES_SIZE);
+        assertThat(result.videosSize).isEqualTo(FakeMediaProvider.VIDEOS_SIZE);
+        assertThat(result.audioSize).isEqualTo(FakeMediaProvider.AUDIO_SIZE);
+        assertThat(result.documentsSize).isEqualTo(FakeMediaProvider.DOCUMENTS_SIZE);
+        assertThat(result.otherSize).isEqualTo(FakeMediaProvider.OTHER_SIZE);
+        assertThat(result.trashSize).isEqualTo(FakeMediaProvider.TRASH_SIZE);
+    }
+
+    private static UserInfo createUser(int userId) {
+        final UserInfo info = new UserInfo();
+        info.id = userId;
+        return info;
+    }
+
+    /** Sets the code and data bytes of all the apps of the users, without shared storage. */
+    private void setTotalAppBytes(long bytes) throws Exception {
+        final StorageStats stats = new StorageStats();
+        stats.codeBytes = 0;
+        stats.dataBytes = bytes;
+        when(mStorageStatsManager.queryStatsForUser(anyString(), any(UserHandle.class)))
+                .thenReturn(stats);
+        when(mSource.getExternalStorageStats(anyString(), any(UserHandle.class)))
+                .thenReturn(new StorageStatsSource.ExternalStorageStats(0 /* totalBytes */,
+                        0 /* audioBytes */, 0 /* videoBytes */, 0 /* imageBytes */,
+                        0 /* appBytes */));
+    }
+
+    private void addPackage(int userId, String packageName, long codeSize, long dataSize)
+            throws Exception {
+        final StorageStatsSource.AppStorageStats stats =
+                mock(StorageStatsSource.AppStorageStats.class);
+        when(stats.getCodeBytes()).thenReturn(codeSize);
+        when(stats.getDataBytes()).thenReturn(dataSize);
+        when(mSource.getStatsForPackage(anyString(), eq(packageName),
+                eq(UserHandle.of(userId)))).thenReturn(stats);
+
+        final List<PackageInfo> packages =
+                new ArrayList<>(mPackageManager.getInstalledPackagesAsUser(0, userId));
+        final PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.applicationInfo = new ApplicationInfo();
+        packageInfo.applicationInfo.packageName = packageName;
+        packageInfo.applicationInfo.category = ApplicationInfo.CATEGORY_UNDEFINED;
+        packages.add(packageInfo);
+        when(mPackageManager.getInstalledPackagesAsUser(0, userId)).thenReturn(packages);
+    }
+
+    /**
+     * Answers the grouped media query with {@link #mGroupedRows}, and the query of each category
+     * with a fixed size.
+     */
+    private static final class FakeMediaProvider extends ContentProvider {
+        static final long IMAGES_SIZE = 1L;
+        static final long VIDEOS_SIZE = 2L;
+        static final long AUDIO_SIZE = 3L;
+        static final long DOCUMENTS_SIZE = 4L;
+        static final long OTHER_SIZE = 5L;
+        static final long TRASH_SIZE = 6L;
+
+        String[] mGroupedColumns;
+        Object[][] mGroupedRows = new Object[0][];
+        int mQueryCount;
+
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, Bundle queryArgs,
+                CancellationSignal cancellationSignal) {
+            mQueryCount++;
+            if (queryArgs.containsKey(ContentResolver.QUERY_ARG_SQL_GROUP_BY)) {
+                final MatrixCursor cursor = new MatrixCursor(
+                        mGroupedColumns != null ? mGroupedColumns : projection);
+                for (Object[] row : mGroupedRows) {
+                    cursor.addRow(row);
+                }
+                return cursor;
+            }
+            final MatrixCursor cursor = new MatrixCursor(projection);
+            cursor.addRow(new Object[] {getCategorySize(uri, queryArgs)});
+            return cursor;
+        }
+
+        private static long getCategorySize(Uri uri, Bundle queryArgs) {
+            if (MediaStore.Images.Media.EXTERNAL_CONTENT_URI.equals(uri)) {
+                return IMAGES_SIZE;
+            } else if (MediaStore.Video.Media.EXTERNAL_CONTENT_URI.equals(uri)) {
+                return VIDEOS_SIZE;
+            } else if (MediaStore.Audio.Media.EXTERNAL_CONTENT_URI.equals(uri)) {
+                return AUDIO_SIZE;
+            } else if (queryArgs.getInt(MediaStore.QUERY_ARG_MATCH_TRASHED)
+                    == MediaStore.MATCH_ONLY) {
+                return TRASH_SIZE;
+            } else if ((FileColumns.MEDIA_TYPE + "=" + FileColumns.MEDIA_TYPE_DOCUMENT).equals(
+                    queryArgs.getString(ContentResolver.QUERY_ARG_SQL_SELECTION))) {
+                return DOCUMENTS_SIZE;
+            }
+            return OTHER_SIZE;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection,
+                String[] selectionArgs, String sortOrder) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return null;
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            return null;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection,
+                String[] selectionArgs) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+
+@RunWith(RobolectricTestRunner.class)
+public class StorageSnapshotStoreTest {
+    private static final String VOLUME_UUID = "volume";
+    private static final int USER_ID = 0;
+    private static final long IMAGES_SIZE = 7000L;
+
+    private Context mContext;
+    private StorageSnapshotStore mStore;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mStore = StorageSnapshotStore.getInstance(mContext);
+    }
+
+    @Test
+    public void newStore_legacyPreferences_migratedAsStaleSizesAndDeleted() {
+        mStore.clear();
+        mContext.getSharedPreferences("StorageCache" + USER_ID, Context.MODE_PRIVATE).edit()
+                .putLong("images_size_key", IMAGES_SIZE)
+                .putLong("used_size_key", 1000L)
+                .commit();
+
+        final StorageSnapshotStore store = new StorageSnapshotStore(mContext);
+
+        assertThat(store.hasSizes(null /* volumeUuid */, USER_ID)).isTrue();
+        assertThat(store.isStale(null /* volumeUuid */, USER_ID)).isTrue();
+        assertThat(store.getSizes(null /* volumeUuid */, USER_ID).imagesSize)
+                .isEqualTo(IMAGES_SIZE);
+        assertThat(store.getUsedSize(null /* volumeUuid */, USER_ID)).isEqualTo(1000L);
+        assertThat(new File(mContext.getDataDir(), "shared_prefs/StorageCache" + USER_ID + ".xml")
+                .exists()).isFalse();
+    }
+
+    @Test
+    public void runWhenLoaded_loaded_shouldRunCallback() {
+        final boolean[] called = new boolean[1];
+
+        mStore.runWhenLoaded(() -> called[0] = true);
+
+        assertThat(mStore.isLoaded()).isTrue();
+        assertThat(called[0]).isTrue();
+    }
+
+    @Test
+    public void isStale_noSizes_shouldReturnTrue() {
+        assertThat(mStore.isStale(null /* volumeUuid */, USER_ID)).isTrue();
+    }
+
+    @Test
+    public void isStale_sizesJustComputed_shouldReturnFalse() {
+        mStore.putSizes(null /* volumeUuid */, USER_ID, getSizes());
+
+        assertThat(mStore.isStale(null /* volumeUuid */, USER_ID)).isFalse();
+    }
+
+    @Test
+    public void isStale_packageAdded_shouldReturnTrue() {
+        mStore.putSizes(null /* volumeUuid */, USER_ID, getSizes());
+
+        mContext.sendBroadcast(new Intent(Intent.ACTION_PACKAGE_ADDED)
+                .setData(Uri.parse("package:com.android.test")));
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertThat(mStore.isStale(null /* volumeUuid */, USER_ID)).isTrue();
+    }
+
+    @Test
+    public void isStale_mediaScanned_shouldReturnTrue() {
+        mStore.putSizes(null /* volumeUuid */, USER_ID, getSizes());
+
+        mContext.sendBroadcast(new Intent(Intent.ACTION_MEDIA_SCANNER_FINISHED)
+                .setData(Uri.parse("file:///storage/emulated/0")));
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertThat(mStore.isStale(null /* volumeUuid */, USER_ID)).isTrue();
+    }
+
+    @Test
+    public void putSizes_shouldBeSeparatedByVolume() {
+        mStore.putSizes(VOLUME_UUID, USER_ID, getSizes());
+
+        assertThat(mStore.hasSizes(VOLUME_UUID, USER_ID)).isTrue();
+        assertThat(mStore.hasSizes(null /* volumeUuid */, USER_ID)).isFalse();
+        assertThat(mStore.getSizes(VOLUME_UUID, USER_ID).imagesSize).isEqualTo(IMAGES_SIZE);
+    }
+
+    @Test
+    public void putAppSizes_shouldNotCountAsSizes() {
+        mStore.putAppSizes(null /* volumeUuid */, USER_ID,
+                new AppSizeSnapshot(0 /* computedTime */, 0 /* totalBytes */));
+
+        assertThat(mStore.hasSizes(null /* volumeUuid */, USER_ID)).isFalse();
+        assertThat(mStore.getAppSizes(null /* volumeUuid */, USER_ID)).isNotNull();
+    }
+
+    @Test
+    public void newStore_shouldReadWrittenSnapshots() {
+        final AppSizeSnapshot appSizes =
+                new AppSizeSnapshot(1000L /* computedTime */, 111L /* totalBytes */);
+        appSizes.put(new AppSizeSnapshot.PackageSize("com.android.test",
+                10L /* lastUpdateTime */, 1L /* codeBytes */, 111L /* totalBytes */,
+                100L /* blamedBytes */, true /* isGame */));
+        mStore.putSizes(VOLUME_UUID, USER_ID, getSizes());
+        mStore.putTotalSizes(VOLUME_UUID, USER_ID, 256000L, 50000L);
+        mStore.putUsedSize(null /* volumeUuid */, USER_ID, 6500L);
+        mStore.putAppSizes(VOLUME_UUID, USER_ID, appSizes);
+
+        final StorageSnapshotStore store = new StorageSnapshotStore(mContext);
+
+        assertThat(store.getSizes(VOLUME_UUID, USER_ID).imagesSize).isEqualTo(IMAGES_SIZE);
+        assertThat(store.getSizes(VOLUME_UUID, USER_ID).totalSize).isEqualTo(256000L);
+        assertThat(store.getUsedSize(null /* volumeUuid */, USER_ID)).isEqualTo(6500L);
+        assertThat(store.isStale(VOLUME_UUID, USER_ID)).isFalse();
+        final AppSizeSnapshot readAppSizes = store.getAppSizes(VOLUME_UUID, USER_ID);
+        assertThat(readAppSizes.mTotalBytes).isEqualTo(111L);
+        assertThat(readAppSizes.getGamesSize()).isEqualTo(100L);
+        assertThat(readAppSizes.get("com.android.test").mLastUpdateTime).isEqualTo(10L);
+    }
+
+    private static StorageCacheHelper.StorageCache getSizes() {
+        final StorageCacheHelper.StorageCache sizes = new StorageCacheHelper.StorageCache();
+        sizes.imagesSize = IMAGES_SIZE;
+        return sizes;
+    }
+}
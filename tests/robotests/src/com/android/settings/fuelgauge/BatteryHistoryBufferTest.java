@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.os.BatteryStats.HistoryItem;
+import android.os.BatteryStats.HistoryTag;
+
+import com.android.internal.os.BatteryStatsHistoryIterator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatteryHistoryBufferTest {
+
+    private BatteryHistoryBuffer mBuffer;
+    private RecordingParser mParser;
+
+    @Before
+    public void setUp() {
+        mBuffer = new BatteryHistoryBuffer();
+        mParser = new RecordingParser();
+    }
+
+    @Test
+    public void replay_feedsDataPointsUpToLastUpdate() {
+        mBuffer.read(createIterator(
+                createUpdate(1000, 99),
+                createUpdate(1500, 98),
+                createUpdate(2000, 97),
+                createRecord(HistoryItem.CMD_SHUTDOWN, 2500)));
+
+        mBuffer.replay(mParser);
+
+        assertThat(mBuffer.size()).isEqualTo(4);
+        assertThat(mParser.mEvents).containsExactly("start 0-2000", "1000:99", "1500:98",
+                "2000:97", "done").inOrder();
+    }
+
+    @Test
+    public void replay_shutdown_reportsGap() {
+        mBuffer.read(createIterator(
+                createUpdate(1000, 99),
+                createRecord(HistoryItem.CMD_SHUTDOWN, 1200),
+                createUpdate(2000, 97)));
+
+        mBuffer.replay(mParser);
+
+        assertThat(mParser.mEvents).containsExactly("start 0-2000", "1000:99", "gap",
+                "2000:97", "done").inOrder();
+    }
+
+    @Test
+    public void replay_multipleParsers_feedsAll() {
+        final RecordingParser otherParser = new RecordingParser();
+        mBuffer.read(createIterator(createUpdate(1000, 99), createUpdate(2000, 97)));
+
+        mBuffer.replay(mParser, otherParser);
+
+        assertThat(otherParser.mEvents).containsExactlyElementsIn(mParser.mEvents).inOrder();
+    }
+
+    @Test
+    public void replay_noHistory_onlyStartsAndFinishes() {
+        mBuffer.read(createIterator());
+
+        mBuffer.replay(mParser);
+
+        assertThat(mParser.mEvents).containsExactly("start 0-0", "done").inOrder();
+    }
+
+    @Test
+    public void read_overInitialCapacity_keepsAllRecords() {
+        final int count = BatteryHistoryBuffer.INITIAL_CAPACITY + 1;
+        final HistoryItem[] records = new HistoryItem[count];
+        for (int i = 0; i < count; i++) {
+            records[i] = createUpdate(1000 + i, 50);
+        }
+        mBuffer.read(createIterator(records));
+
+        mBuffer.replay(mParser);
+
+        assertThat(mBuffer.size()).isEqualTo(count);
+        assertThat(mBuffer.capacity()).isAtLeast(count);
+        assertThat(mParser.mEvents).hasSize(count + 2);
+    }
+
+    @Test
+    public void replay_fieldsNotKept_areCleared() {
+        final HistoryItem update = createUpdate(1000, 99);
+        update.eventCode = HistoryItem.EVENT_FOREGROUND;
+        update.wakelockTag = new HistoryTag();
+        mBuffer.read(createIterator(update, createUpdate(2000, 97)));
+        final List<String> records = new ArrayList<>();
+
+        mBuffer.replay(new RecordingParser() {
+            @Override
+            public void onDataPoint(long time, HistoryItem record) {
+                records.add(record.batteryLevel + ":" + record.eventCode + ":"
+                        + record.wakelockTag);
+            }
+        });
+
+        assertThat(records).containsExactly("99:" + HistoryItem.EVENT_NONE + ":null",
+                "97:" + HistoryItem.EVENT_NONE + ":null").inOrder();
+    }
+
+    @Test
+    public void obtain_afterRecycle_reusesBuffer() {
+        final BatteryHistoryBuffer buffer = BatteryHistoryBuffer.obtain();
+        buffer.read(createIterator(createUpdate(1000, 99)));
+
+        buffer.recycle();
+
+        final BatteryHistoryBuffer reused = BatteryHistoryBuffer.obtain();
+        assertThat(reused).isSameInstanceAs(buffer);
+        assertThat(reused.size()).isEqualTo(0);
+        reused.recycle();
+    }
+
+    private static BatteryStatsHistoryIterator createIterator(HistoryItem... records) {
+        final BatteryStatsHistoryIterator iterator = mock(BatteryStatsHistoryIterator.class);
+        if (records.length == 0) {
+            when(iterator.next()).thenReturn(null);
+        } else {
+            // The remaining records followed by null.
+            final HistoryItem[] rest = new HistoryItem[records.length];
+            System.arraycopy(records, 1, rest, 0, records.length - 1);
+            when(iterator.next()).thenReturn(records[0], rest);
+        }
+        return iterator;
+    }
+
+    private static HistoryItem createUpdate(long time, int batteryLevel) {
+        final HistoryItem record = createRecord(HistoryItem.CMD_UPDATE, time);
+        record.batteryLevel = (byte) batteryLevel;
+        return record;
+    }
+
+    private static HistoryItem createRecord(byte cmd, long time) {
+        final HistoryItem record = new HistoryItem();
+        record.cmd = cmd;
+        record.time = time;
+        return record;
+    }
+
+    private static class RecordingParser implements BatteryInfo.BatteryDataParser {
+        private final List<String> mEvents = new ArrayList<>();
+
+        @Override
+        public void onParsingStarted(long startTime, long endTime) {
+            mEvents.add("start " + startTime + "-" + endTime);
+        }
+
+        @Override
+        public void onDataPoint(long time, HistoryItem record) {
+            mEvents.add(time + ":" + record.batteryLevel);
+        }
+
+        @Override
+        public void onDataGap() {
+            mEvents.add("gap");
+        }
+
+        @Override
+        public void onParsingDone() {
+            mEvents.add("done");
+        }
+    }
+}
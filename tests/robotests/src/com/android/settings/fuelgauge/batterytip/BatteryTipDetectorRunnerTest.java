@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batterytip;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.SystemClock;
+
+import com.android.settings.fuelgauge.batterytip.tips.BatteryDefenderTip;
+import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
+import com.android.settings.fuelgauge.batterytip.tips.LowBatteryTip;
+import com.android.settings.fuelgauge.batterytip.tips.SmartBatteryTip;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatteryTipDetectorRunnerTest {
+
+    private static final String INPUTS = "inputs";
+    // Long enough for the fast detectors to finish.
+    private static final long SHORT_TIMEOUT_MS = 100;
+
+    private BatteryTipDetectorRunner mRunner;
+    private AtomicInteger mCallCount;
+    private Map<String, Callable<List<BatteryTip>>> mDetectors;
+
+    @Before
+    public void setUp() {
+        mRunner = new BatteryTipDetectorRunner();
+        mCallCount = new AtomicInteger();
+        mDetectors = new LinkedHashMap<>();
+        mDetectors.put("smart", () -> {
+            mCallCount.incrementAndGet();
+            return Arrays.asList(new SmartBatteryTip(BatteryTip.StateType.INVISIBLE));
+        });
+        mDetectors.put("low", () -> Arrays.asList(
+                new LowBatteryTip(BatteryTip.StateType.NEW, false /* powerSaveModeOn */)));
+    }
+
+    @Test
+    public void run_returnsTipsOfAllDetectorsInOrder() {
+        final List<BatteryTip> tips = mRunner.run(INPUTS, mDetectors, null /* listener */);
+
+        assertThat(tips).hasSize(2);
+        assertThat(tips.get(0).getType()).isEqualTo(BatteryTip.TipType.LOW_BATTERY);
+        assertThat(tips.get(1).getType()).isEqualTo(BatteryTip.TipType.SMART_BATTERY_MANAGER);
+    }
+
+    @Test
+    public void run_sameInputs_reusesCachedTips() {
+        mRunner.run(INPUTS, mDetectors, null /* listener */);
+
+        final List<BatteryTip> tips = mRunner.run(INPUTS, mDetectors, null /* listener */);
+
+        assertThat(tips).hasSize(2);
+        assertThat(mCallCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void run_differentInputs_detectsAgain() {
+        mRunner.run(INPUTS, mDetectors, null /* listener */);
+
+        mRunner.run("otherInputs", mDetectors, null /* listener */);
+
+        assertThat(mCallCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void run_invalidated_detectsAgain() {
+        mRunner.run(INPUTS, mDetectors, null /* listener */);
+
+        mRunner.invalidate();
+        mRunner.run(INPUTS, mDetectors, null /* listener */);
+
+        assertThat(mCallCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void run_detectorThrows_keepsOtherTips() {
+        mDetectors.put("error", () -> {
+            throw new IllegalStateException("error");
+        });
+
+        assertThat(mRunner.run(INPUTS, mDetectors, null /* listener */)).hasSize(2);
+    }
+
+    @Test
+    public void run_cachedTips_areCopies() {
+        final BatteryTip tip = mRunner.run(INPUTS, mDetectors, null /* listener */).get(0);
+        tip.updateState(
+                new LowBatteryTip(BatteryTip.StateType.HANDLED, false /* powerSaveModeOn */));
+
+        final List<BatteryTip> tips = mRunner.run(INPUTS, mDetectors, null /* listener */);
+
+        assertThat(tips.get(0)).isNotSameInstanceAs(tip);
+        assertThat(tips.get(0).getState()).isEqualTo(BatteryTip.StateType.NEW);
+    }
+
+    @Test
+    public void run_slowDetectorWithLastTipsOfSameInputs_usesLastTips() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mDetectors.put("slow", createSlowDetector(latch, 1 /* fastCalls */));
+        mRunner.run(INPUTS, mDetectors, null /* listener */);
+        // Expires the cached tips.
+        SystemClock.sleep(BatteryTipDetectorRunner.CACHE_WINDOW_MS);
+        mRunner.mTimeoutMs = SHORT_TIMEOUT_MS;
+
+        final List<BatteryTip> tips;
+        try {
+            tips = mRunner.run(INPUTS, mDetectors, null /* listener */);
+        } finally {
+            latch.countDown();
+        }
+
+        assertThat(tips).hasSize(3);
+        assertThat(tips.get(1).getType()).isEqualTo(BatteryTip.TipType.BATTERY_DEFENDER);
+    }
+
+    @Test
+    public void run_slowDetectorWithLastTipsOfOtherInputs_reportedLater() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mDetectors.put("slow", createSlowDetector(latch, 1 /* fastCalls */));
+        mRunner.run(INPUTS, mDetectors, null /* listener */);
+        mRunner.mTimeoutMs = SHORT_TIMEOUT_MS;
+        final CountDownLatch reported = new CountDownLatch(1);
+        final List<List<BatteryTip>> reportedTips = new CopyOnWriteArrayList<>();
+
+        final List<BatteryTip> tips = mRunner.run("otherInputs", mDetectors, detectedTips -> {
+            reportedTips.add(detectedTips);
+            reported.countDown();
+        });
+        latch.countDown();
+
+        assertThat(tips).hasSize(2);
+        assertThat(reported.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(reportedTips.get(0)).hasSize(3);
+    }
+
+    @Test
+    public void run_slowDetectorWithoutLastTips_reportedLater() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mDetectors.put("slow", createSlowDetector(latch, 0 /* fastCalls */));
+        mRunner.mTimeoutMs = SHORT_TIMEOUT_MS;
+        final CountDownLatch reported = new CountDownLatch(1);
+        final List<List<BatteryTip>> reportedTips = new CopyOnWriteArrayList<>();
+
+        final List<BatteryTip> tips = mRunner.run(INPUTS, mDetectors, detectedTips -> {
+            reportedTips.add(detectedTips);
+            reported.countDown();
+        });
+        latch.countDown();
+
+        assertThat(tips).hasSize(2);
+        assertThat(reported.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(reportedTips.get(0).get(1).getType())
+                .isEqualTo(BatteryTip.TipType.BATTERY_DEFENDER);
+    }
+
+    // Returns a detector which waits for the {@code latch} after its first {@code fastCalls}.
+    private static Callable<List<BatteryTip>> createSlowDetector(CountDownLatch latch,
+            int fastCalls) {
+        final AtomicInteger callCount = new AtomicInteger();
+        return () -> {
+            if (callCount.incrementAndGet() > fastCalls) {
+                latch.await();
+            }
+            return Arrays.asList(new BatteryDefenderTip(BatteryTip.StateType.NEW,
+                    true /* isPluggedIn */));
+        };
+    }
+}
@@ -21,6 +21,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 import android.content.Context;
 import android.content.Intent;
@@ -32,12 +33,15 @@ import com.android.settings.fuelgauge.BatteryUtils;
 import com.android.settings.fuelgauge.batterytip.tips.AppLabelPredicate;
 import com.android.settings.fuelgauge.batterytip.tips.AppRestrictionPredicate;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
+import com.android.settings.testutils.FakeFeatureFactory;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
@@ -63,6 +67,7 @@ public class BatteryTipLoaderTest {
     @Mock private Intent mIntent;
     @Mock private BatteryUtils mBatteryUtils;
     @Mock private BatteryInfo mBatteryInfo;
+    @Captor private ArgumentCaptor<List<BatteryTip>> mTipsCaptor;
     private Context mContext;
     private BatteryTipLoader mBatteryTipLoader;
 
@@ -77,6 +82,7 @@ public class BatteryTipLoaderTest {
         doReturn(mBatteryInfo).when(mBatteryUtils).getBatteryInfo(any());
         mBatteryTipLoader = new BatteryTipLoader(mContext, mBatteryUsageStats);
         mBatteryTipLoader.mBatteryUtils = mBatteryUtils;
+        mBatteryTipLoader.mDetectorRunner = new BatteryTipDetectorRunner();
     }
 
     @After
@@ -94,4 +100,15 @@ public class BatteryTipLoaderTest {
             assertThat(batteryTips.get(i).getType()).isEqualTo(TIP_ORDER[i]);
         }
     }
+
+    @Test
+    public void testLoadBackground_addBatteryTipDetectorGetsDetectedTips() {
+        final FakeFeatureFactory featureFactory = FakeFeatureFactory.setupForTest();
+
+        mBatteryTipLoader.loadInBackground();
+
+        verify(featureFactory.batterySettingsFeatureProvider)
+                .addBatteryTipDetector(any(), mTipsCaptor.capture(), any(), any());
+        assertThat(mTipsCaptor.getValue()).hasSize(TIP_ORDER.length - 1);
+    }
 }
@@ -32,6 +32,7 @@ import androidx.test.core.app.ApplicationProvider;
 import com.android.settings.SettingsActivity;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.InstrumentedPreferenceFragment;
+import com.android.settings.fuelgauge.batterytip.tips.BatteryDefenderTip;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
 import com.android.settings.widget.TipCardPreference;
 
@@ -105,6 +106,19 @@ public class BatteryTipPreferenceControllerTest {
         assertThat(mBatteryTipPreferenceController.getCurrentBatteryTip()).isNull();
     }
 
+    @Test
+    public void updateBatteryTips_tipsOfMissedDetectorsAbsent_showsFirstVisibleTip() {
+        // A detector which misses its deadline has no tips in the list, so the list is shorter.
+        final BatteryTip tip =
+                new BatteryDefenderTip(BatteryTip.StateType.NEW, /* isPluggedIn= */ true);
+        mNewBatteryTips.add(tip);
+
+        mBatteryTipPreferenceController.updateBatteryTips(mNewBatteryTips);
+
+        assertThat(mCardPreference.isVisible()).isTrue();
+        assertThat(mBatteryTipPreferenceController.getCurrentBatteryTip()).isSameInstanceAs(tip);
+    }
+
     @Test
     public void restoreFromNull_shouldNotCrash() {
         final Bundle bundle = new Bundle();
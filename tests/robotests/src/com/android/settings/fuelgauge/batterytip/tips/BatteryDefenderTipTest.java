@@ -22,6 +22,7 @@ import static org.mockito.Mockito.when;
 
 import android.app.settings.SettingsEnums;
 import android.content.Context;
+import android.os.Parcel;
 import android.util.Log;
 
 import androidx.preference.Preference;
@@ -143,6 +144,21 @@ public class BatteryDefenderTipTest {
         assertThat(mCardPreference.getSecondaryButtonVisibility()).isFalse();
     }
 
+    @Test
+    public void updatePreference_parceledWhenCharging_setSecondaryButtonVisibleToBeTrue() {
+        final Parcel parcel = Parcel.obtain();
+        new BatteryDefenderTip(BatteryTip.StateType.NEW, /* isPluggedIn= */ true)
+                .writeToParcel(parcel, /* flags= */ 0);
+        parcel.setDataPosition(0);
+        mBatteryDefenderTip = (BatteryDefenderTip) BatteryDefenderTip.CREATOR.createFromParcel(
+                parcel);
+        parcel.recycle();
+
+        mBatteryDefenderTip.updatePreference(mCardPreference);
+
+        assertThat(mCardPreference.getSecondaryButtonVisibility()).isTrue();
+    }
+
     private String getLastErrorLog() {
         return ShadowLog.getLogsForTag(BatteryDefenderTip.class.getSimpleName()).stream()
                 .filter(log -> log.type == Log.ERROR)
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public final class BatteryLevelSeriesTest {
+
+    @Test
+    public void build_noRecord_returnsEmpty() {
+        final BatteryLevelSeries series = new BatteryLevelSeries.Builder().build();
+
+        assertThat(series).isSameInstanceAs(BatteryLevelSeries.EMPTY);
+        assertThat(series.isEmpty()).isTrue();
+        assertThat(series.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void build_moreRecordsThanCapacity_returnsAllRecords() {
+        final BatteryLevelSeries.Builder builder =
+                new BatteryLevelSeries.Builder(/* initialCapacity= */ 1);
+        for (int index = 0; index < 100; index++) {
+            builder.add(/* timestamp= */ 1000L + index, /* level= */ 100 - index);
+        }
+
+        final BatteryLevelSeries series = builder.build();
+
+        assertThat(series.size()).isEqualTo(100);
+        assertThat(series.getTimestamp(0)).isEqualTo(1000L);
+        assertThat(series.getLevel(0)).isEqualTo(100);
+        assertThat(series.getTimestamp(99)).isEqualTo(1099L);
+        assertThat(series.getLevel(99)).isEqualTo(1);
+    }
+
+    @Test
+    public void add_earlierTimestamp_throwsException() {
+        final BatteryLevelSeries.Builder builder = new BatteryLevelSeries.Builder().add(1000L, 90);
+
+        assertThrows(IllegalArgumentException.class, () -> builder.add(999L, 80));
+    }
+
+    @Test
+    public void getLevel_outOfBounds_throwsException() {
+        final BatteryLevelSeries series =
+                new BatteryLevelSeries.Builder().add(1000L, 90).add(1000L, 90).build();
+
+        assertThrows(IndexOutOfBoundsException.class, () -> series.getLevel(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> series.getTimestamp(-1));
+    }
+
+    @Test
+    public void floorIndexAndCeilingIndex_returnExpectedResult() {
+        final BatteryLevelSeries series =
+                new BatteryLevelSeries.Builder().add(10L, 90).add(20L, 80).add(30L, 70).build();
+
+        assertThat(series.floorIndex(15L)).isEqualTo(0);
+        assertThat(series.ceilingIndex(15L)).isEqualTo(1);
+        assertThat(series.floorIndex(20L)).isEqualTo(1);
+        assertThat(series.ceilingIndex(20L)).isEqualTo(1);
+        assertThat(series.floorIndex(5L)).isEqualTo(-1);
+        assertThat(series.ceilingIndex(5L)).isEqualTo(0);
+        assertThat(series.floorIndex(35L)).isEqualTo(2);
+        assertThat(series.ceilingIndex(35L)).isEqualTo(-1);
+    }
+
+    @Test
+    public void findLevel_returnExpectedResult() {
+        final BatteryLevelSeries series =
+                new BatteryLevelSeries.Builder().add(10L, 90).add(20L, 80).build();
+
+        assertThat(series.indexOf(20L)).isEqualTo(1);
+        assertThat(series.findLevel(20L, /* defaultLevel= */ -1)).isEqualTo(80);
+        assertThat(series.indexOf(15L)).isEqualTo(-1);
+        assertThat(series.findLevel(15L, /* defaultLevel= */ -1)).isEqualTo(-1);
+    }
+
+    @Test
+    public void of_unsortedMap_returnsSortedSeries() {
+        final BatteryLevelSeries series = BatteryLevelSeries.of(Map.of(30L, 70, 10L, 90, 20L, 80));
+
+        assertThat(series)
+                .isEqualTo(
+                        new BatteryLevelSeries.Builder()
+                                .add(10L, 90)
+                                .add(20L, 80)
+                                .add(30L, 70)
+                                .build());
+        assertThat(series.toTimestampList()).containsExactly(10L, 20L, 30L).inOrder();
+        assertThat(series.toLevelList()).containsExactly(90, 80, 70).inOrder();
+    }
+
+    @Test
+    public void forEach_visitsAllRecordsInOrder() {
+        final BatteryLevelSeries series =
+                new BatteryLevelSeries.Builder().add(10L, 90).add(20L, 80).build();
+        final List<String> records = new ArrayList<>();
+
+        series.forEach(
+                (index, timestamp, level) -> records.add(index + ":" + timestamp + "=" + level));
+
+        assertThat(records).containsExactly("0:10=90", "1:20=80").inOrder();
+    }
+
+    @Test
+    public void findNearestTimestamp_sevenDays_sameAsLinearSearch() {
+        final BatteryLevelSeries series = createSevenDaySeries();
+        final long[] timestamps = new long[series.size()];
+        for (int index = 0; index < timestamps.length; index++) {
+            timestamps[index] = series.getTimestamp(index);
+        }
+
+        for (long target = timestamps[0] - DateUtils.HOUR_IN_MILLIS / 2;
+                target <= timestamps[timestamps.length - 1] + DateUtils.HOUR_IN_MILLIS / 2;
+                target += DateUtils.HOUR_IN_MILLIS) {
+            assertThat(DataProcessor.findNearestTimestamp(timestamps, target))
+                    .isEqualTo(linearFindNearestTimestamp(timestamps, target));
+        }
+    }
+
+    @Test
+    public void batteryLevelData_sevenDays_fromSeriesSameAsFromMap() {
+        final BatteryLevelSeries series = createSevenDaySeries();
+        final Map<Long, Integer> batteryLevelMap = new ArrayMap<>();
+        series.forEach((index, timestamp, level) -> batteryLevelMap.put(timestamp, level));
+
+        final BatteryLevelData mapData = new BatteryLevelData(batteryLevelMap);
+        final BatteryLevelData seriesData = new BatteryLevelData(series);
+
+        assertThat(seriesData.getDailyBatteryLevels().getLevelSeries())
+                .isEqualTo(mapData.getDailyBatteryLevels().getLevelSeries());
+        assertThat(seriesData.toString()).isEqualTo(mapData.toString());
+    }
+
+    // A record every 15 minutes for seven days, ending on the last full hour.
+    private static BatteryLevelSeries createSevenDaySeries() {
+        final long endTimestamp =
+                System.currentTimeMillis() / DateUtils.HOUR_IN_MILLIS * DateUtils.HOUR_IN_MILLIS;
+        final BatteryLevelSeries.Builder builder = new BatteryLevelSeries.Builder();
+        int index = 0;
+        for (long timestamp = endTimestamp - 7 * DateUtils.DAY_IN_MILLIS;
+                timestamp <= endTimestamp;
+                timestamp += 15 * DateUtils.MINUTE_IN_MILLIS) {
+            builder.add(timestamp, 100 - (index++ % 100));
+        }
+        return builder.build();
+    }
+
+    private static long[] linearFindNearestTimestamp(final long[] timestamps, final long target) {
+        final long[] results = new long[] {Long.MIN_VALUE, Long.MAX_VALUE};
+        for (long timestamp : timestamps) {
+            if (timestamp <= target && timestamp > results[0]) {
+                results[0] = timestamp;
+            }
+            if (timestamp >= target && timestamp < results[1]) {
+                results[1] = timestamp;
+            }
+        }
+        results[0] = results[0] == Long.MIN_VALUE ? 0 : results[0];
+        results[1] = results[1] == Long.MAX_VALUE ? 0 : results[1];
+        return results;
+    }
+}
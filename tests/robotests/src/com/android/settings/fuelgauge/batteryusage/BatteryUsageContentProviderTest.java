@@ -196,11 +196,44 @@ public final class BatteryUsageContentProviderTest {
         cursor.close();
     }
 
+    @Test
+    public void query_batteryStateWithHistEntryProjection_returnsProjectedColumns()
+            throws Exception {
+        mProvider.onCreate();
+        final Duration currentTime = Duration.ofHours(52);
+        insertBatteryState(currentTime, Long.toString(currentTime.toMillis())).close();
+        final Uri batteryStateQueryContentUri =
+                new Uri.Builder()
+                        .scheme(ContentResolver.SCHEME_CONTENT)
+                        .authority(DatabaseUtils.AUTHORITY)
+                        .appendPath(DatabaseUtils.BATTERY_STATE_TABLE)
+                        .appendQueryParameter(
+                                DatabaseUtils.QUERY_KEY_TIMESTAMP,
+                                Long.toString(currentTime.toMillis() - 8))
+                        .build();
+
+        final Cursor cursor =
+                mProvider.query(
+                        batteryStateQueryContentUri,
+                        DatabaseUtils.BATTERY_HIST_ENTRY_PROJECTION,
+                        /* s= */ null,
+                        /* strings1= */ null,
+                        /* s1= */ null);
+
+        assertThat(cursor.getCount()).isEqualTo(3);
+        assertThat(cursor.getColumnNames())
+                .asList()
+                .containsExactlyElementsIn(DatabaseUtils.BATTERY_HIST_ENTRY_PROJECTION);
+        cursor.moveToFirst();
+        assertThat(new BatteryHistEntry(cursor).mPackageName).isEqualTo(PACKAGE_NAME1);
+        cursor.close();
+    }
+
     @Test
     public void query_getBatteryStateLatestTimestamp_returnsExpectedResult() throws Exception {
         mProvider.onCreate();
         final Duration currentTime = Duration.ofHours(52);
-        insertBatteryState(currentTime, Long.toString(currentTime.toMillis()));
+        insertBatteryState(currentTime, Long.toString(currentTime.toMillis())).close();
 
         final Cursor cursor1 = getCursorOfBatteryStateLatestTimestamp(currentTime.toMillis() - 5);
         assertThat(cursor1.getCount()).isEqualTo(1);
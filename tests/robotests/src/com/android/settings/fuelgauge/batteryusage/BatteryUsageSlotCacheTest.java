@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RunWith(RobolectricTestRunner.class)
+public final class BatteryUsageSlotCacheTest {
+    private static final long HOUR = 3_600_000L;
+    private static final long FULL_CHARGE_TIME = 10 * HOUR;
+
+    private final List<BatteryUsageSlot> mDatabaseSlots = new ArrayList<>();
+    private final List<Long> mQueryTimestamps = new ArrayList<>();
+    private final BatteryUsageSlotCache.SlotLoader mSlotLoader =
+            queryTimestamp -> {
+                mQueryTimestamps.add(queryTimestamp);
+                return mDatabaseSlots.stream()
+                        .filter(slot -> slot.getStartTimestamp() >= queryTimestamp)
+                        .collect(Collectors.toList());
+            };
+
+    private BatteryUsageSlotCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new BatteryUsageSlotCache();
+    }
+
+    @After
+    public void tearDown() {
+        BatteryUsageSlotCache.sVerifyIncrementalLoad = false;
+    }
+
+    @Test
+    public void getSlots_firstLoad_loadsFromLastFullCharge() {
+        addDatabaseSlot(FULL_CHARGE_TIME, 1);
+        addDatabaseSlot(FULL_CHARGE_TIME + HOUR, 2);
+
+        final List<BatteryUsageSlot> slots = mCache.getSlots(FULL_CHARGE_TIME, 0L, mSlotLoader);
+
+        assertThat(slots).containsExactlyElementsIn(mDatabaseSlots).inOrder();
+        assertThat(mQueryTimestamps).containsExactly(FULL_CHARGE_TIME);
+    }
+
+    @Test
+    public void getSlots_secondLoad_onlyLoadsFromLastMaterializedSlot() {
+        addDatabaseSlot(FULL_CHARGE_TIME, 1);
+        addDatabaseSlot(FULL_CHARGE_TIME + HOUR, 2);
+        mCache.getSlots(FULL_CHARGE_TIME, 0L, mSlotLoader);
+        addDatabaseSlot(FULL_CHARGE_TIME + 2 * HOUR, 3);
+        mQueryTimestamps.clear();
+
+        final List<BatteryUsageSlot> slots = mCache.getSlots(FULL_CHARGE_TIME, 0L, mSlotLoader);
+
+        assertThat(slots).containsExactlyElementsIn(mDatabaseSlots).inOrder();
+        assertThat(mQueryTimestamps).containsExactly(FULL_CHARGE_TIME + HOUR);
+    }
+
+    @Test
+    public void getSlots_lastMaterializedSlotReplaced_returnsReplacedSlot() {
+        addDatabaseSlot(FULL_CHARGE_TIME, 1);
+        addDatabaseSlot(FULL_CHARGE_TIME + HOUR, 2);
+        mCache.getSlots(FULL_CHARGE_TIME, 0L, mSlotLoader);
+        mDatabaseSlots.remove(1);
+        addDatabaseSlot(FULL_CHARGE_TIME + HOUR, 5);
+
+        final List<BatteryUsageSlot> slots = mCache.getSlots(FULL_CHARGE_TIME, 0L, mSlotLoader);
+
+        assertThat(slots).containsExactlyElementsIn(mDatabaseSlots).inOrder();
+    }
+
+    @Test
+    public void getSlots_lastFullChargeChanged_reloadsAllSlots() {
+        addDatabaseSlot(FULL_CHARGE_TIME, 1);
+        mCache.getSlots(FULL_CHARGE_TIME, 0L, mSlotLoader);
+        mDatabaseSlots.clear();
+        addDatabaseSlot(FULL_CHARGE_TIME + 5 * HOUR, 2);
+        mQueryTimestamps.clear();
+
+        final List<BatteryUsageSlot> slots =
+                mCache.getSlots(FULL_CHARGE_TIME + 5 * HOUR, 0L, mSlotLoader);
+
+        assertThat(slots).containsExactlyElementsIn(mDatabaseSlots);
+        assertThat(mQueryTimestamps).containsExactly(FULL_CHARGE_TIME + 5 * HOUR);
+    }
+
+    @Test
+    public void getSlots_expiredSlots_areDropped() {
+        addDatabaseSlot(FULL_CHARGE_TIME, 1);
+        addDatabaseSlot(FULL_CHARGE_TIME + HOUR, 2);
+        mCache.getSlots(FULL_CHARGE_TIME, 0L, mSlotLoader);
+
+        final List<BatteryUsageSlot> slots =
+                mCache.getSlots(FULL_CHARGE_TIME, FULL_CHARGE_TIME + HOUR, mSlotLoader);
+
+        assertThat(slots).containsExactly(mDatabaseSlots.get(1));
+    }
+
+    @Test
+    public void getSlots_verifyMismatch_fallsBackToFullLoadResult() {
+        BatteryUsageSlotCache.sVerifyIncrementalLoad = true;
+        addDatabaseSlot(FULL_CHARGE_TIME, 1);
+        addDatabaseSlot(FULL_CHARGE_TIME + HOUR, 2);
+        mCache.getSlots(FULL_CHARGE_TIME, 0L, mSlotLoader);
+        // Replaces an older slot, which is not covered by the incremental load.
+        mDatabaseSlots.remove(0);
+        addDatabaseSlot(FULL_CHARGE_TIME, 3);
+        mDatabaseSlots.sort((a, b) -> Long.compare(a.getStartTimestamp(), b.getStartTimestamp()));
+
+        final List<BatteryUsageSlot> slots = mCache.getSlots(FULL_CHARGE_TIME, 0L, mSlotLoader);
+
+        assertThat(slots).containsExactlyElementsIn(mDatabaseSlots).inOrder();
+    }
+
+    @Test
+    public void getSlots_everyVerifyInterval_checkedWithFullLoad() {
+        addDatabaseSlot(FULL_CHARGE_TIME, 1);
+        addDatabaseSlot(FULL_CHARGE_TIME + HOUR, 2);
+        mCache.getSlots(FULL_CHARGE_TIME, 0L, mSlotLoader);
+        // Replaces an older slot, which is not covered by the incremental load.
+        mDatabaseSlots.remove(0);
+        addDatabaseSlot(FULL_CHARGE_TIME, 3);
+        mDatabaseSlots.sort((a, b) -> Long.compare(a.getStartTimestamp(), b.getStartTimestamp()));
+        for (int i = 1; i < BatteryUsageSlotCache.VERIFY_INTERVAL; i++) {
+            mCache.getSlots(FULL_CHARGE_TIME, 0L, mSlotLoader);
+        }
+        mQueryTimestamps.clear();
+
+        final List<BatteryUsageSlot> slots = mCache.getSlots(FULL_CHARGE_TIME, 0L, mSlotLoader);
+
+        assertThat(slots).containsExactlyElementsIn(mDatabaseSlots).inOrder();
+        assertThat(mQueryTimestamps).containsExactly(FULL_CHARGE_TIME + HOUR, FULL_CHARGE_TIME);
+    }
+
+    @Test
+    public void invalidate_clearsAllSlots() {
+        addDatabaseSlot(FULL_CHARGE_TIME, 1);
+        mCache.getSlots(FULL_CHARGE_TIME, 0L, mSlotLoader);
+
+        mCache.invalidate();
+
+        assertThat(mCache.size()).isEqualTo(0);
+    }
+
+    private void addDatabaseSlot(final long startTimestamp, final int startBatteryLevel) {
+        mDatabaseSlots.add(
+                BatteryUsageSlot.newBuilder()
+                        .setStartTimestamp(startTimestamp)
+                        .setEndTimestamp(startTimestamp + HOUR)
+                        .setStartBatteryLevel(startBatteryLevel)
+                        .build());
+    }
+}
@@ -19,23 +19,35 @@ package com.android.settings.fuelgauge.batteryusage;
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
+import android.app.settings.SettingsEnums;
 import android.app.usage.IUsageStatsManager;
 import android.app.usage.UsageEvents;
+import android.content.ContentProvider;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.database.MatrixCursor;
+import android.net.Uri;
 import android.os.BatteryManager;
 import android.os.BatteryStatsManager;
 import android.os.BatteryUsageStats;
 import android.os.BatteryUsageStatsQuery;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.RemoteException;
 import android.os.UserManager;
@@ -44,6 +56,7 @@ import android.text.format.DateUtils;
 import androidx.test.core.app.ApplicationProvider;
 
 import com.android.settings.fuelgauge.batteryusage.db.AppUsageEventEntity;
+import com.android.settings.testutils.FakeFeatureFactory;
 
 import org.junit.After;
 import org.junit.Before;
@@ -57,15 +70,22 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.android.util.concurrent.PausedExecutorService;
+import org.robolectric.shadows.ShadowContentResolver;
 import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.shadows.ShadowPausedAsyncTask;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 @RunWith(RobolectricTestRunner.class)
@@ -74,6 +94,8 @@ public final class DataProcessManagerTest {
     public final MockitoRule mMockitoRule = MockitoJUnit.rule();
 
     private static final String FAKE_ENTRY_KEY = "fake_entry_key";
+    private static final List<Long> FAKE_HOURLY_TIMESTAMPS =
+            List.of(1619247600000L, 1619251200000L, 1619254800000L);
 
     private Context mContext;
     private DataProcessManager mDataProcessManager;
@@ -91,6 +113,7 @@ public final class DataProcessManagerTest {
     public void setUp() {
         mExecutorService = new PausedExecutorService();
         ShadowPausedAsyncTask.overrideExecutor(mExecutorService);
+        DataProcessManager.sTestExecutor = mExecutorService;
         mContext = spy(ApplicationProvider.getApplicationContext());
         DataProcessor.sTestSystemAppsPackageNames = Set.of();
         DataProcessor.sUsageStatsManager = mUsageStatsManager;
@@ -124,6 +147,8 @@ public final class DataProcessManagerTest {
     public void cleanUp() {
         DatabaseUtils.sFakeSupplier = null;
         DataProcessManager.sFakeBatteryHistoryMap = null;
+        DataProcessManager.sTestExecutor = null;
+        BatteryUsageSlotCache.getInstance().invalidate();
     }
 
     @Test
@@ -344,6 +369,202 @@ public final class DataProcessManagerTest {
         assertThat(mDataProcessManager.getShowScreenOnTime()).isFalse();
     }
 
+    @Test
+    public void start_anyStageOrder_returnsSameResultAsSerialOrder() throws Exception {
+        final long startTimestamp = FAKE_HOURLY_TIMESTAMPS.get(0);
+        // Fake current usage data, overlapping with the database usage data.
+        final List<UsageEvents.Event> events = new ArrayList<>();
+        events.add(
+                getUsageEvent(
+                        UsageEvents.Event.ACTIVITY_RESUMED,
+                        startTimestamp + DateUtils.MINUTE_IN_MILLIS * 70,
+                        "package"));
+        events.add(
+                getUsageEvent(
+                        UsageEvents.Event.ACTIVITY_STOPPED,
+                        startTimestamp + DateUtils.MINUTE_IN_MILLIS * 100,
+                        "package"));
+        doAnswer(invocation -> getUsageEvents(events))
+                .when(mUsageStatsManager)
+                .queryEventsForUser(anyLong(), anyLong(), anyInt(), any());
+        doReturn(true).when(mUserManager).isUserUnlocked(anyInt());
+        doReturn(1).when(mContext).getUserId();
+        doReturn(1).when(mUserIdsSeries).getCurrentUserId();
+        doReturn(new ArrayList<>()).when(mUserManager).getUserProfiles();
+        doReturn(new ArrayList<>(List.of(1))).when(mUserIdsSeries).getVisibleUserIds();
+        // Fake database usage data, only the app usage events are loaded from the provider.
+        ShadowContentResolver.registerProviderInternal(
+                DatabaseUtils.AUTHORITY,
+                new FakeAppUsageEventProvider(
+                        new Object[][] {
+                            {
+                                AppUsageEventType.ACTIVITY_RESUMED.getNumber(),
+                                startTimestamp + DateUtils.MINUTE_IN_MILLIS * 10,
+                                /* userId= */ 1,
+                                /* instanceId= */ 2,
+                                "package2"
+                            },
+                            {
+                                AppUsageEventType.ACTIVITY_STOPPED.getNumber(),
+                                startTimestamp + DateUtils.MINUTE_IN_MILLIS * 70,
+                                /* userId= */ 1,
+                                /* instanceId= */ 2,
+                                "package2"
+                            }
+                        }));
+
+        // One stage at a time in the declared order, as the former AsyncTask chain ran them.
+        final Map<Long, BatteryDiffData> serialResult =
+                startAndGetBatteryDiffDataMap(mExecutorService, mExecutorService::runAll);
+        // One stage at a time, the last submitted first.
+        final ReversedExecutor reversedExecutor = new ReversedExecutor();
+        final Map<Long, BatteryDiffData> reversedResult =
+                startAndGetBatteryDiffDataMap(reversedExecutor, reversedExecutor::runAll);
+        // The independent stages at the same time.
+        final ExecutorService parallelExecutor = Executors.newFixedThreadPool(3);
+        final Map<Long, BatteryDiffData> parallelResult;
+        try {
+            parallelResult = startAndGetBatteryDiffDataMap(parallelExecutor, () -> {});
+        } finally {
+            parallelExecutor.shutdown();
+        }
+
+        assertThat(serialResult).isNotEmpty();
+        assertSameBatteryDiffDataMap(reversedResult, serialResult);
+        assertSameBatteryDiffDataMap(parallelResult, serialResult);
+    }
+
+    @Test
+    public void start_stageCompleted_notLoggedAsBatteryHistoryLoaded() {
+        final FakeFeatureFactory featureFactory = FakeFeatureFactory.setupForTest();
+        DatabaseUtils.sFakeSupplier = () -> new MatrixCursor(new String[] {});
+        doReturn(true).when(mUserIdsSeries).isCurrentUserLocked();
+        final DataProcessManager dataProcessManager =
+                createDataProcessManager(/* callbackFunction= */ null);
+
+        dataProcessManager.start();
+        mExecutorService.runAll();
+
+        verify(featureFactory.metricsFeatureProvider, never())
+                .action(
+                        anyInt(),
+                        eq(SettingsEnums.ACTION_BATTERY_HISTORY_LOADED),
+                        anyInt(),
+                        anyString(),
+                        anyInt());
+    }
+
+    @Test
+    public void start_appUsageLists_mergedInTimestampOrder() {
+        final long startTimestamp = FAKE_HOURLY_TIMESTAMPS.get(0);
+        final List<UsageEvents.Event> events = new ArrayList<>();
+        events.add(
+                getUsageEvent(
+                        UsageEvents.Event.ACTIVITY_RESUMED,
+                        startTimestamp + DateUtils.MINUTE_IN_MILLIS * 70,
+                        "package"));
+        doAnswer(invocation -> getUsageEvents(events))
+                .when(mUsageStatsManager)
+                .queryEventsForUser(anyLong(), anyLong(), anyInt(), any());
+        doReturn(true).when(mUserManager).isUserUnlocked(anyInt());
+        doReturn(1).when(mContext).getUserId();
+        doReturn(1).when(mUserIdsSeries).getCurrentUserId();
+        doReturn(new ArrayList<>()).when(mUserManager).getUserProfiles();
+        doReturn(new ArrayList<>(List.of(1))).when(mUserIdsSeries).getVisibleUserIds();
+        ShadowContentResolver.registerProviderInternal(
+                DatabaseUtils.AUTHORITY,
+                new FakeAppUsageEventProvider(
+                        new Object[][] {
+                            {
+                                AppUsageEventType.ACTIVITY_RESUMED.getNumber(),
+                                startTimestamp + DateUtils.MINUTE_IN_MILLIS * 10,
+                                /* userId= */ 1,
+                                /* instanceId= */ 2,
+                                "package2"
+                            }
+                        }));
+        final DataProcessManager dataProcessManager =
+                createDataProcessManager(/* callbackFunction= */ null);
+
+        dataProcessManager.start();
+        mExecutorService.runAll();
+
+        final List<AppUsageEvent> appUsageEventList = dataProcessManager.getAppUsageEventList();
+        assertThat(appUsageEventList).hasSize(2);
+        assertThat(appUsageEventList.get(0).getTimestamp())
+                .isEqualTo(startTimestamp + DateUtils.MINUTE_IN_MILLIS * 10);
+        assertThat(appUsageEventList.get(1).getTimestamp())
+                .isEqualTo(startTimestamp + DateUtils.MINUTE_IN_MILLIS * 70);
+    }
+
+    @Test
+    public void start_stageFails_applyCallbackWithEmptyResult() {
+        DatabaseUtils.sFakeSupplier = () -> new MatrixCursor(new String[] {});
+        doReturn(true).when(mUserIdsSeries).isCurrentUserLocked();
+        final FakeFeatureFactory featureFactory = FakeFeatureFactory.setupForTest();
+        doThrow(new IllegalStateException())
+                .when(featureFactory.powerUsageFeatureProvider)
+                .processBatteryReattributeData(any(), any(), any(), anyBoolean());
+        final List<Map<Long, BatteryDiffData>> results = new ArrayList<>();
+        final DataProcessManager dataProcessManager = createDataProcessManager(results::add);
+
+        dataProcessManager.start();
+        mExecutorService.runAll();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0)).isEmpty();
+    }
+
+    @Test
+    public void cancel_beforeStagesRun_skipsCallback() {
+        DatabaseUtils.sFakeSupplier = () -> new MatrixCursor(new String[] {});
+        final List<Map<Long, BatteryDiffData>> results = new ArrayList<>();
+        final DataProcessManager dataProcessManager =
+                createDataProcessManager(results::add);
+
+        dataProcessManager.start();
+        dataProcessManager.cancel();
+        mExecutorService.runAll();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(dataProcessManager.isCanceled()).isTrue();
+        assertThat(dataProcessManager.getIsDatabaseAppUsageLoaded()).isFalse();
+        assertThat(results).isEmpty();
+    }
+
+    @Test
+    public void start_afterCancel_isIgnored() {
+        final DataProcessManager dataProcessManager =
+                createDataProcessManager(/* callbackFunction= */ null);
+
+        dataProcessManager.cancel();
+        dataProcessManager.start();
+
+        assertThat(dataProcessManager.getPipelineFuture()).isNull();
+    }
+
+    @Test
+    public void getBatteryLevelData_sharedCancellationSignal_cancelsAllLoads() {
+        final CancellationSignal cancellationSignal = new CancellationSignal();
+        final List<Map<Long, BatteryDiffData>> results = new ArrayList<>();
+
+        for (int i = 0; i < 2; i++) {
+            DataProcessManager.getBatteryLevelData(
+                    mContext,
+                    new Handler(Looper.getMainLooper()),
+                    mUserIdsSeries,
+                    /* isFromPeriodJob= */ false,
+                    results::add,
+                    cancellationSignal);
+        }
+        cancellationSignal.cancel();
+        mExecutorService.runAll();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(results).isEmpty();
+    }
+
     @Test
     public void getBatteryLevelData_emptyHistoryMap_returnNull() {
         assertThat(
@@ -520,4 +741,173 @@ public final class DataProcessManagerTest {
                     .isEqualTo(expectedHourlyLevels.get(dailyIndex));
         }
     }
+
+    private Map<Long, BatteryDiffData> startAndGetBatteryDiffDataMap(
+            final Executor executor, final Runnable runStages) throws Exception {
+        DataProcessManager.sTestExecutor = executor;
+        // Each run computes its result, instead of reusing the slots cached by the last one.
+        BatteryUsageSlotCache.getInstance().invalidate();
+        final List<Map<Long, BatteryDiffData>> results = new ArrayList<>();
+        final DataProcessManager dataProcessManager = createDataProcessManager(results::add);
+        dataProcessManager.start();
+        runStages.run();
+        dataProcessManager.getPipelineFuture().get(10, TimeUnit.SECONDS);
+        ShadowLooper.idleMainLooper();
+        assertThat(results).hasSize(1);
+        return results.get(0);
+    }
+
+    private static void assertSameBatteryDiffDataMap(
+            final Map<Long, BatteryDiffData> actual, final Map<Long, BatteryDiffData> expected) {
+        assertThat(actual.keySet()).containsExactlyElementsIn(expected.keySet());
+        for (Map.Entry<Long, BatteryDiffData> entry : expected.entrySet()) {
+            assertThat(String.valueOf(actual.get(entry.getKey())))
+                    .isEqualTo(String.valueOf(entry.getValue()));
+        }
+    }
+
+    private DataProcessManager createDataProcessManager(
+            DataProcessManager.OnBatteryDiffDataMapLoadedListener callbackFunction) {
+        final List<Long> timestamps = FAKE_HOURLY_TIMESTAMPS;
+        final Map<Long, Integer> batteryLevelMap =
+                Map.of(timestamps.get(0), 100, timestamps.get(1), 98, timestamps.get(2), 95);
+        final List<BatteryLevelData.PeriodBatteryLevelData> hourlyBatteryLevelsPerDay =
+                new ArrayList<>();
+        hourlyBatteryLevelsPerDay.add(
+                new BatteryLevelData.PeriodBatteryLevelData(
+                        batteryLevelMap, timestamps, /* isStartTimestamp= */ false));
+        return new DataProcessManager(
+                mContext,
+                new Handler(Looper.getMainLooper()),
+                mUserIdsSeries,
+                /* isFromPeriodJob= */ false,
+                /* rawStartTimestamp= */ timestamps.get(0),
+                /* lastFullChargeTimestamp= */ timestamps.get(0),
+                callbackFunction,
+                hourlyBatteryLevelsPerDay,
+                createBatteryHistoryMap(timestamps));
+    }
+
+    // Creates the battery usage of two apps growing over the {@code timestamps}.
+    private Map<Long, Map<String, BatteryHistEntry>> createBatteryHistoryMap(
+            final List<Long> timestamps) {
+        final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap = new HashMap<>();
+        for (int index = 0; index < timestamps.size(); index++) {
+            final Map<String, BatteryHistEntry> entryMap = new HashMap<>();
+            for (int uid = 1; uid <= 2; uid++) {
+                final BatteryHistEntry entry =
+                        createBatteryHistEntry(
+                                "package" + uid,
+                                /* uid= */ uid,
+                                /* consumePower= */ 10.0 * uid * index,
+                                /* foregroundUsageTimeInMs= */
+                                        DateUtils.MINUTE_IN_MILLIS * uid * index);
+                entryMap.put(entry.getKey(), entry);
+            }
+            batteryHistoryMap.put(timestamps.get(index), entryMap);
+        }
+        return batteryHistoryMap;
+    }
+
+    private BatteryHistEntry createBatteryHistEntry(
+            final String packageName,
+            final long uid,
+            final double consumePower,
+            final long foregroundUsageTimeInMs) {
+        final BatteryInformation batteryInformation =
+                BatteryInformation.newBuilder()
+                        .setAppLabel(packageName)
+                        .setConsumePower(consumePower)
+                        .setForegroundUsageConsumePower(consumePower)
+                        .setForegroundUsageTimeInMs(foregroundUsageTimeInMs)
+                        .build();
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_PACKAGE_NAME, packageName);
+        values.put(BatteryHistEntry.KEY_UID, uid);
+        values.put(BatteryHistEntry.KEY_USER_ID, mContext.getUserId());
+        values.put(BatteryHistEntry.KEY_CONSUMER_TYPE, ConvertUtils.CONSUMER_TYPE_UID_BATTERY);
+        values.put(
+                BatteryHistEntry.KEY_BATTERY_INFORMATION,
+                ConvertUtils.convertBatteryInformationToString(batteryInformation));
+        return new BatteryHistEntry(values);
+    }
+
+    /** Runs the queued tasks one at a time, the last queued first. */
+    private static final class ReversedExecutor implements Executor {
+        private final Deque<Runnable> mTasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(final Runnable task) {
+            mTasks.push(task);
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                mTasks.pop().run();
+            }
+        }
+    }
+
+    /** Returns the app usage events, and nothing for the other battery usage tables. */
+    private static final class FakeAppUsageEventProvider extends ContentProvider {
+        private final Object[][] mRows;
+
+        FakeAppUsageEventProvider(final Object[][] rows) {
+            mRows = rows;
+        }
+
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Cursor query(
+                final Uri uri,
+                final String[] projection,
+                final String selection,
+                final String[] selectionArgs,
+                final String sortOrder) {
+            if (!DatabaseUtils.APP_USAGE_EVENT_TABLE.equals(uri.getLastPathSegment())) {
+                return null;
+            }
+            final MatrixCursor cursor =
+                    new MatrixCursor(
+                            new String[] {
+                                AppUsageEventEntity.KEY_APP_USAGE_EVENT_TYPE,
+                                AppUsageEventEntity.KEY_TIMESTAMP,
+                                AppUsageEventEntity.KEY_USER_ID,
+                                AppUsageEventEntity.KEY_INSTANCE_ID,
+                                AppUsageEventEntity.KEY_PACKAGE_NAME
+                            });
+            for (Object[] row : mRows) {
+                cursor.addRow(row);
+            }
+            return cursor;
+        }
+
+        @Override
+        public String getType(final Uri uri) {
+            return null;
+        }
+
+        @Override
+        public Uri insert(final Uri uri, final ContentValues values) {
+            return null;
+        }
+
+        @Override
+        public int delete(final Uri uri, final String selection, final String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public int update(
+                final Uri uri,
+                final ContentValues values,
+                final String selection,
+                final String[] selectionArgs) {
+            return 0;
+        }
+    }
 }
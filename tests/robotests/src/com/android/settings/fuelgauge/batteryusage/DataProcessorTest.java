@@ -855,6 +855,26 @@ public final class DataProcessorTest {
         assertThat(results).isEqualTo(new long[] {40L, 0L});
     }
 
+    @Test
+    public void findNearestTimestamp_unsortedList_returnExpectedResult() {
+        final long[] results =
+                DataProcessor.findNearestTimestamp(
+                        Arrays.asList(40L, 10L, 30L, 20L), /* target= */ 25L);
+        assertThat(results).isEqualTo(new long[] {20L, 30L});
+    }
+
+    @Test
+    public void findNearestTimestamp_sortedArray_returnExpectedResult() {
+        final long[] timestamps = new long[] {10L, 20L, 30L, 40L};
+
+        assertThat(DataProcessor.findNearestTimestamp(timestamps, /* target= */ 15L))
+                .isEqualTo(new long[] {10L, 20L});
+        assertThat(DataProcessor.findNearestTimestamp(timestamps, /* target= */ 40L))
+                .isEqualTo(new long[] {40L, 40L});
+        assertThat(DataProcessor.findNearestTimestamp(new long[0], /* target= */ 15L))
+                .isEqualTo(new long[] {0L, 0L});
+    }
+
     @Test
     public void getBatteryDiffDataMap_emptyHistoryMap_returnEmpty() {
         final List<BatteryLevelData.PeriodBatteryLevelData> hourlyBatteryLevelsPerDay =
@@ -22,16 +22,21 @@ import static com.android.settings.intelligence.ContextualCardProto.ContextualCa
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
 import android.app.settings.SettingsEnums;
 import android.content.Context;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.provider.Settings;
 
 import com.android.settings.R;
@@ -45,7 +50,10 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @RunWith(RobolectricTestRunner.class)
@@ -59,6 +67,7 @@ public class ContextualCardLoaderTest {
     public void setUp() {
         mContext = RuntimeEnvironment.application;
         mContextualCardLoader = spy(new ContextualCardLoader(mContext));
+        mContextualCardLoader.mEligibilityCache = new CardEligibilityCache();
         mFakeFeatureFactory = FakeFeatureFactory.setupForTest();
     }
 
@@ -137,6 +146,112 @@ public class ContextualCardLoaderTest {
                 eq(SettingsEnums.ACTION_CONTEXTUAL_CARD_NOT_SHOW), any(String.class));
     }
 
+    @Test
+    public void filterEligibleCards_noCachedResult_shouldCheckAndCacheResult() {
+        final ContextualCard card = getContextualCardList().get(0);
+        final EligibleCardChecker checker = mock(EligibleCardChecker.class);
+        doReturn(card).when(checker).call();
+        doReturn(checker).when(mContextualCardLoader).createEligibleCardChecker(any());
+
+        final List<ContextualCard> result =
+                mContextualCardLoader.filterEligibleCards(Collections.singletonList(card));
+
+        assertThat(result).hasSize(1);
+        assertThat(mContextualCardLoader.mEligibilityCache.get(card.getSliceUri(),
+                SystemClock.elapsedRealtime()).isEligible()).isTrue();
+    }
+
+    @Test
+    public void filterEligibleCards_manyUncachedCards_shouldCheckAllInParallel() {
+        final List<ContextualCard> cards = getContextualCardList();
+        // Every check waits for all the others to start, which only happens when none of them is
+        // queued behind another.
+        final CountDownLatch started = new CountDownLatch(cards.size());
+        doAnswer(invocation -> {
+            final ContextualCard card = invocation.getArgument(0);
+            final EligibleCardChecker checker = mock(EligibleCardChecker.class);
+            doAnswer(call -> {
+                started.countDown();
+                return started.await(1, TimeUnit.SECONDS) ? card : null;
+            }).when(checker).call();
+            return checker;
+        }).when(mContextualCardLoader).createEligibleCardChecker(any());
+
+        final List<ContextualCard> result = mContextualCardLoader.filterEligibleCards(cards);
+
+        assertThat(result).hasSize(cards.size());
+    }
+
+    @Test
+    public void filterEligibleCards_checkPendingFromLastLoad_shouldReuseIt() {
+        final ContextualCard card = getContextualCardList().get(0);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final EligibleCardChecker checker = mock(EligibleCardChecker.class);
+        doAnswer(call -> latch.await(5, TimeUnit.SECONDS) ? card : null).when(checker).call();
+        doReturn(checker).when(mContextualCardLoader).createEligibleCardChecker(any());
+
+        final List<ContextualCard> firstResult;
+        final List<ContextualCard> secondResult;
+        try {
+            firstResult =
+                    mContextualCardLoader.filterEligibleCards(Collections.singletonList(card));
+            secondResult =
+                    mContextualCardLoader.filterEligibleCards(Collections.singletonList(card));
+        } finally {
+            latch.countDown();
+        }
+
+        assertThat(firstResult).isEmpty();
+        assertThat(secondResult).isEmpty();
+        verify(mContextualCardLoader).createEligibleCardChecker(any());
+        verify(checker, timeout(1000)).call();
+    }
+
+    @Test
+    public void filterEligibleCards_freshCachedResult_shouldNotCheck() {
+        final ContextualCard card = getContextualCardList().get(0);
+        mContextualCardLoader.mEligibilityCache.put(card.getSliceUri(), card,
+                SystemClock.elapsedRealtime());
+
+        final List<ContextualCard> result =
+                mContextualCardLoader.filterEligibleCards(Collections.singletonList(card));
+
+        assertThat(result).hasSize(1);
+        verify(mContextualCardLoader, never()).createEligibleCardChecker(any());
+    }
+
+    @Test
+    public void filterEligibleCards_invalidatedCachedResult_shouldReturnItAndRefresh() {
+        final ContextualCard card = getContextualCardList().get(0);
+        final EligibleCardChecker checker = mock(EligibleCardChecker.class);
+        doReturn(null).when(checker).call();
+        doReturn(checker).when(mContextualCardLoader).createEligibleCardChecker(any());
+        mContextualCardLoader.mEligibilityCache.put(card.getSliceUri(), card,
+                SystemClock.elapsedRealtime());
+        mContextualCardLoader.mEligibilityCache.invalidate(card.getSliceUri());
+
+        final List<ContextualCard> result =
+                mContextualCardLoader.filterEligibleCards(Collections.singletonList(card));
+
+        assertThat(result).hasSize(1);
+        verify(checker, timeout(1000)).call();
+    }
+
+    @Test
+    public void filterEligibleCards_cachedCard_shouldLogLoadTime() {
+        final ContextualCard card = getContextualCardList().get(0);
+        mContextualCardLoader.mEligibilityCache.put(card.getSliceUri(), null /* eligibleCard */,
+                SystemClock.elapsedRealtime());
+
+        final List<ContextualCard> result =
+                mContextualCardLoader.filterEligibleCards(Collections.singletonList(card));
+
+        assertThat(result).isEmpty();
+        verify(mFakeFeatureFactory.metricsFeatureProvider).action(
+                eq(SettingsEnums.PAGE_UNKNOWN), eq(SettingsEnums.ACTION_CONTEXTUAL_CARD_LOAD),
+                eq(SettingsEnums.SETTINGS_HOMEPAGE), eq(card.getTextSliceUri()), anyInt());
+    }
+
     @Test
     public void getCardCount_noConfiguredCardCount_returnDefaultCardCount() {
         assertThat(mContextualCardLoader.getCardCount()).isEqualTo(DEFAULT_CARD_COUNT);
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import com.android.settingslib.search.SearchIndexableData;
+import com.android.settingslib.search.SearchIndexableRaw;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class NonIndexableKeysLoaderTest {
+
+    private Context mContext;
+    private NonIndexableKeysLoader mLoader;
+    private CountingProvider mProvider;
+    private List<SearchIndexableData> mBundles;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mLoader = new NonIndexableKeysLoader();
+        mProvider = new CountingProvider("key1", "", null, "key2");
+        mBundles = new ArrayList<>();
+        mBundles.add(new SearchIndexableData(FakeSettingsFragment.class, mProvider));
+    }
+
+    @Test
+    public void load_dropsInvalidKeys() {
+        assertThat(mLoader.load(mContext, mBundles)).containsExactly("key1", "key2").inOrder();
+    }
+
+    @Test
+    public void load_calledTwice_usesCachedKeys() {
+        mLoader.load(mContext, mBundles);
+
+        assertThat(mLoader.load(mContext, mBundles)).containsExactly("key1", "key2").inOrder();
+        assertThat(mProvider.mCallCount.get()).isEqualTo(1);
+        assertThat(mLoader.getCachedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void load_invalidated_computesAgain() {
+        mLoader.load(mContext, mBundles);
+
+        mLoader.invalidate();
+        mLoader.load(mContext, mBundles);
+
+        assertThat(mProvider.mCallCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void load_providerThrows_keepsKeysOfOtherProviders() {
+        mBundles.add(0, new SearchIndexableData(String.class, new BaseSearchIndexProvider() {
+            @Override
+            public List<String> getNonIndexableKeys(Context context) {
+                throw new IllegalStateException("error");
+            }
+        }));
+
+        assertThat(mLoader.load(mContext, mBundles)).containsExactly("key1", "key2").inOrder();
+        assertThat(mLoader.getCachedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void load_timedOutWithoutLastKeys_leavesOutKeysOfPage() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mBundles.set(0, new SearchIndexableData(FakeSettingsFragment.class,
+                new BaseSearchIndexProvider() {
+                    @Override
+                    public List<SearchIndexableRaw> getRawDataToIndex(Context context,
+                            boolean enabled) {
+                        final SearchIndexableRaw raw = new SearchIndexableRaw(context);
+                        raw.key = "raw_key";
+                        return new ArrayList<>(Arrays.asList(raw));
+                    }
+
+                    @Override
+                    public List<String> getNonIndexableKeys(Context context) {
+                        try {
+                            latch.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return new ArrayList<>();
+                    }
+                }));
+        mLoader.mLoadTimeoutMs = 0;
+
+        final List<String> keys;
+        try {
+            keys = mLoader.load(mContext, mBundles);
+        } finally {
+            latch.countDown();
+        }
+
+        assertThat(keys).containsExactly("raw_key");
+    }
+
+    @Test
+    public void load_timedOutWithLastKeys_usesLastKeys() {
+        mLoader.load(mContext, mBundles);
+        final CountDownLatch latch = new CountDownLatch(1);
+        mBundles.set(0, new SearchIndexableData(FakeSettingsFragment.class,
+                new BaseSearchIndexProvider() {
+                    @Override
+                    public List<String> getNonIndexableKeys(Context context) {
+                        try {
+                            latch.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return new ArrayList<>(Arrays.asList("key3"));
+                    }
+                }));
+        mLoader.invalidate();
+        mLoader.mLoadTimeoutMs = 0;
+
+        final List<String> keys;
+        try {
+            keys = mLoader.load(mContext, mBundles);
+        } finally {
+            latch.countDown();
+        }
+
+        assertThat(keys).containsExactly("key1", "key2").inOrder();
+    }
+
+    @Test
+    public void load_timedOutTwice_reusesPendingComputation() {
+        mLoader.load(mContext, mBundles);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger callCount = new AtomicInteger();
+        mBundles.set(0, new SearchIndexableData(FakeSettingsFragment.class,
+                new BaseSearchIndexProvider() {
+                    @Override
+                    public List<String> getNonIndexableKeys(Context context) {
+                        callCount.incrementAndGet();
+                        try {
+                            latch.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return new ArrayList<>(Arrays.asList("key3"));
+                    }
+                }));
+        mLoader.invalidate();
+        mLoader.mLoadTimeoutMs = 0;
+
+        try {
+            mLoader.load(mContext, mBundles);
+            mLoader.load(mContext, mBundles);
+        } finally {
+            latch.countDown();
+        }
+        mLoader.mLoadTimeoutMs = NonIndexableKeysLoader.LOAD_TIMEOUT_MS;
+
+        assertThat(mLoader.load(mContext, mBundles)).containsExactly("key3");
+        assertThat(callCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void dump_printsProviderTiming() {
+        mLoader.load(mContext, mBundles);
+        final StringWriter stringWriter = new StringWriter();
+
+        mLoader.dump(new PrintWriter(stringWriter));
+
+        assertThat(stringWriter.toString()).contains(FakeSettingsFragment.class.getName() + ": ");
+    }
+
+    private static class CountingProvider extends BaseSearchIndexProvider {
+        private final AtomicInteger mCallCount = new AtomicInteger();
+        private final List<String> mKeys;
+
+        CountingProvider(String... keys) {
+            mKeys = Arrays.asList(keys);
+        }
+
+        @Override
+        public List<String> getNonIndexableKeys(Context context) {
+            mCallCount.incrementAndGet();
+            return new ArrayList<>(mKeys);
+        }
+    }
+}
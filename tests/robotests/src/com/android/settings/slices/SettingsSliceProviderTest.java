@@ -29,10 +29,12 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -82,11 +84,12 @@ import org.robolectric.shadows.ShadowAccessibilityManager;
 import org.robolectric.shadows.ShadowBinder;
 import org.robolectric.shadows.ShadowPackageManager;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -149,7 +152,7 @@ public class SettingsSliceProviderTest {
 
         mProvider = spy(new SettingsSliceProvider());
         ShadowStrictMode.reset();
-        mProvider.mSliceWeakDataCache = new HashMap<>();
+        mProvider.mSliceDataCache = new SliceDataCache(SliceDataCache.MAX_SIZE);
         mProvider.mSlicesDatabaseAccessor = new SlicesDatabaseAccessor(mContext);
         when(mProvider.getContext()).thenReturn(mContext);
 
@@ -185,7 +188,7 @@ public class SettingsSliceProviderTest {
         SliceTestUtils.insertSliceToDb(mContext, KEY);
 
         mProvider.loadSlice(INTENT_SLICE_URI);
-        SliceData data = mProvider.mSliceWeakDataCache.get(INTENT_SLICE_URI);
+        SliceData data = mProvider.mSliceDataCache.get(INTENT_SLICE_URI);
 
         assertThat(data.getKey()).isEqualTo(KEY);
         assertThat(data.getTitle()).isEqualTo(SliceTestUtils.FAKE_TITLE);
@@ -218,21 +221,79 @@ public class SettingsSliceProviderTest {
     @Test
     public void testLoadSlice_cachedEntryRemovedOnUnpinned() {
         SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onSliceUnpinned(data.getUri());
         SliceTestUtils.insertSliceToDb(mContext, data.getKey());
 
-        SliceData cachedData = mProvider.mSliceWeakDataCache.get(data.getUri());
+        SliceData cachedData = mProvider.mSliceDataCache.get(data.getUri());
 
         assertThat(cachedData).isNull();
     }
 
+    @Test
+    public void loadSlice_prefetchedData_registersIntentFilterAndKeepsData() {
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+        mProvider.mSliceDataCache.prefetch(mContext, Collections.singletonList(INTENT_SLICE_URI));
+        final SliceData prefetchedData = mProvider.mSliceDataCache.peek(INTENT_SLICE_URI);
+
+        mProvider.loadSlice(INTENT_SLICE_URI);
+
+        verify(mProvider)
+                .registerIntentToUri(eq(FakeToggleController.INTENT_FILTER), eq(INTENT_SLICE_URI));
+        assertThat(prefetchedData.getKey()).isEqualTo(KEY);
+        assertThat(mProvider.mSliceDataCache.peek(INTENT_SLICE_URI))
+                .isSameInstanceAs(prefetchedData);
+        assertThat(Shadows.shadowOf(mContext.getContentResolver()).getNotifiedUris().stream()
+                .map(notifiedUri -> notifiedUri.uri)).contains(INTENT_SLICE_URI);
+    }
+
+    @Test
+    public void loadSlice_dataEvictedAfterRegistration_reloadsAndRegistersOnce() {
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+        mProvider.loadSlice(INTENT_SLICE_URI);
+        mProvider.mSliceDataCache.remove(INTENT_SLICE_URI);
+
+        mProvider.loadSlice(INTENT_SLICE_URI);
+
+        verify(mProvider, times(1))
+                .registerIntentToUri(eq(FakeToggleController.INTENT_FILTER), eq(INTENT_SLICE_URI));
+        assertThat(mProvider.mSliceDataCache.peek(INTENT_SLICE_URI).getKey()).isEqualTo(KEY);
+        assertThat(Shadows.shadowOf(mContext.getContentResolver()).getNotifiedUris().stream()
+                .filter(notifiedUri -> INTENT_SLICE_URI.equals(notifiedUri.uri))
+                .count()).isEqualTo(2);
+    }
+
+    @Test
+    public void loadSlice_loadedTwice_registersIntentFilterOnce() {
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+
+        mProvider.loadSlice(INTENT_SLICE_URI);
+        mProvider.loadSlice(INTENT_SLICE_URI);
+
+        verify(mProvider, times(1))
+                .registerIntentToUri(eq(FakeToggleController.INTENT_FILTER), eq(INTENT_SLICE_URI));
+    }
+
+    @Test
+    public void dump_afterBindSlice_containsHitsAndMisses() {
+        final SliceData data = getMockData();
+        mProvider.mSliceDataCache.put(data.getUri(), data);
+        doNothing().when(mProvider).loadSliceInBackground(any());
+        mProvider.onBindSlice(data.getUri());
+        mProvider.onBindSlice(INTENT_SLICE_URI);
+        final StringWriter stringWriter = new StringWriter();
+
+        mProvider.dump(null /* fd */, new PrintWriter(stringWriter), new String[0]);
+
+        assertThat(stringWriter.toString()).contains("hits: 1, misses: 1");
+    }
+
     @Test
     public void onBindSlice_mainThread_shouldNotOverrideStrictMode() {
         ShadowThreadUtils.setIsMainThread(true);
         final StrictMode.ThreadPolicy oldThreadPolicy = StrictMode.getThreadPolicy();
         SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         final StrictMode.ThreadPolicy newThreadPolicy = StrictMode.getThreadPolicy();
@@ -246,7 +307,7 @@ public class SettingsSliceProviderTest {
         ShadowThreadUtils.setIsMainThread(false);
 
         SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         assertThat(ShadowStrictMode.isThreadPolicyOverridden()).isTrue();
@@ -274,7 +335,7 @@ public class SettingsSliceProviderTest {
     public void onBindSlice_nightModeChanged_shouldReloadTheme() {
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_NO;
         final SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_YES;
@@ -287,7 +348,7 @@ public class SettingsSliceProviderTest {
     public void onBindSlice_nightModeNotChanged_shouldNotReloadTheme() {
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_NO;
         SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_NO;
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import static android.content.ContentResolver.SCHEME_CONTENT;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.net.Uri;
+import android.provider.SettingsSlicesContract;
+
+import com.android.settings.testutils.DatabaseTestUtils;
+import com.android.settings.testutils.FakeFeatureFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class SliceDataCacheTest {
+
+    private static final String KEY = "key";
+
+    private Context mContext;
+    private SliceDataCache mCache;
+    private Locale mDefaultLocale;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        FakeFeatureFactory.setupForTest();
+        mDefaultLocale = Locale.getDefault();
+        mCache = new SliceDataCache(2 /* maxSize */);
+    }
+
+    @After
+    public void cleanUp() {
+        Locale.setDefault(mDefaultLocale);
+        DatabaseTestUtils.clearDb(mContext);
+    }
+
+    @Test
+    public void put_overMaxSize_evictsLeastRecentlyUsed() {
+        final Uri uri1 = getUri("key1");
+        final Uri uri2 = getUri("key2");
+        final Uri uri3 = getUri("key3");
+        mCache.put(uri1, getSliceData(uri1));
+        mCache.put(uri2, getSliceData(uri2));
+        mCache.get(uri1);
+
+        mCache.put(uri3, getSliceData(uri3));
+
+        assertThat(mCache.size()).isEqualTo(2);
+        assertThat(mCache.contains(uri1)).isTrue();
+        assertThat(mCache.contains(uri2)).isFalse();
+        assertThat(mCache.contains(uri3)).isTrue();
+    }
+
+    @Test
+    public void get_countsHitsAndMisses() {
+        final Uri uri = getUri(KEY);
+        mCache.put(uri, getSliceData(uri));
+
+        mCache.get(uri);
+        mCache.get(uri);
+        mCache.get(getUri("missing"));
+        mCache.peek(uri);
+
+        assertThat(mCache.getHitCount()).isEqualTo(2);
+        assertThat(mCache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void get_localeChanged_returnsNull() {
+        final Uri uri = getUri(KEY);
+        mCache.put(uri, getSliceData(uri));
+
+        Locale.setDefault(Locale.JAPAN.equals(mDefaultLocale) ? Locale.KOREA : Locale.JAPAN);
+
+        assertThat(mCache.get(uri)).isNull();
+        assertThat(mCache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void prefetch_loadsIndexedSlicesOnly() {
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+        final Uri indexedUri = getUri(KEY);
+        final Uri unknownUri = getUri("unknown");
+
+        mCache.prefetch(mContext,
+                Arrays.asList(indexedUri, unknownUri, CustomSliceRegistry.WIFI_SLICE_URI));
+
+        assertThat(mCache.size()).isEqualTo(1);
+        assertThat(mCache.peek(indexedUri).getKey()).isEqualTo(KEY);
+        assertThat(mCache.peek(indexedUri).getUri()).isEqualTo(indexedUri);
+    }
+
+    @Test
+    public void dump_containsHitRate() {
+        final Uri uri = getUri(KEY);
+        mCache.put(uri, getSliceData(uri));
+        mCache.get(uri);
+        mCache.get(getUri("missing"));
+        final StringWriter stringWriter = new StringWriter();
+
+        mCache.dump(new PrintWriter(stringWriter));
+
+        assertThat(stringWriter.toString()).contains("size: 1/2");
+        assertThat(stringWriter.toString()).contains("hits: 1, misses: 1, hit rate: 50%");
+    }
+
+    private static Uri getUri(String key) {
+        return new Uri.Builder()
+                .scheme(SCHEME_CONTENT)
+                .authority(SettingsSliceProvider.SLICE_AUTHORITY)
+                .appendPath(SettingsSlicesContract.PATH_SETTING_ACTION)
+                .appendPath(key)
+                .build();
+    }
+
+    private static SliceData getSliceData(Uri uri) {
+        return new SliceData.Builder()
+                .setKey(uri.getLastPathSegment())
+                .setUri(uri)
+                .setTitle(SliceTestUtils.FAKE_TITLE)
+                .setFragmentName(SliceTestUtils.FAKE_FRAGMENT_NAME)
+                .setPreferenceControllerClassName(SliceTestUtils.FAKE_CONTROLLER_NAME)
+                .build();
+    }
+}
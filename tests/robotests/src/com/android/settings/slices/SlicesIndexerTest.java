@@ -18,15 +18,23 @@ package com.android.settings.slices;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.util.ArrayMap;
 
+import com.android.settings.R;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 import com.android.settings.testutils.DatabaseTestUtils;
 
@@ -39,7 +47,9 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @RunWith(RobolectricTestRunner.class)
 public class SlicesIndexerTest {
@@ -56,6 +66,8 @@ public class SlicesIndexerTest {
     private static final int SLICE_TYPE = SliceData.SliceType.SLIDER;
     private static final String UNAVAILABLE_SLICE_SUBTITLE = "subtitleOfUnavailableSlice";
     private static final int HIGHLIGHT_MENU_KEY = 5678; // I declare a thumb war
+    private static final int XML = R.xml.display_settings;
+    private static final int OTHER_XML = R.xml.location_settings;
 
     private Context mContext;
 
@@ -100,7 +112,8 @@ public class SlicesIndexerTest {
     public void testInsertSliceData_indexedStateSet() {
         final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
         helper.setIndexedState();
-        doReturn(new ArrayList<SliceData>()).when(mManager).getSliceData();
+        doReturn(mockConverter(new ArrayMap<>(), new ArrayList<>()))
+                .when(mManager).getSliceDataConverter();
 
         mManager.run();
 
@@ -111,7 +124,8 @@ public class SlicesIndexerTest {
     @Ignore
     public void testInsertSliceData_nonPublicSlice_mockDataInserted() {
         final List<SliceData> sliceData = getMockIndexableData(false);
-        doReturn(sliceData).when(mManager).getSliceData();
+        doReturn(mockConverter(getXmlResources(XML), sliceData))
+                .when(mManager).getSliceDataConverter();
 
         mManager.run();
 
@@ -160,7 +174,8 @@ public class SlicesIndexerTest {
     @Ignore
     public void insertSliceData_publicSlice_mockDataInserted() {
         final List<SliceData> sliceData = getMockIndexableData(true);
-        doReturn(sliceData).when(mManager).getSliceData();
+        doReturn(mockConverter(getXmlResources(XML), sliceData))
+                .when(mManager).getSliceDataConverter();
 
         mManager.run();
 
@@ -205,6 +220,114 @@ public class SlicesIndexerTest {
         }
     }
 
+    @Test
+    public void updateSliceData_unchangedFragment_notConvertedAgain() {
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        final SliceDataConverter converter =
+                mockConverter(getXmlResources(XML), getMockIndexableData(false));
+
+        assertThat(mManager.updateSliceData(db, converter)).isEqualTo(1);
+        assertThat(mManager.updateSliceData(db, converter)).isEqualTo(0);
+        verify(converter).getSliceData(eq(FRAGMENT_NAME), any());
+        assertThat(getIndexedTitles(db)).containsExactlyElementsIn(TITLES);
+    }
+
+    @Test
+    public void updateSliceData_fragmentWithoutSlices_notConvertedAgain() {
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        final SliceDataConverter converter =
+                mockConverter(getXmlResources(XML), new ArrayList<>());
+
+        mManager.updateSliceData(db, converter);
+
+        assertThat(mManager.updateSliceData(db, converter)).isEqualTo(0);
+        verify(converter).getSliceData(eq(FRAGMENT_NAME), any());
+    }
+
+    @Test
+    public void updateSliceData_changedXml_reindexed() {
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        mManager.updateSliceData(db,
+                mockConverter(getXmlResources(XML), getMockIndexableData(false)));
+        final List<SliceData> sliceData = getMockIndexableData(false);
+        sliceData.set(0, new SliceData.Builder()
+                .setKey(KEYS[0])
+                .setTitle("new title")
+                .setFragmentName(FRAGMENT_NAME)
+                .setUri(URI)
+                .setPreferenceControllerClassName(PREF_CONTROLLER)
+                .build());
+
+        assertThat(mManager.updateSliceData(db,
+                mockConverter(getXmlResources(OTHER_XML), sliceData))).isEqualTo(1);
+        assertThat(getIndexedTitles(db)).containsExactly("new title", TITLES[1], TITLES[2]);
+    }
+
+    @Test
+    public void updateSliceData_changedSourceVersion_reindexed() {
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        final SliceDataConverter converter =
+                mockConverter(getXmlResources(XML), getMockIndexableData(false));
+        mManager.updateSliceData(db, converter);
+        doReturn("other locale").when(mManager).getSourceVersion();
+
+        assertThat(mManager.updateSliceData(db, converter)).isEqualTo(1);
+        verify(converter, times(2)).getSliceData(eq(FRAGMENT_NAME), any());
+    }
+
+    @Test
+    public void updateSliceData_removedFragment_dataDeleted() {
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        mManager.updateSliceData(db,
+                mockConverter(getXmlResources(XML), getMockIndexableData(false)));
+
+        assertThat(mManager.updateSliceData(db,
+                mockConverter(new ArrayMap<>(), new ArrayList<>()))).isEqualTo(1);
+        assertThat(getIndexedTitles(db)).isEmpty();
+    }
+
+    @Test
+    public void getFingerprint_differentSources_differentFingerprint() {
+        final List<Integer> xmlResIds = Collections.singletonList(XML);
+        final String fingerprint =
+                mManager.getFingerprint("version", xmlResIds, new ArrayList<>());
+
+        assertThat(mManager.getFingerprint("version", xmlResIds, new ArrayList<>()))
+                .isEqualTo(fingerprint);
+        assertThat(mManager.getFingerprint("other version", xmlResIds, new ArrayList<>()))
+                .isNotEqualTo(fingerprint);
+        assertThat(mManager.getFingerprint("version", Collections.singletonList(OTHER_XML),
+                new ArrayList<>())).isNotEqualTo(fingerprint);
+        assertThat(mManager.getFingerprint("version", xmlResIds, getMockIndexableData(false)))
+                .isNotEqualTo(fingerprint);
+    }
+
+    private static SliceDataConverter mockConverter(Map<String, List<Integer>> xmlResources,
+            List<SliceData> sliceData) {
+        final SliceDataConverter converter = mock(SliceDataConverter.class);
+        when(converter.getXmlResources()).thenAnswer(invocation -> new ArrayMap<>(xmlResources));
+        when(converter.getSliceData(eq(FRAGMENT_NAME), any()))
+                .thenAnswer(invocation -> new ArrayList<>(sliceData));
+        when(converter.getAccessibilitySliceData()).thenAnswer(invocation -> new ArrayList<>());
+        return converter;
+    }
+
+    private static Map<String, List<Integer>> getXmlResources(int xmlResId) {
+        final Map<String, List<Integer>> xmlResources = new ArrayMap<>();
+        xmlResources.put(FRAGMENT_NAME, Collections.singletonList(xmlResId));
+        return xmlResources;
+    }
+
+    private static List<String> getIndexedTitles(SQLiteDatabase db) {
+        final List<String> titles = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT title FROM slices_index", null)) {
+            while (cursor.moveToNext()) {
+                titles.add(cursor.getString(0));
+            }
+        }
+        return titles;
+    }
+
     private void insertSpecialCase(String key, String title) {
         final ContentValues values = new ContentValues();
         values.put(IndexColumns.KEY, key);
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage.lib
+
+import android.app.usage.NetworkStats
+import android.content.Context
+import android.content.pm.UserInfo
+import android.os.UserHandle
+import android.os.UserManager
+import android.util.SparseLongArray
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.android.settingslib.AppItem
+import com.android.settingslib.net.UidDetailProvider
+import com.android.settingslib.spaprivileged.framework.common.userManager
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.spy
+
+@RunWith(AndroidJUnit4::class)
+class AppDataUsageIndexTest {
+
+    private val mockUserManager = mock<UserManager> {
+        on { getUserInfo(OTHER_USER_ID) } doReturn UserInfo(OTHER_USER_ID, "", 0)
+    }
+
+    private val context: Context = spy(ApplicationProvider.getApplicationContext()) {
+        on { userManager } doReturn mockUserManager
+    }
+
+    private val index = AppDataUsageIndex(context, USER_ID)
+
+    @Test
+    fun getAppItems_unknownCycle_empty() {
+        assertThat(index.getAppItems(START_TIME, END_TIME, PROFILES)).isEmpty()
+    }
+
+    @Test
+    fun getAppItems_onlyUsageOfTheCycle() {
+        index.putCycle(START_TIME, END_TIME, usageOf(APP_UID_1 to 1L), QUERIED_TIME)
+        index.putCycle(END_TIME, END_TIME * 2, usageOf(APP_UID_2 to 2L), QUERIED_TIME)
+
+        val items = index.getAppItems(START_TIME, END_TIME, PROFILES)
+
+        assertThat(items).hasSize(1)
+        items[0].apply {
+            assertThat(key).isEqualTo(APP_UID_1)
+            assertThat(category).isEqualTo(AppItem.CATEGORY_APP)
+            assertThat(total).isEqualTo(1)
+        }
+    }
+
+    @Test
+    fun getAppItems_managedProfileApp_alsoAddedToUserItem() {
+        val profileAppUid = UserHandle.getUid(PROFILE_USER_ID, APP_ID)
+        index.putCycle(START_TIME, END_TIME, usageOf(profileAppUid to 3L), QUERIED_TIME)
+
+        val items = index.getAppItems(START_TIME, END_TIME, PROFILES)
+
+        assertThat(items.map { it.key }).containsExactly(
+            UidDetailProvider.buildKeyForUser(PROFILE_USER_ID),
+            profileAppUid,
+        )
+        assertThat(items.map { it.total }).containsExactly(3L, 3L)
+    }
+
+    @Test
+    fun getAppItems_otherUsersCollapsed() {
+        index.putCycle(
+            startTime = START_TIME,
+            endTime = END_TIME,
+            usageByUid = usageOf(
+                UserHandle.getUid(OTHER_USER_ID, APP_ID) to 1L,
+                UserHandle.getUid(OTHER_USER_ID, APP_ID + 1) to 2L,
+                UserHandle.getUid(REMOVED_USER_ID, APP_ID) to 4L,
+            ),
+            queriedTime = QUERIED_TIME,
+        )
+
+        val items = index.getAppItems(START_TIME, END_TIME, PROFILES)
+
+        assertThat(items).hasSize(2)
+        items[0].apply {
+            assertThat(key).isEqualTo(UidDetailProvider.buildKeyForUser(OTHER_USER_ID))
+            assertThat(category).isEqualTo(AppItem.CATEGORY_USER)
+            assertThat(total).isEqualTo(3)
+        }
+        items[1].apply {
+            assertThat(key).isEqualTo(NetworkStats.Bucket.UID_REMOVED)
+            assertThat(total).isEqualTo(4)
+        }
+    }
+
+    @Test
+    fun getAppItems_hiddenProfile_skipped() {
+        val profileAppUid = UserHandle.getUid(PROFILE_USER_ID, APP_ID)
+        index.putCycle(START_TIME, END_TIME, usageOf(profileAppUid to 3L), QUERIED_TIME)
+        index.getAppItems(START_TIME, END_TIME, PROFILES)
+
+        val items = index.getAppItems(
+            START_TIME, END_TIME, mapOf(USER_ID to false, PROFILE_USER_ID to true),
+        )
+
+        assertThat(items).isEmpty()
+    }
+
+    @Test
+    fun hasCompleteCycle() {
+        val queriedTime = END_TIME * 2 + AppDataUsageIndex.COMPLETE_CYCLE_DELAY_MILLIS
+        index.putCycle(START_TIME, END_TIME, usageOf(APP_UID_1 to 1L), queriedTime)
+        index.putCycle(END_TIME, queriedTime + 1, usageOf(APP_UID_1 to 1L), queriedTime)
+
+        assertThat(index.hasCompleteCycle(START_TIME, END_TIME)).isTrue()
+        assertThat(index.hasCompleteCycle(END_TIME, queriedTime + 1)).isFalse()
+        assertThat(index.hasCompleteCycle(START_TIME, END_TIME * 2)).isFalse()
+    }
+
+    @Test
+    fun hasCompleteCycle_justEnded_notComplete() {
+        val queriedTime = END_TIME + AppDataUsageIndex.COMPLETE_CYCLE_DELAY_MILLIS - 1
+        index.putCycle(START_TIME, END_TIME, usageOf(APP_UID_1 to 1L), queriedTime)
+
+        assertThat(index.hasCompleteCycle(START_TIME, END_TIME)).isFalse()
+    }
+
+    private fun usageOf(vararg usage: Pair<Int, Long>) = SparseLongArray().apply {
+        for ((uid, bytes) in usage) put(uid, bytes)
+    }
+
+    private companion object {
+        const val USER_ID = 0
+        const val PROFILE_USER_ID = 10
+        const val OTHER_USER_ID = 11
+        const val REMOVED_USER_ID = 12
+        const val APP_ID = 10001
+        const val APP_UID_1 = 10001
+        const val APP_UID_2 = 10002
+        const val START_TIME = 1000L
+        const val END_TIME = 2000L
+        const val QUERIED_TIME = 5000L
+
+        val PROFILES = mapOf(USER_ID to false, PROFILE_USER_ID to false)
+    }
+}
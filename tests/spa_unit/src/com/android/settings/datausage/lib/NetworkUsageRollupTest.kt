@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage.lib
+
+import android.util.Range
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.android.settings.datausage.lib.NetworkStatsRepository.Companion.Bucket
+import com.android.settings.datausage.lib.NetworkStatsRepository.Companion.aggregate
+import com.android.settings.datausage.lib.NetworkStatsRepository.Companion.filterTime
+import com.android.settings.datausage.lib.NetworkUsageRollup.Companion.toRollup
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class NetworkUsageRollupTest {
+
+    @Test
+    fun empty() {
+        val rollup = NetworkUsageRollup.Empty
+
+        assertThat(rollup.timeRange).isNull()
+        assertThat(rollup.queryUsage(Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(0)
+    }
+
+    @Test
+    fun timeRange() {
+        val rollup = listOf(bucket(START_TIME, 1), bucket(START_TIME + HOUR, 2)).toRollup()
+
+        assertThat(rollup.timeRange).isEqualTo(Range(START_TIME, START_TIME + HOUR * 2))
+    }
+
+    @Test
+    fun queryUsage_onlyBucketsWithinRange() {
+        val rollup = listOf(
+            bucket(START_TIME, 1),
+            bucket(START_TIME + HOUR, 10),
+            bucket(START_TIME + HOUR * 2, 100),
+        ).toRollup()
+
+        assertThat(rollup.queryUsage(START_TIME, START_TIME + HOUR * 2)).isEqualTo(11)
+        assertThat(rollup.queryUsage(START_TIME + 1, START_TIME + HOUR * 3)).isEqualTo(110)
+        assertThat(rollup.queryUsage(START_TIME, START_TIME + HOUR - 1)).isEqualTo(0)
+    }
+
+    @Test
+    fun queryUsage_unsortedBucketsOfDifferentDurations_sameAsFilterTime() {
+        val buckets = listOf(
+            bucket(START_TIME + HOUR * 3, 1),
+            bucket(START_TIME, 10, duration = HOUR * 5),
+            bucket(START_TIME + HOUR, 100),
+            bucket(START_TIME + HOUR * 2, 1000, duration = HOUR / 2),
+        )
+        val rollup = buckets.toRollup()
+
+        for (startTime in START_TIME..START_TIME + HOUR * 5 step HOUR / 2) {
+            for (endTime in startTime..START_TIME + HOUR * 5 step HOUR / 2) {
+                assertThat(rollup.queryUsage(startTime, endTime))
+                    .isEqualTo(buckets.filterTime(startTime, endTime).aggregate()?.usage ?: 0)
+            }
+        }
+    }
+
+    @Test
+    fun builder_appendsToBase() {
+        val base = listOf(bucket(START_TIME, 1), bucket(START_TIME + HOUR, 10)).toRollup()
+
+        val rollup = NetworkUsageRollup.Builder(base)
+            .add(START_TIME + HOUR * 2, START_TIME + HOUR * 3, 100)
+            .build()
+
+        assertThat(rollup.size).isEqualTo(3)
+        assertThat(rollup.queryUsage(START_TIME, START_TIME + HOUR * 3)).isEqualTo(111)
+        assertThat(base.size).isEqualTo(2)
+    }
+
+    @Test
+    fun builder_replacesGrowingBucket() {
+        val base = listOf(bucket(START_TIME, 1), bucket(START_TIME + HOUR, 10)).toRollup()
+
+        val rollup = NetworkUsageRollup.Builder(base)
+            .add(START_TIME + HOUR, START_TIME + HOUR * 2, 20)
+            .add(START_TIME + HOUR * 2, START_TIME + HOUR * 3, 100)
+            .build()
+
+        assertThat(rollup.size).isEqualTo(3)
+        assertThat(rollup.lastStartTime).isEqualTo(START_TIME + HOUR * 2)
+        assertThat(rollup.queryUsage(START_TIME, START_TIME + HOUR * 3)).isEqualTo(121)
+    }
+
+    @Test
+    fun builder_replaceFrom_replacesBucketsSinceThen() {
+        val base = listOf(
+            bucket(START_TIME, 1),
+            bucket(START_TIME + HOUR, 10),
+            bucket(START_TIME + HOUR * 2, 100),
+        ).toRollup()
+
+        val rollup = NetworkUsageRollup.Builder(base, replaceFrom = START_TIME + HOUR)
+            .add(START_TIME + HOUR, START_TIME + HOUR * 2, 20)
+            .add(START_TIME + HOUR * 2, START_TIME + HOUR * 3, 200)
+            .build()
+
+        assertThat(rollup.size).isEqualTo(3)
+        assertThat(rollup.queryUsage(START_TIME, START_TIME + HOUR * 2)).isEqualTo(21)
+        assertThat(rollup.queryUsage(START_TIME, START_TIME + HOUR * 3)).isEqualTo(221)
+    }
+
+    @Test
+    fun builder_replaceFromWithNothingAdded_dropsBucketsSinceThen() {
+        val base = listOf(bucket(START_TIME, 1), bucket(START_TIME + HOUR, 10)).toRollup()
+
+        val rollup = NetworkUsageRollup.Builder(base, replaceFrom = START_TIME + HOUR).build()
+
+        assertThat(rollup.size).isEqualTo(1)
+        assertThat(rollup.queryUsage(START_TIME, START_TIME + HOUR * 2)).isEqualTo(1)
+    }
+
+    @Test
+    fun builder_nothingAdded_returnsBase() {
+        val base = listOf(bucket(START_TIME, 1)).toRollup()
+
+        assertThat(NetworkUsageRollup.Builder(base).build()).isSameInstanceAs(base)
+    }
+
+    private fun bucket(startTime: Long, bytes: Long, duration: Long = HOUR) = Bucket(
+        uid = 0,
+        bytes = bytes,
+        startTimeStamp = startTime,
+        endTimeStamp = startTime + duration,
+    )
+
+    private companion object {
+        const val START_TIME = 1695555555000L
+        const val HOUR = 3_600_000L
+    }
+}
@@ -19,16 +19,19 @@ package com.android.settings.dashboard;
 import static com.android.settingslib.drawer.CategoryKey.CATEGORY_HOMEPAGE;
 import static com.android.settingslib.drawer.TileUtils.META_DATA_KEY_ORDER;
 import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_KEYHINT;
+import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_TITLE;
 
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.Mockito.when;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.pm.ActivityInfo;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.ProviderInfo;
 import android.os.Bundle;
+import android.util.ArraySet;
 import android.util.Pair;
 
 import androidx.test.core.app.ApplicationProvider;
@@ -47,8 +50,13 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RunWith(AndroidJUnit4.class)
 public class CategoryManagerTest {
@@ -408,6 +416,73 @@ public class CategoryManagerTest {
         assertThat(category.getTilesCount()).isEqualTo(1);
     }
 
+    @Test
+    public void reloadCategories_tileAdded_shouldReportCategoryAndTile() {
+        final FakeCategoryManager categoryManager = new FakeCategoryManager(mContext);
+        categoryManager.mTiles.add(createActivityTile(CATEGORY_HOMEPAGE, "pkg1", "class1", 100));
+        categoryManager.reloadAllCategories(mContext);
+        categoryManager.mTiles.add(
+                createActivityTile(CategoryKey.CATEGORY_ACCOUNT, "pkg2", "class2", 100));
+
+        final CategoryManager.CategoriesDiff diff =
+                categoryManager.reloadCategories(mContext, Collections.emptySet());
+
+        assertThat(diff.getChangedCategories()).containsExactly(CategoryKey.CATEGORY_ACCOUNT);
+        assertThat(diff.getChangedTiles()).containsExactly(new ComponentName("pkg2", "class2"));
+    }
+
+    @Test
+    public void reloadCategories_noChange_shouldKeepCategories() {
+        final FakeCategoryManager categoryManager = new FakeCategoryManager(mContext);
+        categoryManager.mTiles.add(createActivityTile(CATEGORY_HOMEPAGE, "pkg1", "class1", 100));
+        final DashboardCategory category =
+                categoryManager.getTilesByCategory(mContext, CATEGORY_HOMEPAGE);
+
+        final CategoryManager.CategoriesDiff diff =
+                categoryManager.reloadCategories(mContext, Collections.emptySet());
+
+        assertThat(diff.isEmpty()).isTrue();
+        assertThat(categoryManager.getTilesByCategory(mContext, CATEGORY_HOMEPAGE))
+                .isSameInstanceAs(category);
+    }
+
+    @Test
+    public void reloadCategories_packageChanged_shouldReloadTilesOfPackage() {
+        final FakeCategoryManager categoryManager = new FakeCategoryManager(mContext);
+        categoryManager.mTiles.add(createTitledTile("pkg1", "class1", "title"));
+        categoryManager.mTiles.add(createTitledTile("pkg2", "class2", "title"));
+        categoryManager.reloadAllCategories(mContext);
+        categoryManager.mTiles.clear();
+        categoryManager.mTiles.add(createTitledTile("pkg1", "class1", "new title"));
+        categoryManager.mTiles.add(createTitledTile("pkg2", "class2", "new title"));
+
+        categoryManager.onPackageChanged("pkg1");
+        final CategoryManager.CategoriesDiff diff =
+                categoryManager.reloadCategories(mContext, Collections.emptySet());
+
+        assertThat(diff.getChangedCategories()).containsExactly(CATEGORY_HOMEPAGE);
+        assertThat(diff.getChangedTiles()).containsExactly(new ComponentName("pkg1", "class1"));
+    }
+
+    @Test
+    public void reloadCategories_denylistedTile_shouldNotChangeServedCategory() {
+        final FakeCategoryManager categoryManager = new FakeCategoryManager(mContext);
+        categoryManager.mTiles.add(createActivityTile(CATEGORY_HOMEPAGE, "pkg1", "class1", 100));
+        categoryManager.mTiles.add(createActivityTile(CATEGORY_HOMEPAGE, "pkg2", "class2", 50));
+        final DashboardCategory category =
+                categoryManager.getTilesByCategory(mContext, CATEGORY_HOMEPAGE);
+        final Set<ComponentName> denylist = new ArraySet<>();
+        denylist.add(new ComponentName("pkg2", "class2"));
+
+        final CategoryManager.CategoriesDiff diff =
+                categoryManager.reloadCategories(mContext, denylist);
+
+        assertThat(diff.getChangedTiles()).containsExactly(new ComponentName("pkg2", "class2"));
+        assertThat(category.getTilesCount()).isEqualTo(2);
+        assertThat(categoryManager.getTilesByCategory(mContext, CATEGORY_HOMEPAGE)
+                .getTilesCount()).isEqualTo(1);
+    }
+
     private Tile createActivityTile(String categoryKey, String packageName, String className,
             int order) {
         final ActivityInfo activityInfo = new ActivityInfo();
@@ -418,6 +493,12 @@ public class CategoryManagerTest {
         return new ActivityTile(activityInfo, categoryKey);
     }
 
+    private Tile createTitledTile(String packageName, String className, String title) {
+        final Tile tile = createActivityTile(CATEGORY_HOMEPAGE, packageName, className, 100);
+        tile.getMetaData().putString(META_DATA_PREFERENCE_TITLE, title);
+        return tile;
+    }
+
     private Tile createProviderTile(String categoryKey, String packageName, String className,
             String authority, String key, int order) {
         final ProviderInfo providerInfo = new ProviderInfo();
@@ -429,4 +510,31 @@ public class CategoryManagerTest {
         metaData.putInt(META_DATA_KEY_ORDER, order);
         return new ProviderTile(providerInfo, categoryKey, metaData);
     }
+
+    /** Loads the categories from {@link #mTiles}, reusing the cached tiles like TileUtils. */
+    private static class FakeCategoryManager extends CategoryManager {
+        private final List<Tile> mTiles = new ArrayList<>();
+
+        FakeCategoryManager(Context context) {
+            super(context);
+        }
+
+        @Override
+        List<DashboardCategory> queryCategories(Context context,
+                Map<Pair<String, String>, Tile> tileByComponentCache) {
+            final Map<String, DashboardCategory> categoryByKeyMap = new LinkedHashMap<>();
+            for (Tile tile : mTiles) {
+                final Pair<String, String> key = new Pair<>(tile.getPackageName(),
+                        tile.getIntent().getComponent().getClassName());
+                Tile cachedTile = tileByComponentCache.get(key);
+                if (cachedTile == null) {
+                    cachedTile = tile;
+                    tileByComponentCache.put(key, tile);
+                }
+                categoryByKeyMap.computeIfAbsent(tile.getCategory(), DashboardCategory::new)
+                        .addTile(cachedTile);
+            }
+            return new ArrayList<>(categoryByKeyMap.values());
+        }
+    }
 }
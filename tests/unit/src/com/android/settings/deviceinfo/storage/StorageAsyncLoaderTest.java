@@ -25,10 +25,15 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.app.usage.StorageStats;
+import android.app.usage.StorageStatsManager;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.UserInfo;
@@ -45,6 +50,7 @@ import androidx.test.runner.AndroidJUnit4;
 import com.android.settings.R;
 import com.android.settingslib.applications.StorageStatsSource;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -53,7 +59,9 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RunWith(AndroidJUnit4.class)
 @SmallTest
@@ -67,12 +75,15 @@ public class StorageAsyncLoaderTest {
 
     @Mock
     private StorageStatsSource mSource;
+    @Mock
+    private StorageStatsManager mStorageStatsManager;
     private Context mContext;
     @Mock
     private PackageManager mPackageManager;
     @Mock
     private UserManager mUserManager;
     private List<ApplicationInfo> mInfo = new ArrayList<>();
+    private Map<String, Long> mLastUpdateTimes = new HashMap<>();
     private List<UserInfo> mUsers;
 
     private StorageAsyncLoader mLoader;
@@ -83,9 +94,22 @@ public class StorageAsyncLoaderTest {
         MockitoAnnotations.initMocks(this);
         mContext = spy(ApplicationProvider.getApplicationContext());
         mInfo = new ArrayList<>();
-        mLoader = new StorageAsyncLoader(mContext, mUserManager, "id", mSource, mPackageManager);
-        when(mPackageManager.getInstalledApplicationsAsUser(eq(PRIMARY_USER_ID), anyInt()))
-                .thenReturn(mInfo);
+        deleteSnapshots();
+        mLoader = new StorageAsyncLoader(mContext, mUserManager, "id", mSource,
+                mStorageStatsManager, mPackageManager);
+        when(mPackageManager.getInstalledPackagesAsUser(eq(0), anyInt()))
+                .thenAnswer(invocation -> {
+                    final List<PackageInfo> packages = new ArrayList<>();
+                    for (ApplicationInfo info : mInfo) {
+                        final PackageInfo packageInfo = new PackageInfo();
+                        packageInfo.packageName = info.packageName;
+                        packageInfo.applicationInfo = info;
+                        packageInfo.lastUpdateTime =
+                                mLastUpdateTimes.getOrDefault(info.packageName, 0L);
+                        packages.add(packageInfo);
+                    }
+                    return packages;
+                });
         UserInfo info = new UserInfo();
         mUsers = new ArrayList<>();
         mUsers.add(info);
@@ -97,6 +121,11 @@ public class StorageAsyncLoaderTest {
                 .when(resources).getString(R.string.config_videos_storage_category_uri);
     }
 
+    @After
+    public void tearDown() {
+        deleteSnapshots();
+    }
+
     @Test
     public void testLoadingApps() throws Exception {
         addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
@@ -210,8 +239,146 @@ public class StorageAsyncLoaderTest {
         assertThat(result.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(33L);
     }
 
+    @Test
+    public void testDuplicateCodeIsCountedForLaterUsers() throws Exception {
+        UserInfo info = new UserInfo();
+        info.id = SECONDARY_USER_ID;
+        mUsers.add(info);
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        assertThat(result.get(PRIMARY_USER_ID).duplicateCodeSize).isEqualTo(0L);
+        assertThat(result.get(SECONDARY_USER_ID).duplicateCodeSize).isEqualTo(1L);
+    }
+
+    @Test
+    public void testUnchangedPackagesAreNotQueriedAgain() throws Exception {
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+        addPackage(PACKAGE_NAME_2, 0, 100, 1000, ApplicationInfo.CATEGORY_GAME);
+        setTotalAppBytes(1111);
+        mLoader.loadInBackground();
+
+        SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        verify(mSource, times(1))
+                .getStatsForPackage(anyString(), eq(PACKAGE_NAME_1), any(UserHandle.class));
+        verify(mSource, times(1))
+                .getStatsForPackage(anyString(), eq(PACKAGE_NAME_2), any(UserHandle.class));
+        assertThat(result.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(11L);
+        assertThat(result.get(PRIMARY_USER_ID).gamesSize).isEqualTo(1100L);
+    }
+
+    @Test
+    public void testUpdatedPackageIsQueriedAgain() throws Exception {
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+        addPackage(PACKAGE_NAME_2, 0, 100, 1000, ApplicationInfo.CATEGORY_UNDEFINED);
+        setTotalAppBytes(1111);
+        mLoader.loadInBackground();
+        mLastUpdateTimes.put(PACKAGE_NAME_1, 1L);
+        setStats(PACKAGE_NAME_1, 0, 2, 20);
+        setTotalAppBytes(1122);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        verify(mSource, times(2))
+                .getStatsForPackage(anyString(), eq(PACKAGE_NAME_1), any(UserHandle.class));
+        verify(mSource, times(1))
+                .getStatsForPackage(anyString(), eq(PACKAGE_NAME_2), any(UserHandle.class));
+        assertThat(result.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(1122L);
+    }
+
+    @Test
+    public void testDriftedSnapshotIsComputedAgain() throws Exception {
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+        addPackage(PACKAGE_NAME_2, 0, 100, 1000, ApplicationInfo.CATEGORY_UNDEFINED);
+        setTotalAppBytes(1111);
+        mLoader.loadInBackground();
+        setStats(PACKAGE_NAME_2, 0, 100, 2000);
+        setTotalAppBytes(2111);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        verify(mSource, times(2))
+                .getStatsForPackage(anyString(), eq(PACKAGE_NAME_2), any(UserHandle.class));
+        assertThat(result.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(2111L);
+    }
+
+    @Test
+    public void testSharedStorageMediaGrowth_snapshotIsReused() throws Exception {
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+        addPackage(PACKAGE_NAME_2, 0, 100, 1000, ApplicationInfo.CATEGORY_UNDEFINED);
+        setTotalAppBytes(1111);
+        mLoader.loadInBackground();
+        setTotalAppBytes(1111, 5000 /* imageBytes */);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        verify(mSource, times(1))
+                .getStatsForPackage(anyString(), eq(PACKAGE_NAME_2), any(UserHandle.class));
+        assertThat(result.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(1111L);
+    }
+
+    @Test
+    public void testSmallDrift_notAttributedToApps() throws Exception {
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+        addPackage(PACKAGE_NAME_2, 0, 100, 1000, ApplicationInfo.CATEGORY_UNDEFINED);
+        setTotalAppBytes(100_000);
+        mLoader.loadInBackground();
+        setTotalAppBytes(100_500);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        verify(mSource, times(1))
+                .getStatsForPackage(anyString(), eq(PACKAGE_NAME_2), any(UserHandle.class));
+        assertThat(result.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(1111L);
+    }
+
+    @Test
+    public void testWithoutTotalAppBytes_snapshotIsNotReused() throws Exception {
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+        mLoader.loadInBackground();
+
+        mLoader.loadInBackground();
+
+        verify(mSource, times(2))
+                .getStatsForPackage(anyString(), eq(PACKAGE_NAME_1), any(UserHandle.class));
+    }
+
+    private void setTotalAppBytes(long bytes) throws Exception {
+        setTotalAppBytes(bytes, 0 /* imageBytes */);
+    }
+
+    /** Sets the stats of the user, whose data bytes include the shared storage images. */
+    private void setTotalAppBytes(long bytes, long imageBytes) throws Exception {
+        final StorageStats stats = new StorageStats();
+        stats.codeBytes = 0;
+        stats.dataBytes = bytes + imageBytes;
+        when(mStorageStatsManager.queryStatsForUser(anyString(), any(UserHandle.class)))
+                .thenReturn(stats);
+        when(mSource.getExternalStorageStats(anyString(), any(UserHandle.class)))
+                .thenReturn(new StorageStatsSource.ExternalStorageStats(
+                        imageBytes, 0 /* audioBytes */, 0 /* videoBytes */, imageBytes,
+                        0 /* appBytes */));
+    }
+
+    private void deleteSnapshots() {
+        StorageSnapshotStore.getInstance(ApplicationProvider.getApplicationContext()).clear();
+    }
+
     private ApplicationInfo addPackage(String packageName, long cacheSize, long codeSize,
             long dataSize, int category) throws Exception {
+        setStats(packageName, cacheSize, codeSize, dataSize);
+
+        ApplicationInfo info = new ApplicationInfo();
+        info.packageName = packageName;
+        info.category = category;
+        mInfo.add(info);
+        return info;
+    }
+
+    private void setStats(String packageName, long cacheSize, long codeSize, long dataSize)
+            throws Exception {
         StorageStatsSource.AppStorageStats storageStats =
                 mock(StorageStatsSource.AppStorageStats.class);
         when(storageStats.getCodeBytes()).thenReturn(codeSize);
@@ -219,12 +386,6 @@ public class StorageAsyncLoaderTest {
         when(storageStats.getCacheBytes()).thenReturn(cacheSize);
         when(mSource.getStatsForPackage(anyString(), eq(packageName), any(UserHandle.class)))
                 .thenReturn(storageStats);
-
-        ApplicationInfo info = new ApplicationInfo();
-        info.packageName = packageName;
-        info.category = category;
-        mInfo.add(info);
-        return info;
     }
 
 }